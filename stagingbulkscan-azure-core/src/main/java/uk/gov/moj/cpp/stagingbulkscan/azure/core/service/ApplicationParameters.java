@@ -32,6 +32,26 @@ public class ApplicationParameters {
     @Value(key = "deleteAfterActionedDays")
     private String deleteAfterActionedDays;
 
+    @Inject
+    @Value(key = "blobStorageMaxRetries", defaultValue = "3")
+    private String blobStorageMaxRetries;
+
+    @Inject
+    @Value(key = "blobStorageRetryBackoffMillis", defaultValue = "4000")
+    private String blobStorageRetryBackoffMillis;
+
+    @Inject
+    @Value(key = "blobStorageConcurrentRequestCount", defaultValue = "8")
+    private String blobStorageConcurrentRequestCount;
+
+    @Inject
+    @Value(key = "thumbnailRenderWorkers", defaultValue = "2")
+    private String thumbnailRenderWorkers;
+
+    @Inject
+    @Value(key = "thumbnailRenderMemoryBytesPerWorker", defaultValue = "16777216")
+    private String thumbnailRenderMemoryBytesPerWorker;
+
     public String getStorageConnectionString() {
         return storageConnectionString;
     }
@@ -56,4 +76,24 @@ public class ApplicationParameters {
         return scanManagerContainerName;
     }
 
+    public String getBlobStorageMaxRetries() {
+        return blobStorageMaxRetries;
+    }
+
+    public String getBlobStorageRetryBackoffMillis() {
+        return blobStorageRetryBackoffMillis;
+    }
+
+    public String getBlobStorageConcurrentRequestCount() {
+        return blobStorageConcurrentRequestCount;
+    }
+
+    public String getThumbnailRenderWorkers() {
+        return thumbnailRenderWorkers;
+    }
+
+    public String getThumbnailRenderMemoryBytesPerWorker() {
+        return thumbnailRenderMemoryBytesPerWorker;
+    }
+
 }
@@ -1,24 +1,28 @@
 package uk.gov.moj.cpp.stagingbulkscan.azure.core.service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URISyntaxException;
-import java.security.InvalidKeyException;
+import static java.util.Collections.singletonList;
 
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobClientSettings;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobOperationMetrics;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreException;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreRegistry;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.CloudBlobStore;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
-import com.microsoft.azure.storage.CloudStorageAccount;
-import com.microsoft.azure.storage.StorageException;
-import com.microsoft.azure.storage.blob.CloudBlobClient;
-import com.microsoft.azure.storage.blob.CloudBlobContainer;
-import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Manages the storage blob client
+ * Manages the storage blob clients. The storage accounts, their clients and the container
+ * references are created once for the application, with the retry policy and concurrency of the
+ * application parameters, and the latency of every read, write and delete is recorded in
+ * {@link #getMetrics()}.
  */
 @ApplicationScoped
 public class BlobClientProvider {
@@ -26,52 +30,69 @@ public class BlobClientProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(BlobClientProvider.class);
 
     private static final byte[] DEFAULT = new byte[0];
+    private static final long STATISTICS_LOG_INTERVAL = 500;
 
     @Inject
     private ApplicationParameters applicationParameters;
 
+    private BlobStoreRegistry blobStoreRegistry;
 
-    public void deleteIfExists(final String fileName) {
-        deleteIfExists(fileName, applicationParameters.getStorageConnectionString(), applicationParameters.getAzureScanManagerContainerName());
-        deleteIfExists(fileName, applicationParameters.getScanManagerStorageConnectionString(), applicationParameters.getScanManagerContainerName());
+    private final AtomicLong operations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        final BlobClientSettings blobClientSettings = new BlobClientSettings(
+                Integer.parseInt(applicationParameters.getBlobStorageMaxRetries()),
+                Integer.parseInt(applicationParameters.getBlobStorageRetryBackoffMillis()),
+                Integer.parseInt(applicationParameters.getBlobStorageConcurrentRequestCount()));
+        LOGGER.info("Blob storage clients use {}", blobClientSettings);
+        blobStoreRegistry = new BlobStoreRegistry(blobClientSettings);
     }
 
-    private void deleteIfExists(final String fileName, final String connectionString, final String containerName) {
-        final CloudBlobClient blobClient = getBlobClientReference(connectionString);
-        try {
-            final CloudBlobContainer container = blobClient.getContainerReference(containerName);
-            
-            final CloudBlockBlob blockBlob = container.getBlockBlobReference(fileName);
+    public void deleteIfExists(final String fileName) {
+        deleteAllIfExist(singletonList(fileName));
+    }
 
-            blockBlob.deleteIfExists();
+    /**
+     * Deletes the files from both the legacy and the scan manager storage, sending the deletes of
+     * each container concurrently.
+     */
+    public void deleteAllIfExist(final Collection<String> fileNames) {
+        deleteAllIfExist(fileNames, applicationParameters.getStorageConnectionString(), applicationParameters.getAzureScanManagerContainerName());
+        deleteAllIfExist(fileNames, applicationParameters.getScanManagerStorageConnectionString(), applicationParameters.getScanManagerContainerName());
+        operationCompleted();
+    }
 
-        } catch (URISyntaxException | StorageException e) {
-            LOGGER.error("Error occurred while getting file content from Azure storage.", e);
+    private void deleteAllIfExist(final Collection<String> fileNames, final String connectionString, final String containerName) {
+        try {
+            getBlobStore(connectionString, containerName).deleteAllIfExist(fileNames);
+        } catch (BlobStoreException e) {
+            LOGGER.error("Error occurred while deleting files from Azure storage.", e);
         }
     }
 
+    /**
+     * The time of a read, including the fallback to the legacy storage, is recorded per file
+     * extension, so document and thumbnail reads can be told apart.
+     */
     public byte[] getBlobContent(final String zipFileName, final String documentFileName) {
-        // first try in the new scan manager storage
-        final byte[] blobContent = getBlobContent(zipFileName, documentFileName, applicationParameters.getScanManagerStorageConnectionString(), applicationParameters.getScanManagerContainerName());
-        if (blobContent == DEFAULT) {
-            return getBlobContent(zipFileName, documentFileName, applicationParameters.getStorageConnectionString(), applicationParameters.getAzureScanManagerContainerName());
-        }
-
+        final byte[] blobContent = getMetrics().time("read." + extension(documentFileName), () -> {
+            // first try in the new scan manager storage
+            final byte[] scanManagerContent = getBlobContent(zipFileName, documentFileName, applicationParameters.getScanManagerStorageConnectionString(), applicationParameters.getScanManagerContainerName());
+            if (scanManagerContent == DEFAULT) {
+                return getMetrics().time("read.legacyFallback", () ->
+                        getBlobContent(zipFileName, documentFileName, applicationParameters.getStorageConnectionString(), applicationParameters.getAzureScanManagerContainerName()));
+            }
+            return scanManagerContent;
+        });
+        operationCompleted();
         return blobContent;
     }
 
     private byte[] getBlobContent(final String zipFileName, final String documentFileName, final String connectionString, final String containerName) {
         try {
-
-            final CloudBlobClient blobClient = getBlobClientReference(connectionString);
-
-            final CloudBlobContainer container = blobClient.getContainerReference(containerName);
-
-            final CloudBlockBlob blockBlob = container.getBlockBlobReference(zipFileName + "/" + documentFileName);
-
-            return readFully(blockBlob.openInputStream());
-
-        } catch (URISyntaxException | StorageException | IOException e) {
+            return getBlobStore(connectionString, containerName).download(zipFileName + "/" + documentFileName);
+        } catch (BlobStoreException e) {
             LOGGER.error("Error occurred while getting file content from Azure storage.", e);
         }
 
@@ -79,37 +100,52 @@ public class BlobClientProvider {
     }
 
     /**
-     * Validates the connection string and returns the storage blob client. The connection string
-     * must be in the Azure connection string format.
+     * Writes the content to the scan manager storage, next to the documents of the zip.
      *
-     * @return The newly created CloudBlobClient object
+     * @return true when the content was written
      */
-    private CloudBlobClient getBlobClientReference(final String storageConnectionString) {
+    public boolean uploadBlobContent(final String zipFileName, final String documentFileName, final byte[] content) {
+        try {
+            getBlobStore(applicationParameters.getScanManagerStorageConnectionString(), applicationParameters.getScanManagerContainerName())
+                    .uploadBytes(zipFileName + "/" + documentFileName, content);
+            return true;
+        } catch (BlobStoreException e) {
+            LOGGER.error("Error occurred while writing file content to Azure storage.", e);
+        } finally {
+            operationCompleted();
+        }
+
+        return false;
+    }
+
+    public BlobOperationMetrics getMetrics() {
+        return blobStoreRegistry.getMetrics();
+    }
 
-        CloudStorageAccount storageAccount;
+    /**
+     * Validates the connection string and returns the store of the container. The connection
+     * string must be in the Azure connection string format.
+     *
+     * @return The shared CloudBlobStore of the container
+     */
+    private CloudBlobStore getBlobStore(final String storageConnectionString, final String containerName) {
         try {
-            storageAccount = CloudStorageAccount.parse(storageConnectionString);
-        } catch (URISyntaxException | InvalidKeyException e) {
+            return blobStoreRegistry.getBlobStore(storageConnectionString, containerName);
+        } catch (BlobStoreException e) {
             LOGGER.error("\nConnection string specifies an invalid URI.");
             LOGGER.error("Please confirm the connection string is in the Azure connection string format.");
             throw new IllegalArgumentException("Invalid connection string.", e);
         }
-
-        return storageAccount.createCloudBlobClient();
     }
 
-    private static byte[] readFully(InputStream stream) throws IOException {
-
-        final byte[] buffer = new byte[8192];
-
-        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-        int bytesRead;
-
-        while ((bytesRead = stream.read(buffer)) != -1) {
-            byteArrayOutputStream.write(buffer, 0, bytesRead);
+    private void operationCompleted() {
+        if (operations.incrementAndGet() % STATISTICS_LOG_INTERVAL == 0) {
+            LOGGER.info("{}", getMetrics().getStatistics());
         }
+    }
 
-        return byteArrayOutputStream.toByteArray();
+    private static String extension(final String fileName) {
+        final int index = fileName.lastIndexOf('.');
+        return index < 0 ? "other" : fileName.substring(index + 1).toLowerCase();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The upload and delete strategies shared by the stores. Content above the single upload
+ * threshold is cut into blocks that are staged at most {@code parallelism} at a time and
+ * committed once they all have been staged, so at most {@code parallelism + 1} blocks are held
+ * in memory whatever the size of the content. Deletes of several blobs are sent concurrently,
+ * also at most {@code parallelism} at a time.
+ *
+ * The worker threads are shared by every store of the process.
+ */
+public abstract class AbstractBlobStore implements BlobStore {
+
+    public static final int DEFAULT_BLOCK_SIZE_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_SINGLE_UPLOAD_THRESHOLD_BYTES = 8L * 1024 * 1024;
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "blob-store-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int blockSizeBytes;
+    private final long singleUploadThresholdBytes;
+    private final int parallelism;
+
+    protected AbstractBlobStore(final int blockSizeBytes, final long singleUploadThresholdBytes, final int parallelism) {
+        if (blockSizeBytes < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Block size and parallelism must be positive");
+        }
+        this.blockSizeBytes = blockSizeBytes;
+        this.singleUploadThresholdBytes = singleUploadThresholdBytes;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void upload(final String name, final InputStream content, final long length) {
+        try {
+            if (length <= singleUploadThresholdBytes) {
+                uploadSingle(name, content, length);
+            } else {
+                uploadBlocks(name, content, length);
+            }
+        } catch (IOException e) {
+            throw new BlobStoreException("Unable to upload " + name, e);
+        }
+    }
+
+    /**
+     * @return the most bytes of content of the given length held in memory while it is uploaded:
+     * the content itself up to the single upload threshold, otherwise the
+     * {@code parallelism + 1} blocks being read and staged
+     */
+    public long getUploadBufferBytes(final long length) {
+        return length <= singleUploadThresholdBytes ? length : Math.min(length, (parallelism + 1L) * blockSizeBytes);
+    }
+
+    @Override
+    public int deleteAllIfExist(final Collection<String> names) {
+        final List<Future<Boolean>> deletes = new ArrayList<>(names.size());
+        final Semaphore inFlightDeletes = new Semaphore(parallelism);
+        try {
+            for (final String name : names) {
+                inFlightDeletes.acquire();
+                deletes.add(submit(inFlightDeletes, () -> deleteIfExists(name)));
+            }
+            int deleted = 0;
+            RuntimeException failure = null;
+            for (final Future<Boolean> delete : deletes) {
+                try {
+                    deleted += Boolean.TRUE.equals(delete.get()) ? 1 : 0;
+                } catch (ExecutionException e) {
+                    failure = failure == null ? unwrap("Unable to delete blobs", e) : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return deleted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deletes.forEach(delete -> delete.cancel(true));
+            throw new BlobStoreException("Interrupted while deleting blobs", e);
+        }
+    }
+
+    protected abstract void uploadSingle(String name, InputStream content, long length) throws IOException;
+
+    protected abstract void stageBlock(String name, String blockId, byte[] block) throws IOException;
+
+    /**
+     * Makes the staged blocks, in the given order, the content of the blob.
+     */
+    protected abstract void commitBlocks(String name, List<String> blockIds) throws IOException;
+
+    /**
+     * Block ids of a blob must all have the same length.
+     */
+    static String blockId(final int index) {
+        return Base64.getEncoder().encodeToString(String.format("%08d", index).getBytes(UTF_8));
+    }
+
+    private void uploadBlocks(final String name, final InputStream content, final long length) throws IOException {
+        final DataInputStream dataInputStream = new DataInputStream(content);
+        final Semaphore inFlightBlocks = new Semaphore(parallelism);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final List<String> blockIds = new ArrayList<>();
+        final List<Future<Boolean>> stagedBlocks = new ArrayList<>();
+        try {
+            long remaining = length;
+            while (remaining > 0 && !failed.get()) {
+                final byte[] block = new byte[(int) Math.min(blockSizeBytes, remaining)];
+                dataInputStream.readFully(block);
+                remaining -= block.length;
+
+                final String blockId = blockId(blockIds.size());
+                blockIds.add(blockId);
+                inFlightBlocks.acquire();
+                stagedBlocks.add(submit(inFlightBlocks, () -> {
+                    try {
+                        stageBlock(name, blockId, block);
+                        return true;
+                    } catch (IOException | RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }));
+            }
+            for (final Future<Boolean> stagedBlock : stagedBlocks) {
+                stagedBlock.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlobStoreException("Interrupted while uploading " + name, e);
+        } catch (ExecutionException e) {
+            throw unwrap("Unable to upload a block of " + name, e);
+        } finally {
+            stagedBlocks.forEach(stagedBlock -> stagedBlock.cancel(true));
+        }
+        commitBlocks(name, blockIds);
+    }
+
+    private static <T> Future<T> submit(final Semaphore permits, final Callable<T> task) {
+        try {
+            return WORKERS.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static RuntimeException unwrap(final String message, final ExecutionException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new BlobStoreException(message, e.getCause());
+    }
+}
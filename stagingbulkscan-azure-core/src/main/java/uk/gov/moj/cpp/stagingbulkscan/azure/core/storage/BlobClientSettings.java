@@ -0,0 +1,68 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import com.microsoft.azure.storage.RetryExponentialRetry;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+
+/**
+ * How the blob and queue clients of a {@link BlobStoreRegistry} retry failed requests and how
+ * many requests a single upload or batch of deletes sends at the same time.
+ */
+public class BlobClientSettings {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final int DEFAULT_RETRY_BACKOFF_MILLIS = 4000;
+    public static final int DEFAULT_CONCURRENT_REQUEST_COUNT = 8;
+
+    private final int maxRetries;
+    private final int retryBackoffMillis;
+    private final int concurrentRequestCount;
+
+    public BlobClientSettings(final int maxRetries, final int retryBackoffMillis, final int concurrentRequestCount) {
+        if (maxRetries < 0 || retryBackoffMillis < 0 || concurrentRequestCount < 1) {
+            throw new IllegalArgumentException("Retries and retry backoff must not be negative, concurrent request count must be positive");
+        }
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.concurrentRequestCount = concurrentRequestCount;
+    }
+
+    public static BlobClientSettings defaults() {
+        return new BlobClientSettings(DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BACKOFF_MILLIS, DEFAULT_CONCURRENT_REQUEST_COUNT);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public int getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public int getConcurrentRequestCount() {
+        return concurrentRequestCount;
+    }
+
+    /**
+     * Makes these settings the default request options of the client.
+     */
+    void configure(final CloudBlobClient blobClient) {
+        final BlobRequestOptions requestOptions = blobClient.getDefaultRequestOptions();
+        requestOptions.setRetryPolicyFactory(new RetryExponentialRetry(retryBackoffMillis, maxRetries));
+        requestOptions.setConcurrentRequestCount(concurrentRequestCount);
+    }
+
+    /**
+     * Makes the retry policy of these settings the default of the queue client.
+     */
+    void configure(final CloudQueueClient queueClient) {
+        queueClient.getDefaultRequestOptions().setRetryPolicyFactory(new RetryExponentialRetry(retryBackoffMillis, maxRetries));
+    }
+
+    @Override
+    public String toString() {
+        return "BlobClientSettings(maxRetries=" + maxRetries + ", retryBackoffMillis=" + retryBackoffMillis
+                + ", concurrentRequestCount=" + concurrentRequestCount + ")";
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Count, failures and latency of each kind of storage operation, for as long as the owner lives.
+ */
+public class BlobOperationMetrics {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final ConcurrentMap<String, OperationStatistics> operations = new ConcurrentHashMap<>();
+
+    public <T> T time(final String operation, final Supplier<T> action) {
+        final long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            final T result = action.get();
+            failed = false;
+            return result;
+        } finally {
+            record(operation, System.nanoTime() - startTime, failed);
+        }
+    }
+
+    public void record(final String operation, final long elapsedNanos, final boolean failed) {
+        operations.computeIfAbsent(operation, key -> new OperationStatistics()).record(elapsedNanos, failed);
+    }
+
+    public Optional<OperationStatistics> getOperation(final String operation) {
+        return Optional.ofNullable(operations.get(operation));
+    }
+
+    public String getStatistics() {
+        final Map<String, OperationStatistics> sortedOperations = new TreeMap<>(operations);
+        return sortedOperations.entrySet().stream()
+                .map(operation -> operation.getKey() + operation.getValue())
+                .collect(Collectors.joining(", ", "BlobOperationMetrics(", ")"));
+    }
+
+    public static class OperationStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        void record(final long elapsedNanos, final boolean failed) {
+            count.increment();
+            if (failed) {
+                failures.increment();
+            }
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public double getAverageMillis() {
+            final long operationCount = count.sum();
+            return operationCount == 0 ? 0 : totalNanos.sum() / NANOS_PER_MILLI / operationCount;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "(count=%d, failures=%d, averageMillis=%.1f, maxMillis=%.1f)", getCount(), getFailures(), getAverageMillis(), getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The blobs of a single container. {@link CloudBlobStore} keeps them in Azure storage,
+ * {@link InMemoryBlobStore} in the heap for local runs, tests and benchmarks.
+ */
+public interface BlobStore {
+
+    /**
+     * Writes the {@code length} bytes of the content to the blob, replacing the blob if it
+     * exists. Large content is staged as blocks uploaded in parallel and committed together, so
+     * the blob only appears once all of it has been written.
+     */
+    void upload(String name, InputStream content, long length);
+
+    InputStream openInputStream(String name);
+
+    long getSize(String name);
+
+    boolean exists(String name);
+
+    /**
+     * @return true when the blob existed and was deleted
+     */
+    boolean deleteIfExists(String name);
+
+    /**
+     * Deletes the blobs concurrently; a blob that failed to be deleted does not stop the others
+     * from being deleted, the first failure is thrown once they all have been tried.
+     *
+     * @return the number of blobs that existed and were deleted
+     */
+    int deleteAllIfExist(Collection<String> names);
+
+    /**
+     * Copies a blob of the source store into this store. The content is streamed through this
+     * host, implementations override this to copy server side where the storage supports it.
+     */
+    default void copyFrom(final BlobStore source, final String sourceName, final String targetName) {
+        try (InputStream content = source.openInputStream(sourceName)) {
+            upload(targetName, content, source.getSize(sourceName));
+        } catch (IOException e) {
+            throw new BlobStoreException("Unable to copy " + sourceName + " into " + targetName, e);
+        }
+    }
+
+    /**
+     * Copies a blob of the source store into this store, then deletes it from the source.
+     */
+    default void moveFrom(final BlobStore source, final String sourceName, final String targetName) {
+        copyFrom(source, sourceName, targetName);
+        source.deleteIfExists(sourceName);
+    }
+}
@@ -0,0 +1,14 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+public class BlobStoreException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BlobStoreException(final String message) {
+        super(message);
+    }
+
+    public BlobStoreException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,118 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import static java.util.Arrays.asList;
+
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.queue.CloudQueue;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+
+/**
+ * The storage accounts, blob clients and containers of a process. A connection string is parsed
+ * and its client created once, with the retry policy and concurrency of the settings, and every
+ * container of the account shares that client. All the stores record their operations in the
+ * metrics of the registry.
+ *
+ * Containers and queues the application owns, rather than ones provisioned with the storage
+ * account, are created the first time the process asks for them and never checked again.
+ */
+public class BlobStoreRegistry {
+
+    private final BlobClientSettings blobClientSettings;
+    private final BlobOperationMetrics metrics = new BlobOperationMetrics();
+    private final ConcurrentMap<String, CloudStorageAccount> storageAccounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CloudBlobClient> blobClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CloudQueueClient> queueClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<String>, CloudBlobStore> blobStores = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<String>, CloudBlobStore> createdBlobStores = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<String>, CloudQueue> createdQueues = new ConcurrentHashMap<>();
+
+    public BlobStoreRegistry(final BlobClientSettings blobClientSettings) {
+        this.blobClientSettings = blobClientSettings;
+    }
+
+    public CloudBlobStore getBlobStore(final String connectionString, final String containerName) {
+        return blobStores.computeIfAbsent(asList(connectionString, containerName), key -> {
+            try {
+                return new CloudBlobStore(getBlobClient(connectionString).getContainerReference(containerName),
+                        AbstractBlobStore.DEFAULT_BLOCK_SIZE_BYTES, AbstractBlobStore.DEFAULT_SINGLE_UPLOAD_THRESHOLD_BYTES,
+                        blobClientSettings.getConcurrentRequestCount(), metrics);
+            } catch (URISyntaxException | StorageException e) {
+                throw new BlobStoreException("Invalid container name " + containerName, e);
+            }
+        });
+    }
+
+    /**
+     * @return the store of the container, creating the container if it does not exist yet the
+     * first time it is asked for; a failed creation is tried again on the next call
+     */
+    public CloudBlobStore getCreatedBlobStore(final String connectionString, final String containerName) {
+        return createdBlobStores.computeIfAbsent(asList(connectionString, containerName), key -> {
+            final CloudBlobStore blobStore = getBlobStore(connectionString, containerName);
+            try {
+                blobStore.getContainer().createIfNotExists();
+                return blobStore;
+            } catch (StorageException e) {
+                throw new BlobStoreException("Unable to create container " + containerName, e);
+            }
+        });
+    }
+
+    /**
+     * @return the queue, created if it does not exist yet the first time it is asked for; a
+     * failed creation is tried again on the next call
+     */
+    public CloudQueue getCreatedQueue(final String connectionString, final String queueName) {
+        return createdQueues.computeIfAbsent(asList(connectionString, queueName), key -> {
+            try {
+                final CloudQueue queue = getQueueClient(connectionString).getQueueReference(queueName);
+                queue.createIfNotExists();
+                return queue;
+            } catch (URISyntaxException | StorageException e) {
+                throw new BlobStoreException("Unable to create queue " + queueName, e);
+            }
+        });
+    }
+
+    public CloudBlobClient getBlobClient(final String connectionString) {
+        return blobClients.computeIfAbsent(connectionString, key -> {
+            final CloudBlobClient blobClient = getStorageAccount(connectionString).createCloudBlobClient();
+            blobClientSettings.configure(blobClient);
+            return blobClient;
+        });
+    }
+
+    public CloudQueueClient getQueueClient(final String connectionString) {
+        return queueClients.computeIfAbsent(connectionString, key -> {
+            final CloudQueueClient queueClient = getStorageAccount(connectionString).createCloudQueueClient();
+            blobClientSettings.configure(queueClient);
+            return queueClient;
+        });
+    }
+
+    private CloudStorageAccount getStorageAccount(final String connectionString) {
+        return storageAccounts.computeIfAbsent(connectionString, key -> {
+            try {
+                return CloudStorageAccount.parse(connectionString);
+            } catch (URISyntaxException | InvalidKeyException | IllegalArgumentException e) {
+                throw new BlobStoreException("Invalid storage connection string", e);
+            }
+        });
+    }
+
+    public BlobClientSettings getBlobClientSettings() {
+        return blobClientSettings;
+    }
+
+    public BlobOperationMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,240 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.blob.CopyState;
+import com.microsoft.azure.storage.blob.CopyStatus;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPermissions;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPolicy;
+
+/**
+ * A container of an Azure storage account, usually obtained from a {@link BlobStoreRegistry}
+ * so the blob client of the account is shared. The latency of each operation is recorded in
+ * the given metrics.
+ *
+ * Copies between containers run server side: within an account the source blob is copied as
+ * it is, from another account it is read through a short lived read-only signature.
+ */
+public class CloudBlobStore extends AbstractBlobStore {
+
+    private static final long COPY_POLL_MILLIS = 200;
+    private static final long COPY_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+    private static final long COPY_SIGNATURE_VALIDITY_MINUTES = 60;
+
+    private final CloudBlobContainer container;
+    private final BlobOperationMetrics metrics;
+
+    public CloudBlobStore(final CloudBlobContainer container, final int blockSizeBytes, final long singleUploadThresholdBytes,
+                          final int parallelism, final BlobOperationMetrics metrics) {
+        super(blockSizeBytes, singleUploadThresholdBytes, parallelism);
+        this.container = container;
+        this.metrics = metrics;
+    }
+
+    public CloudBlobContainer getContainer() {
+        return container;
+    }
+
+    public BlobOperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void upload(final String name, final InputStream content, final long length) {
+        metrics.time("upload", () -> {
+            super.upload(name, content, length);
+            return length;
+        });
+    }
+
+    @Override
+    public int deleteAllIfExist(final Collection<String> names) {
+        return metrics.time("deleteAll", () -> super.deleteAllIfExist(names));
+    }
+
+    @Override
+    public InputStream openInputStream(final String name) {
+        try {
+            return blob(name).openInputStream();
+        } catch (StorageException e) {
+            throw new BlobStoreException("Unable to read " + name, e);
+        }
+    }
+
+    @Override
+    public long getSize(final String name) {
+        return metrics.time("getSize", () -> {
+            try {
+                final CloudBlockBlob blob = blob(name);
+                blob.downloadAttributes();
+                return blob.getProperties().getLength();
+            } catch (StorageException e) {
+                throw new BlobStoreException("Unable to read the size of " + name, e);
+            }
+        });
+    }
+
+    @Override
+    public boolean exists(final String name) {
+        return metrics.time("exists", () -> {
+            try {
+                return blob(name).exists();
+            } catch (StorageException e) {
+                throw new BlobStoreException("Unable to check whether " + name + " exists", e);
+            }
+        });
+    }
+
+    @Override
+    public boolean deleteIfExists(final String name) {
+        return metrics.time("delete", () -> {
+            try {
+                return blob(name).deleteIfExists();
+            } catch (StorageException e) {
+                throw new BlobStoreException("Unable to delete " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Reads the whole blob, for content small enough to be held in memory.
+     */
+    public byte[] download(final String name) {
+        return metrics.time("download", () -> {
+            try (InputStream content = blob(name).openInputStream()) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return bytes.toByteArray();
+            } catch (StorageException | IOException e) {
+                throw new BlobStoreException("Unable to read " + name, e);
+            }
+        });
+    }
+
+    public void uploadBytes(final String name, final byte[] content) {
+        metrics.time("uploadBytes", () -> {
+            try {
+                blob(name).uploadFromByteArray(content, 0, content.length);
+                return content.length;
+            } catch (StorageException | IOException e) {
+                throw new BlobStoreException("Unable to upload " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Copies server side when the source is also a cloud container, and waits for the copy to
+     * complete so the source can be deleted straight after.
+     */
+    @Override
+    public void copyFrom(final BlobStore source, final String sourceName, final String targetName) {
+        if (!(source instanceof CloudBlobStore)) {
+            super.copyFrom(source, sourceName, targetName);
+            return;
+        }
+        metrics.time("copy", () -> {
+            try {
+                final CloudBlockBlob sourceBlob = ((CloudBlobStore) source).blob(sourceName);
+                final CloudBlockBlob targetBlob = blob(targetName);
+                final String copyId = isSameAccount(sourceBlob)
+                        ? targetBlob.startCopy(sourceBlob)
+                        : targetBlob.startCopy(new URI(sourceBlob.getUri() + "?" + readSignature(sourceBlob)));
+                awaitCopy(targetBlob, copyId, targetName);
+                return copyId;
+            } catch (URISyntaxException | StorageException | InvalidKeyException e) {
+                throw new BlobStoreException("Unable to copy " + sourceName + " into " + targetName, e);
+            }
+        });
+    }
+
+    @Override
+    protected void uploadSingle(final String name, final InputStream content, final long length) throws IOException {
+        try {
+            blob(name).upload(content, length);
+        } catch (StorageException e) {
+            throw new BlobStoreException("Unable to upload " + name, e);
+        }
+    }
+
+    @Override
+    protected void stageBlock(final String name, final String blockId, final byte[] block) throws IOException {
+        try {
+            blob(name).uploadBlock(blockId, new ByteArrayInputStream(block), block.length);
+        } catch (StorageException e) {
+            throw new BlobStoreException("Unable to upload a block of " + name, e);
+        }
+    }
+
+    @Override
+    protected void commitBlocks(final String name, final List<String> blockIds) {
+        try {
+            blob(name).commitBlockList(blockIds.stream().map(BlockEntry::new).collect(Collectors.toList()));
+        } catch (StorageException e) {
+            throw new BlobStoreException("Unable to commit the blocks of " + name, e);
+        }
+    }
+
+    private CloudBlockBlob blob(final String name) {
+        try {
+            return container.getBlockBlobReference(name);
+        } catch (URISyntaxException | StorageException e) {
+            throw new BlobStoreException("Invalid blob name " + name, e);
+        }
+    }
+
+    private boolean isSameAccount(final CloudBlockBlob sourceBlob) {
+        final String sourceAccount = sourceBlob.getServiceClient().getCredentials().getAccountName();
+        return sourceAccount != null && sourceAccount.equals(container.getServiceClient().getCredentials().getAccountName());
+    }
+
+    private static String readSignature(final CloudBlockBlob sourceBlob) throws InvalidKeyException, StorageException {
+        final SharedAccessBlobPolicy policy = new SharedAccessBlobPolicy();
+        policy.setPermissions(EnumSet.of(SharedAccessBlobPermissions.READ));
+        policy.setSharedAccessExpiryTime(Date.from(Instant.now().plus(COPY_SIGNATURE_VALIDITY_MINUTES, ChronoUnit.MINUTES)));
+        return sourceBlob.generateSharedAccessSignature(policy, null);
+    }
+
+    private static void awaitCopy(final CloudBlockBlob targetBlob, final String copyId, final String targetName) throws StorageException {
+        final long deadline = System.currentTimeMillis() + COPY_TIMEOUT_MILLIS;
+        targetBlob.downloadAttributes();
+        CopyState copyState = targetBlob.getCopyState();
+        while (copyState != null && copyState.getStatus() == CopyStatus.PENDING) {
+            if (System.currentTimeMillis() > deadline) {
+                targetBlob.abortCopy(copyId);
+                throw new BlobStoreException("Copy into " + targetName + " did not complete in time");
+            }
+            try {
+                Thread.sleep(COPY_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlobStoreException("Interrupted while copying into " + targetName, e);
+            }
+            targetBlob.downloadAttributes();
+            copyState = targetBlob.getCopyState();
+        }
+        if (copyState != null && copyState.getStatus() != CopyStatus.SUCCESS) {
+            throw new BlobStoreException("Copy into " + targetName + " ended " + copyState.getStatus() + ": " + copyState.getStatusDescription());
+        }
+    }
+}
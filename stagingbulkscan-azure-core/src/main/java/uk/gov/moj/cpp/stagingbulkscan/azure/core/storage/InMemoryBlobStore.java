@@ -0,0 +1,134 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A store that keeps its blobs in the heap, for local runs, tests and benchmarks. It stages and
+ * commits blocks the way a storage container does, so blocks that were never committed do not
+ * create a blob, and every request can be delayed by a fixed latency to stand in for the round
+ * trip to the storage service.
+ */
+public class InMemoryBlobStore extends AbstractBlobStore {
+
+    private final ConcurrentMap<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Map<String, byte[]>> stagedBlocks = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final long requestLatencyMillis;
+
+    public InMemoryBlobStore() {
+        this(DEFAULT_BLOCK_SIZE_BYTES, DEFAULT_SINGLE_UPLOAD_THRESHOLD_BYTES, DEFAULT_PARALLELISM, 0);
+    }
+
+    public InMemoryBlobStore(final int blockSizeBytes, final long singleUploadThresholdBytes, final int parallelism,
+                             final long requestLatencyMillis) {
+        super(blockSizeBytes, singleUploadThresholdBytes, parallelism);
+        this.requestLatencyMillis = requestLatencyMillis;
+    }
+
+    @Override
+    public InputStream openInputStream(final String name) {
+        return new ByteArrayInputStream(content(name));
+    }
+
+    @Override
+    public long getSize(final String name) {
+        return content(name).length;
+    }
+
+    @Override
+    public boolean exists(final String name) {
+        request();
+        return blobs.containsKey(name);
+    }
+
+    @Override
+    public boolean deleteIfExists(final String name) {
+        request();
+        return blobs.remove(name) != null;
+    }
+
+    public Optional<byte[]> getContent(final String name) {
+        return Optional.ofNullable(blobs.get(name));
+    }
+
+    public Set<String> getBlobNames() {
+        return new TreeSet<>(blobs.keySet());
+    }
+
+    public int getStagedBlockCount(final String name) {
+        final Map<String, byte[]> blocks = stagedBlocks.get(name);
+        return blocks == null ? 0 : blocks.size();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    protected void uploadSingle(final String name, final InputStream content, final long length) throws IOException {
+        final byte[] bytes = new byte[(int) length];
+        int read = 0;
+        while (read < bytes.length) {
+            final int count = content.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                throw new IOException("Content of " + name + " ended after " + read + " of " + length + " bytes");
+            }
+            read += count;
+        }
+        request();
+        blobs.put(name, bytes);
+    }
+
+    @Override
+    protected void stageBlock(final String name, final String blockId, final byte[] block) {
+        request();
+        stagedBlocks.computeIfAbsent(name, key -> new ConcurrentHashMap<>()).put(blockId, block);
+    }
+
+    @Override
+    protected void commitBlocks(final String name, final List<String> blockIds) {
+        request();
+        final Map<String, byte[]> blocks = stagedBlocks.remove(name);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (final String blockId : blockIds) {
+            final byte[] block = blocks == null ? null : blocks.get(blockId);
+            if (block == null) {
+                throw new BlobStoreException("Block " + blockId + " of " + name + " was not staged");
+            }
+            content.write(block, 0, block.length);
+        }
+        blobs.put(name, content.toByteArray());
+    }
+
+    private byte[] content(final String name) {
+        request();
+        final byte[] content = blobs.get(name);
+        if (content == null) {
+            throw new BlobStoreException("Blob " + name + " does not exist");
+        }
+        return content;
+    }
+
+    private void request() {
+        requests.increment();
+        if (requestLatencyMillis > 0) {
+            try {
+                Thread.sleep(requestLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlobStoreException("Interrupted while waiting for the store", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.thumbnail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * Renders the first page of a pdf as a png thumbnail on a fixed pool of worker threads.
+ *
+ * Each document is loaded with at most {@code mainMemoryBytesPerWorker} of main memory, any
+ * larger document being buffered in scratch files under {@code scratchDirectory}, and is
+ * closed as soon as its page has been rendered. With the pool bounding the number of
+ * documents open at once, the heap taken by rendering is bounded by the worker count times
+ * the per-worker budget, however many thumbnails are requested together.
+ *
+ * Shared by the thumbnail function, which renders at ingest, and the query view, which renders
+ * the thumbnails that are missing when they are first read.
+ */
+public class PdfThumbnailRenderer implements AutoCloseable {
+
+    private static final float THUMBNAIL_DPI = 30;
+    private static final int INITIAL_IMAGE_BUFFER_SIZE = 32 * 1024;
+
+    private final ExecutorService workers;
+    private final long mainMemoryBytesPerWorker;
+    private final File scratchDirectory;
+    private final LongAdder renderCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder pdfBytes = new LongAdder();
+    private final LongAdder imageBytes = new LongAdder();
+
+    public PdfThumbnailRenderer(final int workerCount, final long mainMemoryBytesPerWorker, final File scratchDirectory) {
+        if (workerCount < 1 || mainMemoryBytesPerWorker < 1) {
+            throw new IllegalArgumentException("Renderer worker count and memory per worker must be positive");
+        }
+        this.workers = Executors.newFixedThreadPool(workerCount, new RendererThreadFactory());
+        this.mainMemoryBytesPerWorker = mainMemoryBytesPerWorker;
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    /**
+     * Renders the thumbnail on one of the workers, waiting for it to complete.
+     *
+     * @throws IOException when the pdf cannot be read or rendered
+     */
+    public byte[] render(final InputStream pdfInputStream) throws IOException {
+        final Future<byte[]> thumbnail = workers.submit(() -> renderOnWorker(pdfInputStream));
+        try {
+            return thumbnail.get();
+        } catch (InterruptedException e) {
+            thumbnail.cancel(true);
+            Thread.currentThread().interrupt();
+            final InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted while rendering thumbnail");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Thumbnail rendering failed", e.getCause());
+        }
+    }
+
+    public RenderMetrics getMetrics() {
+        return new RenderMetrics(renderCount.sum(), failureCount.sum(), renderNanos.sum(), pdfBytes.sum(), imageBytes.sum());
+    }
+
+    private byte[] renderOnWorker(final InputStream pdfInputStream) throws IOException {
+        final long startTime = System.nanoTime();
+        final CountingInputStream countingInputStream = new CountingInputStream(pdfInputStream);
+        try (PDDocument document = PDDocument.load(countingInputStream, memoryUsageSetting())) {
+            final BufferedImage image = new PDFRenderer(document).renderImageWithDPI(0, THUMBNAIL_DPI, ImageType.RGB);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(INITIAL_IMAGE_BUFFER_SIZE);
+            ImageIO.write(image, "png", outputStream);
+            image.flush();
+
+            renderCount.increment();
+            imageBytes.add(outputStream.size());
+            return outputStream.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            failureCount.increment();
+            throw e;
+        } finally {
+            pdfBytes.add(countingInputStream.getByteCount());
+            renderNanos.add(System.nanoTime() - startTime);
+        }
+    }
+
+    private MemoryUsageSetting memoryUsageSetting() {
+        final MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(mainMemoryBytesPerWorker);
+        return scratchDirectory == null ? memoryUsageSetting : memoryUsageSetting.setTempDir(scratchDirectory);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private static class RendererThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "pdf-thumbnail-renderer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static class RenderMetrics {
+
+        private final long renderCount;
+        private final long failureCount;
+        private final long renderNanos;
+        private final long pdfBytes;
+        private final long imageBytes;
+
+        RenderMetrics(final long renderCount, final long failureCount, final long renderNanos, final long pdfBytes, final long imageBytes) {
+            this.renderCount = renderCount;
+            this.failureCount = failureCount;
+            this.renderNanos = renderNanos;
+            this.pdfBytes = pdfBytes;
+            this.imageBytes = imageBytes;
+        }
+
+        public long getRenderCount() {
+            return renderCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public long getAverageRenderMillis() {
+            return attempts() == 0 ? 0 : renderNanos / attempts() / 1_000_000;
+        }
+
+        public long getAveragePdfBytesPerRender() {
+            return attempts() == 0 ? 0 : pdfBytes / attempts();
+        }
+
+        public long getAverageImageBytesPerRender() {
+            return renderCount == 0 ? 0 : imageBytes / renderCount;
+        }
+
+        private long attempts() {
+            return renderCount + failureCount;
+        }
+
+        @Override
+        public String toString() {
+            return "RenderMetrics(renderCount=" + renderCount + ", failureCount=" + failureCount
+                    + ", averageRenderMillis=" + getAverageRenderMillis()
+                    + ", averagePdfBytesPerRender=" + getAveragePdfBytesPerRender()
+                    + ", averageImageBytesPerRender=" + getAverageImageBytesPerRender() + ")";
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class BlobOperationMetricsTest {
+
+    private final BlobOperationMetrics metrics = new BlobOperationMetrics();
+
+    @Test
+    public void shouldCountOperationsAndFailures() {
+        assertThat(metrics.time("read.pdf", () -> "content"), is("content"));
+        metrics.time("read.pdf", () -> "content");
+        assertThrows(BlobStoreException.class, () -> metrics.time("read.pdf", () -> {
+            throw new BlobStoreException("not found");
+        }));
+
+        final BlobOperationMetrics.OperationStatistics readStatistics = metrics.getOperation("read.pdf").get();
+        assertThat(readStatistics.getCount(), is(3L));
+        assertThat(readStatistics.getFailures(), is(1L));
+        assertThat(metrics.getOperation("read.png"), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldKeepLatencyOfEachOperation() {
+        metrics.record("read.png", 2_000_000, false);
+        metrics.record("read.png", 4_000_000, false);
+        metrics.record("delete", 1_000_000, false);
+
+        final BlobOperationMetrics.OperationStatistics readStatistics = metrics.getOperation("read.png").get();
+        assertThat(readStatistics.getAverageMillis(), is(3.0));
+        assertThat(readStatistics.getMaxMillis(), is(4.0));
+        assertThat(metrics.getStatistics(), startsWith("BlobOperationMetrics(delete(count=1, failures=0"));
+    }
+}
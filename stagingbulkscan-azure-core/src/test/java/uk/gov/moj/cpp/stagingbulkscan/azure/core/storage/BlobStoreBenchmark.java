@@ -0,0 +1,92 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Uploads a 16MB zip as 1MB blocks and deletes the pdf and png of 50 documents against an
+ * {@link InMemoryBlobStore} that delays every request by a few milliseconds, the way a round
+ * trip to the storage service would. A parallelism of 1 stands for the single stream upload and
+ * the deletes sent one at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlobStoreBenchmark {
+
+    private static final int BLOCK_SIZE_BYTES = 1024 * 1024;
+    private static final int CONTENT_LENGTH = 16 * BLOCK_SIZE_BYTES;
+    private static final int DOCUMENT_COUNT = 50;
+
+    @Param({"1", "4", "8"})
+    private int parallelism;
+
+    @Param({"5"})
+    private long requestLatencyMillis;
+
+    private InMemoryBlobStore blobStore;
+    private byte[] content;
+    private List<String> documentNames;
+
+    @Setup(Level.Trial)
+    public void createContent() {
+        blobStore = new InMemoryBlobStore(BLOCK_SIZE_BYTES, BLOCK_SIZE_BYTES, parallelism, requestLatencyMillis);
+        content = new byte[CONTENT_LENGTH];
+        new Random(CONTENT_LENGTH).nextBytes(content);
+        documentNames = new ArrayList<>(2 * DOCUMENT_COUNT);
+        for (int document = 0; document < DOCUMENT_COUNT; document++) {
+            documentNames.add("envelope/document" + document + ".pdf");
+            documentNames.add("envelope/document" + document + ".png");
+        }
+    }
+
+    @Benchmark
+    public long uploadZip() {
+        blobStore.upload("envelope.zip", new ByteArrayInputStream(content), content.length);
+        return blobStore.getRequestCount();
+    }
+
+    @Benchmark
+    public int deleteDocuments(final Documents documents) {
+        return blobStore.deleteAllIfExist(documentNames);
+    }
+
+    @State(Scope.Thread)
+    public static class Documents {
+
+        @Setup(Level.Invocation)
+        public void createDocuments(final BlobStoreBenchmark benchmark) {
+            benchmark.documentNames.forEach(documentName -> benchmark.blobStore.upload(documentName, new ByteArrayInputStream(new byte[1]), 1));
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BlobStoreBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.microsoft.azure.storage.RetryExponentialRetry;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+import org.junit.jupiter.api.Test;
+
+public class BlobStoreRegistryTest {
+
+    private static final String CONNECTION_STRING = "UseDevelopmentStorage=true";
+
+    private final BlobStoreRegistry blobStoreRegistry = new BlobStoreRegistry(new BlobClientSettings(5, 1000, 12));
+
+    @Test
+    public void shouldShareStoreOfTheSameContainer() {
+        final CloudBlobStore blobStore = blobStoreRegistry.getBlobStore(CONNECTION_STRING, "bs-ste-active-scans");
+
+        assertThat(blobStoreRegistry.getBlobStore(CONNECTION_STRING, "bs-ste-active-scans"), is(sameInstance(blobStore)));
+        assertThat(blobStoreRegistry.getBlobStore(CONNECTION_STRING, "bs-ste-scans-failed"), is(not(sameInstance(blobStore))));
+    }
+
+    @Test
+    public void shouldShareClientAndMetricsBetweenContainersOfAnAccount() {
+        final CloudBlobStore activeScans = blobStoreRegistry.getBlobStore(CONNECTION_STRING, "bs-ste-active-scans");
+        final CloudBlobStore failedScans = blobStoreRegistry.getBlobStore(CONNECTION_STRING, "bs-ste-scans-failed");
+
+        assertThat(failedScans.getContainer().getServiceClient(), is(sameInstance(activeScans.getContainer().getServiceClient())));
+        assertThat(failedScans.getMetrics(), is(sameInstance(blobStoreRegistry.getMetrics())));
+    }
+
+    @Test
+    public void shouldConfigureClientWithRetryPolicyAndConcurrency() {
+        final BlobRequestOptions requestOptions = blobStoreRegistry.getBlobClient(CONNECTION_STRING).getDefaultRequestOptions();
+
+        assertThat(requestOptions.getConcurrentRequestCount(), is(12));
+        assertThat(requestOptions.getRetryPolicyFactory(), is(instanceOf(RetryExponentialRetry.class)));
+    }
+
+    @Test
+    public void shouldShareQueueClientWithRetryPolicyOfAnAccount() {
+        final CloudQueueClient queueClient = blobStoreRegistry.getQueueClient(CONNECTION_STRING);
+
+        assertThat(blobStoreRegistry.getQueueClient(CONNECTION_STRING), is(sameInstance(queueClient)));
+        assertThat(queueClient.getDefaultRequestOptions().getRetryPolicyFactory(), is(instanceOf(RetryExponentialRetry.class)));
+    }
+
+    @Test
+    public void shouldRejectInvalidConnectionString() {
+        assertThrows(BlobStoreException.class, () -> blobStoreRegistry.getBlobStore("not a connection string", "bs-ste-active-scans"));
+    }
+}
@@ -0,0 +1,136 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.storage;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class InMemoryBlobStoreTest {
+
+    private final InMemoryBlobStore blobStore = new InMemoryBlobStore(10, 16, 3, 0);
+
+    @Test
+    public void shouldUploadSmallContentInOneRequest() {
+        final byte[] content = content(16);
+
+        blobStore.upload("small.pdf", new ByteArrayInputStream(content), content.length);
+
+        assertThat(blobStore.getContent("small.pdf").get(), is(content));
+        assertThat(blobStore.getRequestCount(), is(1L));
+    }
+
+    @Test
+    public void shouldStageLargeContentAsBlocksAndCommitThemInOrder() {
+        final byte[] content = content(35);
+
+        blobStore.upload("large.zip", new ByteArrayInputStream(content), content.length);
+
+        assertThat(blobStore.getContent("large.zip").get(), is(content));
+        assertThat(blobStore.getStagedBlockCount("large.zip"), is(0));
+        assertThat(blobStore.getRequestCount(), is(5L));
+    }
+
+    @Test
+    public void shouldBufferSmallContentWholeAndLargeContentUpToTheBlocksInFlight() {
+        assertThat(blobStore.getUploadBufferBytes(16), is(16L));
+        assertThat(blobStore.getUploadBufferBytes(35), is(35L));
+        assertThat(blobStore.getUploadBufferBytes(5L * 1024 * 1024 * 1024), is(40L));
+    }
+
+    @Test
+    public void shouldNotCreateBlobWhenBlockFailsToBeStaged() {
+        final AtomicInteger stagedBlocks = new AtomicInteger();
+        final InMemoryBlobStore failingBlobStore = new InMemoryBlobStore(10, 16, 1, 0) {
+            @Override
+            protected void stageBlock(final String name, final String blockId, final byte[] block) {
+                if (stagedBlocks.incrementAndGet() == 2) {
+                    throw new BlobStoreException("block rejected");
+                }
+                super.stageBlock(name, blockId, block);
+            }
+        };
+        final byte[] content = content(50);
+
+        final BlobStoreException exception = assertThrows(BlobStoreException.class,
+                () -> failingBlobStore.upload("large.zip", new ByteArrayInputStream(content), content.length));
+
+        assertThat(exception.getMessage(), is("block rejected"));
+        assertThat(failingBlobStore.exists("large.zip"), is(false));
+    }
+
+    @Test
+    public void shouldNotCreateBlobWhenContentIsShorterThanItsLength() {
+        final byte[] content = content(25);
+
+        assertThrows(BlobStoreException.class, () -> blobStore.upload("short.zip", new ByteArrayInputStream(content), 40));
+
+        assertThat(blobStore.exists("short.zip"), is(false));
+    }
+
+    @Test
+    public void shouldGiveBlockIdsOfTheSameLength() {
+        assertThat(AbstractBlobStore.blockId(7).length(), is(AbstractBlobStore.blockId(12345).length()));
+    }
+
+    @Test
+    public void shouldDeleteEveryExistingBlob() {
+        upload(blobStore, "envelope/first.pdf", "envelope/first.png", "envelope/second.pdf");
+
+        final int deleted = blobStore.deleteAllIfExist(asList("envelope/first.pdf", "envelope/first.png", "envelope/missing.png"));
+
+        assertThat(deleted, is(2));
+        assertThat(blobStore.getBlobNames(), contains("envelope/second.pdf"));
+    }
+
+    @Test
+    public void shouldDeleteOtherBlobsWhenOneFailsToBeDeleted() {
+        final InMemoryBlobStore failingBlobStore = new InMemoryBlobStore(10, 16, 2, 0) {
+            @Override
+            public boolean deleteIfExists(final String name) {
+                if (name.endsWith(".png")) {
+                    throw new BlobStoreException("delete rejected");
+                }
+                return super.deleteIfExists(name);
+            }
+        };
+        upload(failingBlobStore, "first.pdf", "first.png", "second.pdf");
+
+        assertThrows(BlobStoreException.class, () -> failingBlobStore.deleteAllIfExist(asList("first.pdf", "first.png", "second.pdf")));
+
+        assertThat(failingBlobStore.getBlobNames(), contains("first.png"));
+    }
+
+    @Test
+    public void shouldMoveBlobBetweenStores() {
+        final InMemoryBlobStore failedBlobStore = new InMemoryBlobStore();
+        final byte[] content = content(40);
+        blobStore.upload("envelope.zip", new ByteArrayInputStream(content), content.length);
+
+        failedBlobStore.moveFrom(blobStore, "envelope.zip", "envelope.zip");
+
+        assertThat(failedBlobStore.getContent("envelope.zip").get(), is(content));
+        assertThat(blobStore.getBlobNames(), is(empty()));
+        assertThat(blobStore.getContent("envelope.zip"), is(Optional.empty()));
+    }
+
+    private static void upload(final BlobStore blobStore, final String... names) {
+        for (final String name : names) {
+            blobStore.upload(name, new ByteArrayInputStream(content(4)), 4);
+        }
+    }
+
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,95 @@
+package uk.gov.moj.cpp.stagingbulkscan.azure.core.thumbnail;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+
+public class PdfThumbnailRendererTest {
+
+    @Test
+    public void shouldRenderFirstPageAsPng() throws IOException {
+        final byte[] pdf = pdfContent(1);
+        try (PdfThumbnailRenderer pdfThumbnailRenderer = new PdfThumbnailRenderer(2, 16 * 1024 * 1024, null)) {
+            final byte[] thumbnail = pdfThumbnailRenderer.render(new ByteArrayInputStream(pdf));
+
+            assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail)), is(notNullValue()));
+            final PdfThumbnailRenderer.RenderMetrics metrics = pdfThumbnailRenderer.getMetrics();
+            assertThat(metrics.getRenderCount(), is(1L));
+            assertThat(metrics.getFailureCount(), is(0L));
+            assertThat(metrics.getAveragePdfBytesPerRender(), is((long) pdf.length));
+            assertThat(metrics.getAverageImageBytesPerRender(), is((long) thumbnail.length));
+        }
+    }
+
+    @Test
+    public void shouldSpillToScratchFilesAboveTheMemoryBudget() throws IOException {
+        final Path scratchDirectory = Files.createTempDirectory("pdf-thumbnail-renderer-test");
+        try (PdfThumbnailRenderer pdfThumbnailRenderer = new PdfThumbnailRenderer(1, 1, scratchDirectory.toFile())) {
+            final byte[] thumbnail = pdfThumbnailRenderer.render(new ByteArrayInputStream(pdfContent(20)));
+
+            assertThat(thumbnail.length, is(greaterThan(0)));
+            try (Stream<Path> scratchFiles = Files.list(scratchDirectory)) {
+                assertThat(scratchFiles.count(), is(0L));
+            }
+        } finally {
+            Files.deleteIfExists(scratchDirectory);
+        }
+    }
+
+    @Test
+    public void shouldRenderConcurrentRequestsOnTheWorkers() throws IOException {
+        final byte[] pdf = pdfContent(1);
+        try (PdfThumbnailRenderer pdfThumbnailRenderer = new PdfThumbnailRenderer(2, 16 * 1024 * 1024, null)) {
+            final List<CompletableFuture<byte[]>> thumbnails = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                thumbnails.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return pdfThumbnailRenderer.render(new ByteArrayInputStream(pdf));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            thumbnails.forEach(thumbnail -> assertThat(thumbnail.join().length, is(greaterThan(0))));
+            assertThat(pdfThumbnailRenderer.getMetrics().getRenderCount(), is(6L));
+        }
+    }
+
+    @Test
+    public void shouldFailAndCountCorruptedPdf() {
+        try (PdfThumbnailRenderer pdfThumbnailRenderer = new PdfThumbnailRenderer(1, 1024, null)) {
+            assertThrows(IOException.class, () -> pdfThumbnailRenderer.render(new ByteArrayInputStream("not a pdf".getBytes())));
+            assertThat(pdfThumbnailRenderer.getMetrics().getFailureCount(), is(1L));
+            assertThat(pdfThumbnailRenderer.getMetrics().getRenderCount(), is(0L));
+        }
+    }
+
+    private byte[] pdfContent(final int pageCount) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 0; page < pageCount; page++) {
+                document.addPage(new PDPage());
+            }
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            document.save(outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+}
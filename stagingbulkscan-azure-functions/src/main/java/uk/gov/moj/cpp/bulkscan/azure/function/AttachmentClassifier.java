@@ -0,0 +1,140 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.APPLICATION_PDF;
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.urnPattern;
+
+import uk.gov.moj.cpp.bulkscan.azure.rest.Attachment;
+import uk.gov.moj.cpp.bulkscan.azure.rest.AttachmentMetadata;
+import uk.gov.moj.cpp.bulkscan.azure.rest.ProcessResults;
+import uk.gov.moj.cpp.bulkscan.azure.rest.Prosecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+
+/**
+ * Sorts the attachments of a police email into the {@link ProcessResults} buckets in one pass
+ * over the attachments. The URN pattern is compiled once and the authority code of a URN is
+ * found through the prefix index of the {@link Prosecutor}.
+ *
+ * <p>When the subject carries a URN the email must have exactly one attachment besides any
+ * signature images, a pdf which is filed under the subject URN. Otherwise every pdf attachment
+ * is filed under the URN in its own name.
+ */
+final class AttachmentClassifier {
+
+    private static final int URN_PREFIX_LENGTH = 2;
+
+    private AttachmentClassifier() {
+    }
+
+    static ProcessResults classify(final String subject, final List<Attachment> attachments, final Prosecutor prosecutor) {
+        final ProcessResults processResults = new ProcessResults();
+        final Optional<String> urnFromSubject = extractUrn(subject);
+
+        if (urnFromSubject.isPresent()) {
+            classifyWithSubjectUrn(attachments, urnFromSubject.get(), processResults, prosecutor);
+        } else {
+            attachments.forEach(attachment -> classifyByAttachmentUrn(attachment, processResults, prosecutor));
+        }
+
+        return processResults;
+    }
+
+    /**
+     * @return the first URN in the input with its space and slash separators removed
+     */
+    static Optional<String> extractUrn(final String input) {
+        final Matcher matcher = urnPattern.matcher(input);
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+        final StringBuilder urn = new StringBuilder(matcher.end() - matcher.start());
+        for (int index = matcher.start(); index < matcher.end(); index++) {
+            final char character = input.charAt(index);
+            if (character != ' ' && character != '/') {
+                urn.append(character);
+            }
+        }
+        return Optional.of(urn.toString());
+    }
+
+    private static void classifyWithSubjectUrn(final List<Attachment> attachments, final String subjectUrn,
+                                               final ProcessResults processResults, final Prosecutor prosecutor) {
+        final List<String> attachmentNames = new ArrayList<>(attachments.size());
+        Attachment documentAttachment = null;
+        int documentAttachmentCount = 0;
+        for (final Attachment attachment : attachments) {
+            attachmentNames.add(attachment.getName());
+            if (attachment.isNotSignatureAttachment()) {
+                documentAttachmentCount++;
+                if (documentAttachment == null) {
+                    documentAttachment = attachment;
+                }
+            }
+        }
+
+        if (documentAttachmentCount > 1) {
+            attachmentNames.forEach(processResults::addUrnNotFoundAttachment);
+        } else if (documentAttachment == null) {
+            processResults.setEmailWithNoAttachments(true);
+        } else if (!isPdf(documentAttachment)) {
+            processResults.addNonPdfAttachment(documentAttachment.getName());
+        } else {
+            classifyBySubjectUrn(documentAttachment, subjectUrn, processResults, prosecutor);
+        }
+    }
+
+    private static void classifyBySubjectUrn(final Attachment attachment, final String subjectUrn,
+                                             final ProcessResults processResults, final Prosecutor prosecutor) {
+        final Optional<String> oucode = prosecutor.findAuthorityCodeForUrnPrefix(subjectUrn.substring(0, URN_PREFIX_LENGTH));
+        if (!oucode.isPresent()) {
+            processResults.addProsecutorUrnNotMatchWithAttachments(attachment.getName());
+            return;
+        }
+
+        final Optional<String> attachmentUrn = extractUrn(attachment.getName());
+        if (attachmentUrn.isPresent() && !subjectUrn.equalsIgnoreCase(attachmentUrn.get())) {
+            processResults.addUrnNotFoundAttachment(attachment.getName());
+        } else {
+            processResults.addAttachmentMetadata(attachmentMetadata(subjectUrn, attachment, oucode.get()));
+        }
+    }
+
+    private static void classifyByAttachmentUrn(final Attachment attachment, final ProcessResults processResults, final Prosecutor prosecutor) {
+        if (!isPdf(attachment)) {
+            if (attachment.isNotSignatureAttachment()) {
+                processResults.addNonPdfAttachment(attachment.getName());
+            }
+            return;
+        }
+
+        final Optional<String> attachmentUrn = extractUrn(attachment.getName());
+        if (!attachmentUrn.isPresent()) {
+            processResults.addUrnNotFoundAttachment(attachment.getName());
+            return;
+        }
+
+        final String urn = attachmentUrn.get();
+        final Optional<String> oucode = prosecutor.findAuthorityCodeForUrnPrefix(urn.substring(0, URN_PREFIX_LENGTH));
+        if (oucode.isPresent()) {
+            processResults.addAttachmentMetadata(attachmentMetadata(urn, attachment, oucode.get()));
+        } else {
+            processResults.addProsecutorUrnNotMatchWithAttachments(attachment.getName());
+        }
+    }
+
+    private static boolean isPdf(final Attachment attachment) {
+        return APPLICATION_PDF.equalsIgnoreCase(attachment.getContentType());
+    }
+
+    private static AttachmentMetadata attachmentMetadata(final String urn, final Attachment attachment, final String oucode) {
+        return AttachmentMetadata.builder()
+                .urn(urn)
+                .fileName(attachment.getName())
+                .oucode(oucode)
+                .attachment(attachment)
+                .build();
+    }
+}
@@ -9,11 +9,12 @@ import uk.gov.moj.cpp.bulkscan.azure.rest.ReferenceDataQueryHelper;
 import uk.gov.moj.cpp.bulkscan.azure.rest.StagingBulkScanCommandHelper;
 import uk.gov.moj.cpp.bulkscan.azure.rest.StagingProsecutorCommandHelper;
 import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.EnvelopeCheckpoint;
+import uk.gov.moj.cpp.bulkscan.azure.storage.EnvelopeUploadPipeline;
+import uk.gov.moj.cpp.bulkscan.azure.storage.IngestLedger;
+import uk.gov.moj.cpp.bulkscan.azure.storage.ThumbnailRequestQueue;
 import uk.gov.moj.cpp.bulkscan.azure.zip.BlobZipStream;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -21,56 +22,59 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
-import javax.imageio.ImageIO;
 import javax.json.JsonObject;
+import javax.ws.rs.core.Response;
 
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpStatus;
-import com.microsoft.azure.functions.annotation.BlobInput;
 import com.microsoft.azure.functions.annotation.EventGridTrigger;
 import com.microsoft.azure.functions.annotation.FunctionName;
-import org.apache.commons.io.IOUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
 
 public class BulkScanInboxProcessor {
 
     private static final String ENVIRONMENT = "environment";
+    private static final String ZIP_SPILL_THRESHOLD_BYTES = "zip_spill_threshold_bytes";
+    private static final long DEFAULT_ZIP_SPILL_THRESHOLD_BYTES = 16L * 1024 * 1024;
+    private static final String UPLOAD_PARALLELISM = "upload_parallelism";
+    private static final int DEFAULT_UPLOAD_PARALLELISM = 4;
+    private static final String UPLOAD_MAX_IN_FLIGHT_BYTES = "upload_max_in_flight_bytes";
+    private static final long DEFAULT_UPLOAD_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
 
     private ExecutionContext context;
 
+    /**
+     * Only the blob url is taken from the event and the zip is read from the inbox container as a
+     * stream, spilling to a memory mapped temporary file above the configured threshold so the heap
+     * does not grow with the zip size. This replaces the byte[] blob input binding under the same
+     * function name, so the existing Event Grid subscription delivers every zip exactly once.
+     */
     @SuppressWarnings({"squid:S1312", "squid:S2629", "squid:S2139"})
     @FunctionName("bulkScanInboxProcessor")
     public void processZip(final @EventGridTrigger(name = "event") EventGridSchema eventGridSchema,
-                           final ExecutionContext context,
-                           @BlobInput(
-                                   name = "file",
-                                   dataType = "binary",
-                                   path = "{data.url}",
-                                   connection = "storage-inbox") final byte[] content) {
+                           final ExecutionContext context) {
 
         this.context = context;
         final Logger logger = context.getLogger();
+        logEvent(eventGridSchema, logger);
 
-        logger.info("Event content:");
-        logger.info("Time Received: " + eventGridSchema.getEventTime());
-        logger.info("Zip file url: " + eventGridSchema.getData().get("url"));
-
-        if (Objects.isNull(content)) {
-            logger.severe("received null content.");
+        final String zipFileName = getZipFileName(eventGridSchema);
+        final BlobZipStream zipInputStream;
+        try {
+            zipInputStream = readTheProviderZipFile(zipFileName);
+        } catch (InvalidZipPayloadException e) {
+            logger.severe("Invalid zip payload exception " + e.getMessage());
+            moveProviderZipIntoFailedContainer(zipFileName);
+            deleteTheProviderZipFile(zipFileName);
             return;
+        } catch (IOException e) {
+            logger.severe("Exception occurred while reading the zip file " + e.getMessage());
+            throw new BulkScanProcessorException("Exception occured while reading the zip file", e);
         }
 
-        try (BlobZipStream zipInputStream = new BlobZipStream(content)) {
-            final BlobCloudStorage containerReference = getScanManagerActiveBlobContainer();
-            final String zipFileName = getZipFileName(eventGridSchema);
-            processTheProviderZipFile(zipInputStream, containerReference, zipFileName);
-            deleteTheProviderZipFile(zipFileName);
-            logger.info("Original input zip file is deleted after processing " + zipFileName);
+        try (BlobZipStream blobZipStream = zipInputStream) {
+            logger.info("Zip file " + zipFileName + " read, spilled to temporary file: " + blobZipStream.isSpilledToFile());
+            processAndDeleteTheProviderZipFile(blobZipStream, zipFileName);
         } catch (IOException e) {
             logger.severe("Exception occurred while processing the zip file " + e.getMessage());
             throw new BulkScanProcessorException("Exception occured while processing the zip file", e);
@@ -78,9 +82,43 @@ public class BulkScanInboxProcessor {
         logger.info("Zip file is processed successfully");
     }
 
+    private void logEvent(final EventGridSchema eventGridSchema, final Logger logger) {
+        logger.info("Event content:");
+        logger.info("Time Received: " + eventGridSchema.getEventTime());
+        logger.info("Zip file url: " + eventGridSchema.getData().get("url"));
+    }
+
+    private BlobZipStream readTheProviderZipFile(final String zipFileName) throws IOException {
+        final BlobCloudStorage scanProviderCloudStorage = getScanProviderInboxBlobContainer();
+        final long zipFileLength = scanProviderCloudStorage.getBlobSize(zipFileName + ".zip");
+        try (InputStream zipFileInputStream = scanProviderCloudStorage.openInputStream(zipFileName + ".zip")) {
+            return BlobZipStream.fromInputStream(zipFileInputStream, zipFileLength, getZipSpillThresholdBytes());
+        }
+    }
+
+    private void processAndDeleteTheProviderZipFile(final BlobZipStream zipInputStream, final String zipFileName) throws IOException {
+        final BlobCloudStorage containerReference = getScanManagerActiveBlobContainer();
+        final IngestLedger ingestLedger = getIngestLedger();
+        final String zipSha256;
+        try (InputStream originalZipFile = zipInputStream.openOriginalZipFile()) {
+            zipSha256 = IngestLedger.sha256(originalZipFile);
+        }
+
+        final Optional<String> ingestedEnvelope = ingestLedger.findIngestedEnvelope(zipSha256);
+        if (ingestedEnvelope.isPresent()) {
+            context.getLogger().info("Zip file " + zipFileName + " is identical to the already ingested " + ingestedEnvelope.get() + ", skipping it");
+        } else if (processTheProviderZipFile(zipInputStream, containerReference, ingestLedger, zipFileName)) {
+            ingestLedger.recordIngestedEnvelope(zipSha256, zipFileName);
+        }
+        deleteTheProviderZipFile(zipFileName);
+        context.getLogger().info("Original input zip file is deleted after processing " + zipFileName);
+        context.getLogger().info(IngestLedger.getStatistics());
+        context.getLogger().info(BlobCloudStorage.getStatistics());
+    }
+
     @SuppressWarnings({"squid:S134", "squid:S1166", "squid:S3655"})
-    private void processTheProviderZipFile(BlobZipStream blobZipStream, BlobCloudStorage containerReference,
-                                           String zipFileName) throws IOException {
+    private boolean processTheProviderZipFile(BlobZipStream blobZipStream, BlobCloudStorage containerReference,
+                                              IngestLedger ingestLedger, String zipFileName) throws IOException {
         try {
             validateZipPayload(blobZipStream);
             final Optional<JsonObject> payloadJsonStream = blobZipStream.getMetadataJson();
@@ -88,85 +126,91 @@ public class BulkScanInboxProcessor {
             final StagingBulkScanCommandHelper stagingBulkScanCommandHelper = newStagingBulkScanCommandHelper(referenceDataQueryHelper);
             final StagingProsecutorCommandHelper stagingProsecutorCommandHelper = newStagingProsecutorCommandHelper();
             final JsonObject jsonInput = payloadJsonStream.get();
+            final EnvelopeCheckpoint envelopeCheckpoint = getEnvelopeCheckpoint(zipFileName);
 
-            final JsonObject registerEnvelopeResponse = stagingBulkScanCommandHelper.registerEnvelope(jsonInput);
+            final Optional<JsonObject> registeredEnvelope = envelopeCheckpoint.getRegisterEnvelopeResponse();
+            final JsonObject registerEnvelopeResponse = registeredEnvelope.isPresent() ? registeredEnvelope.get() : stagingBulkScanCommandHelper.registerEnvelope(jsonInput);
             final int responseCode = registerEnvelopeResponse.getInt("responseCode");
 
             if (responseCode == HttpStatus.ACCEPTED.value()) {
-                final ZipInputStream zipFileInputStream = blobZipStream.getZipFileInputStream();
-                ZipEntry nextEntry = zipFileInputStream.getNextEntry();
-                while (nextEntry != null) {
-                    if (nextEntry.getName().endsWith("pdf")) {
-                        containerReference.uploadToStorage(zipFileInputStream, nextEntry.getSize(), zipFileName + "/" + nextEntry.getName());
-                    }
-                    nextEntry = zipFileInputStream.getNextEntry();
+                if (!registeredEnvelope.isPresent()) {
+                    envelopeCheckpoint.registered(registerEnvelopeResponse);
+                } else {
+                    context.getLogger().info("Resuming ingest of the already registered " + zipFileName);
                 }
+                final List<String> documentsToUpload = blobZipStream.pdfDocumentNames().stream()
+                        .filter(pdfDocumentName -> !envelopeCheckpoint.isUploaded(pdfDocumentName))
+                        .collect(Collectors.toList());
+                final EnvelopeUploadPipeline.UploadStatistics uploadStatistics = newEnvelopeUploadPipeline()
+                        .upload(blobZipStream, documentsToUpload, containerReference, zipFileName + "/", envelopeCheckpoint::uploaded);
+                context.getLogger().info("Uploaded documents of " + zipFileName + " " + uploadStatistics);
             } else {
                 throw new BulkScanProcessorException("Register scan envelope failed -->>" + responseCode);
             }
 
-            attachDocumentToCase(blobZipStream, stagingProsecutorCommandHelper, registerEnvelopeResponse);
+            attachDocumentToCase(blobZipStream, stagingProsecutorCommandHelper, registerEnvelopeResponse, envelopeCheckpoint);
 
-            try (BlobZipStream zipStream = new BlobZipStream(blobZipStream.getOriginalZipFileContent())) {
-                if (zipStream.pdfDocumentNames().size() > 1) {
-                    processImageForPdf(zipStream, containerReference, zipFileName);
-                }
+            if (blobZipStream.pdfDocumentNames().size() > 1) {
+                requestThumbnails(blobZipStream, containerReference, ingestLedger, envelopeCheckpoint, zipFileName);
             }
+            envelopeCheckpoint.completed();
+            return true;
         } catch (InvalidZipPayloadException e) {
             context.getLogger().severe("Invalid zip payload exception " + e.getMessage());
-            moveProviderZipIntoFailedContainer(blobZipStream, zipFileName);
+            moveProviderZipIntoFailedContainer(zipFileName);
+            return false;
         }
     }
 
-    @SuppressWarnings({"squid:S134", "squid:S3655"})
-    private void attachDocumentToCase(BlobZipStream blobZipStream, StagingProsecutorCommandHelper stagingProsecutorCommandHelper, JsonObject response) throws IOException {
-        try (BlobZipStream zipStreamForStagingProsecutor = new BlobZipStream(blobZipStream.getOriginalZipFileContent())) {
-            final ZipInputStream zipFileInputStream = zipStreamForStagingProsecutor.getZipFileInputStream();
-            ZipEntry nextEntry = zipFileInputStream.getNextEntry();
-            final List<JsonObject> documentsToBeAttached = response.getJsonArray("scannable_items").getValuesAs(JsonObject.class);
-            while (nextEntry != null) {
-                final String fileName = nextEntry.getName();
-                if (nextEntry.getName().endsWith("pdf")) {
-                    final InputStream inputStream = IOUtils.toBufferedInputStream(zipFileInputStream);
-                    final JsonObject documentToBeAttached = documentsToBeAttached.stream().filter(i -> i.getString("file_name").equals(fileName)).findFirst().get();
-                    final String pending = "PENDING";
-                    if(pending.equalsIgnoreCase(documentToBeAttached.getString("status"))) {
-                        final String scanEnvelopeId = response.getString("scanEnvelopeId");
-                        stagingProsecutorCommandHelper.addMaterial(documentToBeAttached, scanEnvelopeId, inputStream);
-                    }
+    @SuppressWarnings({"squid:S3655"})
+    private void attachDocumentToCase(BlobZipStream blobZipStream, StagingProsecutorCommandHelper stagingProsecutorCommandHelper, JsonObject response,
+                                      EnvelopeCheckpoint envelopeCheckpoint) throws IOException {
+        final List<JsonObject> documentsToBeAttached = response.getJsonArray("scannable_items").getValuesAs(JsonObject.class);
+        for (final String fileName : blobZipStream.pdfDocumentNames()) {
+            if (envelopeCheckpoint.isAttached(fileName)) {
+                continue;
+            }
+            final JsonObject documentToBeAttached = documentsToBeAttached.stream().filter(i -> i.getString("file_name").equals(fileName)).findFirst().get();
+            final String pending = "PENDING";
+            if(pending.equalsIgnoreCase(documentToBeAttached.getString("status"))) {
+                final String scanEnvelopeId = response.getString("scanEnvelopeId");
+                try (InputStream inputStream = blobZipStream.openEntry(fileName)) {
+                    Optional.ofNullable(stagingProsecutorCommandHelper.addMaterial(documentToBeAttached, scanEnvelopeId, inputStream))
+                            .ifPresent(Response::close);
                 }
-                nextEntry = zipFileInputStream.getNextEntry();
             }
+            envelopeCheckpoint.attached(fileName);
         }
     }
 
-    private void processImageForPdf(BlobZipStream blobZipStream, BlobCloudStorage containerReference,
-                                    String zipFileName) throws IOException {
-        final ZipInputStream zipFileInputStream = blobZipStream.getZipFileInputStream();
-        ZipEntry nextEntry = zipFileInputStream.getNextEntry();
-        while (nextEntry != null) {
-            if (nextEntry.getName().endsWith("pdf")) {
-                final byte[] imageBytes = generateImage(nextEntry.getName(), zipFileInputStream);
-                final String fileName = nextEntry.getName().substring(0, nextEntry.getName().lastIndexOf('.'));
-                containerReference.uploadToStorage(new ByteArrayInputStream(imageBytes), (long) imageBytes.length, zipFileName + "/" + fileName + ".png");
+    /**
+     * Thumbnails already rendered for a byte identical pdf are copied, the others are requested.
+     * A recorded thumbnail may since have been deleted with its envelope, in which case its
+     * record is dropped and the thumbnail requested again.
+     */
+    private void requestThumbnails(BlobZipStream blobZipStream, BlobCloudStorage containerReference,
+                                   IngestLedger ingestLedger, EnvelopeCheckpoint envelopeCheckpoint, String zipFileName) throws IOException {
+        final ThumbnailRequestQueue thumbnailRequestQueue = getThumbnailRequestQueue();
+        for (final String pdfDocumentName : blobZipStream.pdfDocumentNames()) {
+            if (envelopeCheckpoint.isThumbnailRequested(pdfDocumentName)) {
+                continue;
             }
-            nextEntry = zipFileInputStream.getNextEntry();
-        }
-    }
-
-    @SuppressWarnings({"squid:S1166"})
-    private byte[] generateImage(String fileName, final InputStream inputStream) {
-        try {
-            final PDDocument document = PDDocument.load(inputStream);
-            final PDFRenderer pdfRenderer = new PDFRenderer(document);
-            final BufferedImage image = pdfRenderer.renderImageWithDPI(0, 30, ImageType.RGB);
-            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", outputStream);
-            return outputStream.toByteArray();
-        } catch (IOException e) {
-            context.getLogger().warning("Image generation failed, possibly corrupted pdf -->>" + fileName);
+            final String pdfSha256;
+            try (InputStream pdfInputStream = blobZipStream.openEntry(pdfDocumentName)) {
+                pdfSha256 = IngestLedger.sha256(pdfInputStream);
+            }
+            final String thumbnailName = zipFileName + "/" + pdfDocumentName.substring(0, pdfDocumentName.lastIndexOf('.')) + ".png";
+            final Optional<String> renderedThumbnail = ingestLedger.findThumbnail(pdfSha256);
+            if (!renderedThumbnail.isPresent()) {
+                thumbnailRequestQueue.requestThumbnail(zipFileName + "/" + pdfDocumentName);
+            } else if (!renderedThumbnail.get().equals(thumbnailName)
+                    && !containerReference.copyWithinStorage(renderedThumbnail.get(), thumbnailName)) {
+                context.getLogger().info("Thumbnail " + renderedThumbnail.get() + " no longer exists, requesting " + thumbnailName);
+                ingestLedger.forgetThumbnail(pdfSha256);
+                thumbnailRequestQueue.requestThumbnail(zipFileName + "/" + pdfDocumentName);
+            }
+            envelopeCheckpoint.thumbnailRequested(pdfDocumentName);
         }
-        return new byte[]{};
     }
 
     private void validateZipPayload(BlobZipStream blobZipStream) {
@@ -196,13 +240,11 @@ public class BulkScanInboxProcessor {
         }
     }
 
-    private void moveProviderZipIntoFailedContainer(final BlobZipStream blobZipStream, final String zipFileName) {
-        final BlobCloudStorage failedCloudStorage = getScanProviderFailedBlobContainer();
-        try (final ByteArrayInputStream documentContent = new ByteArrayInputStream(blobZipStream.getOriginalZipFileContent())) {
-            failedCloudStorage.uploadToStorage(documentContent, (long) blobZipStream.getOriginalZipFileLength(), zipFileName + ".zip");
-        } catch (IOException e) {
-            throw new BulkScanProcessorException("Unable to move files to failed container because of exception ", e);
-        }
+    /**
+     * Copies the zip server side from the inbox; the inbox copy is deleted once the zip has been processed.
+     */
+    private void moveProviderZipIntoFailedContainer(final String zipFileName) {
+        getScanProviderFailedBlobContainer().copyFromStorage(getScanProviderInboxBlobContainer(), zipFileName + ".zip");
     }
 
     private void deleteTheProviderZipFile(final String originalZipFile) {
@@ -217,15 +259,40 @@ public class BulkScanInboxProcessor {
     }
 
     public BlobCloudStorage getScanManagerActiveBlobContainer() {
-        return new BlobCloudStorage(getenv("storage-scanmgr"), String.format("bs-%s-active-scans", getenv(ENVIRONMENT)));
+        return BlobCloudStorage.forContainer(getenv("storage-scanmgr"), String.format("bs-%s-active-scans", getenv(ENVIRONMENT)));
     }
 
     public BlobCloudStorage getScanProviderInboxBlobContainer() {
-        return new BlobCloudStorage(getenv("storage-inbox"), String.format("bs-%s-scans-received", getenv(ENVIRONMENT)));
+        return BlobCloudStorage.forContainer(getenv("storage-inbox"), String.format("bs-%s-scans-received", getenv(ENVIRONMENT)));
     }
 
     public BlobCloudStorage getScanProviderFailedBlobContainer() {
-        return new BlobCloudStorage(getenv("storage-failed"), String.format("bs-%s-scans-failed", getenv(ENVIRONMENT)));
+        return BlobCloudStorage.forContainer(getenv("storage-failed"), String.format("bs-%s-scans-failed", getenv(ENVIRONMENT)));
+    }
+
+    public EnvelopeCheckpoint getEnvelopeCheckpoint(final String zipFileName) {
+        return EnvelopeCheckpoint.load(BlobCloudStorage.forCreatedContainer(getenv("storage-scanmgr"), String.format("bs-%s-ingest-ledger", getenv(ENVIRONMENT))), zipFileName);
+    }
+
+    public IngestLedger getIngestLedger() {
+        return new IngestLedger(BlobCloudStorage.forCreatedContainer(getenv("storage-scanmgr"), String.format("bs-%s-ingest-ledger", getenv(ENVIRONMENT))));
+    }
+
+    public ThumbnailRequestQueue getThumbnailRequestQueue() {
+        return new ThumbnailRequestQueue(getenv("storage-scanmgr"), String.format("bs-%s-thumbnail-requests", getenv(ENVIRONMENT)));
+    }
+
+    public long getZipSpillThresholdBytes() {
+        final String zipSpillThresholdBytes = getenv(ZIP_SPILL_THRESHOLD_BYTES);
+        return Objects.isNull(zipSpillThresholdBytes) ? DEFAULT_ZIP_SPILL_THRESHOLD_BYTES : Long.parseLong(zipSpillThresholdBytes);
+    }
+
+    public EnvelopeUploadPipeline newEnvelopeUploadPipeline() {
+        final String uploadParallelism = getenv(UPLOAD_PARALLELISM);
+        final String uploadMaxInFlightBytes = getenv(UPLOAD_MAX_IN_FLIGHT_BYTES);
+        return new EnvelopeUploadPipeline(
+                Objects.isNull(uploadParallelism) ? DEFAULT_UPLOAD_PARALLELISM : Integer.parseInt(uploadParallelism),
+                Objects.isNull(uploadMaxInFlightBytes) ? DEFAULT_UPLOAD_MAX_IN_FLIGHT_BYTES : Long.parseLong(uploadMaxInFlightBytes));
     }
 
     public StagingBulkScanCommandHelper newStagingBulkScanCommandHelper(final ReferenceDataQueryHelper referenceDataQueryHelper) {
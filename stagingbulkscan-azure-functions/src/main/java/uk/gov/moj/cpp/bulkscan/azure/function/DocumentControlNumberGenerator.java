@@ -0,0 +1,56 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import uk.gov.moj.cpp.bulkscan.azure.storage.SequenceBlockAllocator;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Creates document control numbers that stay unique when the function app runs on several
+ * hosts. A number is a sequence number from {@value #FIRST_SEQUENCE} to {@value #LAST_SEQUENCE}
+ * followed by the time of day as {@code HHmmssSSS}, e.g. {@code 1042093015123} for sequence
+ * {@code 1042} at 09:30:15.123. The sequence numbers come from blocks leased from a counter shared
+ * by every host. Numbers of a block are handed out locally; the shared counter is only touched
+ * once a block is used up or its lease has run out, so an idle host does not hold on to numbers
+ * while the others wrap the range.
+ */
+public class DocumentControlNumberGenerator {
+
+    public static final int FIRST_SEQUENCE = 1000;
+    public static final int LAST_SEQUENCE = 9999;
+
+    private static final DateTimeFormatter TIME_DIGITS = DateTimeFormatter.ofPattern("HHmmssSSS");
+
+    private final SequenceBlockAllocator sequenceBlockAllocator;
+    private final int blockSize;
+    private final long leaseMillis;
+
+    private int nextSequence;
+    private int lastSequence = -1;
+    private long leaseExpiresAt;
+
+    public DocumentControlNumberGenerator(final SequenceBlockAllocator sequenceBlockAllocator, final int blockSize, final long leaseMillis) {
+        this.sequenceBlockAllocator = sequenceBlockAllocator;
+        this.blockSize = blockSize;
+        this.leaseMillis = leaseMillis;
+    }
+
+    public String next() {
+        return nextSequence() + LocalTime.now().format(TIME_DIGITS);
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private synchronized int nextSequence() {
+        final long now = currentTimeMillis();
+        if (nextSequence > lastSequence || now >= leaseExpiresAt) {
+            final SequenceBlockAllocator.SequenceBlock sequenceBlock = sequenceBlockAllocator.allocate(blockSize);
+            nextSequence = sequenceBlock.getFirst();
+            lastSequence = sequenceBlock.getLast();
+            leaseExpiresAt = now + leaseMillis;
+        }
+        return nextSequence++;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static java.lang.System.getenv;
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.ENVIRONMENT;
+
+import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationDispatcher;
+import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationEmailHelper;
+import uk.gov.moj.cpp.bulkscan.azure.rest.PooledClientFactory;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox;
+import uk.gov.moj.cpp.bulkscan.azure.storage.StorageQueueNotificationOutbox;
+
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.TimerTrigger;
+
+/**
+ * Sends the notification emails that {@link PoliceEmailExtractorFunction} left in the
+ * notification outbox, so a slow notification service never holds up the processing of an
+ * email. Runs every 30 seconds and sends in batches until the outbox is empty.
+ *
+ * A batch stays hidden from other runs for as long as sending each of its messages could take,
+ * up to the request timeouts of the client, so a message is never received again while it is
+ * still being sent. Batches are kept small so the messages of a run that dies reappear soon.
+ */
+public class NotificationDispatcherFunction {
+
+    private static final String NOTIFICATION_DISPATCH_BATCH_SIZE = "notification_dispatch_batch_size";
+    private static final String NOTIFICATION_DISPATCH_MAX_BATCHES = "notification_dispatch_max_batches";
+    private static final String NOTIFICATION_DISPATCH_MAX_ATTEMPTS = "notification_dispatch_max_attempts";
+    private static final String NOTIFICATION_DISPATCH_INITIAL_BACKOFF_SECONDS = "notification_dispatch_initial_backoff_seconds";
+    private static final String NOTIFICATION_DISPATCH_MAX_BACKOFF_SECONDS = "notification_dispatch_max_backoff_seconds";
+    private static final int VISIBILITY_TIMEOUT_MARGIN_SECONDS = 30;
+
+    @SuppressWarnings({"squid:S1312"})
+    @FunctionName("notificationDispatcher")
+    public void dispatchNotifications(@TimerTrigger(name = "timer", schedule = "*/30 * * * * *") final String timerInfo,
+                                      final ExecutionContext context) {
+        final Logger logger = context.getLogger();
+        final NotificationDispatcher.DispatchResult dispatchResult = getNotificationDispatcher().dispatch(getNotificationOutbox(), logger);
+        if (dispatchResult.getSent() + dispatchResult.getRetried() + dispatchResult.getDiscarded() + dispatchResult.getFailed() > 0) {
+            logger.info("Notification outbox dispatched " + dispatchResult);
+        }
+    }
+
+    public NotificationDispatcher getNotificationDispatcher() {
+        final int batchSize = setting(NOTIFICATION_DISPATCH_BATCH_SIZE, 8);
+        return new NotificationDispatcher(new NotificationEmailHelper(),
+                batchSize,
+                setting(NOTIFICATION_DISPATCH_MAX_BATCHES, 40),
+                setting(NOTIFICATION_DISPATCH_MAX_ATTEMPTS, 8),
+                setting(NOTIFICATION_DISPATCH_INITIAL_BACKOFF_SECONDS, 30),
+                setting(NOTIFICATION_DISPATCH_MAX_BACKOFF_SECONDS, 3600),
+                visibilityTimeoutSeconds(batchSize, PooledClientFactory.getMaxRequestMillis()));
+    }
+
+    /**
+     * @return how long a batch must stay hidden for each of its messages to be sent one after
+     * the other, every send taking as long as the client allows
+     */
+    static int visibilityTimeoutSeconds(final int batchSize, final int maxRequestMillis) {
+        final long maxRequestSeconds = (maxRequestMillis + 999L) / 1000;
+        return (int) Math.min(batchSize * maxRequestSeconds + VISIBILITY_TIMEOUT_MARGIN_SECONDS, Integer.MAX_VALUE);
+    }
+
+    public NotificationOutbox getNotificationOutbox() {
+        return newNotificationOutbox();
+    }
+
+    static NotificationOutbox newNotificationOutbox() {
+        return new StorageQueueNotificationOutbox(getenv("storage-scanmgr"), String.format("bs-%s-notification-outbox", getenv(ENVIRONMENT)));
+    }
+
+    private static int setting(final String name, final int defaultValue) {
+        final String value = getenv(name);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static java.lang.System.getenv;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.IngestLedger;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.thumbnail.PdfThumbnailRenderer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.QueueTrigger;
+
+/**
+ * Renders the thumbnail of a pdf document that has been uploaded to the active scans container
+ * by {@link BulkScanInboxProcessor}. Each queue message names one pdf blob and the thumbnail is
+ * written next to it as {@code <name>.png}, so rendering is scaled and retried independently
+ * of envelope ingest. A pdf that cannot be rendered fails the invocation without writing a
+ * thumbnail, leaving the message to the queue retries and, once they are used up, to the poison
+ * queue.
+ */
+public class PdfThumbnailProcessor {
+
+    private static final String ENVIRONMENT = "environment";
+    private static final String THUMBNAIL_RENDER_WORKERS = "thumbnail_render_workers";
+    private static final String THUMBNAIL_RENDER_MEMORY_BYTES_PER_WORKER = "thumbnail_render_memory_bytes_per_worker";
+    private static final long DEFAULT_THUMBNAIL_RENDER_MEMORY_BYTES_PER_WORKER = 32L * 1024 * 1024;
+    private static final String THUMBNAIL_SCRATCH_DIRECTORY = "thumbnail_scratch_directory";
+
+    private ExecutionContext context;
+
+    @SuppressWarnings({"squid:S1312", "squid:S2629"})
+    @FunctionName("pdfThumbnailProcessor")
+    public void renderThumbnail(@QueueTrigger(
+                                        name = "message",
+                                        queueName = "bs-%environment%-thumbnail-requests",
+                                        connection = "storage-scanmgr") final String pdfBlobName,
+                                final ExecutionContext context) {
+
+        this.context = context;
+        final Logger logger = context.getLogger();
+        logger.info("Thumbnail requested for " + pdfBlobName);
+
+        final BlobCloudStorage containerReference = getScanManagerActiveBlobContainer();
+        final MessageDigest pdfDigest = IngestLedger.newSha256Digest();
+        final byte[] imageBytes;
+        try (InputStream pdfInputStream = new DigestInputStream(containerReference.openInputStream(pdfBlobName), pdfDigest)) {
+            imageBytes = generateImage(pdfBlobName, pdfInputStream);
+        } catch (IOException e) {
+            throw new BulkScanProcessorException("Unable to read " + pdfBlobName + " to render its thumbnail", e);
+        }
+        final String thumbnailName = pdfBlobName.substring(0, pdfBlobName.lastIndexOf('.')) + ".png";
+        containerReference.uploadToStorage(new ByteArrayInputStream(imageBytes), (long) imageBytes.length, thumbnailName);
+        getIngestLedger().recordThumbnail(IngestLedger.toHex(pdfDigest.digest()), thumbnailName);
+        logger.info("Thumbnail written for " + pdfBlobName);
+    }
+
+    private byte[] generateImage(String fileName, final InputStream inputStream) throws IOException {
+        final PdfThumbnailRenderer pdfThumbnailRenderer = getPdfThumbnailRenderer();
+        try {
+            return pdfThumbnailRenderer.render(inputStream);
+        } catch (IOException e) {
+            context.getLogger().warning("Image generation failed, possibly corrupted pdf -->>" + fileName);
+            throw e;
+        } finally {
+            context.getLogger().info("Thumbnail renderer " + pdfThumbnailRenderer.getMetrics());
+        }
+    }
+
+    public PdfThumbnailRenderer getPdfThumbnailRenderer() {
+        return RendererHolder.PDF_THUMBNAIL_RENDERER;
+    }
+
+    public IngestLedger getIngestLedger() {
+        return new IngestLedger(BlobCloudStorage.forCreatedContainer(getenv("storage-scanmgr"), String.format("bs-%s-ingest-ledger", getenv(ENVIRONMENT))));
+    }
+
+    public BlobCloudStorage getScanManagerActiveBlobContainer() {
+        return BlobCloudStorage.forContainer(getenv("storage-scanmgr"), String.format("bs-%s-active-scans", getenv(ENVIRONMENT)));
+    }
+
+    /**
+     * The renderer and its workers are shared by every invocation in the host process.
+     */
+    private static class RendererHolder {
+
+        private static final PdfThumbnailRenderer PDF_THUMBNAIL_RENDERER = new PdfThumbnailRenderer(
+                intSetting(THUMBNAIL_RENDER_WORKERS, Runtime.getRuntime().availableProcessors()),
+                longSetting(THUMBNAIL_RENDER_MEMORY_BYTES_PER_WORKER, DEFAULT_THUMBNAIL_RENDER_MEMORY_BYTES_PER_WORKER),
+                Objects.isNull(getenv(THUMBNAIL_SCRATCH_DIRECTORY)) ? null : new File(getenv(THUMBNAIL_SCRATCH_DIRECTORY)));
+
+        private static int intSetting(final String name, final int defaultValue) {
+            final String value = getenv(name);
+            return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+        }
+
+        private static long longSetting(final String name, final long defaultValue) {
+            final String value = getenv(name);
+            return Objects.isNull(value) ? defaultValue : Long.parseLong(value);
+        }
+    }
+}
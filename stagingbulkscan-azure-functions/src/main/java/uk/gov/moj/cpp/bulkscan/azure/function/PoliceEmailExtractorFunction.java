@@ -2,13 +2,10 @@ package uk.gov.moj.cpp.bulkscan.azure.function;
 
 import static java.lang.System.getenv;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
-import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.APPLICATION_PDF;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.ENVIRONMENT;
-import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.JSON_EXTENSION;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.OUCODE;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.PDF_EXTENSION;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.POLICE_EMAIL_EXTRACTOR_FUNCTION;
-import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.URN_REGEX;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.ZIP_EXTENSION;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.ZIP_FILE_NAME_DATE_FORMAT;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.emailPattern;
@@ -16,35 +13,33 @@ import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.formatTim
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.fromSentPattern;
 
 import uk.gov.moj.cpp.bulkscan.azure.ErrorCode;
-import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanConfigurationMissingException;
 import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
-import uk.gov.moj.cpp.bulkscan.azure.rest.Attachment;
 import uk.gov.moj.cpp.bulkscan.azure.rest.AttachmentMetadata;
 import uk.gov.moj.cpp.bulkscan.azure.rest.EmailDetails;
+import uk.gov.moj.cpp.bulkscan.azure.rest.EmailDetailsReader;
 import uk.gov.moj.cpp.bulkscan.azure.rest.Metadata;
-import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationEmailHelper;
+import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationRequest;
 import uk.gov.moj.cpp.bulkscan.azure.rest.ProcessResults;
 import uk.gov.moj.cpp.bulkscan.azure.rest.Prosecutor;
 import uk.gov.moj.cpp.bulkscan.azure.rest.ReferenceDataQueryHelper;
 import uk.gov.moj.cpp.bulkscan.azure.rest.ScannableItem;
 import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox;
+import uk.gov.moj.cpp.bulkscan.azure.storage.SequenceBlockAllocator;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Base64;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
@@ -53,9 +48,10 @@ import java.util.zip.ZipOutputStream;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
-import javax.ws.rs.core.Response;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
@@ -64,6 +60,7 @@ import com.microsoft.azure.functions.HttpStatus;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import org.apache.commons.io.IOUtils;
 
 
 /**
@@ -73,21 +70,53 @@ import com.microsoft.azure.functions.annotation.HttpTrigger;
 @SuppressWarnings({"squid:S2139", "squid:S2629", "squid:S4042", "squid:S899"})
 public class PoliceEmailExtractorFunction {
 
+    private static final ObjectWriter METADATA_WRITER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .writerFor(Metadata.class);
+    private static final int DEFAULT_ATTACHMENT_MEMORY_THRESHOLD_BYTES = 1024 * 1024;
+    private static final int DEFAULT_DOCUMENT_CONTROL_NUMBER_BLOCK_SIZE = 100;
+    private static final int DEFAULT_DOCUMENT_CONTROL_NUMBER_LEASE_SECONDS = 300;
+
+    private static DocumentControlNumberGenerator sharedDocumentControlNumberGenerator;
+
     private ReferenceDataQueryHelper referenceDataQueryHelper = new ReferenceDataQueryHelper();
-    private NotificationEmailHelper notificationEmailHelper = new NotificationEmailHelper();
+    private NotificationOutbox notificationOutbox;
     private BlobCloudStorage blobCloudStorage;
+    private DocumentControlNumberGenerator documentControlNumberGenerator;
 
     @SuppressWarnings({"squid:S1312"})
     @FunctionName(POLICE_EMAIL_EXTRACTOR_FUNCTION)
     public HttpResponseMessage processEmail(@HttpTrigger(name = "req", methods = {HttpMethod.POST},
-            authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<EmailDetails> request,
+            authLevel = AuthorizationLevel.FUNCTION, dataType = "binary") HttpRequestMessage<Optional<byte[]>> request,
                                             final ExecutionContext context) {
 
         final String correlationId = UUID.randomUUID().toString();
 
         final Logger logger = context.getLogger();
 
-        final EmailDetails emailDetails = request.getBody();
+        final Optional<byte[]> body = request.getBody();
+        if (!body.isPresent()) {
+            logger.severe(String.format("%s: Email request has no body", correlationId));
+            return createResponse(request, HttpStatus.BAD_REQUEST);
+        }
+
+        final EmailDetails emailDetails;
+        try {
+            emailDetails = getEmailDetailsReader().read(body.get());
+        } catch (IOException e) {
+            logger.severe(String.format("%s: Unable to read email request: %s", correlationId, e.getMessage()));
+            return createResponse(request, HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            handleEmail(emailDetails, logger, correlationId);
+        } finally {
+            releaseAttachments(emailDetails, logger, correlationId);
+        }
+        return createResponse(request, HttpStatus.OK);
+    }
+
+    private void handleEmail(final EmailDetails emailDetails, final Logger logger, final String correlationId) {
         logger.info(String.format("PoliceEmailExtractorFunction invoked for email subject: " +
                 "%s correlationId: %s", emailDetails.getSubject(), correlationId));
 
@@ -99,13 +128,20 @@ public class PoliceEmailExtractorFunction {
                     "oucodes: %s", correlationId, prosecutorData.getAuthorityCodes()));
             final String senderEmailAddress = prosecutorData.getEmailAddress();
             final ProcessResults processResults = processEmailDetails(emailDetails, prosecutorData);
-            handleInvalidAttachments(senderEmailAddress, processResults, emailDetails.getSubject(), logger, correlationId);
             handleValidAttachments(processResults, logger, correlationId);
+            handleInvalidAttachments(senderEmailAddress, processResults, emailDetails.getSubject(), logger, correlationId);
         } else {
             logger.severe(String.format("%s: ErrorCode: %s : No Prosecutor found for Sender's " +
                     "email domain: Email Subject: %s", correlationId,ErrorCode.NO_PROSECUTOR_FOUND_FOR_SENDER_DOMAIN.getCode(), emailDetails.getSubject()));
         }
-        return createResponse(request);
+    }
+
+    private void releaseAttachments(final EmailDetails emailDetails, final Logger logger, final String correlationId) {
+        try {
+            emailDetails.close();
+        } catch (IOException e) {
+            logger.warning(String.format("%s: Unable to release spooled attachment content: %s", correlationId, e.getMessage()));
+        }
     }
 
     private void handleInvalidAttachments(String senderEmailAddress, ProcessResults processResults, String subject,
@@ -138,8 +174,8 @@ public class PoliceEmailExtractorFunction {
                         ErrorCode.NO_SJPN_FILE_ATTACHED_TO_THE_EMAIL.getCode()));
             }
 
-            // Prepare and send email with invalid files
-            prepareAndSendEmail(senderEmailAddress, String.join(",", processResults.getAllInvalidAttachments()), subject, logger, correlationId);
+            // Queue the notification email listing the invalid files
+            queueNotificationEmail(senderEmailAddress, String.join(",", processResults.getAllInvalidAttachments()), subject, logger, correlationId);
         }
     }
 
@@ -149,45 +185,38 @@ public class PoliceEmailExtractorFunction {
 
         final List<AttachmentMetadata> attachmentMetadataList = processResults.getAttachmentMetadataList();
         if (!attachmentMetadataList.isEmpty()) {
-            final String documentControlNumber = FunctionConstants.createDocumentControlNumber();
+            final String documentControlNumber = getDocumentControlNumberGenerator().next();
 
             final String zipFileName = documentControlNumber + "_" + formatTimestamp(ZIP_FILE_NAME_DATE_FORMAT);
             final String zipFileNameWithExtension = zipFileName + ZIP_EXTENSION;
-            final File metadataFile = writeMetadataToFile(processResults, vendorReceivedDate, documentControlNumber, zipFileNameWithExtension, logger);
-            File zipFile= null;
+            final Metadata metadata = constructMetadata(processResults, vendorReceivedDate, documentControlNumber, zipFileNameWithExtension);
             try {
-                zipFile = prepareZipFile(logger, attachmentMetadataList, documentControlNumber, zipFileName, metadataFile);
-                uploadZipFile(zipFile, zipFileNameWithExtension);
+                getScanProviderInboxBlobContainer().uploadStream(zipFileNameWithExtension,
+                        outputStream -> writeZip(outputStream, metadata, attachmentMetadataList, documentControlNumber));
                 logger.info(String.format("%s%s%s", correlationId, zipFileNameWithExtension, ": is uploaded successfully "));
-            } catch (IOException e) {
+            } catch (BulkScanProcessorException e) {
                 logger.severe(correlationId + ":Error occurred while creating zip file or uploading to blob storage:" + e.getMessage());
                 throw new BulkScanProcessorException("Error occurred while reading the file contents.", e);
-            }finally {
-                if (zipFile != null && zipFile.exists()) {
-                    zipFile.delete();
-                }
             }
         }
     }
 
-    private File prepareZipFile(final Logger logger, final List<AttachmentMetadata> attachmentMetadataList,
-                                final String documentControlNumber, final String zipFileName,
-                                final File metadataFile) throws IOException {
-        final File zipFile = createFile(logger, zipFileName,ZIP_EXTENSION);
-        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
-        addMetaDataToZipFile(metadataFile, out);
+    /**
+     * Streams the envelope zip: the metadata is serialised straight into its entry and each
+     * attachment is copied from its decoded content, so only the zip buffers are ever held.
+     */
+    private void writeZip(final OutputStream outputStream, final Metadata metadata, final List<AttachmentMetadata> attachmentMetadataList,
+                          final String documentControlNumber) throws IOException {
+        final ZipOutputStream out = new ZipOutputStream(outputStream);
+        addMetaDataToZipFile(metadata, out);
         addAttachmentToZipFile(attachmentMetadataList, documentControlNumber, out);
-        out.closeEntry();
-        out.close();
-        return zipFile;
+        out.finish();
     }
 
-
-    private void addMetaDataToZipFile(final File metadataFile, final ZipOutputStream out) throws IOException {
-        final ZipEntry e = new ZipEntry("metadata.json");
-        final byte[] data = Files.readAllBytes(metadataFile.toPath());
-        out.putNextEntry(e);
-        out.write(data, 0, data.length);
+    private void addMetaDataToZipFile(final Metadata metadata, final ZipOutputStream out) throws IOException {
+        out.putNextEntry(new ZipEntry("metadata.json"));
+        METADATA_WRITER.writeValue(out, metadata);
+        out.closeEntry();
     }
 
     private void addAttachmentToZipFile(List<AttachmentMetadata> attachmentMetadataList,
@@ -195,23 +224,17 @@ public class PoliceEmailExtractorFunction {
         for (int index = 0; index < attachmentMetadataList.size(); index++) {
             final AttachmentMetadata attachmentMetadata = attachmentMetadataList.get(index);
             final String fileName = documentControlNumber + String.format("%04d", index + 1) + ".pdf";
-            final ZipEntry entry = new ZipEntry(fileName);
-            final byte[] data = Base64.getDecoder().decode(attachmentMetadata.getAttachment().getContentBytes());
-            out.putNextEntry(entry);
-            out.write(data);
-        }
-    }
-
-    private void uploadZipFile(File zipFile, String zipFileName) throws IOException {
-        try (FileInputStream documentContent = new FileInputStream(zipFile)) {
-            getScanProviderInboxBlobContainer().uploadToStorage(
-                    documentContent, Files.size(zipFile.toPath()), zipFileName);
+            out.putNextEntry(new ZipEntry(fileName));
+            try (InputStream data = attachmentMetadata.getAttachment().openContent()) {
+                IOUtils.copy(data, out);
+            }
+            out.closeEntry();
         }
     }
 
     private BlobCloudStorage getScanProviderInboxBlobContainer() {
         if (blobCloudStorage == null) {
-            blobCloudStorage = new BlobCloudStorage(getenv("storage-inbox"), String.format("bs-%s-scans-received", getenv(ENVIRONMENT)));
+            blobCloudStorage = BlobCloudStorage.forContainer(getenv("storage-inbox"), String.format("bs-%s-scans-received", getenv(ENVIRONMENT)));
         }
         return blobCloudStorage;
     }
@@ -220,33 +243,44 @@ public class PoliceEmailExtractorFunction {
         this.blobCloudStorage = blobCloudStorage;
     }
 
-
-    protected File writeMetadataToFile(ProcessResults processResults, Date vendorReceivedDate, String documentControlNumber, String zipFileName, Logger logger) {
-
-        final Metadata metaData = constructMetadata(processResults, vendorReceivedDate, documentControlNumber, zipFileName);
-
-        final File tempFile = createFile(logger, "metadata",JSON_EXTENSION);
-
-        final ObjectMapper mapper = new ObjectMapper();
-
-        try (FileWriter fileWriter = new FileWriter(tempFile)) {
-            mapper.writeValue(fileWriter, metaData);
-        } catch (IOException e) {
-            logger.severe("Error creating metadata json");
-            throw new BulkScanConfigurationMissingException("Error creating metadata json", e);
+    private DocumentControlNumberGenerator getDocumentControlNumberGenerator() {
+        if (documentControlNumberGenerator == null) {
+            documentControlNumberGenerator = sharedDocumentControlNumberGenerator();
         }
+        return documentControlNumberGenerator;
+    }
+
+    /**
+     * One generator per host, so the numbers of a leased block are shared by every invocation.
+     */
+    private static synchronized DocumentControlNumberGenerator sharedDocumentControlNumberGenerator() {
+        if (sharedDocumentControlNumberGenerator == null) {
+            final BlobCloudStorage ledgerStorage = BlobCloudStorage.forCreatedContainer(getenv("storage-scanmgr"), String.format("bs-%s-ingest-ledger", getenv(ENVIRONMENT)));
+            sharedDocumentControlNumberGenerator = new DocumentControlNumberGenerator(
+                    new SequenceBlockAllocator(ledgerStorage, "document-control-number",
+                            DocumentControlNumberGenerator.FIRST_SEQUENCE, DocumentControlNumberGenerator.LAST_SEQUENCE),
+                    setting("document_control_number_block_size", DEFAULT_DOCUMENT_CONTROL_NUMBER_BLOCK_SIZE),
+                    setting("document_control_number_lease_seconds", DEFAULT_DOCUMENT_CONTROL_NUMBER_LEASE_SECONDS) * 1000L);
+        }
+        return sharedDocumentControlNumberGenerator;
+    }
 
-        return tempFile;
+    protected void setDocumentControlNumberGenerator(final DocumentControlNumberGenerator documentControlNumberGenerator) {
+        this.documentControlNumberGenerator = documentControlNumberGenerator;
     }
 
-    private File createFile(Logger logger, String fileName, String extension) {
-        try {
-            return File.createTempFile(fileName, extension);
-        } catch (IOException e) {
-            logger.severe("Error creating file" + fileName + "."+ extension);
-            throw new BulkScanConfigurationMissingException("Error creating temp file", e);
-        }
+    private static int setting(final String name, final int defaultValue) {
+        final String value = getenv(name);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
     }
+
+    protected EmailDetailsReader getEmailDetailsReader() {
+        final String spoolDirectory = getenv("email_attachment_spool_directory");
+        return new EmailDetailsReader(setting("email_attachment_memory_threshold_bytes", DEFAULT_ATTACHMENT_MEMORY_THRESHOLD_BYTES),
+                Objects.isNull(spoolDirectory) ? null : new File(spoolDirectory));
+    }
+
+
     private Metadata constructMetadata(ProcessResults processResults, Date vendorReceivedDate, String documentControlNumber, String zipFileName) {
         final List<ScannableItem> scannableItems = IntStream.range(1, processResults.getAttachmentMetadataList().size() + 1)
                 .mapToObj(i -> constructScannableItem(processResults, vendorReceivedDate, documentControlNumber, i)).collect(Collectors.toList());
@@ -320,155 +354,48 @@ public class PoliceEmailExtractorFunction {
     }
 
     protected Optional<String> extractURN(final String input) {
-        final Matcher matcher = Pattern.compile(URN_REGEX).matcher(input);
-        return matcher.find() ? Optional.of(matcher.group().replaceAll("[ /]", "")) : Optional.empty();
+        return AttachmentClassifier.extractUrn(input);
     }
 
-    private HttpResponseMessage createResponse(HttpRequestMessage<EmailDetails> request) {
-        return request.createResponseBuilder(HttpStatus.OK)
+    private HttpResponseMessage createResponse(HttpRequestMessage<Optional<byte[]>> request, HttpStatus status) {
+        return request.createResponseBuilder(status)
                 .header("Content-Type", APPLICATION_JSON)
                 .body("{}")
                 .build();
     }
 
     protected ProcessResults processEmailDetails(EmailDetails emailDetails, Prosecutor prosecutor) {
-        final ProcessResults processResults = new ProcessResults();
-        final Optional<String> urnFromSubject = extractURN(emailDetails.getSubject());
-
-        if (urnFromSubject.isPresent()) {
-            processAttachmentsWithSubjectUrn(emailDetails.getAttachments(), urnFromSubject.get(), processResults, prosecutor);
-        } else {
-            processAttachments(emailDetails.getAttachments(), processResults, prosecutor);
-        }
-
-        return processResults;
-    }
-
-    private void processAttachmentsWithSubjectUrn(List<Attachment> attachments, String subjectUrn, ProcessResults processResults, Prosecutor prosecutor) {
-        if (attachments.stream().filter(Attachment::isNotSignatureAttachment).count() > 1) {
-            markAttachmentAsUrnNotFound(attachments, processResults);
-        } else {
-            final Optional<Attachment> attachmentOptional = attachments
-                    .stream()
-                    .filter(Attachment::isNotSignatureAttachment)
-                    .findFirst();
-
-            if (attachmentOptional.isPresent()) {
-                Attachment attachment = attachmentOptional.get();
-                if (!isPdfAttachment(attachment)) {
-                    processResults.addNonPdfAttachment(attachment.getName());
-                } else {
-                    processSingleValidAttachment(attachment, subjectUrn, processResults, prosecutor);
-                }
-            } else {
-                processResults.setEmailWithNoAttachments(true);
-            }
-        }
-    }
-
-    private void processSingleValidAttachment(Attachment attachment, String subjectUrn, ProcessResults processResults, Prosecutor prosecutor) {
-        final String urnPrefix = subjectUrn.substring(0, 2);
-        final Optional<String> oucode = findOucodeForUrnPrefix(prosecutor, urnPrefix);
-        if (oucode.isPresent()) {
-            //extract URN from attachment
-            processAttachmentWithOucode(attachment, subjectUrn, processResults, oucode.get());
-        } else {
-            processResults.addProsecutorUrnNotMatchWithAttachments(attachment.getName());
-        }
-    }
-
-    private void processAttachmentWithOucode(final Attachment attachment, final String subjectUrn, final ProcessResults processResults, final String oucode) {
-        final Optional<String> attachmentUrn = extractURN(attachment.getName());
-        if (attachmentUrn.isPresent()) {
-            if (subjectUrn.equalsIgnoreCase(attachmentUrn.get())) {
-                processResults.addAttachmentMetadata(populateAttachmentMetaData(subjectUrn, attachment, oucode));
-            } else {
-                processResults.addUrnNotFoundAttachment(attachment.getName());
-            }
-        } else {
-            processResults.addAttachmentMetadata(populateAttachmentMetaData(subjectUrn, attachment, oucode));
-        }
-    }
-
-    private Optional<String> findOucodeForUrnPrefix(Prosecutor prosecutor, String urnPrefix) {
-        return prosecutor.getAuthorityCodes().stream()
-                .filter(s -> s.substring(1, 3).equalsIgnoreCase(urnPrefix))
-                .findFirst();
-    }
-
-    private boolean isPdfAttachment(Attachment attachment) {
-        return APPLICATION_PDF.equalsIgnoreCase(attachment.getContentType());
+        return AttachmentClassifier.classify(emailDetails.getSubject(), emailDetails.getAttachments(), prosecutor);
     }
 
-    private void markAttachmentAsUrnNotFound(List<Attachment> attachments, ProcessResults processResults) {
-        attachments.stream()
-                .map(Attachment::getName)
-                .forEach(processResults::addUrnNotFoundAttachment);
-    }
-
-    private AttachmentMetadata populateAttachmentMetaData(final String urnFromSubject, final Attachment a, final String oucode) {
-        return AttachmentMetadata.builder()
-                .urn(urnFromSubject)
-                .fileName(a.getName())
-                .oucode(oucode)
-                .attachment(a)
-                .build();
-    }
-
-    private void processAttachments(List<Attachment> attachments, ProcessResults processResults, Prosecutor prosecutor) {
-        attachments.forEach(attachment -> {
-            if (attachmentIsPdf(attachment)) {
-                processPdfAttachmentForUrn(attachment, processResults,prosecutor);
-            } else {
-                if (attachment.isNotSignatureAttachment()) {
-                    processNonPdfAttachment(attachment, processResults);
-                }
-            }
-        });
+    protected void setReferenceDataQueryHelper(final ReferenceDataQueryHelper referenceDataQueryHelper) {
+        this.referenceDataQueryHelper = referenceDataQueryHelper;
     }
 
-    private boolean attachmentIsPdf(Attachment attachment) {
-        return APPLICATION_PDF.equalsIgnoreCase(attachment.getContentType());
+    protected void setNotificationOutbox(final NotificationOutbox notificationOutbox) {
+        this.notificationOutbox = notificationOutbox;
     }
 
-    private void processPdfAttachmentForUrn(Attachment attachment, ProcessResults processResults, Prosecutor prosecutor) {
-        final Optional<String> urnFromAttachment = extractURN(attachment.getName());
-        if (urnFromAttachment.isPresent()) {
-            final String urn = urnFromAttachment.get();
-            final String urnPrefix = urn.substring(0, 2);
-            final Optional<String> oucode = prosecutor.getAuthorityCodes().stream()
-                    .filter(s -> s.substring(1, 3).equalsIgnoreCase(urnPrefix)).findFirst();
-            if (oucode.isPresent()) {
-                final AttachmentMetadata metadata = populateAttachmentMetaData(urn, attachment, oucode.get());
-                processResults.addAttachmentMetadata(metadata);
-            } else {
-                processResults.addProsecutorUrnNotMatchWithAttachments(attachment.getName());
-            }
-        } else {
-            processResults.addUrnNotFoundAttachment(attachment.getName());
+    private NotificationOutbox getNotificationOutbox() {
+        if (notificationOutbox == null) {
+            notificationOutbox = NotificationDispatcherFunction.newNotificationOutbox();
         }
+        return notificationOutbox;
     }
 
-    private void processNonPdfAttachment(Attachment attachment, ProcessResults processResults) {
-        processResults.addNonPdfAttachment(attachment.getName());
-    }
-
-    protected void setReferenceDataQueryHelper(final ReferenceDataQueryHelper referenceDataQueryHelper) {
-        this.referenceDataQueryHelper = referenceDataQueryHelper;
-    }
-
-    protected void setNotificationEmailHelper(final NotificationEmailHelper notificationEmailHelper) {
-        this.notificationEmailHelper = notificationEmailHelper;
-    }
-
-    private void prepareAndSendEmail(String senderEmailAddress, String invalidFileNames, String subject, Logger logger, String correlationId) {
+    /**
+     * Leaves the notification in the outbox for {@link NotificationDispatcherFunction} to send.
+     * The valid attachments are already stored by then, so an outbox that cannot be reached
+     * only loses the notification and does not fail the email.
+     */
+    private void queueNotificationEmail(String senderEmailAddress, String invalidFileNames, String subject, Logger logger, String correlationId) {
         final String notificationId = UUID.randomUUID().toString();
-        logger.info(() -> correlationId + ": Sending notification email with notification id: " + notificationId);
-        final Response response = notificationEmailHelper.sendNotificationEmail(notificationId, senderEmailAddress, invalidFileNames, subject, logger);
-        if (response.getStatus() == 202) {
-            logger.info(() -> correlationId + ": Notification Email Sent successfully: response.getStatus() " + response.getStatus());
-        } else {
-            logger.severe(() -> correlationId + ": Notification API call failed with reason: " + response.readEntity(String.class));
+        try {
+            getNotificationOutbox().enqueue(new NotificationRequest(notificationId, senderEmailAddress, invalidFileNames, subject, correlationId).toJson());
+            logger.info(() -> correlationId + ": Notification email queued with notification id: " + notificationId);
+        } catch (BulkScanProcessorException e) {
+            logger.severe(String.format("%s: Unable to queue notification email %s for invalid files %s: %s",
+                    correlationId, notificationId, invalidFileNames, e.getMessage()));
         }
     }
 
@@ -1,15 +1,25 @@
 package uk.gov.moj.cpp.bulkscan.azure.rest;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Base64;
 import java.util.Date;
 
+import org.apache.commons.io.input.CharSequenceInputStream;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class Attachment implements Serializable {
+public class Attachment implements Serializable, Closeable {
     private static final long serialVersionUID = -7185076331018398831L;
     private final String id;
     private final Date lastModifiedDate;
@@ -17,6 +27,7 @@ public class Attachment implements Serializable {
     private final String contentType;
     private final String contentBytes;
     private final boolean isInline;
+    private final transient AttachmentContent content;
 
     public Attachment(final String id,
                       final Date lastModifiedDate,
@@ -30,6 +41,25 @@ public class Attachment implements Serializable {
         this.contentType = contentType;
         this.contentBytes = contentBytes;
         this.isInline = isInline;
+        this.content = null;
+    }
+
+    /**
+     * An attachment whose content was decoded as the request was read, see {@link EmailDetailsReader}.
+     */
+    public Attachment(final String id,
+                      final Date lastModifiedDate,
+                      final String name,
+                      final String contentType,
+                      final AttachmentContent content,
+                      final boolean isInline) {
+        this.id = id;
+        this.lastModifiedDate = new Date(lastModifiedDate.getTime());
+        this.name = name;
+        this.contentType = contentType;
+        this.contentBytes = null;
+        this.isInline = isInline;
+        this.content = content;
     }
 
     public boolean isSignatureAttachment() {
@@ -59,4 +89,29 @@ public class Attachment implements Serializable {
     public String getContentBytes() {
         return this.contentBytes;
     }
+
+    public boolean isInline() {
+        return isInline;
+    }
+
+    /**
+     * @return the decoded content of the attachment
+     */
+    @JsonIgnore
+    public InputStream openContent() throws IOException {
+        if (content != null) {
+            return content.openInputStream();
+        }
+        if (contentBytes == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return Base64.getDecoder().wrap(new CharSequenceInputStream(contentBytes, ISO_8859_1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (content != null) {
+            content.close();
+        }
+    }
 }
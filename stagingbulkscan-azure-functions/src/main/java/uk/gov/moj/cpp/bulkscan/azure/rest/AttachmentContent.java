@@ -0,0 +1,77 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+/**
+ * Decoded content of an email attachment. Content up to {@code memoryThresholdBytes} is kept in
+ * memory and anything larger is spooled to a temporary file, which is deleted when the content
+ * is closed.
+ */
+public class AttachmentContent implements Closeable {
+
+    private static final String SPOOL_FILE_PREFIX = "attachment-";
+    private static final String SPOOL_FILE_SUFFIX = ".tmp";
+
+    private final DeferredFileOutputStream spool;
+    private boolean written;
+
+    public AttachmentContent(final int memoryThresholdBytes, final File spoolDirectory) {
+        this.spool = new DeferredFileOutputStream(memoryThresholdBytes, SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX, spoolDirectory);
+    }
+
+    /**
+     * @return the stream the decoded content is written to; closing it completes the content
+     */
+    public OutputStream openOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                spool.write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                spool.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                spool.close();
+                written = true;
+            }
+        };
+    }
+
+    public InputStream openInputStream() throws IOException {
+        if (!written) {
+            throw new IllegalStateException("Attachment content has not been completely written");
+        }
+        return spool.isInMemory()
+                ? new ByteArrayInputStream(spool.getData())
+                : Files.newInputStream(spool.getFile().toPath());
+    }
+
+    public long getSize() {
+        return spool.getByteCount();
+    }
+
+    public boolean isInMemory() {
+        return spool.isInMemory();
+    }
+
+    @Override
+    public void close() throws IOException {
+        spool.close();
+        if (!spool.isInMemory()) {
+            Files.deleteIfExists(spool.getFile().toPath());
+        }
+    }
+}
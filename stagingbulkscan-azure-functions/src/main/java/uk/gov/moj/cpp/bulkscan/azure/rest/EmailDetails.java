@@ -3,13 +3,15 @@ package uk.gov.moj.cpp.bulkscan.azure.rest;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class EmailDetails implements Serializable {
+public class EmailDetails implements Serializable, Closeable {
     private static final long serialVersionUID = 9205841299835327173L;
     private final String subject;
     private final String from;
@@ -43,6 +45,28 @@ public class EmailDetails implements Serializable {
         return new ArrayList<>(this.attachments);
     }
 
+    /**
+     * Releases the spooled content of the attachments; every attachment is closed even if one fails.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final Attachment attachment : attachments) {
+            try {
+                attachment.close();
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     public static class EmailDetailsBuilder {
         private String subject;
         private String from;
@@ -0,0 +1,177 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+/**
+ * Reads the email posted to the police email extractor one token at a time. The Base64 content
+ * of each attachment is decoded as it is parsed into an {@link AttachmentContent}, so neither the
+ * encoded string nor a second decoded copy of an attachment is held, and content over the memory
+ * threshold ends up in a temporary file rather than the heap.
+ *
+ * <pre>
+ * {"subject": "...", "from": "...", "body": "...",
+ *  "attachments": [{"id": "...", "lastModifiedDate": "...", "name": "...", "contentType": "...", "contentBytes": "JVBERi0...", "isInline": false}]}
+ * </pre>
+ *
+ * Unknown fields are skipped. The caller owns the returned {@link EmailDetails} and must close it.
+ */
+public class EmailDetailsReader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int memoryThresholdBytes;
+    private final File spoolDirectory;
+
+    /**
+     * @param spoolDirectory where content over the threshold is spooled, the system temporary
+     *                       directory when null
+     */
+    public EmailDetailsReader(final int memoryThresholdBytes, final File spoolDirectory) {
+        this.memoryThresholdBytes = memoryThresholdBytes;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public EmailDetails read(final byte[] body) throws IOException {
+        return read(new ByteArrayInputStream(body));
+    }
+
+    public EmailDetails read(final InputStream inputStream) throws IOException {
+        final EmailDetails.EmailDetailsBuilder builder = EmailDetails.builder();
+        final List<Attachment> attachments = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "subject":
+                        builder.subject(parser.getValueAsString());
+                        break;
+                    case "from":
+                        builder.from(parser.getValueAsString());
+                        break;
+                    case "body":
+                        builder.body(parser.getValueAsString());
+                        break;
+                    case "attachments":
+                        readAttachments(parser, attachments);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            closeQuietly(attachments, e);
+            throw e;
+        }
+        return builder.attachments(attachments).build();
+    }
+
+    private void readAttachments(final JsonParser parser, final List<Attachment> attachments) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+            attachments.add(readAttachment(parser));
+        }
+    }
+
+    private Attachment readAttachment(final JsonParser parser) throws IOException {
+        String id = null;
+        Date lastModifiedDate = null;
+        String name = null;
+        String contentType = null;
+        boolean isInline = false;
+        final AttachmentContent content = new AttachmentContent(memoryThresholdBytes, spoolDirectory);
+        try (OutputStream contentStream = content.openOutputStream()) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "lastModifiedDate":
+                        lastModifiedDate = readDate(parser, value);
+                        break;
+                    case "name":
+                        name = parser.getValueAsString();
+                        break;
+                    case "contentType":
+                        contentType = parser.getValueAsString();
+                        break;
+                    case "contentBytes":
+                        if (value != JsonToken.VALUE_NULL) {
+                            parser.readBinaryValue(contentStream);
+                        }
+                        break;
+                    case "isInline":
+                        isInline = parser.getValueAsBoolean();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            closeQuietly(content, e);
+            throw e;
+        }
+        return new Attachment(id, lastModifiedDate == null ? new Date() : lastModifiedDate, name, contentType, content, isInline);
+    }
+
+    private static Date readDate(final JsonParser parser, final JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return new Date(parser.getLongValue());
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            return null;
+        }
+        try {
+            return new StdDateFormat().parse(parser.getText());
+        } catch (final ParseException e) {
+            throw new JsonParseException(parser, "Invalid lastModifiedDate: " + parser.getText(), e);
+        }
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken actual, final JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void closeQuietly(final List<Attachment> attachments, final Exception failure) {
+        attachments.forEach(attachment -> {
+            try {
+                attachment.close();
+            } catch (final IOException e) {
+                failure.addSuppressed(e);
+            }
+        });
+    }
+
+    private static void closeQuietly(final AttachmentContent content, final Exception failure) {
+        try {
+            content.close();
+        } catch (final IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import javax.json.JsonObject;
+
+/**
+ * Reference data of the scannable items of one envelope. Every distinct PTI URN and OU code of
+ * the envelope is looked up once, the lookups running side by side on the given executor, so an
+ * envelope costs as many round trips as it has distinct keys rather than documents times calls.
+ */
+final class EnvelopeReferenceData {
+
+    private static final String OUCODE = "oucode";
+    private static final String EMPTY = "";
+
+    private final Map<String, String> ouCodeByPtiUrn;
+    private final Map<String, JsonObject> prosecutorByOuCode;
+
+    private EnvelopeReferenceData(final Map<String, String> ouCodeByPtiUrn, final Map<String, JsonObject> prosecutorByOuCode) {
+        this.ouCodeByPtiUrn = ouCodeByPtiUrn;
+        this.prosecutorByOuCode = prosecutorByOuCode;
+    }
+
+    /**
+     * Resolves the OU code of each PTI URN, then the prosecutor of each OU code found and of each
+     * of the given OU codes. A prosecutor lookup starts as soon as its OU code is known.
+     */
+    static EnvelopeReferenceData resolve(final Set<String> ptiUrns, final Set<String> ouCodes,
+                                         final ReferenceDataQueryHelper referenceDataQueryHelper, final Executor executor) {
+        final ConcurrentMap<String, CompletableFuture<JsonObject>> prosecutorLookups = new ConcurrentHashMap<>();
+        ouCodes.forEach(ouCode -> prosecutorLookups.computeIfAbsent(ouCode,
+                key -> supplyAsync(() -> referenceDataQueryHelper.getProsecutorsByOuCode(key), executor)));
+
+        final Map<String, CompletableFuture<String>> ouCodeLookups = new HashMap<>();
+        ptiUrns.forEach(ptiUrn -> ouCodeLookups.put(ptiUrn,
+                supplyAsync(() -> referenceDataQueryHelper.getOuCodeByPtiUrn(ptiUrn).getString(OUCODE), executor)));
+
+        final Map<String, CompletableFuture<?>> lookupsInFlight = new HashMap<>();
+        ouCodeLookups.forEach((ptiUrn, ouCodeLookup) -> lookupsInFlight.put(ptiUrn, ouCodeLookup.thenCompose(ouCode -> EMPTY.equals(ouCode)
+                ? completedFuture(null)
+                : prosecutorLookups.computeIfAbsent(ouCode, key -> supplyAsync(() -> referenceDataQueryHelper.getProsecutorsByOuCode(key), executor)))));
+
+        lookupsInFlight.values().forEach(EnvelopeReferenceData::await);
+        final Map<String, String> ouCodeByPtiUrn = new HashMap<>();
+        ouCodeLookups.forEach((ptiUrn, ouCodeLookup) -> ouCodeByPtiUrn.put(ptiUrn, await(ouCodeLookup)));
+        final Map<String, JsonObject> prosecutorByOuCode = new HashMap<>();
+        prosecutorLookups.forEach((ouCode, prosecutorLookup) -> prosecutorByOuCode.put(ouCode, await(prosecutorLookup)));
+
+        return new EnvelopeReferenceData(ouCodeByPtiUrn, prosecutorByOuCode);
+    }
+
+    String getOuCode(final String ptiUrn) {
+        return ouCodeByPtiUrn.getOrDefault(ptiUrn, EMPTY);
+    }
+
+    JsonObject getProsecutor(final String ouCode) {
+        return prosecutorByOuCode.get(ouCode);
+    }
+
+    private static <T> T await(final CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package uk.gov.moj.cpp.bulkscan.azure.rest;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 class Mc100Builder {
 
@@ -25,6 +29,14 @@ class Mc100Builder {
     private static final String SELF_EMPLOYED = "selfEmployed";
     private static final String UNEMPLOYED = "unemployed";
 
+    /**
+     * The OCR metadata fields an MC100 is built from.
+     */
+    static final Set<String> FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(AVERAGE_INCOME, CLAIM_BENEFITS_NO,
+            CLAIM_BENEFITS_YES, EMPLOYED, EMPLOYER_ADDRESS_CITY, EMPLOYER_ADDRESS_LINE1, EMPLOYER_ADDRESS_LINE2, EMPLOYER_ADDRESS_LINE3,
+            EMPLOYER_ADDRESS_POST_CODE, FREQUENCY_FORTNIGHTLY, FREQUENCY_MONTHLY, FREQUENCY_WEEKLY, FREQUENCY_YEARLY, NAME_OF_ORGANISATION,
+            NI_NUMBER, NO_INCOME, OTHER_EMPLOYMENT_STATUS, PAYROLL_NUMBER, SELF_EMPLOYED, UNEMPLOYED)));
+
     Mc100s buildMC100(final Map<String, String> metadataMap) {
         final Mc100s.Builder builder = Mc100s.documentFinancialMeans();
 
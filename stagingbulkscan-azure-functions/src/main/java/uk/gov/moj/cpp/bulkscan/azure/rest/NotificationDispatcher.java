@@ -0,0 +1,169 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox.OutboxMessage;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Sends the notification emails waiting in the {@link NotificationOutbox}, a batch of messages
+ * at a time. A notification the notification service did not accept is handed back to the outbox
+ * to be retried after an exponentially growing delay, until it has been tried
+ * {@code maxAttempts} times or was refused as a bad request, when it is given up on and logged.
+ *
+ * A message the outbox fails to complete or hand back, for instance because its visibility
+ * timeout ran out and it was received again, is left to reappear and does not stop the rest of
+ * the batch.
+ */
+public class NotificationDispatcher {
+
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final NotificationEmailHelper notificationEmailHelper;
+    private final int batchSize;
+    private final int maxBatches;
+    private final int maxAttempts;
+    private final int initialBackoffSeconds;
+    private final int maxBackoffSeconds;
+    private final int visibilityTimeoutSeconds;
+
+    public NotificationDispatcher(final NotificationEmailHelper notificationEmailHelper, final int batchSize, final int maxBatches,
+                                  final int maxAttempts, final int initialBackoffSeconds, final int maxBackoffSeconds,
+                                  final int visibilityTimeoutSeconds) {
+        this.notificationEmailHelper = notificationEmailHelper;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffSeconds = initialBackoffSeconds;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+    }
+
+    /**
+     * Works through the outbox until it is empty or {@code maxBatches} batches have been sent.
+     */
+    public DispatchResult dispatch(final NotificationOutbox notificationOutbox, final Logger logger) {
+        final DispatchResult dispatchResult = new DispatchResult();
+        for (int batch = 0; batch < maxBatches; batch++) {
+            final List<OutboxMessage> messages = notificationOutbox.receive(batchSize, visibilityTimeoutSeconds);
+            if (messages.isEmpty()) {
+                break;
+            }
+            for (final OutboxMessage message : messages) {
+                try {
+                    dispatch(notificationOutbox, message, dispatchResult, logger);
+                } catch (BulkScanProcessorException e) {
+                    logger.warning(() -> "Notification message " + message.getId() + " is left in the outbox: " + e.getMessage());
+                    dispatchResult.failed++;
+                }
+            }
+        }
+        return dispatchResult;
+    }
+
+    /**
+     * @return the delay before the next attempt of a message that has been tried the given
+     * number of times
+     */
+    int backoffSeconds(final int attempts) {
+        final long backoff = (long) initialBackoffSeconds << Math.min(Math.max(attempts - 1, 0), 20);
+        return (int) Math.min(backoff, maxBackoffSeconds);
+    }
+
+    @SuppressWarnings({"squid:S1166"})
+    private void dispatch(final NotificationOutbox notificationOutbox, final OutboxMessage message, final DispatchResult dispatchResult,
+                          final Logger logger) {
+        final NotificationRequest notificationRequest;
+        try {
+            notificationRequest = NotificationRequest.fromJson(message.getContent());
+        } catch (RuntimeException e) {
+            logger.severe(() -> "Discarding unreadable notification message " + message.getId() + ": " + e.getMessage());
+            notificationOutbox.complete(message);
+            dispatchResult.discarded++;
+            return;
+        }
+
+        final String correlationId = notificationRequest.getCorrelationId();
+        final int status;
+        final String failure;
+        try {
+            final Response response = notificationEmailHelper.sendNotificationEmail(notificationRequest.getNotificationId(),
+                    notificationRequest.getSenderEmailAddress(), notificationRequest.getInvalidFileNames(), notificationRequest.getSubject(), logger);
+            try {
+                status = response.getStatus();
+                failure = isSuccessful(status) ? null : status + " " + response.readEntity(String.class);
+            } finally {
+                response.close();
+            }
+        } catch (RuntimeException e) {
+            handBack(notificationOutbox, message, correlationId, String.valueOf(e.getMessage()), true, dispatchResult, logger);
+            return;
+        }
+
+        if (isSuccessful(status)) {
+            logger.info(() -> correlationId + ": Notification Email Sent successfully: response.getStatus() " + status);
+            notificationOutbox.complete(message);
+            dispatchResult.sent++;
+        } else {
+            final boolean retryable = status >= 500 || status == HTTP_REQUEST_TIMEOUT || status == HTTP_TOO_MANY_REQUESTS;
+            handBack(notificationOutbox, message, correlationId, failure, retryable, dispatchResult, logger);
+        }
+    }
+
+    private static boolean isSuccessful(final int status) {
+        return status >= 200 && status < 300;
+    }
+
+    private void handBack(final NotificationOutbox notificationOutbox, final OutboxMessage message, final String correlationId,
+                          final String failure, final boolean retryable, final DispatchResult dispatchResult, final Logger logger) {
+        if (retryable && message.getDequeueCount() < maxAttempts) {
+            final int delaySeconds = backoffSeconds(message.getDequeueCount());
+            logger.warning(() -> correlationId + ": Notification API call failed with reason: " + failure
+                    + ", attempt " + message.getDequeueCount() + " of " + maxAttempts + ", retrying in " + delaySeconds + "s");
+            notificationOutbox.retryLater(message, delaySeconds);
+            dispatchResult.retried++;
+        } else {
+            logger.severe(() -> correlationId + ": Notification API call failed with reason: " + failure
+                    + ", giving up after attempt " + message.getDequeueCount());
+            notificationOutbox.complete(message);
+            dispatchResult.discarded++;
+        }
+    }
+
+    public static class DispatchResult {
+
+        private int sent;
+        private int retried;
+        private int discarded;
+        private int failed;
+
+        public int getSent() {
+            return sent;
+        }
+
+        public int getRetried() {
+            return retried;
+        }
+
+        public int getDiscarded() {
+            return discarded;
+        }
+
+        /**
+         * @return the messages the outbox failed to complete or hand back
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return "DispatchResult(sent=" + sent + ", retried=" + retried + ", discarded=" + discarded + ", failed=" + failed + ")";
+        }
+    }
+}
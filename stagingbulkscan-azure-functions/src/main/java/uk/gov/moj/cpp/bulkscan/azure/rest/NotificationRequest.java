@@ -0,0 +1,73 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createReader;
+
+import java.io.StringReader;
+
+import javax.json.JsonObject;
+
+/**
+ * A notification email about the invalid attachments of a police email, as it is held in the
+ * notification outbox until it has been sent.
+ */
+public class NotificationRequest {
+
+    private static final String NOTIFICATION_ID = "notificationId";
+    private static final String SENDER_EMAIL_ADDRESS = "senderEmailAddress";
+    private static final String INVALID_FILE_NAMES = "invalidFileNames";
+    private static final String SUBJECT = "subject";
+    private static final String CORRELATION_ID = "correlationId";
+
+    private final String notificationId;
+    private final String senderEmailAddress;
+    private final String invalidFileNames;
+    private final String subject;
+    private final String correlationId;
+
+    public NotificationRequest(final String notificationId, final String senderEmailAddress, final String invalidFileNames,
+                               final String subject, final String correlationId) {
+        this.notificationId = notificationId;
+        this.senderEmailAddress = senderEmailAddress;
+        this.invalidFileNames = invalidFileNames;
+        this.subject = subject;
+        this.correlationId = correlationId;
+    }
+
+    public static NotificationRequest fromJson(final String json) {
+        final JsonObject jsonObject = createReader(new StringReader(json)).readObject();
+        return new NotificationRequest(jsonObject.getString(NOTIFICATION_ID), jsonObject.getString(SENDER_EMAIL_ADDRESS),
+                jsonObject.getString(INVALID_FILE_NAMES), jsonObject.getString(SUBJECT, ""), jsonObject.getString(CORRELATION_ID, ""));
+    }
+
+    public String toJson() {
+        return createObjectBuilder()
+                .add(NOTIFICATION_ID, notificationId)
+                .add(SENDER_EMAIL_ADDRESS, senderEmailAddress)
+                .add(INVALID_FILE_NAMES, invalidFileNames)
+                .add(SUBJECT, subject == null ? "" : subject)
+                .add(CORRELATION_ID, correlationId == null ? "" : correlationId)
+                .build()
+                .toString();
+    }
+
+    public String getNotificationId() {
+        return notificationId;
+    }
+
+    public String getSenderEmailAddress() {
+        return senderEmailAddress;
+    }
+
+    public String getInvalidFileNames() {
+        return invalidFileNames;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+}
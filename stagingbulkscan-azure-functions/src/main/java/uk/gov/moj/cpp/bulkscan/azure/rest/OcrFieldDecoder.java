@@ -0,0 +1,103 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+
+/**
+ * Reads the fields of the Base64 encoded OCR metadata of a scanned document in one pass. The
+ * content is decoded and parsed as a stream, so neither the decoded document nor a json object
+ * tree is ever held; only the values of the requested fields are kept.
+ *
+ * <pre>
+ * {"Metadata_file": [{"metadata_field_name": "pleaGuilty1", "metadata_field_value": "true"}, ...]}
+ * </pre>
+ */
+final class OcrFieldDecoder {
+
+    private static final String METADATA_FILE = "Metadata_file";
+    private static final String METADATA_FIELD_NAME = "metadata_field_name";
+    private static final String METADATA_FIELD_VALUE = "metadata_field_value";
+
+    private OcrFieldDecoder() {
+    }
+
+    /**
+     * @return the values of the requested fields present in the metadata; a field listed more
+     * than once keeps its last value
+     */
+    static Map<String, String> decode(final String base64OcrData, final Set<String> fields) {
+        final Map<String, String> fieldValues = new HashMap<>((int) (fields.size() / 0.75f) + 1);
+        try (JsonParser parser = Json.createParser(Base64.getDecoder().wrap(new ByteArrayInputStream(base64OcrData.getBytes(ISO_8859_1))))) {
+            int depth = 0;
+            boolean inMetadataFile = false;
+            String key = null;
+            String fieldName = null;
+            String fieldValue = null;
+
+            while (parser.hasNext()) {
+                final JsonParser.Event event = parser.next();
+                switch (event) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        if (depth == 1 && event == JsonParser.Event.START_ARRAY && METADATA_FILE.equals(key)) {
+                            inMetadataFile = true;
+                        }
+                        if (inMetadataFile && depth == 2) {
+                            fieldName = null;
+                            fieldValue = null;
+                        }
+                        depth++;
+                        key = null;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        depth--;
+                        if (inMetadataFile && depth == 2 && fieldName != null && fields.contains(fieldName)) {
+                            fieldValues.put(fieldName, fieldValue);
+                        }
+                        if (depth == 1) {
+                            inMetadataFile = false;
+                        }
+                        key = null;
+                        break;
+                    case KEY_NAME:
+                        key = parser.getString();
+                        break;
+                    default:
+                        if (inMetadataFile && depth == 3) {
+                            if (METADATA_FIELD_NAME.equals(key)) {
+                                fieldName = scalar(parser, event);
+                            } else if (METADATA_FIELD_VALUE.equals(key)) {
+                                fieldValue = scalar(parser, event);
+                            }
+                        }
+                        key = null;
+                        break;
+                }
+            }
+        }
+        return fieldValues;
+    }
+
+    private static String scalar(final JsonParser parser, final JsonParser.Event event) {
+        switch (event) {
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+                return parser.getString();
+            case VALUE_TRUE:
+                return Boolean.TRUE.toString();
+            case VALUE_FALSE:
+                return Boolean.FALSE.toString();
+            default:
+                return null;
+        }
+    }
+}
@@ -3,13 +3,22 @@ package uk.gov.moj.cpp.bulkscan.azure.rest;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 class PleaBuilder {
 
     private static final int MAX_OFFENCE = 10;
 
+    /**
+     * The OCR metadata fields a plea is built from.
+     */
+    static final Set<String> FIELDS = pleaFields();
+
     Plea buildPlea(final Map<String, String> metadataMap) {
         final Plea.Builder pleaBuilder = Plea.plea()
                 .withContactNumber(metadataMap.get("contactNumber"))
@@ -132,4 +141,16 @@ class PleaBuilder {
             pleaBuilder.withWelshHearing(null);
         }
     }
+
+    private static Set<String> pleaFields() {
+        final Set<String> fields = new HashSet<>(Arrays.asList("contactNumber", "drivingLicenceNumber", "emailAddress",
+                "detailsCorrectYes", "detailsCorrectNo", "detailChanges", "wantToGoToCourtYes", "wantToGoToCourtNo",
+                "speakWelshInWelshCourt", "speakEnglishInWelshCourt", "interpreterLanguage", "interpreterRequiredYes", "interpreterRequiredNo"));
+        for (int index = 1; index <= MAX_OFFENCE; index++) {
+            fields.add("pleaOffenceTitle" + index);
+            fields.add("pleaGuilty" + index);
+            fields.add("pleaNotGuilty" + index);
+        }
+        return Collections.unmodifiableSet(fields);
+    }
 }
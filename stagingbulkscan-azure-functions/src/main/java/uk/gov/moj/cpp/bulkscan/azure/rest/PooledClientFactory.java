@@ -0,0 +1,234 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.lang.System.getenv;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.SecureConnectionException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+
+/**
+ * Builds the JAX-RS client shared by the REST helpers of the host process. The client sits on
+ * a pooled connection manager, so connections and their TLS sessions are kept alive and reused
+ * across requests and invocations instead of being negotiated again for every request.
+ *
+ * Server certificates are accepted whatever their issuer and host name, unless
+ * {@code client_verify_server_certificates} is set to {@code true}: they are then verified
+ * against the trust material of the {@link TrustMaterialSource} and must match the host name
+ * they are presented for.
+ */
+public final class PooledClientFactory implements AutoCloseable {
+
+    private static final String MAX_CONNECTIONS = "client_max_connections";
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final String MAX_CONNECTIONS_PER_ROUTE = "client_max_connections_per_route";
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final String CONNECT_TIMEOUT_MILLIS = "client_connect_timeout_millis";
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final String READ_TIMEOUT_MILLIS = "client_read_timeout_millis";
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 60_000;
+    private static final String VERIFY_SERVER_CERTIFICATES = "client_verify_server_certificates";
+    private static final long IDLE_CONNECTION_EVICTION_SECONDS = 60;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Client client;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    public PooledClientFactory(final TrustMaterialSource trustMaterialSource, final boolean verifyServerCertificates,
+                               final int maxConnections, final int maxConnectionsPerRoute,
+                               final int connectTimeoutMillis, final int readTimeoutMillis) {
+        final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new CountingConnectionSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+                .register("https", new CountingConnectionSocketFactory(
+                        new SSLConnectionSocketFactory(sslContext(trustMaterialSource, verifyServerCertificates),
+                                verifyServerCertificates ? SSLConnectionSocketFactory.getDefaultHostnameVerifier() : NoopHostnameVerifier.INSTANCE)))
+                .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMillis)
+                        .setConnectionRequestTimeout(connectTimeoutMillis)
+                        .setSocketTimeout(readTimeoutMillis)
+                        .build())
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> requests.increment())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_EVICTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+        this.client = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .httpEngine(new ApacheHttpClient43Engine(httpClient, true))
+                .build();
+    }
+
+    public static PooledClientFactory getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * @return the shared client; it must not be closed by the caller, whereas every response
+     * must be read or closed to hand its connection back to the pool
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * @return the longest a single request of the shared client can take before it times out:
+     * waiting for a pooled connection, connecting, then waiting for the response
+     */
+    public static int getMaxRequestMillis() {
+        final int connectTimeoutMillis = setting(CONNECT_TIMEOUT_MILLIS, DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        return 2 * connectTimeoutMillis + setting(READ_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public PoolMetrics getMetrics() {
+        final PoolStats totalStats = connectionManager.getTotalStats();
+        return new PoolMetrics(totalStats.getLeased(), totalStats.getAvailable(), totalStats.getPending(), totalStats.getMax(),
+                requests.sum(), connectionsOpened.sum());
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private static SSLContext sslContext(final TrustMaterialSource trustMaterialSource, final boolean verifyServerCertificates) {
+        try {
+            final TrustStrategy acceptingTrustStrategy = verifyServerCertificates ? null : (cert, authType) -> true;
+            return SSLContexts.custom().loadTrustMaterial(trustMaterialSource.load(), acceptingTrustStrategy).build();
+        } catch (IOException | GeneralSecurityException ex) {
+            throw new SecureConnectionException("Error reading certificate : , %s", ex);
+        }
+    }
+
+    private static int setting(final String name, final int defaultValue) {
+        final String value = getenv(name);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static class InstanceHolder {
+
+        private static final PooledClientFactory INSTANCE = new PooledClientFactory(TrustMaterialSource.fromEnvironment(),
+                Boolean.parseBoolean(getenv(VERIFY_SERVER_CERTIFICATES)),
+                setting(MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS),
+                setting(MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE),
+                setting(CONNECT_TIMEOUT_MILLIS, DEFAULT_CONNECT_TIMEOUT_MILLIS),
+                setting(READ_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Counts the connections, and so the TLS handshakes, the pool had to open.
+     */
+    private class CountingConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+        private final ConnectionSocketFactory delegate;
+
+        CountingConnectionSocketFactory(final ConnectionSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket(final HttpContext context) throws IOException {
+            return delegate.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host, final InetSocketAddress remoteAddress,
+                                    final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+            final Socket connectedSocket = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            connectionsOpened.increment();
+            return connectedSocket;
+        }
+
+        @Override
+        public Socket createLayeredSocket(final Socket socket, final String target, final int port, final HttpContext context) throws IOException {
+            if (delegate instanceof LayeredConnectionSocketFactory) {
+                return ((LayeredConnectionSocketFactory) delegate).createLayeredSocket(socket, target, port, context);
+            }
+            throw new IOException("Connection socket factory cannot layer a connection over " + target);
+        }
+    }
+
+    public static class PoolMetrics {
+
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+        private final long requests;
+        private final long connectionsOpened;
+
+        PoolMetrics(final int leased, final int available, final int pending, final int max, final long requests, final long connectionsOpened) {
+            this.leased = leased;
+            this.available = available;
+            this.pending = pending;
+            this.max = max;
+            this.requests = requests;
+            this.connectionsOpened = connectionsOpened;
+        }
+
+        public int getLeased() {
+            return leased;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getConnectionsOpened() {
+            return connectionsOpened;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolMetrics(leased=" + leased + ", available=" + available + ", pending=" + pending + ", max=" + max
+                    + ", requests=" + requests + ", connectionsOpened=" + connectionsOpened + ")";
+        }
+    }
+}
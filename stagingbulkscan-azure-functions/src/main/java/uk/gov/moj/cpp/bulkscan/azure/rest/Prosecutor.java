@@ -4,7 +4,11 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -13,10 +17,21 @@ import java.util.Set;
 public class Prosecutor {
     private String emailAddress;
     private Set<String> authorityCodes;
+    private final Map<String, String> authorityCodeByUrnPrefix;
 
     public Prosecutor(final String emailAddress, final Set<String> authorityCodes) {
         this.authorityCodes = new HashSet<>(authorityCodes);
         this.emailAddress = emailAddress;
+        this.authorityCodeByUrnPrefix = indexByUrnPrefix(this.authorityCodes);
+    }
+
+    /**
+     * @param urnPrefix the police force prefix of a case URN, the first two characters
+     * @return the authority code of this prosecutor whose second and third characters match the
+     * prefix, ignoring case
+     */
+    public Optional<String> findAuthorityCodeForUrnPrefix(final String urnPrefix) {
+        return Optional.ofNullable(authorityCodeByUrnPrefix.get(urnPrefix.toUpperCase(Locale.ROOT)));
     }
 
 
@@ -31,4 +46,14 @@ public class Prosecutor {
     public void setEmailAddress(final String emailAddress) {
         this.emailAddress = emailAddress;
     }
+
+    private static Map<String, String> indexByUrnPrefix(final Set<String> authorityCodes) {
+        final Map<String, String> authorityCodeByUrnPrefix = new HashMap<>();
+        for (final String authorityCode : authorityCodes) {
+            if (authorityCode.length() >= 3) {
+                authorityCodeByUrnPrefix.putIfAbsent(authorityCode.substring(1, 3).toUpperCase(Locale.ROOT), authorityCode);
+            }
+        }
+        return authorityCodeByUrnPrefix;
+    }
 }
@@ -0,0 +1,102 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Locale.ROOT;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Immutable copy of the reference data prosecutor directory, indexed by email domain and OU code.
+ * A directory is never changed once built; a refresh builds a new one and swaps it in.
+ */
+public final class ProsecutorDirectory {
+
+    public static final ProsecutorDirectory EMPTY = new ProsecutorDirectory(emptyMap(), emptyMap(), 0L);
+
+    private static final String OUCODE = "oucode";
+    private static final String EMAIL_DOMAIN = "emailDomain";
+    private static final String EMAIL_DOMAINS = "emailDomains";
+
+    private final Map<String, JsonArray> prosecutorsByEmailDomain;
+    private final Map<String, JsonObject> prosecutorByOuCode;
+    private final long loadedAt;
+
+    private ProsecutorDirectory(final Map<String, JsonArray> prosecutorsByEmailDomain, final Map<String, JsonObject> prosecutorByOuCode,
+                                final long loadedAt) {
+        this.prosecutorsByEmailDomain = prosecutorsByEmailDomain;
+        this.prosecutorByOuCode = prosecutorByOuCode;
+        this.loadedAt = loadedAt;
+    }
+
+    public static ProsecutorDirectory of(final JsonArray prosecutors, final long loadedAt) {
+        final Map<String, List<JsonObject>> byEmailDomain = new HashMap<>();
+        final Map<String, JsonObject> byOuCode = new HashMap<>();
+
+        for (final JsonValue jsonValue : prosecutors) {
+            if (jsonValue.getValueType() != JsonValue.ValueType.OBJECT) {
+                continue;
+            }
+            final JsonObject prosecutor = (JsonObject) jsonValue;
+            for (final String emailDomain : emailDomainsOf(prosecutor)) {
+                byEmailDomain.computeIfAbsent(emailDomain.toLowerCase(ROOT), domain -> new ArrayList<>()).add(prosecutor);
+            }
+            final String oucode = prosecutor.getString(OUCODE, null);
+            if (oucode != null && !oucode.isEmpty()) {
+                byOuCode.put(oucode, prosecutor);
+            }
+        }
+
+        final Map<String, JsonArray> prosecutorsByEmailDomain = new HashMap<>();
+        byEmailDomain.forEach((emailDomain, domainProsecutors) -> {
+            final JsonArrayBuilder arrayBuilder = createArrayBuilder();
+            domainProsecutors.forEach(arrayBuilder::add);
+            prosecutorsByEmailDomain.put(emailDomain, arrayBuilder.build());
+        });
+
+        return new ProsecutorDirectory(prosecutorsByEmailDomain, byOuCode, loadedAt);
+    }
+
+    public Optional<JsonArray> findProsecutorsByEmailDomain(final String emailDomain) {
+        return Optional.ofNullable(prosecutorsByEmailDomain.get(emailDomain.toLowerCase(ROOT)));
+    }
+
+    public Optional<JsonObject> findProsecutorByOuCode(final String oucode) {
+        return Optional.ofNullable(prosecutorByOuCode.get(oucode));
+    }
+
+    public int size() {
+        return prosecutorByOuCode.size();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    private static List<String> emailDomainsOf(final JsonObject prosecutor) {
+        final List<String> emailDomains = new ArrayList<>();
+        final String emailDomain = prosecutor.getString(EMAIL_DOMAIN, null);
+        if (emailDomain != null && !emailDomain.isEmpty()) {
+            emailDomains.add(emailDomain);
+        }
+        final JsonValue domains = prosecutor.get(EMAIL_DOMAINS);
+        if (domains != null && domains.getValueType() == JsonValue.ValueType.ARRAY) {
+            for (final JsonValue domain : (JsonArray) domains) {
+                if (domain.getValueType() == JsonValue.ValueType.STRING) {
+                    emailDomains.add(((JsonString) domain).getString());
+                }
+            }
+        }
+        return emailDomains;
+    }
+}
@@ -0,0 +1,156 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.json.JsonArray;
+
+/**
+ * Keeps the {@link ProsecutorDirectory} of the host process current. The first lookup starts a
+ * daemon thread that loads the whole directory straight away and again every
+ * {@code refreshIntervalMillis}; each load builds a new directory and swaps it in atomically, so
+ * lookups never see a half built one. A failed load keeps the previous directory. Until the
+ * first load completes every lookup is a miss and the caller falls back to a live query. A
+ * refresh interval of zero or less switches the snapshot off.
+ */
+public class ProsecutorDirectorySnapshot {
+
+    private final Supplier<Optional<JsonArray>> directoryLoader;
+    private final long refreshIntervalMillis;
+    private final AtomicReference<ProsecutorDirectory> directory = new AtomicReference<>(ProsecutorDirectory.EMPTY);
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicReference<String> lastRefreshFailure = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    public ProsecutorDirectorySnapshot(final Supplier<Optional<JsonArray>> directoryLoader, final long refreshIntervalMillis) {
+        this.directoryLoader = directoryLoader;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public <T> Optional<T> lookup(final Function<ProsecutorDirectory, Optional<T>> lookup) {
+        startRefreshing();
+        final Optional<T> result = lookup.apply(directory.get());
+        if (result.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Loads the directory and swaps it in.
+     *
+     * @return whether a new directory was swapped in
+     */
+    public boolean refresh() {
+        try {
+            final Optional<JsonArray> prosecutors = directoryLoader.get();
+            if (!prosecutors.isPresent()) {
+                refreshFailures.increment();
+                lastRefreshFailure.set("Prosecutor directory not found");
+                return false;
+            }
+            directory.set(ProsecutorDirectory.of(prosecutors.get(), currentTimeMillis()));
+            refreshes.increment();
+            return true;
+        } catch (final RuntimeException e) {
+            refreshFailures.increment();
+            lastRefreshFailure.set(e.getClass().getSimpleName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public ProsecutorDirectory getDirectory() {
+        return directory.get();
+    }
+
+    public SnapshotStatistics getStatistics() {
+        final ProsecutorDirectory current = directory.get();
+        return new SnapshotStatistics(current.size(), current.getLoadedAt(), hits.sum(), misses.sum(), refreshes.sum(),
+                refreshFailures.sum(), lastRefreshFailure.get());
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected void startRefreshing() {
+        if (refreshIntervalMillis > 0 && started.compareAndSet(false, true)) {
+            final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "prosecutor-directory-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMillis, MILLISECONDS);
+        }
+    }
+
+    public static class SnapshotStatistics {
+
+        private final int prosecutors;
+        private final long loadedAt;
+        private final long hits;
+        private final long misses;
+        private final long refreshes;
+        private final long refreshFailures;
+        private final String lastRefreshFailure;
+
+        SnapshotStatistics(final int prosecutors, final long loadedAt, final long hits, final long misses, final long refreshes,
+                           final long refreshFailures, final String lastRefreshFailure) {
+            this.prosecutors = prosecutors;
+            this.loadedAt = loadedAt;
+            this.hits = hits;
+            this.misses = misses;
+            this.refreshes = refreshes;
+            this.refreshFailures = refreshFailures;
+            this.lastRefreshFailure = lastRefreshFailure;
+        }
+
+        public int getProsecutors() {
+            return prosecutors;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getRefreshes() {
+            return refreshes;
+        }
+
+        public long getRefreshFailures() {
+            return refreshFailures;
+        }
+
+        public String getLastRefreshFailure() {
+            return lastRefreshFailure;
+        }
+
+        @Override
+        public String toString() {
+            return "SnapshotStatistics(prosecutors=" + prosecutors + ", loadedAt=" + loadedAt + ", hits=" + hits + ", misses=" + misses
+                    + ", refreshes=" + refreshes + ", refreshFailures=" + refreshFailures + ", lastRefreshFailure=" + lastRefreshFailure + ")";
+        }
+    }
+}
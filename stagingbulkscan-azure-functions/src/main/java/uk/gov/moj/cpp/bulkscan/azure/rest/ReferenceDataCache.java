@@ -0,0 +1,215 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size bounded, least recently used cache of reference data lookups. Found values live for
+ * {@code timeToLiveMillis} and lookups that found nothing, an empty {@link Optional}, for the
+ * usually shorter {@code negativeTimeToLiveMillis}. Concurrent misses on the same key share a
+ * single load, and a failed load is handed to every waiting caller without being cached.
+ */
+public class ReferenceDataCache<V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final long negativeTimeToLiveMillis;
+    private final Map<String, CachedValue<V>> entries;
+    private final ConcurrentMap<String, CompletableFuture<Optional<V>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ReferenceDataCache(final String name, final int maxEntries, final long timeToLiveMillis, final long negativeTimeToLiveMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.negativeTimeToLiveMillis = negativeTimeToLiveMillis;
+        this.entries = new LinkedHashMap<String, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedValue<V>> eldest) {
+                final boolean evict = size() > ReferenceDataCache.this.maxEntries;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    public Optional<V> get(final String key, final Function<String, Optional<V>> loader) {
+        final CachedValue<V> cachedValue = lookup(key);
+        if (cachedValue != null) {
+            return cachedValue.value;
+        }
+
+        final CompletableFuture<Optional<V>> load = new CompletableFuture<>();
+        final CompletableFuture<Optional<V>> existingLoad = inFlight.putIfAbsent(key, load);
+        if (existingLoad != null) {
+            coalesced.increment();
+            return await(existingLoad);
+        }
+
+        try {
+            final CachedValue<V> loadedMeanwhile = lookup(key);
+            if (loadedMeanwhile != null) {
+                load.complete(loadedMeanwhile.value);
+                return loadedMeanwhile.value;
+            }
+
+            misses.increment();
+            final Optional<V> value = loader.apply(key);
+            store(key, value);
+            load.complete(value);
+            return value;
+        } catch (final RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        final int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStatistics(name, size, hits.sum(), negativeHits.sum(), misses.sum(), coalesced.sum(), evictions.sum());
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private CachedValue<V> lookup(final String key) {
+        synchronized (entries) {
+            final CachedValue<V> cachedValue = entries.get(key);
+            if (cachedValue == null) {
+                return null;
+            }
+            if (cachedValue.expiresAt <= currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            hits.increment();
+            if (!cachedValue.value.isPresent()) {
+                negativeHits.increment();
+            }
+            return cachedValue;
+        }
+    }
+
+    private void store(final String key, final Optional<V> value) {
+        final long timeToLive = value.isPresent() ? timeToLiveMillis : negativeTimeToLiveMillis;
+        if (timeToLive <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new CachedValue<>(value, currentTimeMillis() + timeToLive));
+        }
+    }
+
+    private static <V> Optional<V> await(final CompletableFuture<Optional<V>> load) {
+        try {
+            return load.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class CachedValue<V> {
+
+        private final Optional<V> value;
+        private final long expiresAt;
+
+        CachedValue(final Optional<V> value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class CacheStatistics {
+
+        private final String name;
+        private final int size;
+        private final long hits;
+        private final long negativeHits;
+        private final long misses;
+        private final long coalesced;
+        private final long evictions;
+
+        CacheStatistics(final String name, final int size, final long hits, final long negativeHits, final long misses,
+                        final long coalesced, final long evictions) {
+            this.name = name;
+            this.size = size;
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.coalesced = coalesced;
+            this.evictions = evictions;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getNegativeHits() {
+            return negativeHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the round trips to reference data the cache answered, either from a cached
+         * value or by sharing a load already in flight
+         */
+        public long getSavedRoundTrips() {
+            return hits + coalesced;
+        }
+
+        public double getHitRatio() {
+            final long lookups = hits + coalesced + misses;
+            return lookups == 0 ? 0d : (double) getSavedRoundTrips() / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStatistics(name=" + name + ", size=" + size + ", hits=" + hits + ", negativeHits=" + negativeHits
+                    + ", misses=" + misses + ", coalesced=" + coalesced + ", evictions=" + evictions
+                    + ", hitRatio=" + getHitRatio() + ")";
+        }
+    }
+}
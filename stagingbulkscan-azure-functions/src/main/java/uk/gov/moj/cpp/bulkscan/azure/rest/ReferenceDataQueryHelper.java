@@ -1,20 +1,31 @@
 package uk.gov.moj.cpp.bulkscan.azure.rest;
 
 import uk.gov.justice.services.common.converter.StringToJsonObjectConverter;
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import static java.lang.System.getenv;
+import static java.util.Arrays.asList;
 import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
 
 public class ReferenceDataQueryHelper {
 
+    private static final Logger LOGGER = Logger.getLogger(ReferenceDataQueryHelper.class.getName());
+
     private static final StringToJsonObjectConverter stringToJsonObjectConverter = new StringToJsonObjectConverter();
     private final ClientWrapper clientWrapper = new ClientWrapper();
 
@@ -24,50 +35,111 @@ public class ReferenceDataQueryHelper {
     public static final String EMAIL_DOMAIN = "emailDomain";
     public static final String OUCODE = "oucode";
 
+    private static final String CACHE_MAX_ENTRIES = "reference_data_cache_max_entries";
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 5000;
+    private static final String CACHE_TTL_SECONDS = "reference_data_cache_ttl_seconds";
+    private static final int DEFAULT_CACHE_TTL_SECONDS = 600;
+    private static final String CACHE_NEGATIVE_TTL_SECONDS = "reference_data_cache_negative_ttl_seconds";
+    private static final int DEFAULT_CACHE_NEGATIVE_TTL_SECONDS = 60;
+
+    private static final String DIRECTORY_REFRESH_SECONDS = "prosecutor_directory_refresh_seconds";
+    private static final int DEFAULT_DIRECTORY_REFRESH_SECONDS = 900;
+    private static final String PROSECUTORS = "prosecutors";
+    private static final long STATISTICS_LOG_INTERVAL = 500;
+
+    private static final ReferenceDataCache<JsonObject> OU_CODE_BY_PTI_URN = newCache("ouCodeByPtiUrn");
+    private static final ReferenceDataCache<JsonObject> PROSECUTOR_BY_OU_CODE = newCache("prosecutorByOuCode");
+    private static final ReferenceDataCache<JsonArray> PROSECUTORS_BY_EMAIL_DOMAIN = newCache("prosecutorsByEmailDomain");
+    private static final ProsecutorDirectorySnapshot PROSECUTOR_DIRECTORY = new ProsecutorDirectorySnapshot(
+            () -> new ReferenceDataQueryHelper().queryProsecutorDirectory(), setting(DIRECTORY_REFRESH_SECONDS, DEFAULT_DIRECTORY_REFRESH_SECONDS) * 1000L);
+    private static final AtomicLong LOOKUPS = new AtomicLong();
+
     public JsonObject getOuCodeByPtiUrn(final String ptiUrn) {
-        final Client client = getClient();
-        final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
-        headers.add(ACCEPT, "application/vnd.referencedata.query.prosecutor.by.ptiurn+json");
-        headers.add(CJSCPPUID, getCPPUID());
-        final Response response = client.target(getReferenceDataPtiApiUrl()).queryParam("ptiurn", ptiUrn).request().headers(headers).get();
-        if (response.getStatus() == 404) {
-            return createObjectBuilder().add(OUCODE, EMPTY).build();
-        }
-        final String responseStr = response.readEntity(String.class);
-        return EMPTY.equals(responseStr) ? createObjectBuilder().add(OUCODE, EMPTY).build() : stringToJsonObjectConverter.convert(responseStr);
+        lookupStarted();
+        return OU_CODE_BY_PTI_URN.get(ptiUrn, this::queryOuCodeByPtiUrn)
+                .orElseGet(() -> createObjectBuilder().add(OUCODE, EMPTY).build());
     }
 
     public JsonObject getProsecutorsByOuCode(final String oucode) {
-        final Client client = getClient();
-        final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
-        headers.add(ACCEPT, "application/vnd.referencedata.query.get.prosecutor+json");
-        headers.add(CJSCPPUID, getCPPUID());
-        final Response response = client.target(getReferenceDataProsecutorApiUrl()).queryParam(OUCODE, oucode).request().headers(headers).get();
-        if (response.getStatus() == 404) {
-            return createObjectBuilder().add(OUCODE, EMPTY).build();
-        }
-        final String responseStr = response.readEntity(String.class);
-        return EMPTY.equals(responseStr) ? createObjectBuilder().add("shortName", EMPTY).build() : stringToJsonObjectConverter.convert(responseStr);
+        lookupStarted();
+        return PROSECUTOR_DIRECTORY.lookup(directory -> directory.findProsecutorByOuCode(oucode))
+                .orElseGet(() -> PROSECUTOR_BY_OU_CODE.get(oucode, this::queryProsecutorsByOuCode)
+                        .orElseGet(() -> createObjectBuilder().add(OUCODE, EMPTY).build()));
     }
 
     public JsonArray getProsecutorByEmailDomain(final String email) {
-        final Client client = getClient();
         final String emailDomain = email.substring(email.indexOf('@') + 1);
+        lookupStarted();
+        return PROSECUTOR_DIRECTORY.lookup(directory -> directory.findProsecutorsByEmailDomain(emailDomain))
+                .orElseGet(() -> PROSECUTORS_BY_EMAIL_DOMAIN.get(emailDomain, this::queryProsecutorByEmailDomain)
+                        .orElseGet(() -> createArrayBuilder().build()));
+    }
+
+    /**
+     * @return hit, miss and saved round trip counts of the reference data lookups shared by
+     * every helper of the host process
+     */
+    public static List<ReferenceDataCache.CacheStatistics> getCacheStatistics() {
+        return asList(OU_CODE_BY_PTI_URN.getStatistics(), PROSECUTOR_BY_OU_CODE.getStatistics(), PROSECUTORS_BY_EMAIL_DOMAIN.getStatistics());
+    }
+
+    /**
+     * @return size, age, hit and refresh counts of the prosecutor directory snapshot shared by
+     * every helper of the host process
+     */
+    public static ProsecutorDirectorySnapshot.SnapshotStatistics getProsecutorDirectoryStatistics() {
+        return PROSECUTOR_DIRECTORY.getStatistics();
+    }
+
+    private static void lookupStarted() {
+        if (LOOKUPS.incrementAndGet() % STATISTICS_LOG_INTERVAL == 0) {
+            LOGGER.info(() -> getCacheStatistics() + " " + getProsecutorDirectoryStatistics());
+        }
+    }
+
+    private Optional<JsonArray> queryProsecutorDirectory() {
+        return query(getClient().target(getReferenceDataProsecutorApiUrl()), "application/vnd.referencedata.query.prosecutors+json")
+                .map(prosecutors -> prosecutors.getJsonArray(PROSECUTORS));
+    }
+
+    private Optional<JsonObject> queryOuCodeByPtiUrn(final String ptiUrn) {
+        return query(getClient().target(getReferenceDataPtiApiUrl()).queryParam("ptiurn", ptiUrn),
+                "application/vnd.referencedata.query.prosecutor.by.ptiurn+json");
+    }
+
+    private Optional<JsonObject> queryProsecutorsByOuCode(final String oucode) {
+        return query(getClient().target(getReferenceDataProsecutorApiUrl()).queryParam(OUCODE, oucode),
+                "application/vnd.referencedata.query.get.prosecutor+json");
+    }
+
+    private Optional<JsonArray> queryProsecutorByEmailDomain(final String emailDomain) {
+        return query(getClient().target(getReferenceDataProsecutorApiUrl()).queryParam(EMAIL_DOMAIN, emailDomain),
+                "application/vnd.referencedata.query.get.prosecutorEmailDomain+json")
+                .map(prosecutors -> prosecutors.getJsonArray(PROSECUTORS))
+                .filter(prosecutors -> !prosecutors.isEmpty());
+    }
+
+    /**
+     * @return the body of a successful response, or empty when reference data has no record, a
+     * 404 or an empty body, so that it is only cached for the negative time to live
+     * @throws BulkScanProcessorException for any other status, so that the failure is not cached
+     */
+    private Optional<JsonObject> query(final WebTarget target, final String mediaType) {
         final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
-        headers.add(ACCEPT, "application/vnd.referencedata.query.get.prosecutorEmailDomain+json");
+        headers.add(ACCEPT, mediaType);
         headers.add(CJSCPPUID, getCPPUID());
-        final Response response = client.target(getReferenceDataProsecutorApiUrl()).queryParam(EMAIL_DOMAIN, emailDomain).request().headers(headers).get();
-        if (response.getStatus() == 404) {
-            return createArrayBuilder().build();
-        }
-        final String responseStr = response.readEntity(String.class);
-        final JsonObject responseJsonObject = stringToJsonObjectConverter.convert(responseStr);
-        final JsonArray prosecutors = responseJsonObject.getJsonArray("prosecutors");
-        if (!prosecutors.isEmpty() && !EMPTY.equals(responseStr)) {
-            return responseJsonObject.getJsonArray("prosecutors");
-        } else {
-            final JsonObject jsonObject = createObjectBuilder().add(EMAIL_DOMAIN, EMPTY).build();
-            return createArrayBuilder().add(jsonObject).build();
+        final Response response = target.request().headers(headers).get();
+        try {
+            if (response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return Optional.empty();
+            }
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                throw new BulkScanProcessorException("Reference data query " + mediaType + " failed with status " + response.getStatus());
+            }
+            final String responseStr = response.readEntity(String.class);
+            return EMPTY.equals(responseStr) ? Optional.empty() : Optional.of(stringToJsonObjectConverter.convert(responseStr));
+        } finally {
+            response.close();
         }
     }
 
@@ -75,15 +147,27 @@ public class ReferenceDataQueryHelper {
         return clientWrapper.getClient();
     }
 
-    private String getReferenceDataPtiApiUrl() {
+    public String getReferenceDataPtiApiUrl() {
         return getenv("reference_data_query_api_pti_urn_url");
     }
 
-    private String getReferenceDataProsecutorApiUrl() {
+    public String getReferenceDataProsecutorApiUrl() {
         return getenv("reference_data_query_api_prosecutor_url");
     }
 
     private String getCPPUID() {
         return getenv("BS-CPPUID");
     }
+
+    private static <V> ReferenceDataCache<V> newCache(final String name) {
+        return new ReferenceDataCache<>(name,
+                setting(CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_ENTRIES),
+                setting(CACHE_TTL_SECONDS, DEFAULT_CACHE_TTL_SECONDS) * 1000L,
+                setting(CACHE_NEGATIVE_TTL_SECONDS, DEFAULT_CACHE_NEGATIVE_TTL_SECONDS) * 1000L);
+    }
+
+    private static int setting(final String name, final int defaultValue) {
+        final String value = getenv(name);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+    }
 }
@@ -9,17 +9,16 @@ import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilderW
 import static uk.gov.moj.cpp.bulkscan.azure.rest.AssociatedScanDocument.AssociatedScanDocumentBuilder;
 import static uk.gov.moj.cpp.bulkscan.azure.rest.DocumentMapper.getDocumentMapper;
 
-import uk.gov.justice.services.common.converter.StringToJsonObjectConverter;
-
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
@@ -52,7 +51,6 @@ public class StagingBulkScanCommandHelper {
     private static final String NOTES = "notes";
     private static final String SCANNING_DATE = "scanning_date";
     private static final String ASN = "asn";
-    private static final String OUCODE = "oucode";
     private static final String OCR_DATA = "ocr_data";
     private static final String SCAN_DOCUMENT_ID = "scanDocumentId";
     private static final String ENVELOPE_CLASSIFICATION = "envelope_classification";
@@ -63,6 +61,9 @@ public class StagingBulkScanCommandHelper {
     private static final String ZIP_FILE_NAME = "zip_file_name";
     private static final String DELIVERY_DATE = "delivery_date";
     private static final String SCAN_ENVELOPE_ID = "scanEnvelopeId";
+    private static final String REFERENCE_DATA_LOOKUP_PARALLELISM = "reference_data_lookup_parallelism";
+    private static final int DEFAULT_REFERENCE_DATA_LOOKUP_PARALLELISM = 8;
+    private static final ExecutorService REFERENCE_DATA_LOOKUPS = newReferenceDataLookupExecutor();
     private final ReferenceDataQueryHelper referenceDataQueryHelper;
     private final ExecutionContext context;
     private final ClientWrapper clientWrapper = new ClientWrapper();
@@ -81,7 +82,9 @@ public class StagingBulkScanCommandHelper {
         headers.add("Content-type", "application/json");
         headers.add("CJSCPPUID", getCPPUID());
         final Response response = client.target(getBulkScanAPIUrl()).request().headers(headers).post(entity);
-        return enrichedEnvelopeBuilder.add("responseCode", response.getStatus()).build();
+        final int responseCode = response.getStatus();
+        response.close();
+        return enrichedEnvelopeBuilder.add("responseCode", responseCode).build();
     }
 
     private ProviderPayload convertPayload(final JsonObject payload, final JsonObjectBuilder envelopeBuilder) {
@@ -99,10 +102,11 @@ public class StagingBulkScanCommandHelper {
         final String deliveryDate = payload.getString(DELIVERY_DATE, EMPTY);
 
         envelopeBuilder.add(SCAN_ENVELOPE_ID, scanEnvelopeId.toString());
+        final EnvelopeReferenceData referenceData = resolveReferenceData(jsonObjects);
         final JsonArrayBuilder arrayBuilder = createArrayBuilder();
         jsonObjects.forEach(json -> {
             final JsonObjectBuilder document = createObjectBuilder();
-            associatedScanDocuments.add(buildAssociatedScanDocument(deliveryDate, json, document));
+            associatedScanDocuments.add(buildAssociatedScanDocument(deliveryDate, json, document, referenceData));
             arrayBuilder.add(document);
         });
         envelopeBuilder.add(SCANNABLE_ITEMS, arrayBuilder);
@@ -121,7 +125,23 @@ public class StagingBulkScanCommandHelper {
         return payloadBuilder.createProviderPayload();
     }
 
-    private AssociatedScanDocument buildAssociatedScanDocument(final String deliveryDate, final JsonObject json, final JsonObjectBuilder documentBuilder) {
+    private EnvelopeReferenceData resolveReferenceData(final List<JsonObject> scannableItems) {
+        final Set<String> ptiUrns = new LinkedHashSet<>();
+        final Set<String> ouCodes = new LinkedHashSet<>();
+        scannableItems.forEach(json -> {
+            final String casePTIUrn = json.getString(CASE_PTIURN, EMPTY);
+            final String prosecutorId = json.getString(PROSECUTOR_ID, EMPTY);
+            if (isNoneBlank(casePTIUrn)) {
+                ptiUrns.add(casePTIUrn);
+            } else if (isNoneBlank(prosecutorId)) {
+                ouCodes.add(prosecutorId);
+            }
+        });
+        return EnvelopeReferenceData.resolve(ptiUrns, ouCodes, referenceDataQueryHelper, REFERENCE_DATA_LOOKUPS);
+    }
+
+    private AssociatedScanDocument buildAssociatedScanDocument(final String deliveryDate, final JsonObject json, final JsonObjectBuilder documentBuilder,
+                                                               final EnvelopeReferenceData referenceData) {
         final String caseUrn = json.getString(CASE_NUMBER, EMPTY);
         final String prosecutorId = json.getString(PROSECUTOR_ID, EMPTY);
         final String documentName = json.getString(DOCUMENT_NAME, EMPTY);
@@ -151,21 +171,21 @@ public class StagingBulkScanCommandHelper {
         setAsn(asn, associatedScanDocumentBuilder);
 
         if (isNoneBlank(casePTIUrn)) {
-            final String ouCode = referenceDataQueryHelper.getOuCodeByPtiUrn(casePTIUrn).getString(OUCODE);
+            final String ouCode = referenceData.getOuCode(casePTIUrn);
             if (!ouCode.isEmpty()) {
-                final String shortName = referenceDataQueryHelper.getProsecutorsByOuCode(ouCode).getString(SHORT_NAME);
+                final String shortName = referenceData.getProsecutor(ouCode).getString(SHORT_NAME, EMPTY);
                 associatedScanDocumentBuilder.withProsecutorAuthorityId(ouCode);
                 associatedScanDocumentBuilder.withProsecutorName(shortName);
             }
         } else if (isNoneBlank(prosecutorId)) {
-            final JsonObject jsonObject = referenceDataQueryHelper.getProsecutorsByOuCode(prosecutorId);
+            final JsonObject jsonObject = referenceData.getProsecutor(prosecutorId);
             if(Objects.nonNull(jsonObject) && jsonObject.containsKey(SHORT_NAME)) {
                 final String shortName = jsonObject.getString(SHORT_NAME);
                 associatedScanDocumentBuilder.withProsecutorAuthorityId(prosecutorId);
                 associatedScanDocumentBuilder.withProsecutorName(shortName);
             }
         }
-        final DocumentHelper documentHelper = new DocumentHelper(new ReferenceDataQueryHelper());
+        final DocumentHelper documentHelper = new DocumentHelper(referenceDataQueryHelper);
         final String status = documentHelper.determineDocumentStatus(caseUrn, casePTIUrn, prosecutorId, documentName);
         associatedScanDocumentBuilder.withStatus(status);
         documentBuilder.add("status", status);
@@ -180,44 +200,24 @@ public class StagingBulkScanCommandHelper {
     private void buildAdditionalDetails(final JsonObject json, final AssociatedScanDocumentBuilder builder) {
         final String ocrData = json.getString(OCR_DATA, null);
         if (isNoneBlank(ocrData)) {
-            final String ocrContent = new String(Base64.getDecoder().decode(ocrData));
-            context.getLogger().info(String.format("ocr content -->%s", ocrContent));
-            final Map<String, String> metadataMap = buildMetadata(ocrContent);
+            final String documentName = json.getString(DOCUMENT_NAME);
 
-            if (getDocumentMapper().getSinglePlea().equals(json.getString(DOCUMENT_NAME)) || getDocumentMapper().getMultiplePlea().equals(json.getString(DOCUMENT_NAME))) {
+            if (getDocumentMapper().getSinglePlea().equals(documentName) || getDocumentMapper().getMultiplePlea().equals(documentName)) {
+                final Map<String, String> metadataMap = OcrFieldDecoder.decode(ocrData, PleaBuilder.FIELDS);
+                context.getLogger().info(String.format("ocr plea fields read -->%s", metadataMap.size()));
                 final PleaBuilder pleaBuilder = new PleaBuilder();
                 builder.withPlea(pleaBuilder.buildPlea(metadataMap));
             }
 
-            if (getDocumentMapper().getMc100().equals(json.getString(DOCUMENT_NAME))) {
+            if (getDocumentMapper().getMc100().equals(documentName)) {
+                final Map<String, String> metadataMap = OcrFieldDecoder.decode(ocrData, Mc100Builder.FIELDS);
+                context.getLogger().info(String.format("ocr mc100 fields read -->%s", metadataMap.size()));
                 final Mc100Builder mc100Builder = new Mc100Builder();
                 builder.withMc100s(mc100Builder.buildMC100(metadataMap));
             }
         }
     }
 
-    private List<MetadataDetails> buildMetadataDetails(final JsonArray jsonArray) {
-        return IntStream.range(0, jsonArray.size())
-                .mapToObj(jsonArray::getJsonObject)
-                .map(this::buildMetadataDetail).collect(Collectors.toList());
-    }
-
-    private MetadataDetails buildMetadataDetail(final JsonObject jsonObject) {
-        return MetadataDetails.metadataDetails()
-                .withMetadata_field_name(jsonObject.getString("metadata_field_name"))
-                .withMetadata_field_value(jsonObject.getString("metadata_field_value"))
-                .build();
-    }
-
-    private Map<String, String> buildMetadata(final String ocrContent) {
-        final StringToJsonObjectConverter stringToJsonObjectConverter = new StringToJsonObjectConverter();
-        final JsonObject jsonObject = stringToJsonObjectConverter.convert(ocrContent);
-        final JsonArray metadataFiles = jsonObject.getJsonArray("Metadata_file");
-        final OcrMetadata ocrMetadata = OcrMetadata.ocrMetadata().withMetadata_file(buildMetadataDetails(metadataFiles)).build();
-        final List<MetadataDetails> metadataFile = ocrMetadata.getMetadata_file();
-        return metadataFile.stream().collect(Collectors.toMap(MetadataDetails::getMetadata_field_name, MetadataDetails::getMetadata_field_value));
-    }
-
     private void enrichDocumentBuilder(JsonObject json, JsonObjectBuilder documentBuilder, final UUID scanDocumentId) {
         documentBuilder.add(SCAN_DOCUMENT_ID, scanDocumentId.toString());
         if (json.containsKey(CASE_NUMBER)) {
@@ -366,4 +366,13 @@ public class StagingBulkScanCommandHelper {
     public String getBulkScanAPIContentType() {
         return getenv("register_envelope_content_type");
     }
+
+    private static ExecutorService newReferenceDataLookupExecutor() {
+        final String parallelism = getenv(REFERENCE_DATA_LOOKUP_PARALLELISM);
+        return Executors.newFixedThreadPool(Objects.isNull(parallelism) ? DEFAULT_REFERENCE_DATA_LOOKUP_PARALLELISM : Integer.parseInt(parallelism), runnable -> {
+            final Thread thread = new Thread(runnable, "reference-data-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
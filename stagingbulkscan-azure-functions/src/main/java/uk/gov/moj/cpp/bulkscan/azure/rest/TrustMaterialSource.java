@@ -0,0 +1,66 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.lang.System.getenv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Objects;
+
+/**
+ * Source of the key store the REST clients load their trust material from. The function app
+ * on Windows reads the certificates of the {@code Windows-MY} store, other hosts can point
+ * to a key store file or use the trust store of the JVM.
+ */
+@FunctionalInterface
+public interface TrustMaterialSource {
+
+    String WINDOWS_MY = "Windows-MY";
+    String JVM_DEFAULT = "default";
+
+    /**
+     * @return the key store to trust, or null to use the trust store of the JVM
+     */
+    KeyStore load() throws IOException, GeneralSecurityException;
+
+    static TrustMaterialSource windowsMy() {
+        return () -> {
+            final KeyStore keyStore = KeyStore.getInstance(WINDOWS_MY);
+            keyStore.load(null, null);
+            return keyStore;
+        };
+    }
+
+    static TrustMaterialSource keyStoreFile(final String path, final String type, final String password) {
+        return () -> {
+            final KeyStore keyStore = KeyStore.getInstance(type);
+            try (InputStream inputStream = Files.newInputStream(Paths.get(path))) {
+                keyStore.load(inputStream, Objects.isNull(password) ? null : password.toCharArray());
+            }
+            return keyStore;
+        };
+    }
+
+    static TrustMaterialSource jvmDefault() {
+        return () -> null;
+    }
+
+    /**
+     * Chosen by {@code client_trust_store_type}: {@code Windows-MY} when it is not set,
+     * {@code default} for the trust store of the JVM, or the type of the key store file at
+     * {@code client_trust_store_path}.
+     */
+    static TrustMaterialSource fromEnvironment() {
+        final String type = getenv("client_trust_store_type");
+        if (Objects.isNull(type) || WINDOWS_MY.equals(type)) {
+            return windowsMy();
+        }
+        if (JVM_DEFAULT.equals(type)) {
+            return jvmDefault();
+        }
+        return keyStoreFile(getenv("client_trust_store_path"), type, getenv("client_trust_store_password"));
+    }
+}
@@ -1,49 +1,318 @@
 package uk.gov.moj.cpp.bulkscan.azure.storage;
 
+import static java.lang.System.getenv;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+
 import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobClientSettings;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreException;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreRegistry;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.CloudBlobStore;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
-import java.security.InvalidKeyException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.StorageException;
-import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.blob.BlobOutputStream;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.queue.CloudQueue;
 
+/**
+ * A container of the function app. The storage accounts, blob clients and container references
+ * are created once for the host process and shared, with the retry policy and concurrency of
+ * the {@code storage_max_retries}, {@code storage_retry_backoff_millis} and
+ * {@code storage_concurrent_request_count} settings.
+ */
 public class BlobCloudStorage {
 
     private static final String CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE = "Cannot connect to storage to upload file ";
+    private static final String CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE = "Cannot connect to storage to read file ";
+
+    private static final BlobStoreRegistry BLOB_STORE_REGISTRY = new BlobStoreRegistry(new BlobClientSettings(
+            setting("storage_max_retries", BlobClientSettings.DEFAULT_MAX_RETRIES),
+            setting("storage_retry_backoff_millis", BlobClientSettings.DEFAULT_RETRY_BACKOFF_MILLIS),
+            setting("storage_concurrent_request_count", BlobClientSettings.DEFAULT_CONCURRENT_REQUEST_COUNT)));
+    private static final ConcurrentMap<List<String>, BlobCloudStorage> BLOB_CLOUD_STORAGES = new ConcurrentHashMap<>();
 
-    private CloudBlobContainer containerReference;
+    private final CloudBlobStore blobStore;
+    private final CloudBlobContainer containerReference;
 
     public BlobCloudStorage(final String connectionString, final String containerReference) {
         try {
-            final CloudStorageAccount cloudStorageAccount = CloudStorageAccount.parse(connectionString);
-            final CloudBlobClient cloudBlobClient = cloudStorageAccount.createCloudBlobClient();
-            this.containerReference = cloudBlobClient.getContainerReference(containerReference);
-        } catch (URISyntaxException | StorageException | InvalidKeyException e) {
+            this.blobStore = BLOB_STORE_REGISTRY.getBlobStore(connectionString, containerReference);
+            this.containerReference = blobStore.getContainer();
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    /**
+     * @return the storage of the container shared by the whole host process
+     */
+    public static BlobCloudStorage forContainer(final String connectionString, final String containerReference) {
+        return BLOB_CLOUD_STORAGES.computeIfAbsent(asList(connectionString, containerReference),
+                key -> new BlobCloudStorage(connectionString, containerReference));
+    }
+
+    /**
+     * @return the storage of a container the function app owns, such as the ingest ledger,
+     * created the first time the host process uses it
+     */
+    public static BlobCloudStorage forCreatedContainer(final String connectionString, final String containerReference) {
+        try {
+            BLOB_STORE_REGISTRY.getCreatedBlobStore(connectionString, containerReference);
+        } catch (BlobStoreException e) {
             throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
         }
+        return forContainer(connectionString, containerReference);
+    }
+
+    /**
+     * @return a queue the function app owns, created the first time the host process uses it
+     */
+    static CloudQueue createdQueue(final String connectionString, final String queueReference) {
+        return BLOB_STORE_REGISTRY.getCreatedQueue(connectionString, queueReference);
+    }
+
+    /**
+     * @return the count and latency of the storage operations of the host process
+     */
+    public static String getStatistics() {
+        return BLOB_STORE_REGISTRY.getMetrics().getStatistics();
+    }
+
+    /**
+     * @return the most bytes of a document of the given size held in memory while it is uploaded
+     */
+    public long getUploadBufferBytes(final long sizeOfDocument) {
+        return blobStore.getUploadBufferBytes(sizeOfDocument);
     }
 
+    /**
+     * Uploads the document; a large document is staged as blocks uploaded in parallel.
+     */
     public void uploadToStorage(final InputStream documentContent, final Long sizeOfDocument, final String file) {
+        try {
+            blobStore.upload(file, documentContent, sizeOfDocument);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    /**
+     * Uploads the content the writer produces as it is written, one block at a time, so the
+     * content is never held in full. The blob is only committed once the writer has finished;
+     * if it fails, the blocks uploaded so far are left uncommitted and no blob is created.
+     */
+    public void uploadStream(final String file, final ContentWriter contentWriter) {
+        try {
+            final BlobOutputStream blobOutputStream = containerReference.getBlockBlobReference(file).openOutputStream();
+            contentWriter.writeTo(blobOutputStream);
+            blobOutputStream.close();
+        } catch (URISyntaxException | StorageException | IOException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    public long getBlobSize(final String file) {
+        try {
+            return blobStore.getSize(file);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE, e);
+        }
+    }
+
+    public InputStream openInputStream(final String file) {
+        try {
+            return containerReference.getBlockBlobReference(file).openInputStream();
+        } catch (URISyntaxException | StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE, e);
+        }
+    }
+
+    public Optional<String> downloadText(final String file) {
         try {
             final CloudBlockBlob blockBlobReference = containerReference.getBlockBlobReference(file);
-            blockBlobReference.upload(documentContent, sizeOfDocument);
+            if (!blockBlobReference.exists()) {
+                return Optional.empty();
+            }
+            return Optional.of(blockBlobReference.downloadText());
+        } catch (URISyntaxException | StorageException | IOException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE, e);
+        }
+    }
+
+    public void uploadText(final String file, final String content) {
+        try {
+            containerReference.getBlockBlobReference(file).uploadText(content);
         } catch (URISyntaxException | StorageException | IOException e) {
             throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
         }
     }
 
-    public void deleteFromStorage(final String fileToDelete) {
+    /**
+     * @return the text of the blob together with the ETag it was read at, for a later
+     * {@link #uploadTextIfUnchanged(String, String, String)}
+     */
+    public Optional<VersionedText> downloadVersionedText(final String file) {
+        try {
+            final CloudBlockBlob blockBlobReference = containerReference.getBlockBlobReference(file);
+            if (!blockBlobReference.exists()) {
+                return Optional.empty();
+            }
+            final String text = blockBlobReference.downloadText();
+            return Optional.of(new VersionedText(text, blockBlobReference.getProperties().getEtag()));
+        } catch (URISyntaxException | StorageException | IOException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE, e);
+        }
+    }
+
+    /**
+     * Replaces the text of the blob only if it still has the given ETag, or creates the blob only
+     * if it does not exist yet when the ETag is null.
+     *
+     * @return false when the blob was changed or created by someone else in the meantime
+     */
+    public boolean uploadTextIfUnchanged(final String file, final String content, final String eTag) {
+        try {
+            final AccessCondition accessCondition = eTag == null
+                    ? AccessCondition.generateIfNotExistsCondition()
+                    : AccessCondition.generateIfMatchCondition(eTag);
+            containerReference.getBlockBlobReference(file).uploadText(content, UTF_8.name(), accessCondition, null, null);
+            return true;
+        } catch (StorageException e) {
+            if (e.getHttpStatusCode() == HttpURLConnection.HTTP_PRECON_FAILED || e.getHttpStatusCode() == HttpURLConnection.HTTP_CONFLICT) {
+                return false;
+            }
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        } catch (URISyntaxException | IOException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    public Optional<Map<String, String>> getBlobMetadata(final String file) {
         try {
-            containerReference.getBlockBlobReference(fileToDelete).deleteIfExists();
+            final CloudBlockBlob blockBlobReference = containerReference.getBlockBlobReference(file);
+            if (!blockBlobReference.exists()) {
+                return Optional.empty();
+            }
+            blockBlobReference.downloadAttributes();
+            return Optional.of(blockBlobReference.getMetadata());
         } catch (URISyntaxException | StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_READ_FILE, e);
+        }
+    }
+
+    /**
+     * Writes an empty blob that only carries the given metadata.
+     */
+    public void uploadMetadata(final String file, final Map<String, String> metadata) {
+        try {
+            final CloudBlockBlob blockBlobReference = containerReference.getBlockBlobReference(file);
+            blockBlobReference.setMetadata(new HashMap<>(metadata));
+            blockBlobReference.uploadFromByteArray(new byte[0], 0, 0);
+        } catch (URISyntaxException | StorageException | IOException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    /**
+     * Copies a blob of this container server side, without downloading its content, and waits
+     * for the copy to complete.
+     *
+     * @return false when the source blob does not exist, nothing being copied
+     */
+    public boolean copyWithinStorage(final String sourceFile, final String targetFile) {
+        try {
+            blobStore.copyFrom(blobStore, sourceFile, targetFile);
+            return true;
+        } catch (BlobStoreException e) {
+            if (isNotFound(e)) {
+                return false;
+            }
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    /**
+     * Copies a blob of another container into this one server side, without downloading its
+     * content, and waits for the copy to complete.
+     */
+    public void copyFromStorage(final BlobCloudStorage sourceStorage, final String file) {
+        try {
+            blobStore.copyFrom(sourceStorage.blobStore, file, file);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    /**
+     * Deletes the blobs concurrently.
+     *
+     * @return the number of blobs that existed and were deleted
+     */
+    public int deleteAllFromStorage(final Collection<String> filesToDelete) {
+        try {
+            return blobStore.deleteAllIfExist(filesToDelete);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
+        }
+    }
+
+    public void deleteFromStorage(final String fileToDelete) {
+        try {
+            blobStore.deleteIfExists(fileToDelete);
+        } catch (BlobStoreException e) {
             throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_TO_UPLOAD_FILE, e);
         }
     }
 
+    private static boolean isNotFound(final BlobStoreException e) {
+        return e.getCause() instanceof StorageException
+                && ((StorageException) e.getCause()).getHttpStatusCode() == HttpURLConnection.HTTP_NOT_FOUND;
+    }
+
+    private static int setting(final String name, final int defaultValue) {
+        final String value = getenv(name);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static class VersionedText {
+
+        private final String text;
+        private final String eTag;
+
+        public VersionedText(final String text, final String eTag) {
+            this.text = text;
+            this.eTag = eTag;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
 }
@@ -0,0 +1,157 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createReader;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+
+/**
+ * Progress of the ingest of one envelope, kept as a small json blob
+ * {@code checkpoints/<zip file name>} so that a retried invocation resumes at the first step
+ * that did not complete: the envelope registration and, per pdf, its upload, its attachment
+ * to the case and its thumbnail request. The checkpoint is removed once the envelope is
+ * fully ingested.
+ *
+ * The progress is recorded by the upload workers concurrently. A snapshot is taken under the
+ * monitor, but written outside of it, so a worker checking the progress never waits for a
+ * write. Writes are made one at a time, each of the latest snapshot, so progress recorded while
+ * a write is in flight is saved together by the next one.
+ */
+public class EnvelopeCheckpoint {
+
+    private static final String CHECKPOINTS = "checkpoints/";
+    private static final String REGISTER_ENVELOPE_RESPONSE = "registerEnvelopeResponse";
+    private static final String UPLOADED = "uploaded";
+    private static final String ATTACHED = "attached";
+    private static final String THUMBNAILS = "thumbnails";
+
+    private final BlobCloudStorage checkpointStorage;
+    private final String checkpointName;
+    private JsonObject registerEnvelopeResponse;
+    private final Set<String> uploaded = new LinkedHashSet<>();
+    private final Set<String> attached = new LinkedHashSet<>();
+    private final Set<String> thumbnails = new LinkedHashSet<>();
+    private final Object saveLock = new Object();
+    private long version;
+    private long savedVersion;
+    private boolean completed;
+
+    private EnvelopeCheckpoint(final BlobCloudStorage checkpointStorage, final String zipFileName) {
+        this.checkpointStorage = checkpointStorage;
+        this.checkpointName = CHECKPOINTS + zipFileName;
+    }
+
+    public static EnvelopeCheckpoint load(final BlobCloudStorage checkpointStorage, final String zipFileName) {
+        final EnvelopeCheckpoint envelopeCheckpoint = new EnvelopeCheckpoint(checkpointStorage, zipFileName);
+        checkpointStorage.downloadText(envelopeCheckpoint.checkpointName).ifPresent(envelopeCheckpoint::read);
+        return envelopeCheckpoint;
+    }
+
+    public synchronized Optional<JsonObject> getRegisterEnvelopeResponse() {
+        return Optional.ofNullable(registerEnvelopeResponse);
+    }
+
+    public synchronized boolean isUploaded(final String pdfDocumentName) {
+        return uploaded.contains(pdfDocumentName);
+    }
+
+    public synchronized boolean isAttached(final String pdfDocumentName) {
+        return attached.contains(pdfDocumentName);
+    }
+
+    public synchronized boolean isThumbnailRequested(final String pdfDocumentName) {
+        return thumbnails.contains(pdfDocumentName);
+    }
+
+    public void registered(final JsonObject registerEnvelopeResponse) {
+        synchronized (this) {
+            this.registerEnvelopeResponse = registerEnvelopeResponse;
+            version++;
+        }
+        save();
+    }
+
+    public void uploaded(final String pdfDocumentName) {
+        record(uploaded, pdfDocumentName);
+    }
+
+    public void attached(final String pdfDocumentName) {
+        record(attached, pdfDocumentName);
+    }
+
+    public void thumbnailRequested(final String pdfDocumentName) {
+        record(thumbnails, pdfDocumentName);
+    }
+
+    public void completed() {
+        synchronized (saveLock) {
+            completed = true;
+            checkpointStorage.deleteFromStorage(checkpointName);
+        }
+    }
+
+    private void record(final Set<String> names, final String pdfDocumentName) {
+        synchronized (this) {
+            if (!names.add(pdfDocumentName)) {
+                return;
+            }
+            version++;
+        }
+        save();
+    }
+
+    private void read(final String checkpoint) {
+        try (JsonReader reader = createReader(new ByteArrayInputStream(checkpoint.getBytes(UTF_8)))) {
+            final JsonObject checkpointJson = reader.readObject();
+            registerEnvelopeResponse = checkpointJson.getJsonObject(REGISTER_ENVELOPE_RESPONSE);
+            readNames(checkpointJson.getJsonArray(UPLOADED), uploaded);
+            readNames(checkpointJson.getJsonArray(ATTACHED), attached);
+            readNames(checkpointJson.getJsonArray(THUMBNAILS), thumbnails);
+        }
+    }
+
+    private static void readNames(final JsonArray names, final Set<String> target) {
+        if (names != null) {
+            names.getValuesAs(JsonString.class).forEach(name -> target.add(name.getString()));
+        }
+    }
+
+    private void save() {
+        synchronized (saveLock) {
+            final String checkpoint;
+            final long snapshotVersion;
+            synchronized (this) {
+                if (completed || version <= savedVersion) {
+                    return;
+                }
+                checkpoint = createObjectBuilder()
+                        .add(REGISTER_ENVELOPE_RESPONSE, registerEnvelopeResponse)
+                        .add(UPLOADED, toJsonArray(uploaded))
+                        .add(ATTACHED, toJsonArray(attached))
+                        .add(THUMBNAILS, toJsonArray(thumbnails))
+                        .build()
+                        .toString();
+                snapshotVersion = version;
+            }
+            checkpointStorage.uploadText(checkpointName, checkpoint);
+            savedVersion = snapshotVersion;
+        }
+    }
+
+    private static JsonArrayBuilder toJsonArray(final Set<String> names) {
+        final JsonArrayBuilder jsonArrayBuilder = createArrayBuilder();
+        names.forEach(jsonArrayBuilder::add);
+        return jsonArrayBuilder;
+    }
+}
@@ -0,0 +1,149 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.zip.BlobZipStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Uploads the entries of an envelope zip concurrently. Entries are inflated on the worker
+ * threads while they are uploaded, at most {@code parallelism} at a time. Each entry in flight
+ * holds the upload buffer of the store, {@link BlobCloudStorage#getUploadBufferBytes(long)}: the
+ * whole entry when it goes up in a single request, otherwise the blocks being staged. A new
+ * entry is only started once the buffers of the entries in flight leave room for its own within
+ * {@code maxInFlightBytes}, which is capped at {@link Integer#MAX_VALUE}; an entry whose buffer
+ * alone exceeds the budget is uploaded on its own. The first failed entry fails the whole upload.
+ */
+public class EnvelopeUploadPipeline {
+
+    private final int parallelism;
+    private final long maxInFlightBytes;
+
+    public EnvelopeUploadPipeline(final int parallelism, final long maxInFlightBytes) {
+        if (parallelism < 1 || maxInFlightBytes < 1) {
+            throw new IllegalArgumentException("Upload parallelism and max in flight bytes must be positive");
+        }
+        this.parallelism = parallelism;
+        this.maxInFlightBytes = Math.min(maxInFlightBytes, Integer.MAX_VALUE);
+    }
+
+    public UploadStatistics upload(final BlobZipStream blobZipStream, final List<String> entryNames,
+                                   final BlobCloudStorage containerReference, final String blobPrefix) {
+        return upload(blobZipStream, entryNames, containerReference, blobPrefix, entryName -> { });
+    }
+
+    /**
+     * Uploads the entries, notifying {@code entryUploaded} on the worker thread as soon as each
+     * entry has been uploaded.
+     */
+    public UploadStatistics upload(final BlobZipStream blobZipStream, final List<String> entryNames,
+                                   final BlobCloudStorage containerReference, final String blobPrefix,
+                                   final Consumer<String> entryUploaded) {
+        final long startTime = System.nanoTime();
+        final int maxInFlightPermits = (int) maxInFlightBytes;
+        final Semaphore inFlightBytes = new Semaphore(maxInFlightPermits);
+        final AtomicLong currentInFlightBytes = new AtomicLong();
+        final AtomicLong peakInFlightBytes = new AtomicLong();
+        final AtomicBoolean failed = new AtomicBoolean();
+        long totalBytes = 0;
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, entryNames.size())));
+        final List<Future<?>> uploads = new ArrayList<>(entryNames.size());
+        try {
+            for (final String entryName : entryNames) {
+                if (failed.get()) {
+                    break;
+                }
+                final long entrySize = blobZipStream.getEntrySize(entryName);
+                final long bufferBytes = containerReference.getUploadBufferBytes(entrySize);
+                final int permits = (int) Math.max(1, Math.min(bufferBytes, maxInFlightPermits));
+                inFlightBytes.acquire(permits);
+                peakInFlightBytes.accumulateAndGet(currentInFlightBytes.addAndGet(bufferBytes), Math::max);
+                totalBytes += entrySize;
+                uploads.add(executorService.submit(() -> {
+                    try (InputStream entryInputStream = blobZipStream.openEntry(entryName)) {
+                        containerReference.uploadToStorage(entryInputStream, entrySize, blobPrefix + entryName);
+                        entryUploaded.accept(entryName);
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw new BulkScanProcessorException("Unable to read " + entryName + " from the zip", e);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        currentInFlightBytes.addAndGet(-bufferBytes);
+                        inFlightBytes.release(permits);
+                    }
+                }));
+            }
+            for (final Future<?> upload : uploads) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkScanProcessorException("Interrupted while uploading zip entries", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BulkScanProcessorException("Failed to upload zip entry", e.getCause());
+        } finally {
+            uploads.forEach(upload -> upload.cancel(true));
+            executorService.shutdownNow();
+        }
+
+        return new UploadStatistics(entryNames.size(), totalBytes, (System.nanoTime() - startTime) / 1_000_000,
+                peakInFlightBytes.get());
+    }
+
+    public static class UploadStatistics {
+
+        private final int entryCount;
+        private final long totalBytes;
+        private final long elapsedMillis;
+        private final long peakInFlightBytes;
+
+        UploadStatistics(final int entryCount, final long totalBytes, final long elapsedMillis, final long peakInFlightBytes) {
+            this.entryCount = entryCount;
+            this.totalBytes = totalBytes;
+            this.elapsedMillis = elapsedMillis;
+            this.peakInFlightBytes = peakInFlightBytes;
+        }
+
+        public int getEntryCount() {
+            return entryCount;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return the most bytes the upload buffers of the entries in flight held at once
+         */
+        public long getPeakInFlightBytes() {
+            return peakInFlightBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "UploadStatistics(entryCount=" + entryCount + ", totalBytes=" + totalBytes + ", elapsedMillis=" + elapsedMillis
+                    + ", peakInFlightBytes=" + peakInFlightBytes + ")";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static java.util.Collections.singletonMap;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ledger of the ingest work already done, keyed by the SHA-256 of the content it was done for.
+ * Each record is an empty blob of the ledger container carrying its details as metadata:
+ * {@code envelopes/<sha256 of the zip>} for an envelope that was fully ingested and
+ * {@code pdfs/<sha256 of the pdf>} for a pdf whose thumbnail has been rendered.
+ *
+ * The hit and miss counters are kept for the whole host process.
+ */
+public class IngestLedger {
+
+    private static final String ENVELOPES = "envelopes/";
+    private static final String PDFS = "pdfs/";
+    private static final String ZIP_FILE_NAME = "zipFileName";
+    private static final String THUMBNAIL = "thumbnail";
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final LongAdder ENVELOPE_HITS = new LongAdder();
+    private static final LongAdder ENVELOPE_MISSES = new LongAdder();
+    private static final LongAdder THUMBNAIL_HITS = new LongAdder();
+    private static final LongAdder THUMBNAIL_MISSES = new LongAdder();
+
+    private final BlobCloudStorage ledgerStorage;
+
+    public IngestLedger(final BlobCloudStorage ledgerStorage) {
+        this.ledgerStorage = ledgerStorage;
+    }
+
+    /**
+     * @return the name of the zip the envelope was ingested from, when an identical zip has
+     * already been fully ingested
+     */
+    public Optional<String> findIngestedEnvelope(final String zipSha256) {
+        return count(ledgerStorage.getBlobMetadata(ENVELOPES + zipSha256).map(metadata -> metadata.get(ZIP_FILE_NAME)),
+                ENVELOPE_HITS, ENVELOPE_MISSES);
+    }
+
+    public void recordIngestedEnvelope(final String zipSha256, final String zipFileName) {
+        ledgerStorage.uploadMetadata(ENVELOPES + zipSha256, singletonMap(ZIP_FILE_NAME, zipFileName));
+    }
+
+    /**
+     * @return the blob name of the thumbnail already rendered for an identical pdf
+     */
+    public Optional<String> findThumbnail(final String pdfSha256) {
+        return count(ledgerStorage.getBlobMetadata(PDFS + pdfSha256).map(metadata -> metadata.get(THUMBNAIL)),
+                THUMBNAIL_HITS, THUMBNAIL_MISSES);
+    }
+
+    public void recordThumbnail(final String pdfSha256, final String thumbnailBlobName) {
+        ledgerStorage.uploadMetadata(PDFS + pdfSha256, singletonMap(THUMBNAIL, thumbnailBlobName));
+    }
+
+    /**
+     * Drops the record of a thumbnail that no longer exists, so that it is rendered again.
+     */
+    public void forgetThumbnail(final String pdfSha256) {
+        ledgerStorage.deleteFromStorage(PDFS + pdfSha256);
+    }
+
+    public static String getStatistics() {
+        return "IngestLedger(envelopeHits=" + ENVELOPE_HITS.sum() + ", envelopeMisses=" + ENVELOPE_MISSES.sum()
+                + ", thumbnailHits=" + THUMBNAIL_HITS.sum() + ", thumbnailMisses=" + THUMBNAIL_MISSES.sum() + ")";
+    }
+
+    public static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BulkScanProcessorException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String sha256(final InputStream inputStream) throws IOException {
+        final MessageDigest messageDigest = newSha256Digest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            messageDigest.update(buffer, 0, bytesRead);
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    public static String toHex(final byte[] digest) {
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static Optional<String> count(final Optional<String> record, final LongAdder hits, final LongAdder misses) {
+        if (record.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return record;
+    }
+}
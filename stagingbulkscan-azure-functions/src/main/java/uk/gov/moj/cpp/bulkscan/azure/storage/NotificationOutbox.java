@@ -0,0 +1,53 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import java.util.List;
+
+/**
+ * Durable outbox of the notification emails still to be sent. A received message stays in the
+ * outbox, hidden from other receivers for the visibility timeout, until it is either completed
+ * or handed back to be received again after a delay.
+ */
+public interface NotificationOutbox {
+
+    void enqueue(String message);
+
+    List<OutboxMessage> receive(int maxMessages, int visibilityTimeoutSeconds);
+
+    void complete(OutboxMessage message);
+
+    void retryLater(OutboxMessage message, int delaySeconds);
+
+    class OutboxMessage {
+
+        private final String id;
+        private final String receipt;
+        private final String content;
+        private final int dequeueCount;
+
+        public OutboxMessage(final String id, final String receipt, final String content, final int dequeueCount) {
+            this.id = id;
+            this.receipt = receipt;
+            this.content = content;
+            this.dequeueCount = dequeueCount;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getReceipt() {
+            return receipt;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * @return how many times the message has been received, this time included
+         */
+        public int getDequeueCount() {
+            return dequeueCount;
+        }
+    }
+}
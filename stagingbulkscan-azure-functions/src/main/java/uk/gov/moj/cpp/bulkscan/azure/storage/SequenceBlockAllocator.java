@@ -0,0 +1,100 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out blocks of a cyclic range of sequence numbers shared by every host. The next free
+ * number is kept as the text of a single blob, {@code sequences/<name>} of the ledger container,
+ * and a block is taken by moving it on with an ETag conditional write. Hosts that race for the
+ * same block retry with the new value, so no two hosts are given overlapping blocks until the
+ * range wraps around.
+ *
+ * The allocation and contention counters are kept for the whole host process.
+ */
+public class SequenceBlockAllocator {
+
+    private static final String SEQUENCES = "sequences/";
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BACKOFF_MILLIS = 20;
+
+    private static final LongAdder ALLOCATIONS = new LongAdder();
+    private static final LongAdder CONTENDED_ATTEMPTS = new LongAdder();
+
+    private final BlobCloudStorage ledgerStorage;
+    private final String counterBlobName;
+    private final int firstSequence;
+    private final int lastSequence;
+
+    public SequenceBlockAllocator(final BlobCloudStorage ledgerStorage, final String name, final int firstSequence, final int lastSequence) {
+        this.ledgerStorage = ledgerStorage;
+        this.counterBlobName = SEQUENCES + name;
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * @return the next block of at most {@code blockSize} numbers; a block never runs past the
+     * end of the range, the block after it starts again at the beginning
+     */
+    public SequenceBlock allocate(final int blockSize) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            final Optional<BlobCloudStorage.VersionedText> counter = ledgerStorage.downloadVersionedText(counterBlobName);
+            final int first = counter.map(versionedText -> parse(versionedText.getText())).orElse(firstSequence);
+            final int last = (int) Math.min((long) first + blockSize - 1, lastSequence);
+            final int next = last == lastSequence ? firstSequence : last + 1;
+
+            if (ledgerStorage.uploadTextIfUnchanged(counterBlobName, Integer.toString(next), counter.map(BlobCloudStorage.VersionedText::getETag).orElse(null))) {
+                ALLOCATIONS.increment();
+                return new SequenceBlock(first, last);
+            }
+            CONTENDED_ATTEMPTS.increment();
+            backOff(attempt);
+        }
+        throw new BulkScanProcessorException("Unable to allocate a block of " + counterBlobName + " after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    public static String getStatistics() {
+        return "SequenceBlockAllocator(allocations=" + ALLOCATIONS.sum() + ", contendedAttempts=" + CONTENDED_ATTEMPTS.sum() + ")";
+    }
+
+    private int parse(final String text) {
+        try {
+            final int sequence = Integer.parseInt(text.trim());
+            return sequence < firstSequence || sequence > lastSequence ? firstSequence : sequence;
+        } catch (NumberFormatException e) {
+            return firstSequence;
+        }
+    }
+
+    private static void backOff(final int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS * attempt) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkScanProcessorException("Interrupted while allocating a block of sequence numbers", e);
+        }
+    }
+
+    public static class SequenceBlock {
+
+        private final int first;
+        private final int last;
+
+        public SequenceBlock(final int first, final int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getLast() {
+            return last;
+        }
+    }
+}
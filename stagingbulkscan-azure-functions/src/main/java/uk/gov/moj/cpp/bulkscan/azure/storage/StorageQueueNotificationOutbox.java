@@ -0,0 +1,86 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.queue.CloudQueue;
+import com.microsoft.azure.storage.queue.CloudQueueMessage;
+
+/**
+ * {@link NotificationOutbox} kept in a storage queue. A message handed back for a retry is made
+ * visible again once its delay has passed, and the queue counts how often it has been received.
+ * Received messages are remembered until they are completed or handed back, as both need the
+ * pop receipt the queue issued for them. The queue is created the first time the host process
+ * uses it and shared by every instance.
+ */
+public class StorageQueueNotificationOutbox implements NotificationOutbox {
+
+    private static final String CANNOT_CONNECT_TO_STORAGE_QUEUE = "Cannot connect to storage queue of notification emails ";
+    private static final int MAX_MESSAGES_PER_RECEIVE = 32;
+
+    private final CloudQueue queueReference;
+    private final Map<String, CloudQueueMessage> receivedMessages = new ConcurrentHashMap<>();
+
+    public StorageQueueNotificationOutbox(final String connectionString, final String queueReference) {
+        try {
+            this.queueReference = BlobCloudStorage.createdQueue(connectionString, queueReference);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    @Override
+    public void enqueue(final String message) {
+        try {
+            queueReference.addMessage(new CloudQueueMessage(message));
+        } catch (StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    @Override
+    public List<OutboxMessage> receive(final int maxMessages, final int visibilityTimeoutSeconds) {
+        try {
+            final List<OutboxMessage> messages = new ArrayList<>();
+            for (final CloudQueueMessage message : queueReference.retrieveMessages(Math.min(maxMessages, MAX_MESSAGES_PER_RECEIVE), visibilityTimeoutSeconds, null, null)) {
+                receivedMessages.put(message.getMessageId(), message);
+                messages.add(new OutboxMessage(message.getMessageId(), message.getPopReceipt(), message.getMessageContentAsString(), message.getDequeueCount()));
+            }
+            return messages;
+        } catch (StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    @Override
+    public void complete(final OutboxMessage message) {
+        try {
+            queueReference.deleteMessage(receivedMessage(message));
+        } catch (StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    @Override
+    public void retryLater(final OutboxMessage message, final int delaySeconds) {
+        try {
+            queueReference.updateMessage(receivedMessage(message), delaySeconds);
+        } catch (StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    private CloudQueueMessage receivedMessage(final OutboxMessage message) {
+        final CloudQueueMessage queueMessage = receivedMessages.remove(message.getId());
+        if (queueMessage == null) {
+            throw new BulkScanProcessorException("Notification message " + message.getId() + " was not received from this outbox");
+        }
+        return queueMessage;
+    }
+}
@@ -0,0 +1,36 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.storage.BlobStoreException;
+
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.queue.CloudQueue;
+import com.microsoft.azure.storage.queue.CloudQueueMessage;
+
+/**
+ * Storage queue of the pdf documents that still need a thumbnail. Each message is the name of
+ * a single pdf blob in the active scans container. The queue is created the first time the host
+ * process uses it and shared by every instance.
+ */
+public class ThumbnailRequestQueue {
+
+    private static final String CANNOT_CONNECT_TO_STORAGE_QUEUE = "Cannot connect to storage queue to request thumbnail ";
+
+    private final CloudQueue queueReference;
+
+    public ThumbnailRequestQueue(final String connectionString, final String queueReference) {
+        try {
+            this.queueReference = BlobCloudStorage.createdQueue(connectionString, queueReference);
+        } catch (BlobStoreException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE, e);
+        }
+    }
+
+    public void requestThumbnail(final String pdfBlobName) {
+        try {
+            queueReference.addMessage(new CloudQueueMessage(pdfBlobName));
+        } catch (StorageException e) {
+            throw new BulkScanProcessorException(CANNOT_CONNECT_TO_STORAGE_QUEUE + pdfBlobName, e);
+        }
+    }
+}
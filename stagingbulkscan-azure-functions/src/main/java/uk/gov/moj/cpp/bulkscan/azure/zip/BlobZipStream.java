@@ -2,94 +2,159 @@ package uk.gov.moj.cpp.bulkscan.azure.zip;
 
 import static uk.gov.justice.services.messaging.JsonObjects.createReader;
 
-import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
 import uk.gov.moj.cpp.bulkscan.azure.exception.InvalidZipPayloadException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Optional;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.stream.Collectors;
 
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Random access view over an envelope zip. The central directory is read once into a
+ * {@link ZipEntryIndex} and every entry can be opened on its own, so consumers no longer
+ * rescan and re-inflate the whole archive to reach a single document.
+ *
+ * The archive is either held on the heap or, once it is larger than the spill threshold,
+ * copied to a temporary file that is memory mapped so that its size does not count against
+ * the function heap.
+ */
 public class BlobZipStream implements AutoCloseable {
 
-    private byte[] originalZipFileContent;
-    private ZipInputStream zipFileInputStream;
+    public static final long MAX_ZIP_FILE_LENGTH = Integer.MAX_VALUE;
+
+    private static final String SPILL_FILE_PREFIX = "bulkscan-envelope-";
+
+    private final ByteBuffer originalZipFileContent;
+    private final Path spillFile;
+    private ZipEntryIndex zipEntryIndex;
+    private JsonObject metadataJson;
+    private boolean metadataJsonRead;
 
     public BlobZipStream(final byte[] originalZipFileContent) {
-        this.zipFileInputStream = new ZipInputStream(new ByteArrayInputStream(originalZipFileContent));
+        this(ByteBuffer.wrap(originalZipFileContent), null);
+    }
+
+    private BlobZipStream(final ByteBuffer originalZipFileContent, final Path spillFile) {
         this.originalZipFileContent = originalZipFileContent;
+        this.spillFile = spillFile;
     }
 
-    public int getOriginalZipFileLength() {
-        return originalZipFileContent.length;
+    /**
+     * Reads the zip from the stream, keeping it on the heap when its length is within the
+     * spill threshold and spilling it to a memory mapped temporary file otherwise. A single
+     * buffer cannot address more than {@link #MAX_ZIP_FILE_LENGTH} bytes, so a larger zip is
+     * rejected before anything is read.
+     */
+    public static BlobZipStream fromInputStream(final InputStream inputStream, final long length, final long spillThresholdBytes) throws IOException {
+        if (length > MAX_ZIP_FILE_LENGTH) {
+            throw new InvalidZipPayloadException("Zip file of " + length + " bytes is larger than the supported " + MAX_ZIP_FILE_LENGTH + " bytes");
+        }
+        if (length <= spillThresholdBytes) {
+            return new BlobZipStream(IOUtils.toByteArray(inputStream, length));
+        }
+
+        final Path spillFile = Files.createTempFile(SPILL_FILE_PREFIX, ".zip");
+        try {
+            Files.copy(inputStream, spillFile, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+                return new BlobZipStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), spillFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spillFile);
+            throw e;
+        }
+    }
+
+    public long getOriginalZipFileLength() {
+        return originalZipFileContent.limit();
     }
 
-    public byte[] getOriginalZipFileContent() {
-        return originalZipFileContent;
+    public InputStream openOriginalZipFile() {
+        return new ByteBufferInputStream(originalZipFileContent.duplicate());
     }
 
-    public ZipInputStream getZipFileInputStream() {
-        return zipFileInputStream;
+    public boolean isSpilledToFile() {
+        return spillFile != null;
     }
 
     public Optional<JsonObject> getMetadataJson() {
-        JsonReader reader = null;
-        try {
-            ZipEntry nextEntry = this.zipFileInputStream.getNextEntry();
-            while (nextEntry != null) {
-                if (nextEntry.getName().endsWith("json")) {
-                    reader = createReader(this.zipFileInputStream);
-                    final JsonObject jsonObject = reader.readObject();
-                    return Optional.of(jsonObject);
-                }
-                nextEntry = this.zipFileInputStream.getNextEntry();
-            }
-            return Optional.empty();
-        } catch (IOException e) {
-            throw new InvalidZipPayloadException("Error reading metadata json document from the zip ", e);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
-            resetInputStream();
+        if (!metadataJsonRead) {
+            metadataJson = readMetadataJson();
+            metadataJsonRead = true;
         }
+        return Optional.ofNullable(metadataJson);
     }
 
     public List<String> pdfDocumentNames() {
-        try {
-            final List<String> fileNames = new ArrayList<>();
-            ZipEntry nextEntry = this.zipFileInputStream.getNextEntry();
-            while (nextEntry != null) {
-                if (nextEntry.getName().endsWith("pdf")) {
-                    fileNames.add(nextEntry.getName());
-                }
-                nextEntry = this.zipFileInputStream.getNextEntry();
-            }
-            return fileNames;
+        return getZipEntryIndex().getEntries().stream()
+                .map(ZipEntryIndex.Entry::getName)
+                .filter(name -> name.endsWith("pdf"))
+                .collect(Collectors.toList());
+    }
+
+    public long getEntrySize(final String entryName) {
+        return getEntry(entryName).getSize();
+    }
+
+    public InputStream openEntry(final String entryName) {
+        return getZipEntryIndex().openEntry(getEntry(entryName));
+    }
+
+    private ZipEntryIndex.Entry getEntry(final String entryName) {
+        return getZipEntryIndex().getEntry(entryName)
+                .orElseThrow(() -> new InvalidZipPayloadException("Entry not found in the zip " + entryName));
+    }
+
+    private JsonObject readMetadataJson() {
+        final Optional<ZipEntryIndex.Entry> metadataEntry = getZipEntryIndex().getEntries().stream()
+                .filter(entry -> entry.getName().endsWith("json"))
+                .findFirst();
+        if (!metadataEntry.isPresent()) {
+            return null;
+        }
+        try (InputStream inputStream = getZipEntryIndex().openEntry(metadataEntry.get());
+             JsonReader reader = createReader(inputStream)) {
+            return reader.readObject();
         } catch (IOException e) {
-            throw new InvalidZipPayloadException("Error reading pdf document from the zip ", e);
-        } finally {
-            resetInputStream();
+            throw new InvalidZipPayloadException("Error reading metadata json document from the zip ", e);
         }
     }
 
-    private void resetInputStream() {
-        this.close();
-        this.zipFileInputStream = new ZipInputStream(new ByteArrayInputStream(originalZipFileContent));
+    private synchronized ZipEntryIndex getZipEntryIndex() {
+        if (zipEntryIndex == null) {
+            zipEntryIndex = ZipEntryIndex.read(originalZipFileContent);
+        }
+        return zipEntryIndex;
     }
 
     @Override
     public void close() {
+        this.zipEntryIndex = null;
+        this.metadataJson = null;
+        this.metadataJsonRead = false;
+        if (spillFile != null) {
+            deleteSpillFile();
+        }
+    }
+
+    private void deleteSpillFile() {
         try {
-            this.getZipFileInputStream().close();
+            Files.deleteIfExists(spillFile);
         } catch (IOException e) {
-            throw new BulkScanProcessorException("Unable to close the original input stream", e);
+            // the mapping can pin the file on Windows until it is garbage collected
+            spillFile.toFile().deleteOnExit();
         }
     }
 }
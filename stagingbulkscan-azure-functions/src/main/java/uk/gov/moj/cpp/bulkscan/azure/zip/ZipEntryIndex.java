@@ -0,0 +1,315 @@
+package uk.gov.moj.cpp.bulkscan.azure.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.InvalidZipPayloadException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Index of the entries of a zip archive built from its central directory in a single read.
+ * Entries can then be opened independently and in any order, each open inflating only the
+ * bytes of that entry.
+ */
+public final class ZipEntryIndex {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ZIP64_MARKER = 0xFFFF;
+    private static final long ZIP64_SIZE_MARKER = 0xFFFFFFFFL;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer content;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+
+    private ZipEntryIndex(final ByteBuffer content, final List<Entry> entries) {
+        this.content = content;
+        this.entries = entries;
+        this.entriesByName = new HashMap<>();
+        entries.forEach(entry -> entriesByName.putIfAbsent(entry.getName(), entry));
+    }
+
+    public static ZipEntryIndex read(final ByteBuffer zipContent) {
+        final ByteBuffer content = zipContent.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int endOfCentralDirectory = findEndOfCentralDirectory(content);
+
+        final int entryCount = unsignedShort(content, endOfCentralDirectory + 10);
+        final long centralDirectoryOffset = unsignedInt(content, endOfCentralDirectory + 16);
+        if (entryCount == ZIP64_MARKER || centralDirectoryOffset == ZIP64_SIZE_MARKER) {
+            throw new InvalidZipPayloadException("Zip64 archives are not supported");
+        }
+
+        final List<Entry> entries = new ArrayList<>(entryCount);
+        int position = toPosition(content, centralDirectoryOffset);
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_DIRECTORY_HEADER_LENGTH > content.limit() || content.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new InvalidZipPayloadException("Corrupt zip central directory at entry " + i);
+            }
+            final Entry entry = readCentralDirectoryEntry(content, position);
+            entries.add(entry);
+            position += CENTRAL_DIRECTORY_HEADER_LENGTH
+                    + unsignedShort(content, position + 28)
+                    + unsignedShort(content, position + 30)
+                    + unsignedShort(content, position + 32);
+        }
+        return new ZipEntryIndex(content, entries);
+    }
+
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public Optional<Entry> getEntry(final String name) {
+        return Optional.ofNullable(entriesByName.get(name));
+    }
+
+    /**
+     * Opens an independent stream over the uncompressed content of the entry. The CRC of the
+     * inflated bytes is verified once the stream has been read to the end.
+     */
+    public InputStream openEntry(final Entry entry) {
+        final int dataOffset = dataOffset(entry);
+        final ByteBuffer entryData = content.duplicate();
+        entryData.limit(dataOffset + toInt(entry.getCompressedSize()));
+        entryData.position(dataOffset);
+
+        final InputStream compressed = new ByteBufferInputStream(entryData.slice());
+        switch (entry.getMethod()) {
+            case STORED:
+                return new CrcVerifyingInputStream(compressed, entry);
+            case DEFLATED:
+                return new CrcVerifyingInputStream(new EntryInflaterInputStream(compressed), entry);
+            default:
+                throw new InvalidZipPayloadException("Unsupported compression method " + entry.getMethod() + " for " + entry.getName());
+        }
+    }
+
+    private int dataOffset(final Entry entry) {
+        final int localHeader = toPosition(content, entry.getLocalHeaderOffset());
+        if (localHeader + LOCAL_HEADER_LENGTH > content.limit() || content.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+            throw new InvalidZipPayloadException("Corrupt zip local header for " + entry.getName());
+        }
+        final int dataOffset = localHeader + LOCAL_HEADER_LENGTH
+                + unsignedShort(content, localHeader + 26)
+                + unsignedShort(content, localHeader + 28);
+        if ((long) dataOffset + entry.getCompressedSize() > content.limit()) {
+            throw new InvalidZipPayloadException("Truncated zip entry " + entry.getName());
+        }
+        return dataOffset;
+    }
+
+    private static Entry readCentralDirectoryEntry(final ByteBuffer content, final int position) {
+        final int method = unsignedShort(content, position + 10);
+        final long crc = unsignedInt(content, position + 16);
+        final long compressedSize = unsignedInt(content, position + 20);
+        final long size = unsignedInt(content, position + 24);
+        final int nameLength = unsignedShort(content, position + 28);
+        final long localHeaderOffset = unsignedInt(content, position + 42);
+        if (compressedSize == ZIP64_SIZE_MARKER || size == ZIP64_SIZE_MARKER || localHeaderOffset == ZIP64_SIZE_MARKER) {
+            throw new InvalidZipPayloadException("Zip64 archives are not supported");
+        }
+
+        final byte[] name = new byte[nameLength];
+        final ByteBuffer nameBuffer = content.duplicate();
+        nameBuffer.position(position + CENTRAL_DIRECTORY_HEADER_LENGTH);
+        nameBuffer.get(name);
+
+        return new Entry(new String(name, UTF_8), method, crc, compressedSize, size, localHeaderOffset);
+    }
+
+    private static int findEndOfCentralDirectory(final ByteBuffer content) {
+        final int lowestPosition = Math.max(0, content.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH - MAX_COMMENT_LENGTH);
+        for (int position = content.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= lowestPosition; position--) {
+            if (content.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new InvalidZipPayloadException("Zip end of central directory record not found");
+    }
+
+    private static int toPosition(final ByteBuffer content, final long offset) {
+        if (offset >= content.limit()) {
+            throw new InvalidZipPayloadException("Zip offset " + offset + " is outside of the archive");
+        }
+        return (int) offset;
+    }
+
+    private static int toInt(final long value) {
+        if (value > Integer.MAX_VALUE) {
+            throw new InvalidZipPayloadException("Zip entry too large " + value);
+        }
+        return (int) value;
+    }
+
+    private static int unsignedShort(final ByteBuffer content, final int position) {
+        return Short.toUnsignedInt(content.getShort(position));
+    }
+
+    private static long unsignedInt(final ByteBuffer content, final int position) {
+        return Integer.toUnsignedLong(content.getInt(position));
+    }
+
+    public static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        Entry(final String name, final int method, final long crc, final long compressedSize, final long size, final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+    }
+
+    /**
+     * Raw deflate streams need a trailing dummy byte when inflated with the nowrap option, the
+     * same way {@link java.util.zip.ZipFile} feeds its inflaters.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+
+        EntryInflaterInputStream(final InputStream compressed) {
+            super(compressed, new Inflater(true), BUFFER_SIZE);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new ZipException("Unexpected end of zip entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+
+    private static class CrcVerifyingInputStream extends FilterInputStream {
+
+        private final CRC32 crc = new CRC32();
+        private final Entry entry;
+        private long bytesRead;
+
+        CrcVerifyingInputStream(final InputStream in, final Entry entry) {
+            super(in);
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = in.read();
+            if (value == -1) {
+                verify();
+            } else {
+                crc.update(value);
+                bytesRead++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            final int count = in.read(bytes, offset, length);
+            if (count == -1) {
+                verify();
+            } else {
+                crc.update(bytes, offset, count);
+                bytesRead += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            if (count <= 0) {
+                return 0;
+            }
+            final byte[] skipped = new byte[(int) Math.min(count, BUFFER_SIZE)];
+            long remaining = count;
+            while (remaining > 0) {
+                final int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+                if (read == -1) {
+                    break;
+                }
+                remaining -= read;
+            }
+            return count - remaining;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void verify() throws ZipException {
+            if (bytesRead != entry.getSize() || crc.getValue() != entry.getCrc()) {
+                throw new ZipException("Invalid entry content for " + entry.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.APPLICATION_PDF;
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.URN_REGEX;
+
+import uk.gov.moj.cpp.bulkscan.azure.rest.Attachment;
+import uk.gov.moj.cpp.bulkscan.azure.rest.AttachmentMetadata;
+import uk.gov.moj.cpp.bulkscan.azure.rest.ProcessResults;
+import uk.gov.moj.cpp.bulkscan.azure.rest.Prosecutor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the way the attachments of an email without a URN in its subject used to be
+ * classified (the URN pattern compiled for every name and every authority code of the
+ * prosecutor scanned for every attachment) with {@link AttachmentClassifier}. A prosecutor is
+ * created per email, so building its prefix index is part of each operation. Most attachments
+ * carry a URN of one of the prosecutor's forces, a few have none and a few belong to another
+ * force.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentClassifierBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int attachmentCount;
+
+    @Param({"5", "50", "500"})
+    private int authorityCodeCount;
+
+    private Set<String> authorityCodes;
+    private List<Attachment> attachments;
+
+    @Setup(Level.Trial)
+    public void createEmail() {
+        authorityCodes = new HashSet<>();
+        for (int index = 0; index < authorityCodeCount; index++) {
+            authorityCodes.add(String.format("0%02d%04d", index % 99, index));
+        }
+
+        attachments = new ArrayList<>(attachmentCount);
+        for (int index = 0; index < attachmentCount; index++) {
+            final String name;
+            if (index % 10 == 7) {
+                name = "Statement of facts " + index + ".pdf";
+            } else if (index % 10 == 9) {
+                name = "99ZZ" + String.format("%05d", index) + "21.pdf";
+            } else {
+                name = String.format("%02d AB %05d 21 SJPN.pdf", index % Math.min(authorityCodeCount, 99), index);
+            }
+            attachments.add(new Attachment("attachment-" + index, new Date(), name, APPLICATION_PDF, "JVBERi0xLjQ=", false));
+        }
+    }
+
+    @Benchmark
+    public ProcessResults perAttachmentScan() {
+        final Prosecutor prosecutor = new Prosecutor("officer@police.example", authorityCodes);
+        final ProcessResults processResults = new ProcessResults();
+        for (final Attachment attachment : attachments) {
+            final Matcher matcher = Pattern.compile(URN_REGEX).matcher(attachment.getName());
+            if (matcher.find()) {
+                final String urn = matcher.group().replaceAll("[ /]", "");
+                final String urnPrefix = urn.substring(0, 2);
+                final Optional<String> oucode = prosecutor.getAuthorityCodes().stream()
+                        .filter(s -> s.substring(1, 3).equalsIgnoreCase(urnPrefix)).findFirst();
+                if (oucode.isPresent()) {
+                    processResults.addAttachmentMetadata(AttachmentMetadata.builder()
+                            .urn(urn).fileName(attachment.getName()).oucode(oucode.get()).attachment(attachment).build());
+                } else {
+                    processResults.addProsecutorUrnNotMatchWithAttachments(attachment.getName());
+                }
+            } else {
+                processResults.addUrnNotFoundAttachment(attachment.getName());
+            }
+        }
+        return processResults;
+    }
+
+    @Benchmark
+    public ProcessResults classifier() {
+        final Prosecutor prosecutor = new Prosecutor("officer@police.example", authorityCodes);
+        return AttachmentClassifier.classify("Police documents", attachments, prosecutor);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AttachmentClassifierBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.APPLICATION_PDF;
+
+import uk.gov.moj.cpp.bulkscan.azure.rest.Attachment;
+import uk.gov.moj.cpp.bulkscan.azure.rest.AttachmentMetadata;
+import uk.gov.moj.cpp.bulkscan.azure.rest.ProcessResults;
+import uk.gov.moj.cpp.bulkscan.azure.rest.Prosecutor;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class AttachmentClassifierTest {
+
+    private final Prosecutor prosecutor = new Prosecutor("officer@police.example", new HashSet<>(asList("0210000", "0AB0000", "044")));
+
+    @Test
+    public void shouldFindAuthorityCodeOfUrnPrefixIgnoringCase() {
+        assertThat(prosecutor.findAuthorityCodeForUrnPrefix("21"), is(Optional.of("0210000")));
+        assertThat(prosecutor.findAuthorityCodeForUrnPrefix("ab"), is(Optional.of("0AB0000")));
+        assertThat(prosecutor.findAuthorityCodeForUrnPrefix("44"), is(Optional.of("044")));
+        assertThat(prosecutor.findAuthorityCodeForUrnPrefix("99"), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldRemoveSeparatorsFromExtractedUrn() {
+        assertThat(AttachmentClassifier.extractUrn("Re: case 21/AZ/12345/21 attached"), is(Optional.of("21AZ1234521")));
+        assertThat(AttachmentClassifier.extractUrn("Re: case 21 AZ 12345 21"), is(Optional.of("21AZ1234521")));
+        assertThat(AttachmentClassifier.extractUrn("no case reference"), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldClassifyEveryAttachmentByItsOwnUrnWhenSubjectHasNone() {
+        final ProcessResults processResults = AttachmentClassifier.classify("Police documents", asList(
+                pdf("21AZ1234521.pdf"),
+                pdf("Statement of facts.pdf"),
+                pdf("99ZZ1234521.pdf"),
+                attachment("notes.docx", "application/msword", false),
+                attachment("signature.png", "image/png", true)), prosecutor);
+
+        assertThat(processResults.getAttachmentMetadataList().size(), is(1));
+        final AttachmentMetadata attachmentMetadata = processResults.getAttachmentMetadataList().get(0);
+        assertThat(attachmentMetadata.getUrn(), is("21AZ1234521"));
+        assertThat(attachmentMetadata.getOucode(), is("0210000"));
+        assertThat(processResults.getUrnNotFoundAttachments(), contains("Statement of facts.pdf"));
+        assertThat(processResults.getProsecutorUrnNotMatchWithAttachments(), contains("99ZZ1234521.pdf"));
+        assertThat(processResults.getNonPdfAttachments(), contains("notes.docx"));
+    }
+
+    @Test
+    public void shouldFileSingleAttachmentUnderSubjectUrnIgnoringSignatures() {
+        final ProcessResults processResults = AttachmentClassifier.classify("Case 21 AZ 12345 21", asList(
+                attachment("signature.png", "image/png", true),
+                pdf("SJPN.pdf")), prosecutor);
+
+        assertThat(processResults.getAttachmentMetadataList().size(), is(1));
+        assertThat(processResults.getAttachmentMetadataList().get(0).getUrn(), is("21AZ1234521"));
+        assertThat(processResults.hasInvalidAttachments(), is(false));
+    }
+
+    @Test
+    public void shouldRejectEveryAttachmentWhenSubjectUrnHasSeveralDocuments() {
+        final ProcessResults processResults = AttachmentClassifier.classify("Case 21 AZ 12345 21", asList(
+                pdf("first.pdf"),
+                attachment("signature.png", "image/png", true),
+                pdf("second.pdf")), prosecutor);
+
+        assertThat(processResults.getAttachmentMetadataList(), is(empty()));
+        assertThat(processResults.getUrnNotFoundAttachments(), contains("first.pdf", "signature.png", "second.pdf"));
+    }
+
+    @Test
+    public void shouldRejectAttachmentWhoseUrnDiffersFromSubjectUrn() {
+        final ProcessResults processResults = AttachmentClassifier.classify("Case 21 AZ 12345 21", asList(
+                pdf("21AZ5432121.pdf")), prosecutor);
+
+        assertThat(processResults.getUrnNotFoundAttachments(), contains("21AZ5432121.pdf"));
+    }
+
+    @Test
+    public void shouldFlagEmailWithoutDocumentWhenSubjectHasUrn() {
+        final ProcessResults processResults = AttachmentClassifier.classify("Case 21 AZ 12345 21", asList(
+                attachment("signature.png", "image/png", true)), prosecutor);
+
+        assertThat(processResults.isEmailWithNoAttachments(), is(true));
+    }
+
+    private static Attachment pdf(final String name) {
+        return attachment(name, APPLICATION_PDF, false);
+    }
+
+    private static Attachment attachment(final String name, final String contentType, final boolean isInline) {
+        return new Attachment(name, new Date(), name, contentType, "JVBERi0xLjQ=", isInline);
+    }
+}
@@ -5,9 +5,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 import static uk.gov.justice.services.messaging.JsonObjects.createReader;
 
 import uk.gov.moj.cpp.bulkscan.azure.event.EventGridSchema;
@@ -17,11 +21,17 @@ import uk.gov.moj.cpp.bulkscan.azure.rest.ReferenceDataQueryHelper;
 import uk.gov.moj.cpp.bulkscan.azure.rest.StagingBulkScanCommandHelper;
 import uk.gov.moj.cpp.bulkscan.azure.rest.StagingProsecutorCommandHelper;
 import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.EnvelopeCheckpoint;
+import uk.gov.moj.cpp.bulkscan.azure.storage.IngestLedger;
+import uk.gov.moj.cpp.bulkscan.azure.storage.ThumbnailRequestQueue;
+import uk.gov.moj.cpp.bulkscan.azure.zip.BlobZipStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 import javax.json.JsonObject;
@@ -46,6 +56,15 @@ public class BulkScanInboxProcessorTest {
     @Mock
     private BlobCloudStorage scanProviderFailedBlobStorage;
 
+    @Mock
+    private ThumbnailRequestQueue thumbnailRequestQueue;
+
+    @Mock
+    private IngestLedger ingestLedger;
+
+    @Mock
+    private BlobCloudStorage checkpointStorage;
+
     @Mock
     private StagingBulkScanCommandHelper stagingBulkScanHandler;
 
@@ -79,8 +98,92 @@ public class BulkScanInboxProcessorTest {
         verify(stagingBulkScanHandler).registerEnvelope(any(JsonObject.class));
         verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/CrownCourtExtract.pdf"));
         verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/sample_file.pdf"));
-        verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/CrownCourtExtract.png"));
-        verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/sample_file.png"));
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/CrownCourtExtract.pdf");
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/sample_file.pdf");
+        verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/CrownCourtExtract.png"));
+        verify(ingestLedger).recordIngestedEnvelope(anyString(), eq("valid_scan_documents"));
+        verify(checkpointStorage).deleteFromStorage("checkpoints/valid_scan_documents");
+    }
+
+    @Test
+    public void shouldResumeIngestFromTheCheckpointOfAnEarlierInvocation() throws IOException {
+        final JsonObject registerEnvelopeResponse = createReader(BulkScanInboxProcessorTest.class.getResourceAsStream("/scanProviderPayloadWithResponse.json")).readObject();
+        final JsonObject checkpoint = createObjectBuilder()
+                .add("registerEnvelopeResponse", registerEnvelopeResponse)
+                .add("uploaded", createArrayBuilder().add("CrownCourtExtract.pdf").add("sample_file.pdf"))
+                .add("attached", createArrayBuilder().add("CrownCourtExtract.pdf"))
+                .add("thumbnails", createArrayBuilder())
+                .build();
+        givenTheEnvironmentIsSetCorrectly();
+        when(checkpointStorage.downloadText("checkpoints/valid_scan_documents")).thenReturn(Optional.of(checkpoint.toString()));
+        when(stagingProsecutorCommandHelper.addMaterial(any(JsonObject.class), anyString(), any(InputStream.class))).thenReturn(mockResponse);
+
+        whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents");
+
+        verify(stagingBulkScanHandler, never()).registerEnvelope(any(JsonObject.class));
+        verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/CrownCourtExtract.pdf"));
+        verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/sample_file.pdf"));
+        verify(stagingProsecutorCommandHelper, times(1)).addMaterial(any(JsonObject.class), anyString(), any(InputStream.class));
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/CrownCourtExtract.pdf");
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/sample_file.pdf");
+        verify(checkpointStorage).deleteFromStorage("checkpoints/valid_scan_documents");
+    }
+
+    @Test
+    public void shouldKeepCheckpointWhenAttachingADocumentFails() throws IOException {
+        providerJsonInputStream = BulkScanInboxProcessorTest.class.getResourceAsStream("/scanProviderPayloadWithResponse.json");
+        givenTheEnvironmentIsSetCorrectly();
+        when(stagingBulkScanHandler.registerEnvelope(any(JsonObject.class))).thenReturn(createReader(providerJsonInputStream).readObject());
+        when(stagingProsecutorCommandHelper.addMaterial(any(JsonObject.class), anyString(), any(InputStream.class)))
+                .thenThrow(new BulkScanProcessorException("add material failed"));
+
+        assertThrows(BulkScanProcessorException.class, () -> whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents"));
+
+        verify(checkpointStorage, atLeastOnce()).uploadText(eq("checkpoints/valid_scan_documents"), anyString());
+        verify(checkpointStorage, never()).deleteFromStorage(anyString());
+        verify(scanProviderCloudStorage, never()).deleteFromStorage("valid_scan_documents.zip");
+    }
+
+    @Test
+    public void shouldSkipZipIdenticalToAnAlreadyIngestedOne() throws IOException {
+        givenTheEnvironmentIsSetCorrectly();
+        when(ingestLedger.findIngestedEnvelope(anyString())).thenReturn(Optional.of("earlier_scan_documents"));
+        whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents");
+        verify(stagingBulkScanHandler, never()).registerEnvelope(any(JsonObject.class));
+        verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), anyString());
+        verify(stagingProsecutorCommandHelper, never()).addMaterial(any(JsonObject.class), anyString(), any(InputStream.class));
+        verify(ingestLedger, never()).recordIngestedEnvelope(anyString(), anyString());
+        verify(scanProviderCloudStorage).deleteFromStorage("valid_scan_documents.zip");
+    }
+
+    @Test
+    public void shouldCopyThumbnailsAlreadyRenderedForIdenticalPdfs() throws IOException {
+        providerJsonInputStream = BulkScanInboxProcessorTest.class.getResourceAsStream("/scanProviderPayloadWithResponse.json");
+        givenTheEnvironmentIsSetCorrectly();
+        when(stagingBulkScanHandler.registerEnvelope(any(JsonObject.class))).thenReturn(createReader(providerJsonInputStream).readObject());
+        when(stagingProsecutorCommandHelper.addMaterial(any(JsonObject.class), anyString(), any(InputStream.class))).thenReturn(mockResponse);
+        when(ingestLedger.findThumbnail(anyString())).thenReturn(Optional.of("earlier_scan_documents/CrownCourtExtract.png"));
+        when(blobCloudStorage.copyWithinStorage(anyString(), anyString())).thenReturn(true);
+        whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents");
+        verify(blobCloudStorage).copyWithinStorage("earlier_scan_documents/CrownCourtExtract.png", "valid_scan_documents/CrownCourtExtract.png");
+        verify(blobCloudStorage).copyWithinStorage("earlier_scan_documents/CrownCourtExtract.png", "valid_scan_documents/sample_file.png");
+        verify(thumbnailRequestQueue, never()).requestThumbnail(anyString());
+        verify(ingestLedger, never()).forgetThumbnail(anyString());
+    }
+
+    @Test
+    public void shouldRequestThumbnailAgainWhenTheRecordedOneNoLongerExists() throws IOException {
+        providerJsonInputStream = BulkScanInboxProcessorTest.class.getResourceAsStream("/scanProviderPayloadWithResponse.json");
+        givenTheEnvironmentIsSetCorrectly();
+        when(stagingBulkScanHandler.registerEnvelope(any(JsonObject.class))).thenReturn(createReader(providerJsonInputStream).readObject());
+        when(stagingProsecutorCommandHelper.addMaterial(any(JsonObject.class), anyString(), any(InputStream.class))).thenReturn(mockResponse);
+        when(ingestLedger.findThumbnail(anyString())).thenReturn(Optional.of("expired_scan_documents/CrownCourtExtract.png"));
+        when(blobCloudStorage.copyWithinStorage(anyString(), anyString())).thenReturn(false);
+        whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents");
+        verify(ingestLedger, times(2)).forgetThumbnail(anyString());
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/CrownCourtExtract.pdf");
+        verify(thumbnailRequestQueue).requestThumbnail("valid_scan_documents/sample_file.pdf");
+        verify(checkpointStorage).deleteFromStorage("checkpoints/valid_scan_documents");
     }
 
     @Test
@@ -133,6 +236,7 @@ public class BulkScanInboxProcessorTest {
         whenBulkScanProcessorIsInvokedWithPayload("valid_scan_documents_with_one_pdf");
         verify(stagingBulkScanHandler).registerEnvelope(any(JsonObject.class));
         verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents_with_one_pdf/file-sample_150kB.pdf"));
+        verify(thumbnailRequestQueue, never()).requestThumbnail(anyString());
     }
 
     @Test
@@ -157,7 +261,45 @@ public class BulkScanInboxProcessorTest {
         whenBulkScanProcessorIsInvokedWithPayload("no_scannable_items");
         verify(stagingBulkScanHandler, never()).registerEnvelope(any(JsonObject.class));
         verify(logger).severe("Invalid zip payload exception No scannable items found in the Json payload");
-        verify(scanProviderFailedBlobStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("no_scannable_items.zip"));
+        verify(scanProviderFailedBlobStorage).copyFromStorage(scanProviderCloudStorage, "no_scannable_items.zip");
+    }
+
+    @Test
+    public void processValidZipFromBlobStreamSpilledToTemporaryFile() throws IOException {
+        providerJsonInputStream = BulkScanInboxProcessorTest.class.getResourceAsStream("/scanProviderPayloadWithResponse.json");
+        givenTheEnvironmentIsSetCorrectly();
+        when(stagingBulkScanHandler.registerEnvelope(any(JsonObject.class))).thenReturn(createReader(providerJsonInputStream).readObject());
+        Response materialResponse = Mockito.mock(Response.class);
+        when(stagingProsecutorCommandHelper.addMaterial(any(JsonObject.class), anyString(), any(InputStream.class))).thenReturn(materialResponse);
+        whenBulkScanStreamProcessorIsInvokedWithPayload("valid_scan_documents");
+        verify(stagingBulkScanHandler).registerEnvelope(any(JsonObject.class));
+        verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/CrownCourtExtract.pdf"));
+        verify(blobCloudStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq("valid_scan_documents/sample_file.pdf"));
+        verify(scanProviderCloudStorage).deleteFromStorage("valid_scan_documents.zip");
+    }
+
+    @Test
+    public void invalidZipFromBlobStreamIsMovedToFailedContainer() throws IOException {
+        givenTheEnvironmentIsSetCorrectly();
+        whenBulkScanStreamProcessorIsInvokedWithPayload("payload_and_files_no_match");
+        verifyTheOriginalZipIsUploadedToFailedContainer("payload_and_files_no_match",
+                "Invalid zip payload exception Payload and pdf files doesn't match");
+    }
+
+    @Test
+    public void zipLargerThanCanBeMappedIsMovedToFailedContainerWithoutReadingIt() {
+        givenTheEnvironmentIsSetCorrectly();
+        when(scanProviderCloudStorage.getBlobSize("oversized_scan_documents.zip")).thenReturn(BlobZipStream.MAX_ZIP_FILE_LENGTH + 1);
+        final HashMap<String, Object> data = new HashMap<>();
+        data.put("url", "http://someurl/bs-ste-scans-received/oversized_scan_documents.zip");
+
+        new CustomBulkScanInboxProcessor().processZip(new EventGridSchema(new Date(), data), executionContext);
+
+        verify(scanProviderCloudStorage, never()).openInputStream(anyString());
+        verify(stagingBulkScanHandler, never()).registerEnvelope(any(JsonObject.class));
+        verify(scanProviderFailedBlobStorage).copyFromStorage(scanProviderCloudStorage, "oversized_scan_documents.zip");
+        verify(scanProviderCloudStorage).deleteFromStorage("oversized_scan_documents.zip");
+        verify(logger).severe("Invalid zip payload exception Zip file of 2147483648 bytes is larger than the supported 2147483647 bytes");
     }
 
     private void givenTheEnvironmentIsSetCorrectly() {
@@ -166,22 +308,38 @@ public class BulkScanInboxProcessorTest {
     }
 
     private void whenBulkScanProcessorIsInvokedWithPayload(final String fileName) throws IOException {
-        InputStream fileInputStream = getClass().getResourceAsStream("/" + fileName + ".zip");
-        BulkScanInboxProcessor bulkScanInboxProcessor = new CustomBulkScanInboxProcessor();
+        whenBulkScanProcessorIsInvokedWithPayload(fileName, Long.MAX_VALUE);
+    }
+
+    private void whenBulkScanStreamProcessorIsInvokedWithPayload(final String fileName) throws IOException {
+        whenBulkScanProcessorIsInvokedWithPayload(fileName, 0L);
+    }
+
+    private void whenBulkScanProcessorIsInvokedWithPayload(final String fileName, final long zipSpillThresholdBytes) throws IOException {
+        final byte[] content = toByteArray(getClass().getResourceAsStream("/" + fileName + ".zip"));
+        when(scanProviderCloudStorage.getBlobSize(fileName + ".zip")).thenReturn((long) content.length);
+        when(scanProviderCloudStorage.openInputStream(fileName + ".zip")).thenReturn(new ByteArrayInputStream(content));
+        final CustomBulkScanInboxProcessor bulkScanInboxProcessor = new CustomBulkScanInboxProcessor();
+        bulkScanInboxProcessor.zipSpillThresholdBytes = zipSpillThresholdBytes;
         final HashMap<String, Object> data = new HashMap<>();
         data.put("url", "http://someurl/bs-ste-scans-received/" + fileName + ".zip");
-        bulkScanInboxProcessor.processZip(new EventGridSchema(new Date(), data), executionContext, toByteArray(fileInputStream));
+        bulkScanInboxProcessor.processZip(new EventGridSchema(new Date(), data), executionContext);
     }
 
     private void verifyTheOriginalZipIsUploadedToFailedContainer(final String fileName, String errorMessage) {
+        verify(ingestLedger, never()).recordIngestedEnvelope(anyString(), anyString());
         verify(stagingBulkScanHandler, never()).registerEnvelope(any(JsonObject.class));
         verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), eq(fileName + "/CrownCourtExtract.pdf"));
         verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), eq(fileName + "/sample_file.pdf"));
-        verify(scanProviderFailedBlobStorage).uploadToStorage(any(InputStream.class), any(Long.class), eq(fileName + ".zip"));
+        verify(scanProviderFailedBlobStorage).copyFromStorage(scanProviderCloudStorage, fileName + ".zip");
+        verify(scanProviderFailedBlobStorage, never()).uploadToStorage(any(InputStream.class), any(Long.class), anyString());
         verify(logger).severe(errorMessage);
     }
 
     private class CustomBulkScanInboxProcessor extends BulkScanInboxProcessor {
+
+        private long zipSpillThresholdBytes;
+
         @Override
         public BlobCloudStorage getScanManagerActiveBlobContainer() throws BulkScanProcessorException {
             return blobCloudStorage;
@@ -197,6 +355,26 @@ public class BulkScanInboxProcessorTest {
             return scanProviderFailedBlobStorage;
         }
 
+        @Override
+        public EnvelopeCheckpoint getEnvelopeCheckpoint(final String zipFileName) {
+            return EnvelopeCheckpoint.load(checkpointStorage, zipFileName);
+        }
+
+        @Override
+        public IngestLedger getIngestLedger() {
+            return ingestLedger;
+        }
+
+        @Override
+        public ThumbnailRequestQueue getThumbnailRequestQueue() {
+            return thumbnailRequestQueue;
+        }
+
+        @Override
+        public long getZipSpillThresholdBytes() {
+            return zipSpillThresholdBytes;
+        }
+
         @Override
         public StagingBulkScanCommandHelper newStagingBulkScanCommandHelper(final ReferenceDataQueryHelper referenceDataQueryHelper) {
             return stagingBulkScanHandler;
@@ -0,0 +1,59 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.bulkscan.azure.storage.SequenceBlockAllocator;
+import uk.gov.moj.cpp.bulkscan.azure.storage.SequenceBlockAllocator.SequenceBlock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class DocumentControlNumberGeneratorTest {
+
+    private final SequenceBlockAllocator sequenceBlockAllocator = mock(SequenceBlockAllocator.class);
+    private final AtomicLong now = new AtomicLong(1_000L);
+
+    private final DocumentControlNumberGenerator generator = new DocumentControlNumberGenerator(sequenceBlockAllocator, 2, 60_000) {
+        @Override
+        protected long currentTimeMillis() {
+            return now.get();
+        }
+    };
+
+    @Test
+    public void shouldKeepTheSequenceAndTimeFormat() {
+        when(sequenceBlockAllocator.allocate(2)).thenReturn(new SequenceBlock(1000, 1001));
+
+        final String documentControlNumber = generator.next();
+
+        assertThat(documentControlNumber.matches("1000\\d{9}"), is(true));
+    }
+
+    @Test
+    public void shouldHandOutALeasedBlockBeforeLeasingTheNext() {
+        when(sequenceBlockAllocator.allocate(2)).thenReturn(new SequenceBlock(1000, 1001), new SequenceBlock(1004, 1005));
+
+        assertThat(generator.next(), startsWith("1000"));
+        assertThat(generator.next(), startsWith("1001"));
+        assertThat(generator.next(), startsWith("1004"));
+        assertThat(generator.next(), startsWith("1005"));
+
+        verify(sequenceBlockAllocator, times(2)).allocate(2);
+    }
+
+    @Test
+    public void shouldLeaseANewBlockOnceTheLeaseHasRunOut() {
+        when(sequenceBlockAllocator.allocate(2)).thenReturn(new SequenceBlock(1000, 1001), new SequenceBlock(1010, 1011));
+
+        assertThat(generator.next(), startsWith("1000"));
+        now.addAndGet(60_000);
+        assertThat(generator.next(), startsWith("1010"));
+    }
+}
@@ -0,0 +1,15 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+public class NotificationDispatcherFunctionTest {
+
+    @Test
+    public void shouldHideABatchForAsLongAsSendingEachOfItsMessagesCanTake() {
+        assertThat(NotificationDispatcherFunction.visibilityTimeoutSeconds(8, 80_000), is(8 * 80 + 30));
+        assertThat(NotificationDispatcherFunction.visibilityTimeoutSeconds(1, 1), is(1 + 30));
+    }
+}
@@ -0,0 +1,107 @@
+package uk.gov.moj.cpp.bulkscan.azure.function;
+
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.IngestLedger;
+import uk.gov.moj.cpp.bulkscan.azure.zip.BlobZipStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class PdfThumbnailProcessorTest {
+
+    @Mock
+    private BlobCloudStorage blobCloudStorage;
+
+    @Mock
+    private IngestLedger ingestLedger;
+
+    @Mock
+    private ExecutionContext executionContext;
+
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    public void onceBeforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        when(executionContext.getLogger()).thenReturn(logger);
+    }
+
+    @Test
+    public void shouldWriteThumbnailNextToThePdf() throws IOException {
+        when(blobCloudStorage.openInputStream("valid_scan_documents/CrownCourtExtract.pdf"))
+                .thenReturn(new ByteArrayInputStream(pdfContent("CrownCourtExtract.pdf")));
+        final AtomicReference<byte[]> thumbnail = new AtomicReference<>();
+        doAnswer(invocation -> {
+            thumbnail.set(toByteArray(invocation.getArgument(0, InputStream.class)));
+            return null;
+        }).when(blobCloudStorage).uploadToStorage(any(InputStream.class), anyLong(), eq("valid_scan_documents/CrownCourtExtract.png"));
+
+        new CustomPdfThumbnailProcessor().renderThumbnail("valid_scan_documents/CrownCourtExtract.pdf", executionContext);
+
+        verify(blobCloudStorage).uploadToStorage(any(InputStream.class), anyLong(), eq("valid_scan_documents/CrownCourtExtract.png"));
+        verify(ingestLedger).recordThumbnail(IngestLedger.sha256(new ByteArrayInputStream(pdfContent("CrownCourtExtract.pdf"))),
+                "valid_scan_documents/CrownCourtExtract.png");
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail.get())), is(notNullValue()));
+        assertThat(thumbnail.get().length, is(greaterThan(0)));
+    }
+
+    @Test
+    public void shouldFailWithoutWritingThumbnailForCorruptedPdf() {
+        when(blobCloudStorage.openInputStream("valid_scan_documents/corrupted.pdf"))
+                .thenReturn(new ByteArrayInputStream("not a pdf".getBytes()));
+
+        assertThrows(BulkScanProcessorException.class,
+                () -> new CustomPdfThumbnailProcessor().renderThumbnail("valid_scan_documents/corrupted.pdf", executionContext));
+
+        verify(logger).warning("Image generation failed, possibly corrupted pdf -->>valid_scan_documents/corrupted.pdf");
+        verify(blobCloudStorage, never()).uploadToStorage(any(InputStream.class), anyLong(), anyString());
+        verify(ingestLedger, never()).recordThumbnail(anyString(), anyString());
+    }
+
+    private byte[] pdfContent(final String pdfDocumentName) throws IOException {
+        try (BlobZipStream blobZipStream = new BlobZipStream(toByteArray(getClass().getResourceAsStream("/valid_scan_documents.zip")));
+             InputStream pdfInputStream = blobZipStream.openEntry(pdfDocumentName)) {
+            return toByteArray(pdfInputStream);
+        }
+    }
+
+    private class CustomPdfThumbnailProcessor extends PdfThumbnailProcessor {
+        @Override
+        public IngestLedger getIngestLedger() {
+            return ingestLedger;
+        }
+
+        @Override
+        public BlobCloudStorage getScanManagerActiveBlobContainer() {
+            return blobCloudStorage;
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package uk.gov.moj.cpp.bulkscan.azure.function;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -17,31 +22,41 @@ import static org.mockito.Mockito.when;
 import static uk.gov.moj.cpp.bulkscan.azure.function.FunctionConstants.APPLICATION_PDF;
 import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createReader;
 
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
 import uk.gov.moj.cpp.bulkscan.azure.rest.Attachment;
 import uk.gov.moj.cpp.bulkscan.azure.rest.AttachmentMetadata;
 import uk.gov.moj.cpp.bulkscan.azure.rest.EmailDetails;
-import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationEmailHelper;
+import uk.gov.moj.cpp.bulkscan.azure.rest.NotificationRequest;
 import uk.gov.moj.cpp.bulkscan.azure.rest.ProcessResults;
 import uk.gov.moj.cpp.bulkscan.azure.rest.Prosecutor;
 import uk.gov.moj.cpp.bulkscan.azure.rest.ReferenceDataQueryHelper;
 import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox;
+import uk.gov.moj.cpp.bulkscan.azure.storage.SequenceBlockAllocator;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.UUID;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
-import javax.ws.rs.core.Response;
+import javax.json.JsonObjectBuilder;
 
 import com.google.common.collect.Lists;
 import com.microsoft.azure.functions.ExecutionContext;
@@ -49,8 +64,11 @@ import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpResponseMessage.Builder;
 import com.microsoft.azure.functions.HttpStatus;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -59,7 +77,7 @@ import org.mockito.MockitoAnnotations;
 public class PoliceEmailExtractorFunctionTest {
 
     @Mock
-    private HttpRequestMessage<EmailDetails> request;
+    private HttpRequestMessage<Optional<byte[]>> request;
 
     @Mock
     private ExecutionContext context;
@@ -74,11 +92,14 @@ public class PoliceEmailExtractorFunctionTest {
     private ReferenceDataQueryHelper referenceDataQueryHelper;
 
     @Mock
-    private NotificationEmailHelper notificationEmailHelper;
+    private NotificationOutbox notificationOutbox;
 
     @Mock
     private BlobCloudStorage blobCloudStorage;
 
+    @Mock
+    private SequenceBlockAllocator sequenceBlockAllocator;
+
     private PoliceEmailExtractorFunction functionToTest;
 
     @BeforeEach
@@ -90,6 +111,8 @@ public class PoliceEmailExtractorFunctionTest {
         when(responseBuilder.header("Content-Type", "application/json")).thenReturn(responseBuilder);
         when(responseBuilder.body(anyString())).thenReturn(responseBuilder);
         when(responseBuilder.build()).thenReturn(httpResponseMessage);
+        when(sequenceBlockAllocator.allocate(anyInt())).thenReturn(new SequenceBlockAllocator.SequenceBlock(1000, 1099));
+        functionToTest.setDocumentControlNumberGenerator(new DocumentControlNumberGenerator(sequenceBlockAllocator, 100, 60_000));
     }
 
 
@@ -100,7 +123,7 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails("subjectWithoutUrn", "test@test.com",
                 createSingleAttachmentList("value1", new Date(), "test", "testc", "hjkk"));
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
 
@@ -122,14 +145,13 @@ public class PoliceEmailExtractorFunctionTest {
 
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
         JsonObject jsonObject = createObjectBuilder().add("oucode", "OUCODE").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.ok().build());
         HttpResponseMessage response = functionToTest.processEmail(request, context);
 
         assertEquals(HttpStatus.OK, response.getStatus());
@@ -153,7 +175,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
@@ -167,8 +189,8 @@ public class PoliceEmailExtractorFunctionTest {
         verify(request, times(1)).getBody();
         verify(httpResponseMessage, times(1)).getStatus();
         verifyNoMoreInteractions(request, httpResponseMessage);
-        verify(blobCloudStorage).uploadToStorage(any(), any(), any());
-        verify(notificationEmailHelper, never()).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(blobCloudStorage).uploadStream(any(), any());
+        verify(notificationOutbox, never()).enqueue(anyString());
     }
 
     @Test
@@ -181,14 +203,13 @@ public class PoliceEmailExtractorFunctionTest {
 
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.ok().build());
         HttpResponseMessage response = functionToTest.processEmail(request, context);
 
         assertEquals(HttpStatus.OK, response.getStatus());
@@ -199,7 +220,12 @@ public class PoliceEmailExtractorFunctionTest {
         verifyNoMoreInteractions(request, httpResponseMessage);
         verify(logger).severe(contains("ErrorCode:4003 - Case URN not found in subject or one/more attachments: "  + "Attachement With No URN"));
 
-        verify(notificationEmailHelper).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        final ArgumentCaptor<String> notification = ArgumentCaptor.forClass(String.class);
+        verify(notificationOutbox).enqueue(notification.capture());
+        final NotificationRequest notificationRequest = NotificationRequest.fromJson(notification.getValue());
+        assertEquals("test@test.com", notificationRequest.getSenderEmailAddress());
+        assertEquals("Attachement With No URN", notificationRequest.getInvalidFileNames());
+        assertEquals("Subject with No URN", notificationRequest.getSubject());
     }
 
     @Test
@@ -208,12 +234,11 @@ public class PoliceEmailExtractorFunctionTest {
         // URN not in subject - Not PDF matching Prosecutor Oucode
         final EmailDetails emailDetails = createEmailDetails("subjectWithoutUrn", "test@test.com",
                 createSingleAttachmentList("value1", new Date(), "test", "testc", "hjkk"));
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.ok().build());
         JsonObject jsonObject = createObjectBuilder().add("oucode", "OUCODE").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
@@ -227,7 +252,7 @@ public class PoliceEmailExtractorFunctionTest {
         verify(request, times(1)).getBody();
         verify(httpResponseMessage, times(1)).getStatus();
         verify(logger).severe(contains("ErrorCode:4001 - Unsupported File types for files: " + "test"));
-        verify(notificationEmailHelper, times(1)).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox, times(1)).enqueue(anyString());
         verifyNoMoreInteractions(request);
         verifyNoMoreInteractions(httpResponseMessage);
     }
@@ -237,12 +262,11 @@ public class PoliceEmailExtractorFunctionTest {
         // URN not in subject - Not PDF matching Prosecutor Oucode
         final EmailDetails emailDetails = createEmailDetails("subjectWithoutUrn", "test@test.com",
                 createSingleAttachmentList("value1", new Date(), "attachment-1-44TK2317123", APPLICATION_PDF, "hjkk"));
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.ok().build());
         JsonObject jsonObject = createObjectBuilder().add("oucode", "OUCODE").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
@@ -258,7 +282,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         verify(logger).severe(contains("ErrorCode:4004 - Prosecutor found but is unrelated to case URN for " +
                 "one/more attachments: " + "attachment-1-44TK2317123"));
-        verify(notificationEmailHelper, times(1)).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox, times(1)).enqueue(anyString());
         verifyNoMoreInteractions(request);
         verifyNoMoreInteractions(httpResponseMessage);
     }
@@ -273,12 +297,11 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails("21 AZ 12345 21", "test@test.com",
                 Lists.newArrayList(attachment1, attachment2));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.accepted().build());
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
@@ -291,7 +314,7 @@ public class PoliceEmailExtractorFunctionTest {
         verify(request, times(1)).createResponseBuilder(HttpStatus.OK);
         verify(request, times(1)).getBody();
         verify(httpResponseMessage, times(1)).getStatus();
-        verify(notificationEmailHelper, times(1)).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox, times(1)).enqueue(anyString());
         verify(logger).severe(contains("ErrorCode:4003 - Case URN not found in subject or one/more attachments: test,test"));
         verifyNoMoreInteractions(request);
         verifyNoMoreInteractions(httpResponseMessage);
@@ -306,12 +329,11 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails("21 AZ 12345 21", "test@test.com",
                 Lists.newArrayList(attachment1, attachment2));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.accepted().build());
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
@@ -321,7 +343,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         assertEquals(HttpStatus.OK, response.getStatus());
 
-        verifyNoMoreInteractions(notificationEmailHelper);
+        verifyNoMoreInteractions(notificationOutbox);
     }
 
     @Test
@@ -332,12 +354,11 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails("21 AZ 12345 21", "test@test.com",
                 Lists.newArrayList(attachment1, attachment2));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.accepted().build());
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
@@ -347,7 +368,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         assertEquals(HttpStatus.OK, response.getStatus());
 
-        verify(notificationEmailHelper, times(1)).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox, times(1)).enqueue(anyString());
     }
 
     @Test
@@ -359,12 +380,11 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails("21 AZ 12345 21", "test@test.com",
                 Lists.newArrayList(attachment1, attachment2));
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
         functionToTest.setBlobCloudStorage(blobCloudStorage);
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.accepted().build());
 
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0420000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
@@ -375,13 +395,40 @@ public class PoliceEmailExtractorFunctionTest {
         verify(request, times(1)).createResponseBuilder(HttpStatus.OK);
         verify(request, times(1)).getBody();
         verify(httpResponseMessage, times(1)).getStatus();
-        verify(notificationEmailHelper, times(1)).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox, times(1)).enqueue(anyString());
         verifyNoMoreInteractions(request);
         verifyNoMoreInteractions(httpResponseMessage);
-        verify(blobCloudStorage, never()).uploadToStorage(any(), any(), any());
+        verify(blobCloudStorage, never()).uploadStream(any(), any());
         verify(logger).severe(contains("ErrorCode:4003 - Case URN not found in subject or one/more attachments: test,testNonPdf"));
     }
 
+    @Test
+    public void givenNotificationOutboxUnavailable_processEmail_shouldStillStoreValidAttachments() {
+
+        final Attachment validAttachment = createAttachment("value1", new Date(), "21 AZ 12345 21", APPLICATION_PDF, "hjkk", false);
+        final Attachment invalidAttachment = createAttachment("value2", new Date(), "notes", "text/plain", "hjkk", false);
+        final EmailDetails emailDetails = createEmailDetails("subjectWithoutUrn", "test@test.com",
+                Lists.newArrayList(validAttachment, invalidAttachment));
+        when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
+        when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
+        functionToTest.setNotificationOutbox(notificationOutbox);
+        functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
+        functionToTest.setBlobCloudStorage(blobCloudStorage);
+        JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
+        when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
+                .thenReturn(createArrayBuilder().add(jsonObject).build());
+        doThrow(new BulkScanProcessorException("queue not found")).when(notificationOutbox).enqueue(anyString());
+
+        HttpResponseMessage response = functionToTest.processEmail(request, context);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        final InOrder inOrder = inOrder(blobCloudStorage, notificationOutbox);
+        inOrder.verify(blobCloudStorage).uploadStream(any(), any());
+        inOrder.verify(notificationOutbox).enqueue(anyString());
+        verify(logger).severe(contains("Unable to queue notification email"));
+    }
+
     @Test
     public void givenValidUrnInSubjectWithMultipleAttachments_processEmail_shouldReturnOK() {
 
@@ -390,13 +437,12 @@ public class PoliceEmailExtractorFunctionTest {
 
         when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
         when(httpResponseMessage.getStatus()).thenReturn(HttpStatus.OK);
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
-        functionToTest.setNotificationEmailHelper(notificationEmailHelper);
+        functionToTest.setNotificationOutbox(notificationOutbox);
         JsonObject jsonObject = createObjectBuilder().add("oucode", "0210000").build();
         when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
                 .thenReturn(createArrayBuilder().add(jsonObject).build());
-        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Response.accepted().build());
         functionToTest.setBlobCloudStorage(blobCloudStorage);
 
         HttpResponseMessage response = functionToTest.processEmail(request, context);
@@ -406,9 +452,9 @@ public class PoliceEmailExtractorFunctionTest {
         verify(request, times(1)).createResponseBuilder(HttpStatus.OK);
         verify(request, times(1)).getBody();
         verify(httpResponseMessage, times(1)).getStatus();
-        verify(notificationEmailHelper).sendNotificationEmail(anyString(),anyString(), anyString(), anyString(), any());
+        verify(notificationOutbox).enqueue(anyString());
         verifyNoMoreInteractions(request, httpResponseMessage);
-        verify(blobCloudStorage, never()).uploadToStorage(any(), any(), any());
+        verify(blobCloudStorage, never()).uploadStream(any(), any());
     }
 
     @Test
@@ -419,7 +465,7 @@ public class PoliceEmailExtractorFunctionTest {
                 createSingleAttachmentList("value1", new Date(),
                         "Attachment without URN", APPLICATION_PDF, "hjkk"));
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
 
         Set<String> authCodes = new TreeSet<>();
         authCodes.add("0990000");
@@ -428,7 +474,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         assertEquals(expectedUrn, response.getAttachmentMetadataList().get(0).getUrn());
 
-        verifyNoMoreInteractions(notificationEmailHelper);
+        verifyNoMoreInteractions(notificationOutbox);
 
     }
 
@@ -440,7 +486,7 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails(subject, "from",
                 createSingleAttachmentList("value1", new Date(), filename, APPLICATION_PDF, "hjkk"));
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
 
         Set<String> authCodes = new TreeSet<>();
         authCodes.add("0990000");
@@ -456,7 +502,7 @@ public class PoliceEmailExtractorFunctionTest {
         final EmailDetails emailDetails = createEmailDetails(subject, "from",
                 createSingleAttachmentList("value1", new Date(), "Attachment without URN", APPLICATION_PDF, "hjkk"));
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
 
         ProcessResults response = functionToTest.processEmailDetails(emailDetails, createProsecutor());
         assertEquals(1, response.getUrnNotFoundAttachments().size());
@@ -474,7 +520,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         final EmailDetails emailDetails = createEmailDetails(subject, "from", attachments);
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
         Set<String> authCodes = new TreeSet<>();
         authCodes.add("0420000");
         authCodes.add("0440000");
@@ -500,7 +546,7 @@ public class PoliceEmailExtractorFunctionTest {
 
         final EmailDetails emailDetails = createEmailDetails(subject, "from", attachments);
 
-        when(request.getBody()).thenReturn(emailDetails);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
 
         Set<String> authCodes = new TreeSet<>();
         authCodes.add("0420000");
@@ -517,6 +563,31 @@ public class PoliceEmailExtractorFunctionTest {
         assertEquals("Attachment-with-URN-42TK2317423", response.getAttachmentMetadataList().get(0).getFileName());
     }
 
+    @Test
+    public void givenRequestWithoutBody_processEmail_shouldRespondWithBadRequest() {
+        when(request.createResponseBuilder(HttpStatus.BAD_REQUEST)).thenReturn(responseBuilder);
+        when(request.getBody()).thenReturn(Optional.empty());
+        functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
+
+        functionToTest.processEmail(request, context);
+
+        verify(request).createResponseBuilder(HttpStatus.BAD_REQUEST);
+        verifyNoMoreInteractions(referenceDataQueryHelper);
+    }
+
+    @Test
+    public void givenMalformedRequestBody_processEmail_shouldRespondWithBadRequest() {
+        when(request.createResponseBuilder(HttpStatus.BAD_REQUEST)).thenReturn(responseBuilder);
+        when(request.getBody()).thenReturn(Optional.of("{\"subject\": \"21 AZ 12345 21\", \"attachments\": [".getBytes(UTF_8)));
+        functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
+
+        functionToTest.processEmail(request, context);
+
+        verify(request).createResponseBuilder(HttpStatus.BAD_REQUEST);
+        verify(logger).severe(contains("Unable to read email request"));
+        verifyNoMoreInteractions(referenceDataQueryHelper);
+    }
+
     @Test
     public void givenValidURNInput_extractURN_shouldExtractValidURN() {
         String input = "44BB0339623 XXX XXX";
@@ -557,27 +628,36 @@ public class PoliceEmailExtractorFunctionTest {
     }
 
     @Test
-    public void givenAllTheRequiredData_writeMetadataToFile_shouldGenerateFile() throws IOException {
-        // Initialize
-        String prosecutorAuthorityCode = "ProsecutorAuthorityCode";
-        Date vendorReceivedDate = new Date();
-        String documentControlNumber = UUID.randomUUID().toString();
-        String zipFileName = "test.zip";
-        List<AttachmentMetadata> attachmentMetadataList = new ArrayList<>();
-        AttachmentMetadata attachmentMetadata = AttachmentMetadata.builder().oucode(prosecutorAuthorityCode).build();
-        attachmentMetadataList.add(attachmentMetadata);
-        Logger logger = Mockito.mock(Logger.class);
-        ProcessResults processResults = new ProcessResults();
-        processResults.getAttachmentMetadataList().addAll(attachmentMetadataList);
+    public void givenValidUrnInSubject_processEmail_shouldStreamEnvelopeZipToInbox() throws IOException {
+        final byte[] pdfContent = "%PDF-1.4 streamed attachment".getBytes(UTF_8);
+        final EmailDetails emailDetails = createEmailDetails("21 AZ 12345 21", "test@test.com",
+                createSingleAttachmentList("value1.pdf", new Date(), "test", "application/pdf", Base64.getEncoder().encodeToString(pdfContent)));
 
-        // Act
-        File result = functionToTest.writeMetadataToFile(processResults, vendorReceivedDate, documentControlNumber, zipFileName, logger);
+        when(request.createResponseBuilder(HttpStatus.OK)).thenReturn(responseBuilder);
+        when(request.getBody()).thenReturn(requestBody(emailDetails));
+        functionToTest.setReferenceDataQueryHelper(referenceDataQueryHelper);
+        functionToTest.setBlobCloudStorage(blobCloudStorage);
+        when(referenceDataQueryHelper.getProsecutorByEmailDomain("test@test.com"))
+                .thenReturn(createArrayBuilder().add(createObjectBuilder().add("oucode", "0210000")).build());
+        final ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            invocation.getArgument(1, BlobCloudStorage.ContentWriter.class).writeTo(zipContent);
+            return null;
+        }).when(blobCloudStorage).uploadStream(anyString(), any());
 
-        //Assert
-        assertTrue(result.exists());
-        assertNotNull(result);
+        functionToTest.processEmail(request, context);
 
-        Files.deleteIfExists(result.toPath());
+        final Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zipContent.toByteArray()))) {
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+                entries.put(entry.getName(), IOUtils.toByteArray(zipInputStream));
+            }
+        }
+        assertEquals(2, entries.size());
+        final JsonObject metadata = createReader(new ByteArrayInputStream(entries.get("metadata.json"))).readObject();
+        final JsonObject scannableItem = metadata.getJsonArray("scannable_items").getJsonObject(0);
+        assertEquals("21AZ1234521", scannableItem.getString("case_number"));
+        assertArrayEquals(pdfContent, entries.get(scannableItem.getString("file_name")));
     }
 
     @Test
@@ -660,6 +740,25 @@ public class PoliceEmailExtractorFunctionTest {
                 .build();
     }
 
+    private static Optional<byte[]> requestBody(final EmailDetails emailDetails) {
+        final JsonArrayBuilder attachments = createArrayBuilder();
+        emailDetails.getAttachments().forEach(attachment -> attachments.add(createObjectBuilder()
+                .add("id", attachment.getId())
+                .add("lastModifiedDate", DateTimeFormatter.ISO_INSTANT.format(attachment.getLastModifiedDate().toInstant()))
+                .add("name", attachment.getName())
+                .add("contentType", attachment.getContentType())
+                .add("contentBytes", attachment.getContentBytes())
+                .add("isInline", attachment.isInline())));
+        final JsonObjectBuilder body = createObjectBuilder()
+                .add("subject", emailDetails.getSubject())
+                .add("from", emailDetails.getFrom())
+                .add("attachments", attachments);
+        if (emailDetails.getBody() != null) {
+            body.add("body", emailDetails.getBody());
+        }
+        return Optional.of(body.build().toString().getBytes(UTF_8));
+    }
+
     private static Attachment createAttachment(String attachmentId, Date lastModifiedDate, String fileName, String contentType, String contentBytes, boolean isInline) {
         return new Attachment(attachmentId, lastModifiedDate, fileName, contentType, contentBytes,  isInline);
     }
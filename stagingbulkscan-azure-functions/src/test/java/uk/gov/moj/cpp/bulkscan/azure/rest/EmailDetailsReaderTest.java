@@ -0,0 +1,136 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EmailDetailsReaderTest {
+
+    private static final byte[] PDF_CONTENT = "%PDF-1.4 police email attachment".getBytes(UTF_8);
+
+    private File spoolDirectory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        spoolDirectory = Files.createTempDirectory("email-details-reader").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        final File[] files = spoolDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(spoolDirectory.toPath());
+    }
+
+    @Test
+    public void shouldReadEmailAndDecodeAttachmentContent() throws IOException {
+        final EmailDetailsReader reader = new EmailDetailsReader(1024, spoolDirectory);
+
+        try (EmailDetails emailDetails = reader.read(email(PDF_CONTENT).getBytes(UTF_8))) {
+            assertThat(emailDetails.getSubject(), is("Case 21 AZ 12345 21"));
+            assertThat(emailDetails.getFrom(), is("officer@police.example"));
+            assertThat(emailDetails.getBody(), is("<p>Please find attached</p>"));
+
+            final List<Attachment> attachments = emailDetails.getAttachments();
+            assertThat(attachments.size(), is(2));
+            final Attachment pdf = attachments.get(0);
+            assertThat(pdf.getId(), is("AAMkAD1"));
+            assertThat(pdf.getLastModifiedDate(), is(new Date(1706878000000L)));
+            assertThat(pdf.getName(), is("21AZ1234521.pdf"));
+            assertThat(pdf.getContentType(), is("application/pdf"));
+            assertThat(pdf.getContentBytes(), is(nullValue()));
+            assertThat(pdf.isInline(), is(false));
+            assertThat(content(pdf), is(PDF_CONTENT));
+
+            final Attachment signature = attachments.get(1);
+            assertThat(signature.isInline(), is(true));
+            assertThat(signature.isSignatureAttachment(), is(true));
+        }
+        assertThat(spoolDirectory.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void shouldSpoolContentOverTheThresholdToATemporaryFileDeletedOnClose() throws IOException {
+        final byte[] largeContent = new byte[64 * 1024];
+        for (int i = 0; i < largeContent.length; i++) {
+            largeContent[i] = (byte) i;
+        }
+        final EmailDetailsReader reader = new EmailDetailsReader(1024, spoolDirectory);
+
+        final EmailDetails emailDetails = reader.read(email(largeContent).getBytes(UTF_8));
+        assertThat(spoolDirectory.list().length, is(1));
+        assertThat(content(emailDetails.getAttachments().get(0)), is(largeContent));
+
+        emailDetails.close();
+        assertThat(spoolDirectory.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void shouldSkipUnknownFieldsAndAcceptMissingContent() throws IOException {
+        final String json = "{\"@odata.context\": \"https://graph.microsoft.com\", \"toRecipients\": [{\"emailAddress\": {\"address\": \"a@b.c\"}}],"
+                + " \"subject\": \"subject\", \"from\": \"officer@police.example\","
+                + " \"attachments\": [{\"@odata.type\": \"#microsoft.graph.fileAttachment\", \"size\": 12, \"name\": \"empty.pdf\", \"contentType\": \"application/pdf\"}]}";
+
+        try (EmailDetails emailDetails = new EmailDetailsReader(1024, spoolDirectory).read(json.getBytes(UTF_8))) {
+            assertThat(emailDetails.getSubject(), is("subject"));
+            assertThat(emailDetails.getBody(), is(nullValue()));
+            final Attachment attachment = emailDetails.getAttachments().get(0);
+            assertThat(attachment.getName(), is("empty.pdf"));
+            assertThat(content(attachment).length, is(0));
+        }
+    }
+
+    @Test
+    public void shouldReleaseSpooledContentWhenTheRequestIsMalformed() {
+        final String json = email(new byte[4096]);
+        final String truncated = json.substring(0, json.lastIndexOf("signature.png"));
+
+        assertThrows(JsonParseException.class, () -> new EmailDetailsReader(1024, spoolDirectory).read(truncated.getBytes(UTF_8)));
+        assertThat(spoolDirectory.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void shouldReadLegacyAttachmentContentFromItsBase64String() throws IOException {
+        final Attachment attachment = new Attachment("id", new Date(), "name.pdf", "application/pdf",
+                Base64.getEncoder().encodeToString(PDF_CONTENT), false);
+
+        assertThat(content(attachment), is(PDF_CONTENT));
+    }
+
+    private static String email(final byte[] pdfContent) {
+        return "{\"subject\": \"Case 21 AZ 12345 21\", \"from\": \"officer@police.example\", \"body\": \"<p>Please find attached</p>\","
+                + " \"attachments\": ["
+                + "{\"id\": \"AAMkAD1\", \"lastModifiedDate\": \"2024-02-02T12:46:40Z\", \"name\": \"21AZ1234521.pdf\","
+                + " \"contentType\": \"application/pdf\", \"contentBytes\": \"" + Base64.getEncoder().encodeToString(pdfContent) + "\", \"isInline\": false},"
+                + "{\"id\": \"AAMkAD2\", \"lastModifiedDate\": \"2024-02-02T12:46:40Z\", \"name\": \"signature.png\","
+                + " \"contentType\": \"image/png\", \"contentBytes\": \"iVBORw0KGgo=\", \"isInline\": true}"
+                + "]}";
+    }
+
+    private static byte[] content(final Attachment attachment) throws IOException {
+        try (InputStream inputStream = attachment.openContent()) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class EnvelopeReferenceDataTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final ReferenceDataQueryHelper referenceDataQueryHelper = mock(ReferenceDataQueryHelper.class);
+
+    @AfterEach
+    public void shutdownExecutor() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldLookUpEachDistinctPtiUrnAndOuCodeOnce() {
+        when(referenceDataQueryHelper.getOuCodeByPtiUrn("PTIURN1")).thenReturn(createObjectBuilder().add("oucode", "0210000").build());
+        when(referenceDataQueryHelper.getOuCodeByPtiUrn("PTIURN2")).thenReturn(createObjectBuilder().add("oucode", "0210000").build());
+        when(referenceDataQueryHelper.getOuCodeByPtiUrn("PTIURN3")).thenReturn(createObjectBuilder().add("oucode", "").build());
+        when(referenceDataQueryHelper.getProsecutorsByOuCode("0210000")).thenReturn(createObjectBuilder().add("shortName", "DVLA").build());
+        when(referenceDataQueryHelper.getProsecutorsByOuCode("0420000")).thenReturn(createObjectBuilder().add("shortName", "TFL").build());
+
+        final EnvelopeReferenceData referenceData = EnvelopeReferenceData.resolve(
+                new LinkedHashSet<>(asList("PTIURN1", "PTIURN2", "PTIURN3")), new LinkedHashSet<>(asList("0210000", "0420000")),
+                referenceDataQueryHelper, executorService);
+
+        assertThat(referenceData.getOuCode("PTIURN1"), is("0210000"));
+        assertThat(referenceData.getOuCode("PTIURN2"), is("0210000"));
+        assertThat(referenceData.getOuCode("PTIURN3"), is(""));
+        assertThat(referenceData.getProsecutor("0210000").getString("shortName"), is("DVLA"));
+        assertThat(referenceData.getProsecutor("0420000").getString("shortName"), is("TFL"));
+        assertThat(referenceData.getProsecutor("9990000"), is(nullValue()));
+        verify(referenceDataQueryHelper, times(1)).getProsecutorsByOuCode("0210000");
+        verify(referenceDataQueryHelper, times(1)).getProsecutorsByOuCode("0420000");
+    }
+
+    @Test
+    public void shouldFailWithTheLookupFailure() {
+        when(referenceDataQueryHelper.getOuCodeByPtiUrn("PTIURN1")).thenThrow(new IllegalStateException("reference data unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> EnvelopeReferenceData.resolve(
+                new LinkedHashSet<>(asList("PTIURN1")), emptySet(), referenceDataQueryHelper, executorService));
+    }
+}
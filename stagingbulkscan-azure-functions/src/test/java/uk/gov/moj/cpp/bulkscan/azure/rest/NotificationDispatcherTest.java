@@ -0,0 +1,150 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.storage.InMemoryNotificationOutbox;
+import uk.gov.moj.cpp.bulkscan.azure.storage.NotificationOutbox.OutboxMessage;
+
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+
+public class NotificationDispatcherTest {
+
+    private final Logger logger = mock(Logger.class);
+    private final NotificationEmailHelper notificationEmailHelper = mock(NotificationEmailHelper.class);
+    private final InMemoryNotificationOutbox notificationOutbox = new InMemoryNotificationOutbox();
+
+    private final NotificationDispatcher notificationDispatcher = new NotificationDispatcher(notificationEmailHelper, 2, 10, 3, 30, 100, 120);
+
+    @Test
+    public void shouldSendEveryQueuedNotificationInBatches() {
+        notificationOutbox.enqueue(notification("notification-1"));
+        notificationOutbox.enqueue(notification("notification-2"));
+        notificationOutbox.enqueue(notification("notification-3"));
+        final Response accepted = response(202);
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(accepted);
+
+        final NotificationDispatcher.DispatchResult dispatchResult = notificationDispatcher.dispatch(notificationOutbox, logger);
+
+        assertThat(dispatchResult.getSent(), is(3));
+        assertThat(notificationOutbox.getPendingCount(), is(0));
+        verify(notificationEmailHelper).sendNotificationEmail(eq("notification-2"), eq("officer@police.example"),
+                eq("statement.docx"), eq("Case 21 AZ 12345 21"), any());
+        verify(accepted, times(3)).close();
+    }
+
+    @Test
+    public void shouldRetryFailedNotificationWithGrowingDelay() {
+        notificationOutbox.enqueue(notification("notification-1"));
+        final Response unavailable = response(503);
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any()))
+                .thenReturn(unavailable, unavailable, response(202));
+
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getRetried(), is(1));
+        notificationOutbox.releaseDelayedMessages();
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getRetried(), is(1));
+        notificationOutbox.releaseDelayedMessages();
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getSent(), is(1));
+
+        assertThat(notificationOutbox.getRetryDelays(), contains(30, 60));
+        assertThat(notificationOutbox.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void shouldRetryWhenTheNotificationServiceCannotBeReached() {
+        notificationOutbox.enqueue(notification("notification-1"));
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any()))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getRetried(), is(1));
+        assertThat(notificationOutbox.getPendingCount(), is(1));
+    }
+
+    @Test
+    public void shouldGiveUpAfterTheLastAttempt() {
+        notificationOutbox.enqueue(notification("notification-1"));
+        final Response unavailable = response(503);
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(unavailable);
+
+        notificationDispatcher.dispatch(notificationOutbox, logger);
+        notificationOutbox.releaseDelayedMessages();
+        notificationDispatcher.dispatch(notificationOutbox, logger);
+        notificationOutbox.releaseDelayedMessages();
+        final NotificationDispatcher.DispatchResult dispatchResult = notificationDispatcher.dispatch(notificationOutbox, logger);
+
+        assertThat(dispatchResult.getDiscarded(), is(1));
+        assertThat(notificationOutbox.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void shouldNotRetryNotificationRefusedAsBadRequest() {
+        notificationOutbox.enqueue(notification("notification-1"));
+        final Response badRequest = response(400);
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(badRequest);
+
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getDiscarded(), is(1));
+        assertThat(notificationOutbox.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void shouldDiscardUnreadableMessage() {
+        notificationOutbox.enqueue("not json");
+
+        assertThat(notificationDispatcher.dispatch(notificationOutbox, logger).getDiscarded(), is(1));
+        assertThat(notificationOutbox.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void shouldCarryOnWithTheBatchWhenAMessageCannotBeCompleted() {
+        final InMemoryNotificationOutbox staleOutbox = new InMemoryNotificationOutbox() {
+            @Override
+            public synchronized void complete(final OutboxMessage message) {
+                if ("0".equals(message.getId())) {
+                    throw new BulkScanProcessorException("pop receipt does not match");
+                }
+                super.complete(message);
+            }
+        };
+        staleOutbox.enqueue(notification("notification-1"));
+        staleOutbox.enqueue(notification("notification-2"));
+        when(notificationEmailHelper.sendNotificationEmail(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(response(202));
+
+        final NotificationDispatcher.DispatchResult dispatchResult = notificationDispatcher.dispatch(staleOutbox, logger);
+
+        assertThat(dispatchResult.getSent(), is(1));
+        assertThat(dispatchResult.getFailed(), is(1));
+        assertThat(staleOutbox.getCompletedMessages(), contains(notification("notification-2")));
+    }
+
+    @Test
+    public void shouldCapTheBackoff() {
+        assertThat(notificationDispatcher.backoffSeconds(1), is(30));
+        assertThat(notificationDispatcher.backoffSeconds(2), is(60));
+        assertThat(notificationDispatcher.backoffSeconds(3), is(100));
+        assertThat(notificationDispatcher.backoffSeconds(40), is(100));
+    }
+
+    private static String notification(final String notificationId) {
+        return new NotificationRequest(notificationId, "officer@police.example", "statement.docx", "Case 21 AZ 12345 21", "correlation-1").toJson();
+    }
+
+    private static Response response(final int status) {
+        final Response response = mock(Response.class);
+        when(response.getStatus()).thenReturn(status);
+        when(response.readEntity(String.class)).thenReturn("status " + status);
+        return response;
+    }
+}
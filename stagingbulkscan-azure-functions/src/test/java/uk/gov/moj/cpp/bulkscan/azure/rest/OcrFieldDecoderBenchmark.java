@@ -0,0 +1,108 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+
+import uk.gov.justice.services.common.converter.StringToJsonObjectConverter;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the way plea OCR metadata used to be read (decode to a string, parse into a json
+ * object tree and copy every field into a map) with the streaming {@link OcrFieldDecoder}.
+ * Payloads carry up to ten offences plus the MC100 and scanner fields a plea does not use.
+ * Allocation per operation is reported by the gc profiler ({@code gc.alloc.rate.norm}), which
+ * {@link #main(String[])} adds; with the jmh launcher pass {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcrFieldDecoderBenchmark {
+
+    @Param({"1", "5", "10"})
+    private int offenceCount;
+
+    private String ocrData;
+
+    @Setup(Level.Trial)
+    public void createOcrData() {
+        final JsonArrayBuilder metadataFile = createArrayBuilder();
+        field(metadataFile, "detailsCorrectYes", "true");
+        field(metadataFile, "detailsCorrectNo", "false");
+        field(metadataFile, "contactNumber", "07852463924");
+        field(metadataFile, "emailAddress", "SAM.SMITH@EMAIL.COM");
+        field(metadataFile, "drivingLicenceNumber", "AE123456789CD167");
+        field(metadataFile, "wantToGoToCourtYes", "false");
+        field(metadataFile, "wantToGoToCourtNo", "true");
+        field(metadataFile, "interpreterLanguage", "Welsh");
+        field(metadataFile, "interpreterRequiredYes", "true");
+        for (int index = 1; index <= offenceCount; index++) {
+            field(metadataFile, "pleaOffenceTitle" + index, "Employer fail to ensure employee not exposed to asbestos during manufacture of asbestos products " + index);
+            field(metadataFile, "pleaGuilty" + index, Boolean.toString(index % 2 == 0));
+            field(metadataFile, "pleaNotGuilty" + index, Boolean.toString(index % 2 != 0));
+            field(metadataFile, "pleaMitigation" + index, "I was not aware that the ticket had expired and have since bought an annual season ticket " + index);
+        }
+        Mc100Builder.FIELDS.forEach(name -> field(metadataFile, name, "true"));
+        for (int index = 1; index <= 40; index++) {
+            field(metadataFile, "scannerConfidence" + index, "0.9" + index);
+        }
+        final String ocrContent = createObjectBuilder().add("Metadata_file", metadataFile).build().toString();
+        ocrData = Base64.getEncoder().encodeToString(ocrContent.getBytes(UTF_8));
+    }
+
+    @Benchmark
+    public Plea objectTree() {
+        final JsonObject jsonObject = new StringToJsonObjectConverter().convert(new String(Base64.getDecoder().decode(ocrData)));
+        final JsonArray metadataFile = jsonObject.getJsonArray("Metadata_file");
+        final Map<String, String> metadataMap = new HashMap<>();
+        for (int index = 0; index < metadataFile.size(); index++) {
+            final JsonObject field = metadataFile.getJsonObject(index);
+            metadataMap.put(field.getString("metadata_field_name"), field.getString("metadata_field_value"));
+        }
+        return new PleaBuilder().buildPlea(metadataMap);
+    }
+
+    @Benchmark
+    public Plea streaming() {
+        return new PleaBuilder().buildPlea(OcrFieldDecoder.decode(ocrData, PleaBuilder.FIELDS));
+    }
+
+    private static void field(final JsonArrayBuilder metadataFile, final String name, final String value) {
+        metadataFile.add(createObjectBuilder().add("metadata_field_name", name).add("metadata_field_value", value));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OcrFieldDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static uk.gov.justice.services.messaging.JsonObjects.createReader;
+
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+
+public class OcrFieldDecoderTest {
+
+    @Test
+    public void shouldReadOnlyTheRequestedFields() {
+        final Map<String, String> fields = OcrFieldDecoder.decode(encode("{\"Metadata_file\": ["
+                + "{\"metadata_field_name\": \"pleaGuilty1\", \"metadata_field_value\": \"true\"},"
+                + "{\"metadata_field_value\": \"Passenger failing to produce a ticket\", \"metadata_field_name\": \"pleaOffenceTitle1\"},"
+                + "{\"metadata_field_name\": \"unrelated\", \"metadata_field_value\": \"ignored\"}]}"),
+                new HashSet<>(asList("pleaGuilty1", "pleaOffenceTitle1", "pleaNotGuilty1")));
+
+        assertThat(fields.size(), is(2));
+        assertThat(fields, hasEntry("pleaGuilty1", "true"));
+        assertThat(fields, hasEntry("pleaOffenceTitle1", "Passenger failing to produce a ticket"));
+        assertThat(fields.get("pleaNotGuilty1"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldIgnoreFieldsOutsideTheMetadataFile() {
+        final Map<String, String> fields = OcrFieldDecoder.decode(encode("{\"other\": ["
+                + "{\"metadata_field_name\": \"employed\", \"metadata_field_value\": \"true\"}],"
+                + "\"Metadata_file\": [{\"metadata_field_name\": \"unemployed\", \"metadata_field_value\": \"true\", \"extra\": {\"metadata_field_name\": \"employed\"}}]}"),
+                Mc100Builder.FIELDS);
+
+        assertThat(fields.size(), is(1));
+        assertThat(fields, hasEntry("unemployed", "true"));
+    }
+
+    @Test
+    public void shouldBuildThePleaOfTheScanProviderPayload() throws Exception {
+        try (InputStream inputStream = getClass().getResourceAsStream("/scanProviderPayload.json")) {
+            final JsonObject payload = createReader(inputStream).readObject();
+            final String ocrData = payload.getJsonArray("scannable_items").getJsonObject(0).getString("ocr_data");
+
+            final Plea plea = new PleaBuilder().buildPlea(OcrFieldDecoder.decode(ocrData, PleaBuilder.FIELDS));
+
+            assertThat(plea.getOffences().size(), is(2));
+            assertThat(plea.getOffences().get(0).getTitle(), is("Passenger failing to produce a ticket"));
+            assertThat(plea.getContactNumber(), is("07852463924"));
+        }
+    }
+
+    private String encode(final String ocrContent) {
+        return Base64.getEncoder().encodeToString(ocrContent.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.ssl.SSLContexts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a client built per request, as the REST helpers used to do, with the pooled client
+ * against a local https stub of the reference data api. The stub uses a self signed
+ * certificate generated with keytool, so every new connection pays a full TLS handshake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PooledClientBenchmark {
+
+    private static final String PASSWORD = "changeit";
+
+    private File keyStoreFile;
+    private HttpsServer httpsServer;
+    private String url;
+    private PooledClientFactory pooledClientFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keyStoreFile = Files.createTempFile("pooled-client-benchmark", ".p12").toFile();
+        keyStoreFile.delete();
+        final Process keytool = new ProcessBuilder(System.getProperty("java.home") + "/bin/keytool", "-genkeypair",
+                "-alias", "localhost", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.getAbsolutePath(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .inheritIO().start();
+        if (keytool.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed to generate the stub certificate");
+        }
+
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = new FileInputStream(keyStoreFile)) {
+            keyStore.load(inputStream, PASSWORD.toCharArray());
+        }
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD.toCharArray());
+        final SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        httpsServer = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(serverSslContext));
+        httpsServer.createContext("/prosecutors", exchange -> {
+            final byte[] body = "{\"prosecutors\":[]}".getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        httpsServer.start();
+        url = "https://localhost:" + httpsServer.getAddress().getPort() + "/prosecutors";
+
+        pooledClientFactory = new PooledClientFactory(trustMaterialSource(), false, 10, 10, 5000, 5000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pooledClientFactory.close();
+        httpsServer.stop(0);
+        Files.deleteIfExists(keyStoreFile.toPath());
+    }
+
+    @Benchmark
+    public String clientPerRequest() throws Exception {
+        final Client client = ClientBuilder.newBuilder()
+                .sslContext(SSLContexts.custom().loadTrustMaterial(trustMaterialSource().load(), (cert, authType) -> true).build())
+                .hostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                .build();
+        return client.target(url).request().get().readEntity(String.class);
+    }
+
+    @Benchmark
+    public String pooledClient() {
+        return pooledClientFactory.getClient().target(url).request().get().readEntity(String.class);
+    }
+
+    private TrustMaterialSource trustMaterialSource() {
+        return TrustMaterialSource.keyStoreFile(keyStoreFile.getAbsolutePath(), "PKCS12", PASSWORD);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PooledClientBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PooledClientFactoryTest {
+
+    private static final String PASSWORD = "changeit";
+
+    private HttpServer httpServer;
+    private String url;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/prosecutors", exchange -> {
+            final byte[] body = "{\"prosecutors\":[]}".getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        httpServer.start();
+        url = "http://localhost:" + httpServer.getAddress().getPort() + "/prosecutors";
+    }
+
+    @AfterEach
+    public void stopServer() {
+        httpServer.stop(0);
+    }
+
+    @Test
+    public void shouldReuseThePooledConnectionAcrossRequests() {
+        try (PooledClientFactory pooledClientFactory = new PooledClientFactory(TrustMaterialSource.jvmDefault(), false, 10, 5, 1000, 1000)) {
+            for (int i = 0; i < 10; i++) {
+                final String body = pooledClientFactory.getClient().target(url).request().get().readEntity(String.class);
+                assertThat(body, is("{\"prosecutors\":[]}"));
+            }
+
+            final PooledClientFactory.PoolMetrics metrics = pooledClientFactory.getMetrics();
+            assertThat(metrics.getRequests(), is(10L));
+            assertThat(metrics.getConnectionsOpened(), is(1L));
+            assertThat(metrics.getLeased(), is(0));
+            assertThat(metrics.getAvailable(), is(1));
+            assertThat(metrics.getMax(), is(10));
+        }
+    }
+
+    @Test
+    public void shouldReleaseConnectionOfAClosedResponse() {
+        try (PooledClientFactory pooledClientFactory = new PooledClientFactory(TrustMaterialSource.jvmDefault(), false, 1, 1, 1000, 1000)) {
+            for (int i = 0; i < 3; i++) {
+                final Response response = pooledClientFactory.getClient().target(url).request().get();
+                assertThat(response.getStatus(), is(200));
+                response.close();
+            }
+
+            assertThat(pooledClientFactory.getMetrics().getLeased(), is(0));
+            assertThat(pooledClientFactory.getMetrics().getRequests(), is(3L));
+        }
+    }
+
+    @Test
+    public void shouldTrustServerCertificatesOutsideTheTrustMaterial() throws Exception {
+        final Path keyStoreFile = Files.createTempFile("pooled-client-factory", ".p12");
+        Files.delete(keyStoreFile);
+        final HttpsServer httpsServer = startHttpsServer(keyStoreFile);
+        final String httpsUrl = "https://localhost:" + httpsServer.getAddress().getPort() + "/prosecutors";
+        try (PooledClientFactory pooledClientFactory = new PooledClientFactory(TrustMaterialSource.jvmDefault(), false, 1, 1, 1000, 1000)) {
+
+            assertThat(pooledClientFactory.getClient().target(httpsUrl).request().get().readEntity(String.class), is("{\"prosecutors\":[]}"));
+        } finally {
+            httpsServer.stop(0);
+            Files.deleteIfExists(keyStoreFile);
+        }
+    }
+
+    @Test
+    public void shouldOnlyTrustServerCertificatesOfTheTrustMaterialWhenVerifying() throws Exception {
+        final Path keyStoreFile = Files.createTempFile("pooled-client-factory", ".p12");
+        Files.delete(keyStoreFile);
+        final HttpsServer httpsServer = startHttpsServer(keyStoreFile);
+        final String httpsUrl = "https://localhost:" + httpsServer.getAddress().getPort() + "/prosecutors";
+        try (PooledClientFactory trustingClientFactory = new PooledClientFactory(
+                TrustMaterialSource.keyStoreFile(keyStoreFile.toString(), "PKCS12", PASSWORD), true, 1, 1, 1000, 1000);
+             PooledClientFactory jvmDefaultClientFactory = new PooledClientFactory(TrustMaterialSource.jvmDefault(), true, 1, 1, 1000, 1000)) {
+
+            assertThat(trustingClientFactory.getClient().target(httpsUrl).request().get().readEntity(String.class), is("{\"prosecutors\":[]}"));
+            assertThrows(ProcessingException.class, () -> jvmDefaultClientFactory.getClient().target(httpsUrl).request().get());
+        } finally {
+            httpsServer.stop(0);
+            Files.deleteIfExists(keyStoreFile);
+        }
+    }
+
+    @Test
+    public void shouldLoadTrustMaterialFromKeyStoreFile() throws IOException, GeneralSecurityException {
+        final Path keyStoreFile = Files.createTempFile("trust-material", ".p12");
+        try {
+            final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(null, null);
+            keyStore.store(Files.newOutputStream(keyStoreFile), "changeit".toCharArray());
+
+            final KeyStore loaded = TrustMaterialSource.keyStoreFile(keyStoreFile.toString(), "PKCS12", "changeit").load();
+            assertThat(loaded.size(), is(0));
+            assertThat(TrustMaterialSource.jvmDefault().load(), is(nullValue()));
+        } finally {
+            Files.deleteIfExists(keyStoreFile);
+        }
+    }
+
+    private HttpsServer startHttpsServer(final Path keyStoreFile) throws Exception {
+        final Process keytool = new ProcessBuilder(System.getProperty("java.home") + "/bin/keytool", "-genkeypair",
+                "-alias", "localhost", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .inheritIO().start();
+        assertThat(keytool.waitFor(), is(0));
+
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = Files.newInputStream(keyStoreFile)) {
+            keyStore.load(inputStream, PASSWORD.toCharArray());
+        }
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD.toCharArray());
+        final SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        final HttpsServer httpsServer = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(serverSslContext));
+        httpsServer.createContext("/prosecutors", exchange -> {
+            final byte[] body = "{\"prosecutors\":[]}".getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        httpsServer.start();
+        return httpsServer;
+    }
+}
@@ -0,0 +1,75 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.json.JsonArray;
+
+import org.junit.jupiter.api.Test;
+
+public class ProsecutorDirectorySnapshotTest {
+
+    private final AtomicReference<Supplier<Optional<JsonArray>>> loader = new AtomicReference<>();
+
+    private final ProsecutorDirectorySnapshot snapshot = new ProsecutorDirectorySnapshot(() -> loader.get().get(), 1000) {
+        @Override
+        protected void startRefreshing() {
+            // refreshed explicitly by the tests
+        }
+    };
+
+    @Test
+    public void shouldMissUntilTheFirstRefreshCompletes() {
+        assertThat(snapshot.lookup(directory -> directory.findProsecutorByOuCode("0210000")), is(Optional.empty()));
+
+        loader.set(() -> Optional.of(prosecutors("0210000", "DVLA")));
+        assertThat(snapshot.refresh(), is(true));
+
+        assertThat(snapshot.lookup(directory -> directory.findProsecutorByOuCode("0210000")).get().getString("shortName"), is("DVLA"));
+        assertThat(snapshot.getStatistics().getMisses(), is(1L));
+        assertThat(snapshot.getStatistics().getHits(), is(1L));
+        assertThat(snapshot.getStatistics().getProsecutors(), is(1));
+    }
+
+    @Test
+    public void shouldSwapInTheRefreshedDirectory() {
+        loader.set(() -> Optional.of(prosecutors("0210000", "DVLA")));
+        snapshot.refresh();
+        final ProsecutorDirectory first = snapshot.getDirectory();
+
+        loader.set(() -> Optional.of(prosecutors("0420000", "TFL")));
+        snapshot.refresh();
+
+        assertThat(first.findProsecutorByOuCode("0210000").isPresent(), is(true));
+        assertThat(snapshot.lookup(directory -> directory.findProsecutorByOuCode("0210000")), is(Optional.empty()));
+        assertThat(snapshot.lookup(directory -> directory.findProsecutorByOuCode("0420000")).isPresent(), is(true));
+        assertThat(snapshot.getStatistics().getRefreshes(), is(2L));
+    }
+
+    @Test
+    public void shouldKeepThePreviousDirectoryWhenRefreshFails() {
+        loader.set(() -> Optional.of(prosecutors("0210000", "DVLA")));
+        snapshot.refresh();
+
+        loader.set(() -> {
+            throw new IllegalStateException("reference data unavailable");
+        });
+        assertThat(snapshot.refresh(), is(false));
+        loader.set(Optional::empty);
+        assertThat(snapshot.refresh(), is(false));
+
+        assertThat(snapshot.lookup(directory -> directory.findProsecutorByOuCode("0210000")).isPresent(), is(true));
+        assertThat(snapshot.getStatistics().getRefreshFailures(), is(2L));
+        assertThat(snapshot.getStatistics().getLastRefreshFailure(), is("Prosecutor directory not found"));
+    }
+
+    private JsonArray prosecutors(final String oucode, final String shortName) {
+        return createArrayBuilder().add(createObjectBuilder().add("oucode", oucode).add("shortName", shortName)).build();
+    }
+}
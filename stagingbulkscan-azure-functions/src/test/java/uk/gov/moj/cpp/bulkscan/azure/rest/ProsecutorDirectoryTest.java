@@ -0,0 +1,45 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+
+import java.util.Optional;
+
+import javax.json.JsonArray;
+
+import org.junit.jupiter.api.Test;
+
+public class ProsecutorDirectoryTest {
+
+    private final JsonArray prosecutors = createArrayBuilder()
+            .add(createObjectBuilder().add("oucode", "0210000").add("shortName", "DVLA").add("emailDomain", "dvla.gov.uk"))
+            .add(createObjectBuilder().add("oucode", "0420000").add("shortName", "TFL")
+                    .add("emailDomains", createArrayBuilder().add("tfl.gov.uk").add("Police.uk")))
+            .add(createObjectBuilder().add("oucode", "1210000").add("shortName", "MET").add("emailDomain", "police.uk"))
+            .add(createObjectBuilder().add("oucode", "").add("shortName", "NONE"))
+            .build();
+
+    @Test
+    public void shouldIndexProsecutorsByOuCode() {
+        final ProsecutorDirectory directory = ProsecutorDirectory.of(prosecutors, 100L);
+
+        assertThat(directory.findProsecutorByOuCode("0420000").get().getString("shortName"), is("TFL"));
+        assertThat(directory.findProsecutorByOuCode("9990000"), is(Optional.empty()));
+        assertThat(directory.size(), is(3));
+        assertThat(directory.getLoadedAt(), is(100L));
+    }
+
+    @Test
+    public void shouldIndexProsecutorsByEmailDomainIgnoringCase() {
+        final ProsecutorDirectory directory = ProsecutorDirectory.of(prosecutors, 100L);
+
+        final JsonArray policeProsecutors = directory.findProsecutorsByEmailDomain("POLICE.UK").get();
+        assertThat(policeProsecutors.size(), is(2));
+        assertThat(policeProsecutors.getJsonObject(0).getString("oucode"), is("0420000"));
+        assertThat(policeProsecutors.getJsonObject(1).getString("oucode"), is("1210000"));
+        assertThat(directory.findProsecutorsByEmailDomain("dvla.gov.uk").get().size(), is(1));
+        assertThat(directory.findProsecutorsByEmailDomain("unknown.org"), is(Optional.empty()));
+    }
+}
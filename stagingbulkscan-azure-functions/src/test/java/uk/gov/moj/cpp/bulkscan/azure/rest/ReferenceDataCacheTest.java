@@ -0,0 +1,160 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class ReferenceDataCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000L);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void shouldAnswerRepeatedLookupsFromTheCache() {
+        final ReferenceDataCache<String> cache = newCache(10);
+
+        assertThat(cache.get("PTIURN1", ouCodeLoader()), is(Optional.of("OU-PTIURN1")));
+        assertThat(cache.get("PTIURN1", ouCodeLoader()), is(Optional.of("OU-PTIURN1")));
+        assertThat(cache.get("PTIURN1", ouCodeLoader()), is(Optional.of("OU-PTIURN1")));
+
+        assertThat(loads.get(), is(1));
+        final ReferenceDataCache.CacheStatistics statistics = cache.getStatistics();
+        assertThat(statistics.getMisses(), is(1L));
+        assertThat(statistics.getHits(), is(2L));
+        assertThat(statistics.getSavedRoundTrips(), is(2L));
+        assertThat(statistics.getHitRatio(), is(2d / 3));
+    }
+
+    @Test
+    public void shouldReloadValueOnceItsTimeToLiveHasPassed() {
+        final ReferenceDataCache<String> cache = newCache(10);
+
+        cache.get("PTIURN1", ouCodeLoader());
+        now.addAndGet(999);
+        cache.get("PTIURN1", ouCodeLoader());
+        assertThat(loads.get(), is(1));
+
+        now.addAndGet(1);
+        cache.get("PTIURN1", ouCodeLoader());
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void shouldCacheNotFoundLookupsForTheNegativeTimeToLive() {
+        final ReferenceDataCache<String> cache = newCache(10);
+        final Function<String, Optional<String>> notFound = key -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        };
+
+        assertThat(cache.get("UNKNOWN", notFound), is(Optional.empty()));
+        now.addAndGet(99);
+        assertThat(cache.get("UNKNOWN", notFound), is(Optional.empty()));
+        assertThat(loads.get(), is(1));
+        assertThat(cache.getStatistics().getNegativeHits(), is(1L));
+
+        now.addAndGet(1);
+        cache.get("UNKNOWN", notFound);
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedEntry() {
+        final ReferenceDataCache<String> cache = newCache(2);
+
+        cache.get("PTIURN1", ouCodeLoader());
+        cache.get("PTIURN2", ouCodeLoader());
+        cache.get("PTIURN1", ouCodeLoader());
+        cache.get("PTIURN3", ouCodeLoader());
+        assertThat(loads.get(), is(3));
+        assertThat(cache.getStatistics().getEvictions(), is(1L));
+        assertThat(cache.getStatistics().getSize(), is(2));
+
+        cache.get("PTIURN1", ouCodeLoader());
+        assertThat(loads.get(), is(3));
+        cache.get("PTIURN2", ouCodeLoader());
+        assertThat(loads.get(), is(4));
+    }
+
+    @Test
+    public void shouldShareOneLoadBetweenConcurrentLookupsOfTheSameKey() throws Exception {
+        final ReferenceDataCache<String> cache = newCache(10);
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final Function<String, Optional<String>> slowLoader = key -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                releaseLoad.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of("OU-" + key);
+        };
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final Future<Optional<String>> first = executorService.submit(() -> cache.get("PTIURN1", slowLoader));
+            loadStarted.await(5, TimeUnit.SECONDS);
+            final Future<Optional<String>> second = executorService.submit(() -> cache.get("PTIURN1", slowLoader));
+            final Future<Optional<String>> third = executorService.submit(() -> cache.get("PTIURN1", slowLoader));
+            waitForCoalescedLookups(cache, 2);
+            releaseLoad.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS), is(Optional.of("OU-PTIURN1")));
+            assertThat(second.get(5, TimeUnit.SECONDS), is(Optional.of("OU-PTIURN1")));
+            assertThat(third.get(5, TimeUnit.SECONDS), is(Optional.of("OU-PTIURN1")));
+            assertThat(loads.get(), is(1));
+            assertThat(cache.getStatistics().getCoalesced(), is(2L));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotCacheFailedLoads() {
+        final ReferenceDataCache<String> cache = newCache(10);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("PTIURN1", key -> {
+            throw new IllegalStateException("reference data unavailable");
+        }));
+
+        assertThat(cache.get("PTIURN1", ouCodeLoader()), is(Optional.of("OU-PTIURN1")));
+        assertThat(loads.get(), is(1));
+    }
+
+    private ReferenceDataCache<String> newCache(final int maxEntries) {
+        return new ReferenceDataCache<String>("test", maxEntries, 1000, 100) {
+            @Override
+            protected long currentTimeMillis() {
+                return now.get();
+            }
+        };
+    }
+
+    private Function<String, Optional<String>> ouCodeLoader() {
+        return key -> {
+            loads.incrementAndGet();
+            return Optional.of("OU-" + key);
+        };
+    }
+
+    private void waitForCoalescedLookups(final ReferenceDataCache<String> cache, final long expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getStatistics().getCoalesced() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
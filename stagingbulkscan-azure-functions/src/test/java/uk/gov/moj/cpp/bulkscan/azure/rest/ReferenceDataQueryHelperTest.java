@@ -0,0 +1,131 @@
+package uk.gov.moj.cpp.bulkscan.azure.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReferenceDataQueryHelperTest {
+
+    private final AtomicInteger status = new AtomicInteger();
+    private final AtomicReference<String> body = new AtomicReference<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Client client = ClientBuilder.newClient();
+    private HttpServer httpServer;
+    private String url;
+    private String prosecutorUrl;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final HttpHandler handler = exchange -> {
+            requests.incrementAndGet();
+            final byte[] responseBody = body.get().getBytes(UTF_8);
+            exchange.sendResponseHeaders(status.get(), responseBody.length == 0 ? -1 : responseBody.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBody);
+            }
+        };
+        httpServer.createContext("/ptiurn", handler);
+        httpServer.createContext("/prosecutors", handler);
+        httpServer.start();
+        url = "http://localhost:" + httpServer.getAddress().getPort() + "/ptiurn";
+        prosecutorUrl = "http://localhost:" + httpServer.getAddress().getPort() + "/prosecutors";
+    }
+
+    @AfterEach
+    public void stopServer() {
+        httpServer.stop(0);
+        client.close();
+    }
+
+    @Test
+    public void shouldCacheFoundOuCode() {
+        final String ptiUrn = randomUUID().toString();
+        givenResponse(200, "{\"oucode\":\"B01LY00\"}");
+
+        assertThat(new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(ptiUrn).getString("oucode"), is("B01LY00"));
+        assertThat(new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(ptiUrn).getString("oucode"), is("B01LY00"));
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void shouldAnswerEmptyOuCodeWhenNotFoundOrEmpty() {
+        givenResponse(404, "");
+        assertThat(new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(randomUUID().toString()).getString("oucode"), is(""));
+
+        givenResponse(200, "");
+        assertThat(new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(randomUUID().toString()).getString("oucode"), is(""));
+    }
+
+    @Test
+    public void shouldFailWithoutCachingWhenReferenceDataIsUnavailable() {
+        final String ptiUrn = randomUUID().toString();
+        givenResponse(503, "");
+
+        assertThrows(BulkScanProcessorException.class, () -> new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(ptiUrn));
+
+        givenResponse(200, "{\"oucode\":\"B01LY00\"}");
+        assertThat(new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(ptiUrn).getString("oucode"), is("B01LY00"));
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void shouldFailForAnyUnsuccessfulStatusButNotFound() {
+        givenResponse(401, "");
+        assertThrows(BulkScanProcessorException.class, () -> new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(randomUUID().toString()));
+
+        givenResponse(500, "");
+        assertThrows(BulkScanProcessorException.class, () -> new TestReferenceDataQueryHelper().getOuCodeByPtiUrn(randomUUID().toString()));
+    }
+
+    @Test
+    public void shouldAnswerNoProsecutorsWhenEmailDomainHasNone() {
+        givenResponse(200, "{\"prosecutors\":[]}");
+        assertThat(new TestReferenceDataQueryHelper().getProsecutorByEmailDomain("clerk@" + randomUUID() + ".org").isEmpty(), is(true));
+
+        givenResponse(404, "");
+        assertThat(new TestReferenceDataQueryHelper().getProsecutorByEmailDomain("clerk@" + randomUUID() + ".org").isEmpty(), is(true));
+    }
+
+    private void givenResponse(final int responseStatus, final String responseBody) {
+        status.set(responseStatus);
+        body.set(responseBody);
+    }
+
+    private class TestReferenceDataQueryHelper extends ReferenceDataQueryHelper {
+
+        @Override
+        public Client getClient() {
+            return client;
+        }
+
+        @Override
+        public String getReferenceDataPtiApiUrl() {
+            return url;
+        }
+
+        @Override
+        public String getReferenceDataProsecutorApiUrl() {
+            return prosecutorUrl;
+        }
+    }
+}
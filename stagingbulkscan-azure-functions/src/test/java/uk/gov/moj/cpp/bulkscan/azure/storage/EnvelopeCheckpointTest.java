@@ -0,0 +1,118 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EnvelopeCheckpointTest {
+
+    private final BlobCloudStorage checkpointStorage = mock(BlobCloudStorage.class);
+
+    @Test
+    public void shouldStartWithoutProgressWhenNoCheckpointExists() {
+        final EnvelopeCheckpoint envelopeCheckpoint = EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents");
+
+        assertThat(envelopeCheckpoint.getRegisterEnvelopeResponse().isPresent(), is(false));
+        assertThat(envelopeCheckpoint.isUploaded("sample_file.pdf"), is(false));
+    }
+
+    @Test
+    public void shouldResumeFromSavedProgress() {
+        final JsonObject registerEnvelopeResponse = createObjectBuilder().add("responseCode", 202).add("scanEnvelopeId", "726b6391").build();
+        final EnvelopeCheckpoint envelopeCheckpoint = EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents");
+        envelopeCheckpoint.registered(registerEnvelopeResponse);
+        envelopeCheckpoint.uploaded("sample_file.pdf");
+        envelopeCheckpoint.uploaded("sample_file.pdf");
+        envelopeCheckpoint.attached("sample_file.pdf");
+        envelopeCheckpoint.thumbnailRequested("sample_file.pdf");
+
+        final ArgumentCaptor<String> savedCheckpoint = ArgumentCaptor.forClass(String.class);
+        verify(checkpointStorage, times(4)).uploadText(eq("checkpoints/valid_scan_documents"), savedCheckpoint.capture());
+        when(checkpointStorage.downloadText("checkpoints/valid_scan_documents")).thenReturn(Optional.of(savedCheckpoint.getValue()));
+
+        final EnvelopeCheckpoint resumedCheckpoint = EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents");
+        assertThat(resumedCheckpoint.getRegisterEnvelopeResponse(), is(Optional.of(registerEnvelopeResponse)));
+        assertThat(resumedCheckpoint.isUploaded("sample_file.pdf"), is(true));
+        assertThat(resumedCheckpoint.isAttached("sample_file.pdf"), is(true));
+        assertThat(resumedCheckpoint.isThumbnailRequested("sample_file.pdf"), is(true));
+        assertThat(resumedCheckpoint.isUploaded("CrownCourtExtract.pdf"), is(false));
+    }
+
+    @Test
+    public void shouldNotHoldProgressWhileWritingAndSaveProgressRecordedMeanwhileTogether() throws Exception {
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch releaseWrite = new CountDownLatch(1);
+        final List<String> savedCheckpoints = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            savedCheckpoints.add(invocation.getArgument(1));
+            writeStarted.countDown();
+            releaseWrite.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(checkpointStorage).uploadText(eq("checkpoints/valid_scan_documents"), anyString());
+        final EnvelopeCheckpoint envelopeCheckpoint = EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents");
+        final ExecutorService uploadWorkers = Executors.newFixedThreadPool(3);
+        try {
+            final Future<?> first = uploadWorkers.submit(() -> envelopeCheckpoint.uploaded("first.pdf"));
+            writeStarted.await(10, TimeUnit.SECONDS);
+
+            assertThat(envelopeCheckpoint.isUploaded("first.pdf"), is(true));
+            final Future<?> second = uploadWorkers.submit(() -> envelopeCheckpoint.uploaded("second.pdf"));
+            final Future<?> third = uploadWorkers.submit(() -> envelopeCheckpoint.uploaded("third.pdf"));
+            waitUntilUploaded(envelopeCheckpoint, "second.pdf", "third.pdf");
+            releaseWrite.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+            third.get(10, TimeUnit.SECONDS);
+        } finally {
+            uploadWorkers.shutdownNow();
+        }
+
+        assertThat(savedCheckpoints.size(), is(2));
+        when(checkpointStorage.downloadText("checkpoints/valid_scan_documents")).thenReturn(Optional.of(savedCheckpoints.get(1)));
+        final EnvelopeCheckpoint resumedCheckpoint = EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents");
+        assertThat(resumedCheckpoint.isUploaded("first.pdf"), is(true));
+        assertThat(resumedCheckpoint.isUploaded("second.pdf"), is(true));
+        assertThat(resumedCheckpoint.isUploaded("third.pdf"), is(true));
+    }
+
+    @Test
+    public void shouldRemoveCheckpointOnceCompleted() {
+        EnvelopeCheckpoint.load(checkpointStorage, "valid_scan_documents").completed();
+
+        verify(checkpointStorage).deleteFromStorage("checkpoints/valid_scan_documents");
+        verify(checkpointStorage, never()).uploadText(anyString(), anyString());
+    }
+
+    private void waitUntilUploaded(final EnvelopeCheckpoint envelopeCheckpoint, final String... pdfDocumentNames) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (Arrays.stream(pdfDocumentNames).allMatch(envelopeCheckpoint::isUploaded)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
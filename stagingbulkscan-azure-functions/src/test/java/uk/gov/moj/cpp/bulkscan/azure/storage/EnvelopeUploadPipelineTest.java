@@ -0,0 +1,107 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.zip.BlobZipStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class EnvelopeUploadPipelineTest {
+
+    private static final List<String> PDF_DOCUMENTS = asList("CrownCourtExtract.pdf", "sample_file.pdf");
+
+    @Test
+    public void shouldUploadEveryEntryWithItsUncompressedSize() throws IOException {
+        final BlobCloudStorage blobCloudStorage = mock(BlobCloudStorage.class);
+        doAnswer(invocation -> toByteArray(invocation.getArgument(0, InputStream.class)))
+                .when(blobCloudStorage).uploadToStorage(any(InputStream.class), anyLong(), any(String.class));
+
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent())) {
+            final EnvelopeUploadPipeline.UploadStatistics uploadStatistics = new EnvelopeUploadPipeline(2, 1024 * 1024)
+                    .upload(blobZipStream, PDF_DOCUMENTS, blobCloudStorage, "valid_scan_documents/");
+
+            verify(blobCloudStorage).uploadToStorage(any(InputStream.class), eq(blobZipStream.getEntrySize("CrownCourtExtract.pdf")), eq("valid_scan_documents/CrownCourtExtract.pdf"));
+            verify(blobCloudStorage).uploadToStorage(any(InputStream.class), eq(blobZipStream.getEntrySize("sample_file.pdf")), eq("valid_scan_documents/sample_file.pdf"));
+            assertThat(uploadStatistics.getEntryCount(), is(2));
+            assertThat(uploadStatistics.getTotalBytes(), is(blobZipStream.getEntrySize("CrownCourtExtract.pdf") + blobZipStream.getEntrySize("sample_file.pdf")));
+        }
+    }
+
+    @Test
+    public void shouldBoundInFlightBytesToTheLargestSingleEntry() throws IOException {
+        final BlobCloudStorage blobCloudStorage = mock(BlobCloudStorage.class);
+        when(blobCloudStorage.getUploadBufferBytes(anyLong())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent())) {
+            final EnvelopeUploadPipeline.UploadStatistics uploadStatistics = new EnvelopeUploadPipeline(2, 1)
+                    .upload(blobZipStream, PDF_DOCUMENTS, blobCloudStorage, "valid_scan_documents/");
+
+            final long largestEntry = Math.max(blobZipStream.getEntrySize("CrownCourtExtract.pdf"), blobZipStream.getEntrySize("sample_file.pdf"));
+            assertThat(uploadStatistics.getPeakInFlightBytes(), lessThanOrEqualTo(largestEntry));
+        }
+    }
+
+    @Test
+    public void shouldBudgetTheUploadBuffersOfTheEntriesRatherThanTheirSize() throws IOException {
+        final BlobCloudStorage blobCloudStorage = mock(BlobCloudStorage.class);
+        when(blobCloudStorage.getUploadBufferBytes(anyLong())).thenReturn(100L);
+
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent())) {
+            final EnvelopeUploadPipeline.UploadStatistics uploadStatistics = new EnvelopeUploadPipeline(2, 150)
+                    .upload(blobZipStream, PDF_DOCUMENTS, blobCloudStorage, "valid_scan_documents/");
+
+            assertThat(uploadStatistics.getPeakInFlightBytes(), is(100L));
+            assertThat(uploadStatistics.getTotalBytes(), is(blobZipStream.getEntrySize("CrownCourtExtract.pdf") + blobZipStream.getEntrySize("sample_file.pdf")));
+        }
+    }
+
+    @Test
+    public void shouldCapABudgetAboveTheLargestSemaphore() throws IOException {
+        final BlobCloudStorage blobCloudStorage = mock(BlobCloudStorage.class);
+        when(blobCloudStorage.getUploadBufferBytes(anyLong())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent())) {
+            final EnvelopeUploadPipeline.UploadStatistics uploadStatistics = new EnvelopeUploadPipeline(2, 4L * 1024 * 1024 * 1024)
+                    .upload(blobZipStream, PDF_DOCUMENTS, blobCloudStorage, "valid_scan_documents/");
+
+            assertThat(uploadStatistics.getEntryCount(), is(2));
+        }
+    }
+
+    @Test
+    public void shouldFailTheEnvelopeWhenAnyEntryFailsToUpload() throws IOException {
+        final BlobCloudStorage blobCloudStorage = mock(BlobCloudStorage.class);
+        doThrow(new BulkScanProcessorException("Cannot connect to storage to upload file "))
+                .when(blobCloudStorage).uploadToStorage(any(InputStream.class), anyLong(), eq("valid_scan_documents/sample_file.pdf"));
+
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent())) {
+            final EnvelopeUploadPipeline envelopeUploadPipeline = new EnvelopeUploadPipeline(2, 1024 * 1024);
+            assertThrows(BulkScanProcessorException.class,
+                    () -> envelopeUploadPipeline.upload(blobZipStream, PDF_DOCUMENTS, blobCloudStorage, "valid_scan_documents/"));
+        }
+    }
+
+    private byte[] zipContent() throws IOException {
+        try (InputStream inputStream = getClass().getResourceAsStream("/valid_scan_documents.zip")) {
+            return toByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory stand-in for the storage queue outbox. A message handed back for a retry stays
+ * hidden until {@link #releaseDelayedMessages()} is called, whatever its delay.
+ */
+public class InMemoryNotificationOutbox implements NotificationOutbox {
+
+    private final Deque<QueuedMessage> visibleMessages = new ArrayDeque<>();
+    private final List<QueuedMessage> delayedMessages = new ArrayList<>();
+    private final Map<String, QueuedMessage> receivedMessages = new LinkedHashMap<>();
+    private final List<String> completedMessages = new ArrayList<>();
+    private final List<Integer> retryDelays = new ArrayList<>();
+    private int nextId;
+
+    @Override
+    public synchronized void enqueue(final String message) {
+        visibleMessages.add(new QueuedMessage(Integer.toString(nextId++), message));
+    }
+
+    @Override
+    public synchronized List<OutboxMessage> receive(final int maxMessages, final int visibilityTimeoutSeconds) {
+        final List<OutboxMessage> messages = new ArrayList<>();
+        while (messages.size() < maxMessages && !visibleMessages.isEmpty()) {
+            final QueuedMessage queuedMessage = visibleMessages.poll();
+            queuedMessage.dequeueCount++;
+            receivedMessages.put(queuedMessage.id, queuedMessage);
+            messages.add(new OutboxMessage(queuedMessage.id, queuedMessage.id, queuedMessage.content, queuedMessage.dequeueCount));
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized void complete(final OutboxMessage message) {
+        completedMessages.add(received(message).content);
+    }
+
+    @Override
+    public synchronized void retryLater(final OutboxMessage message, final int delaySeconds) {
+        delayedMessages.add(received(message));
+        retryDelays.add(delaySeconds);
+    }
+
+    public synchronized void releaseDelayedMessages() {
+        visibleMessages.addAll(delayedMessages);
+        delayedMessages.clear();
+    }
+
+    public synchronized int getPendingCount() {
+        return visibleMessages.size() + delayedMessages.size() + receivedMessages.size();
+    }
+
+    public synchronized List<String> getCompletedMessages() {
+        return new ArrayList<>(completedMessages);
+    }
+
+    public synchronized List<Integer> getRetryDelays() {
+        return new ArrayList<>(retryDelays);
+    }
+
+    private QueuedMessage received(final OutboxMessage message) {
+        final QueuedMessage queuedMessage = receivedMessages.remove(message.getId());
+        if (queuedMessage == null) {
+            throw new IllegalStateException("Message " + message.getId() + " is not being processed");
+        }
+        return queuedMessage;
+    }
+
+    private static class QueuedMessage {
+
+        private final String id;
+        private final String content;
+        private int dequeueCount;
+
+        QueuedMessage(final String id, final String content) {
+            this.id = id;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class IngestLedgerTest {
+
+    private static final String SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    private final BlobCloudStorage ledgerStorage = mock(BlobCloudStorage.class);
+
+    private final IngestLedger ingestLedger = new IngestLedger(ledgerStorage);
+
+    @Test
+    public void shouldHashContentAsHexSha256() throws IOException {
+        assertThat(IngestLedger.sha256(new ByteArrayInputStream("abc".getBytes())), is(SHA256));
+    }
+
+    @Test
+    public void shouldRecordAndFindIngestedEnvelope() {
+        ingestLedger.recordIngestedEnvelope(SHA256, "valid_scan_documents");
+        verify(ledgerStorage).uploadMetadata("envelopes/" + SHA256, singletonMap("zipFileName", "valid_scan_documents"));
+
+        when(ledgerStorage.getBlobMetadata("envelopes/" + SHA256)).thenReturn(Optional.of(singletonMap("zipFileName", "valid_scan_documents")));
+        assertThat(ingestLedger.findIngestedEnvelope(SHA256), is(Optional.of("valid_scan_documents")));
+    }
+
+    @Test
+    public void shouldRecordAndFindThumbnail() {
+        ingestLedger.recordThumbnail(SHA256, "valid_scan_documents/sample_file.png");
+        verify(ledgerStorage).uploadMetadata("pdfs/" + SHA256, singletonMap("thumbnail", "valid_scan_documents/sample_file.png"));
+
+        when(ledgerStorage.getBlobMetadata("pdfs/" + SHA256)).thenReturn(Optional.of(singletonMap("thumbnail", "valid_scan_documents/sample_file.png")));
+        assertThat(ingestLedger.findThumbnail(SHA256), is(Optional.of("valid_scan_documents/sample_file.png")));
+    }
+
+    @Test
+    public void shouldForgetThumbnail() {
+        ingestLedger.forgetThumbnail(SHA256);
+        verify(ledgerStorage).deleteFromStorage("pdfs/" + SHA256);
+    }
+
+    @Test
+    public void shouldMissWhenNothingIsRecorded() {
+        when(ledgerStorage.getBlobMetadata("pdfs/" + SHA256)).thenReturn(Optional.empty());
+        assertThat(ingestLedger.findThumbnail(SHA256), is(Optional.empty()));
+    }
+}
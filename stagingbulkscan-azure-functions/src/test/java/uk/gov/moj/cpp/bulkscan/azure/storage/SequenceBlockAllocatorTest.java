@@ -0,0 +1,71 @@
+package uk.gov.moj.cpp.bulkscan.azure.storage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.BulkScanProcessorException;
+import uk.gov.moj.cpp.bulkscan.azure.storage.BlobCloudStorage.VersionedText;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class SequenceBlockAllocatorTest {
+
+    private static final String COUNTER = "sequences/document-control-number";
+
+    private final BlobCloudStorage ledgerStorage = mock(BlobCloudStorage.class);
+
+    private final SequenceBlockAllocator allocator = new SequenceBlockAllocator(ledgerStorage, "document-control-number", 1000, 9999);
+
+    @Test
+    public void shouldStartTheCounterWhenItDoesNotExistYet() {
+        when(ledgerStorage.downloadVersionedText(COUNTER)).thenReturn(Optional.empty());
+        when(ledgerStorage.uploadTextIfUnchanged(COUNTER, "1100", null)).thenReturn(true);
+
+        final SequenceBlockAllocator.SequenceBlock sequenceBlock = allocator.allocate(100);
+
+        assertThat(sequenceBlock.getFirst(), is(1000));
+        assertThat(sequenceBlock.getLast(), is(1099));
+    }
+
+    @Test
+    public void shouldRetryWithTheNewCounterWhenAnotherHostTookTheBlock() {
+        when(ledgerStorage.downloadVersionedText(COUNTER)).thenReturn(
+                Optional.of(new VersionedText("2000", "etag-1")),
+                Optional.of(new VersionedText("2100", "etag-2")));
+        when(ledgerStorage.uploadTextIfUnchanged(COUNTER, "2100", "etag-1")).thenReturn(false);
+        when(ledgerStorage.uploadTextIfUnchanged(COUNTER, "2200", "etag-2")).thenReturn(true);
+
+        final SequenceBlockAllocator.SequenceBlock sequenceBlock = allocator.allocate(100);
+
+        assertThat(sequenceBlock.getFirst(), is(2100));
+        assertThat(sequenceBlock.getLast(), is(2199));
+    }
+
+    @Test
+    public void shouldWrapAroundAtTheEndOfTheRange() {
+        when(ledgerStorage.downloadVersionedText(COUNTER)).thenReturn(Optional.of(new VersionedText("9950", "etag-1")));
+        when(ledgerStorage.uploadTextIfUnchanged(COUNTER, "1000", "etag-1")).thenReturn(true);
+
+        final SequenceBlockAllocator.SequenceBlock sequenceBlock = allocator.allocate(100);
+
+        assertThat(sequenceBlock.getFirst(), is(9950));
+        assertThat(sequenceBlock.getLast(), is(9999));
+        verify(ledgerStorage).uploadTextIfUnchanged(COUNTER, "1000", "etag-1");
+    }
+
+    @Test
+    public void shouldGiveUpWhenTheCounterKeepsChanging() {
+        when(ledgerStorage.downloadVersionedText(COUNTER)).thenReturn(Optional.of(new VersionedText("2000", "etag-1")));
+        when(ledgerStorage.uploadTextIfUnchanged(eq(COUNTER), anyString(), eq("etag-1"))).thenReturn(false);
+
+        assertThrows(BulkScanProcessorException.class, () -> allocator.allocate(100));
+    }
+}
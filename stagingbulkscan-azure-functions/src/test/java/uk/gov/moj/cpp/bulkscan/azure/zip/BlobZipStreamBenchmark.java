@@ -0,0 +1,176 @@
+package uk.gov.moj.cpp.bulkscan.azure.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.justice.services.messaging.JsonObjects.createReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the sequential {@link ZipInputStream} access pattern the inbox processor used to
+ * follow (one full scan per consumer) with the indexed {@link BlobZipStream}. Envelopes are
+ * built from the test harness PDFs.
+ *
+ * Run from the module directory with the test classpath, e.g.
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main BlobZipStreamBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlobZipStreamBenchmark {
+
+    private static final String PDF_FOLDER = System.getProperty("bulkscan.benchmark.pdfs", "../stagingbulkscan-testharness/src/main/resources/pdfs");
+
+    @Param({"2", "10", "30"})
+    private int documentCount;
+
+    private byte[] envelopeZip;
+
+    @Setup(Level.Trial)
+    public void createEnvelope() throws IOException {
+        final List<byte[]> pdfs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Paths.get(PDF_FOLDER))) {
+            for (final Path pdf : files.filter(file -> file.toString().endsWith(".pdf")).sorted().collect(Collectors.toList())) {
+                pdfs.add(Files.readAllBytes(pdf));
+            }
+        }
+
+        final ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zipContent)) {
+            zipOutputStream.putNextEntry(new ZipEntry("metadata.json"));
+            zipOutputStream.write(metadataJson().getBytes(UTF_8));
+            for (int index = 0; index < documentCount; index++) {
+                zipOutputStream.putNextEntry(new ZipEntry(documentName(index)));
+                zipOutputStream.write(pdfs.get(index % pdfs.size()));
+            }
+        }
+        envelopeZip = zipContent.toByteArray();
+    }
+
+    /**
+     * Validation (metadata and names), metadata read, upload, attach, names and thumbnails:
+     * six full scans of the archive.
+     */
+    @Benchmark
+    public void sequentialZipInputStream(final Blackhole blackhole) throws IOException {
+        blackhole.consume(sequentialMetadata());
+        blackhole.consume(sequentialPdfNames());
+        blackhole.consume(sequentialMetadata());
+        sequentialReadPdfs(blackhole);
+        sequentialReadPdfs(blackhole);
+        blackhole.consume(sequentialPdfNames());
+        sequentialReadPdfs(blackhole);
+    }
+
+    @Benchmark
+    public void indexedBlobZipStream(final Blackhole blackhole) throws IOException {
+        try (BlobZipStream blobZipStream = new BlobZipStream(envelopeZip)) {
+            blackhole.consume(blobZipStream.getMetadataJson());
+            blackhole.consume(blobZipStream.pdfDocumentNames());
+            blackhole.consume(blobZipStream.getMetadataJson());
+            indexedReadPdfs(blobZipStream, blackhole);
+            indexedReadPdfs(blobZipStream, blackhole);
+            blackhole.consume(blobZipStream.pdfDocumentNames());
+            indexedReadPdfs(blobZipStream, blackhole);
+        }
+    }
+
+    private Object sequentialMetadata() throws IOException {
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(envelopeZip))) {
+            ZipEntry nextEntry = zipInputStream.getNextEntry();
+            while (nextEntry != null) {
+                if (nextEntry.getName().endsWith("json")) {
+                    return createReader(zipInputStream).readObject();
+                }
+                nextEntry = zipInputStream.getNextEntry();
+            }
+            return null;
+        }
+    }
+
+    private List<String> sequentialPdfNames() throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(envelopeZip))) {
+            ZipEntry nextEntry = zipInputStream.getNextEntry();
+            while (nextEntry != null) {
+                if (nextEntry.getName().endsWith("pdf")) {
+                    names.add(nextEntry.getName());
+                }
+                nextEntry = zipInputStream.getNextEntry();
+            }
+        }
+        return names;
+    }
+
+    private void sequentialReadPdfs(final Blackhole blackhole) throws IOException {
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(envelopeZip))) {
+            ZipEntry nextEntry = zipInputStream.getNextEntry();
+            while (nextEntry != null) {
+                if (nextEntry.getName().endsWith("pdf")) {
+                    blackhole.consume(drain(zipInputStream));
+                }
+                nextEntry = zipInputStream.getNextEntry();
+            }
+        }
+    }
+
+    private void indexedReadPdfs(final BlobZipStream blobZipStream, final Blackhole blackhole) throws IOException {
+        for (final String pdfDocumentName : blobZipStream.pdfDocumentNames()) {
+            try (InputStream inputStream = blobZipStream.openEntry(pdfDocumentName)) {
+                blackhole.consume(drain(inputStream));
+            }
+        }
+    }
+
+    private static long drain(final InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private String metadataJson() {
+        final String scannableItems = Stream.iterate(0, index -> index + 1)
+                .limit(documentCount)
+                .map(index -> "{\"file_name\":\"" + documentName(index) + "\",\"document_name\":\"SJPN\"}")
+                .collect(Collectors.joining(","));
+        return "{\"zip_file_name\":\"benchmark.zip\",\"scannable_items\":[" + scannableItems + "]}";
+    }
+
+    private static String documentName(final int index) {
+        return String.format("document_%04d.pdf", index);
+    }
+}
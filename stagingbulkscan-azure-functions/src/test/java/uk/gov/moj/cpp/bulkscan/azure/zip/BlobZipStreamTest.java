@@ -0,0 +1,99 @@
+package uk.gov.moj.cpp.bulkscan.azure.zip;
+
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import uk.gov.moj.cpp.bulkscan.azure.exception.InvalidZipPayloadException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+
+public class BlobZipStreamTest {
+
+    @Test
+    public void shouldIndexPdfDocumentsAndMetadata() throws IOException {
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent("valid_scan_documents"))) {
+            assertThat(blobZipStream.pdfDocumentNames(), containsInAnyOrder("CrownCourtExtract.pdf", "sample_file.pdf"));
+
+            final JsonObject metadataJson = blobZipStream.getMetadataJson().get();
+            assertThat(metadataJson.getJsonArray("scannable_items").size(), is(2));
+            assertThat(blobZipStream.getMetadataJson().get() == metadataJson, is(true));
+        }
+    }
+
+    @Test
+    public void shouldOpenEveryEntryWithTheSameContentAsASequentialScan() throws IOException {
+        final byte[] content = zipContent("valid_scan_documents");
+        try (BlobZipStream blobZipStream = new BlobZipStream(content);
+             ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content))) {
+            ZipEntry nextEntry = zipInputStream.getNextEntry();
+            while (nextEntry != null) {
+                final byte[] expected = toByteArray(zipInputStream);
+                try (InputStream entryInputStream = blobZipStream.openEntry(nextEntry.getName())) {
+                    assertThat(toByteArray(entryInputStream), is(expected));
+                }
+                assertThat(blobZipStream.getEntrySize(nextEntry.getName()), is((long) expected.length));
+                nextEntry = zipInputStream.getNextEntry();
+            }
+        }
+    }
+
+    @Test
+    public void shouldSpillToTemporaryFileAboveThreshold() throws IOException {
+        final byte[] content = zipContent("valid_scan_documents");
+        try (BlobZipStream blobZipStream = BlobZipStream.fromInputStream(new ByteArrayInputStream(content), content.length, 0L)) {
+            assertThat(blobZipStream.isSpilledToFile(), is(true));
+            assertThat(blobZipStream.getOriginalZipFileLength(), is((long) content.length));
+            assertThat(blobZipStream.pdfDocumentNames(), containsInAnyOrder("CrownCourtExtract.pdf", "sample_file.pdf"));
+            try (InputStream originalZipFile = blobZipStream.openOriginalZipFile()) {
+                assertThat(toByteArray(originalZipFile), is(content));
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepZipOnHeapWithinThreshold() throws IOException {
+        final byte[] content = zipContent("valid_scan_documents");
+        try (BlobZipStream blobZipStream = BlobZipStream.fromInputStream(new ByteArrayInputStream(content), content.length, content.length)) {
+            assertThat(blobZipStream.isSpilledToFile(), is(false));
+            assertThat(blobZipStream.pdfDocumentNames().size(), is(2));
+        }
+    }
+
+    @Test
+    public void shouldReturnEmptyMetadataWhenZipHasNoJson() throws IOException {
+        try (BlobZipStream blobZipStream = new BlobZipStream(zipContent("no_json_payload"))) {
+            assertThat(blobZipStream.getMetadataJson().isPresent(), is(false));
+        }
+    }
+
+    @Test
+    public void shouldThrowInvalidZipPayloadExceptionWhenContentIsNotAZip() {
+        try (BlobZipStream blobZipStream = new BlobZipStream("not a zip".getBytes())) {
+            assertThrows(InvalidZipPayloadException.class, blobZipStream::pdfDocumentNames);
+        }
+    }
+
+    @Test
+    public void shouldRejectZipLargerThanCanBeMapped() {
+        final InputStream inputStream = new ByteArrayInputStream(new byte[0]);
+        assertThrows(InvalidZipPayloadException.class,
+                () -> BlobZipStream.fromInputStream(inputStream, BlobZipStream.MAX_ZIP_FILE_LENGTH + 1, 0L));
+    }
+
+    private byte[] zipContent(final String fileName) throws IOException {
+        try (InputStream inputStream = getClass().getResourceAsStream("/" + fileName + ".zip")) {
+            return toByteArray(inputStream);
+        }
+    }
+}
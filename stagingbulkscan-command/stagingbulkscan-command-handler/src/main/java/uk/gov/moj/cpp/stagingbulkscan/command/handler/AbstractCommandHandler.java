@@ -2,13 +2,13 @@ package uk.gov.moj.cpp.stagingbulkscan.command.handler;
 
 import uk.gov.justice.domain.aggregate.Aggregate;
 import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
-import uk.gov.justice.services.core.aggregate.AggregateService;
 import uk.gov.justice.services.core.enveloper.Enveloper;
 import uk.gov.justice.services.eventsourcing.source.core.EventSource;
 import uk.gov.justice.services.eventsourcing.source.core.EventStream;
 import uk.gov.justice.services.eventsourcing.source.core.exception.EventStreamException;
 import uk.gov.justice.services.messaging.Envelope;
 import uk.gov.justice.services.messaging.JsonEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot.AggregateSnapshotService;
 
 import java.util.UUID;
 import java.util.function.Function;
@@ -26,7 +26,7 @@ abstract class AbstractCommandHandler {
     private Enveloper enveloper;
 
     @Inject
-    private AggregateService aggregateService;
+    private AggregateSnapshotService aggregateSnapshotService;
 
     @Inject
     private JsonObjectToObjectConverter jsonObjectToObjectConverter;
@@ -34,13 +34,21 @@ abstract class AbstractCommandHandler {
     <A extends Aggregate> A aggregate(final Class<A> clazz, final UUID streamId,
                                       final Envelope<?> envelope, final Function<A, Stream<Object>> function) throws EventStreamException {
         final EventStream eventStream = eventSource.getStreamById(streamId);
-        final A aggregate = aggregateService.get(eventStream, clazz);
+        final A aggregate = aggregateSnapshotService.load(envelope.metadata().name(), streamId, eventStream, clazz);
         final Stream<Object> events = function.apply(aggregate);
         final JsonEnvelope jsonEnvelope = JsonEnvelope.envelopeFrom(envelope.metadata(), JsonValue.NULL);
         eventStream.append(events.map(enveloper.withMetadataFrom(jsonEnvelope)));
         return aggregate;
     }
 
+    /**
+     * Loads the aggregate of the stream without appending to it, for commands that only read its
+     * state to decide the events appended to another stream.
+     */
+    <A extends Aggregate> A load(final Class<A> clazz, final UUID streamId, final Envelope<?> envelope) {
+        return aggregateSnapshotService.load(envelope.metadata().name(), streamId, eventSource.getStreamById(streamId), clazz);
+    }
+
     UUID getUserId(final JsonEnvelope envelope) {
         return envelope.metadata().userId().map(UUID::fromString)
                 .orElse(null);
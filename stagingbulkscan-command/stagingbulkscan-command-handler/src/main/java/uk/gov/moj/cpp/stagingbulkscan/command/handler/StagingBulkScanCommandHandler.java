@@ -1,6 +1,7 @@
 package uk.gov.moj.cpp.stagingbulkscan.command.handler;
 
 import static java.util.UUID.fromString;
+import static java.util.stream.Collectors.toList;
 import static uk.gov.justice.services.core.annotation.Component.COMMAND_HANDLER;
 
 import uk.gov.justice.services.core.annotation.Handles;
@@ -14,9 +15,15 @@ import uk.gov.justice.stagingbulkscan.domain.AllFinancialMeans;
 import uk.gov.justice.stagingbulkscan.domain.AutoActionDocument;
 import uk.gov.justice.stagingbulkscan.domain.Defendant;
 import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.ScanDocumentAggregate;
 import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.StagingBulkScanAggregate;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.json.JsonString;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +35,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(StagingBulkScanCommandHandler.class.getName());
     private static final String SCAN_ENVELOPE_ID = "scanEnvelopeId";
     private static final String SCAN_DOCUMENT_ID = "scanDocumentId";
+    private static final String SCAN_DOCUMENT_IDS = "scanDocumentIds";
     private static final String IS_SJP = "isSjp";
 
     @Handles("stagingbulkscan.command.register-scan-envelope")
@@ -48,7 +56,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
         final UUID scanDocumentId = fromString(command.payloadAsJsonObject().getString(SCAN_DOCUMENT_ID));
         final UUID actionedBy = getUserId(command);
 
-        aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, command, a -> a.markAsManuallyActioned(scanEnvelopeId, scanDocumentId, actionedBy));
+        document(scanEnvelopeId, scanDocumentId, command, a -> a.markAsManuallyActioned(scanEnvelopeId, scanDocumentId, actionedBy));
     }
 
     @Handles("stagingbulkscan.command.delete-actioned-document")
@@ -60,7 +68,25 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
         final UUID scanEnvelopeId = UUID.fromString(command.payloadAsJsonObject().getString(SCAN_ENVELOPE_ID));
         final UUID scanDocumentId = UUID.fromString(command.payloadAsJsonObject().getString(SCAN_DOCUMENT_ID));
 
-        aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, command, a -> a.deleteActionedDocument(scanEnvelopeId, scanDocumentId));
+        document(scanEnvelopeId, scanDocumentId, command, a -> a.deleteActionedDocument(scanEnvelopeId, scanDocumentId));
+    }
+
+    @Handles("stagingbulkscan.command.delete-actioned-documents")
+    public void deleteActionedDocumentsOfEnvelope(final JsonEnvelope command) throws EventStreamException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("stagingbulkscan.command.delete-actioned-documents command received {}",
+                    command.toObfuscatedDebugString());
+        }
+        final UUID scanEnvelopeId = fromString(command.payloadAsJsonObject().getString(SCAN_ENVELOPE_ID));
+        final List<UUID> scanDocumentIds = command.payloadAsJsonObject().getJsonArray(SCAN_DOCUMENT_IDS)
+                .getValuesAs(JsonString.class).stream()
+                .map(scanDocumentId -> fromString(scanDocumentId.getString()))
+                .collect(toList());
+
+        final StagingBulkScanAggregate stagingBulkScanAggregate = load(StagingBulkScanAggregate.class, scanEnvelopeId, command);
+        for (final UUID scanDocumentId : scanDocumentIds) {
+            document(stagingBulkScanAggregate, scanDocumentId, command, a -> a.deleteActionedDocument(scanEnvelopeId, scanDocumentId));
+        }
     }
 
     @Handles("stagingbulkscan.command.auto-action-scan-document")
@@ -68,7 +94,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
 
         final AutoActionDocument autoActionDocument = envelope.payload();
 
-        aggregate(StagingBulkScanAggregate.class, autoActionDocument.getScanEnvelopeId(), envelope,
+        document(autoActionDocument.getScanEnvelopeId(), autoActionDocument.getScanDocumentId(), envelope,
                 a -> a.markAsAutoActioned(autoActionDocument.getScanEnvelopeId(), autoActionDocument.getScanDocumentId(), autoActionDocument.getActionedBy()));
     }
 
@@ -78,7 +104,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
         final UUID scanEnvelopeId = payload.getScanEnvelopeId();
         final UUID scanDocumentId = payload.getScanDocumentId();
 
-        aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, envelope,
+        document(scanEnvelopeId, scanDocumentId, envelope,
                 a -> a.rejectDocument(scanEnvelopeId, scanDocumentId, payload.getErrors()));
     }
 
@@ -86,7 +112,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
     public void expireDocument(final Envelope<ExpireDocument> envelope) throws EventStreamException {
         final ExpireDocument payload = envelope.payload();
 
-        aggregate(StagingBulkScanAggregate.class, payload.getScanEnvelopeId(), envelope,
+        document(payload.getScanEnvelopeId(), payload.getScanDocumentId(), envelope,
                 a -> a.expireDocument(payload.getScanEnvelopeId(), payload.getScanDocumentId(), payload.getExpireDate()));
     }
 
@@ -94,8 +120,9 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
     public void updateDefendantFinancialMeans(final Envelope<AllFinancialMeans> envelope) throws EventStreamException {
         final AllFinancialMeans allFinancialMeans = envelope.payload();
 
-        aggregate(StagingBulkScanAggregate.class, allFinancialMeans.getScanEnvelopeId(), envelope,
-                a -> a.updateDefendantFinancialMeans(allFinancialMeans, getUserId(envelope)));
+        final StagingBulkScanAggregate stagingBulkScanAggregate = load(StagingBulkScanAggregate.class, allFinancialMeans.getScanEnvelopeId(), envelope);
+        aggregate(ScanDocumentAggregate.class, allFinancialMeans.getScanDocumentId(), envelope,
+                d -> d.recordDefendantFinancialMeansUpdate(() -> stagingBulkScanAggregate.updateDefendantFinancialMeans(allFinancialMeans, getUserId(envelope))));
     }
 
     @Handles("stagingbulkscan.command.update-defendant-additional-details")
@@ -103,8 +130,9 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
 
         final Defendant defendantDetails = envelope.payload();
 
-        aggregate(StagingBulkScanAggregate.class, defendantDetails.getScanEnvelopeId(), envelope,
-                a -> a.updateDefendantDetails(defendantDetails, getUserId(envelope)));
+        final StagingBulkScanAggregate stagingBulkScanAggregate = load(StagingBulkScanAggregate.class, defendantDetails.getScanEnvelopeId(), envelope);
+        aggregate(ScanDocumentAggregate.class, defendantDetails.getScanDocumentId(), envelope,
+                d -> d.recordDefendantDetailsUpdate(() -> stagingBulkScanAggregate.updateDefendantDetails(defendantDetails, getUserId(envelope))));
     }
 
     @Handles("stagingbulkscan.command.raise-document-follow-up")
@@ -117,7 +145,7 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
         final UUID scanEnvelopeId = fromString(command.payloadAsJsonObject().getString(SCAN_ENVELOPE_ID));
         final UUID scanDocumentId = fromString(command.payloadAsJsonObject().getString(SCAN_DOCUMENT_ID));
 
-        aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, command, a -> a.raiseDocumentFollowUp(scanEnvelopeId, scanDocumentId));
+        document(scanEnvelopeId, scanDocumentId, command, a -> a.raiseDocumentFollowUp(scanEnvelopeId, scanDocumentId));
     }
 
     @Handles("stagingbulkscan.command.decide-document-next-step")
@@ -131,6 +159,28 @@ public class StagingBulkScanCommandHandler extends AbstractCommandHandler {
         final UUID scanDocumentId = fromString(command.payloadAsJsonObject().getString(SCAN_DOCUMENT_ID));
         final Boolean isSjp = command.payloadAsJsonObject().getBoolean(IS_SJP);
 
-        aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, command, a -> a.raiseDocumentNextstepDecided(scanEnvelopeId, scanDocumentId, isSjp));
+        final StagingBulkScanAggregate stagingBulkScanAggregate = load(StagingBulkScanAggregate.class, scanEnvelopeId, command);
+        if (stagingBulkScanAggregate.isScanEnvelopeRegistered()) {
+            aggregate(ScanDocumentAggregate.class, scanDocumentId, command,
+                    d -> d.record(stagingBulkScanAggregate.raiseDocumentNextstepDecided(scanEnvelopeId, scanDocumentId, isSjp)));
+        } else {
+            // the pause is kept with the envelope, so that its registration raises the decision
+            aggregate(StagingBulkScanAggregate.class, scanEnvelopeId, command, a -> a.raiseDocumentNextstepDecided(scanEnvelopeId, scanDocumentId, isSjp));
+        }
+    }
+
+    /**
+     * Appends the events decided by the envelope of the document to the stream of the document,
+     * so that commands for different documents of the same envelope do not contend for the
+     * envelope stream.
+     */
+    private void document(final UUID scanEnvelopeId, final UUID scanDocumentId, final Envelope<?> envelope,
+                          final Function<StagingBulkScanAggregate, Stream<Object>> decision) throws EventStreamException {
+        document(load(StagingBulkScanAggregate.class, scanEnvelopeId, envelope), scanDocumentId, envelope, decision);
+    }
+
+    private void document(final StagingBulkScanAggregate stagingBulkScanAggregate, final UUID scanDocumentId, final Envelope<?> envelope,
+                          final Function<StagingBulkScanAggregate, Stream<Object>> decision) throws EventStreamException {
+        aggregate(ScanDocumentAggregate.class, scanDocumentId, envelope, d -> d.record(decision.apply(stagingBulkScanAggregate)));
     }
 }
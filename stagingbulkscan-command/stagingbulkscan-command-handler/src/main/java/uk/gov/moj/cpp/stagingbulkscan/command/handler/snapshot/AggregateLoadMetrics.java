@@ -0,0 +1,89 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * The number of events replayed and the time taken to load the aggregate, per command.
+ */
+public class AggregateLoadMetrics {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final ConcurrentMap<String, LoadStatistics> commands = new ConcurrentHashMap<>();
+
+    public void record(final String command, final long replayedEvents, final boolean fromSnapshot, final long elapsedNanos) {
+        commands.computeIfAbsent(command, key -> new LoadStatistics()).record(replayedEvents, fromSnapshot, elapsedNanos);
+    }
+
+    public Optional<LoadStatistics> getCommand(final String command) {
+        return Optional.ofNullable(commands.get(command));
+    }
+
+    public String getStatistics() {
+        final Map<String, LoadStatistics> sortedCommands = new TreeMap<>(commands);
+        return sortedCommands.entrySet().stream()
+                .map(command -> command.getKey() + command.getValue())
+                .collect(Collectors.joining(", ", "AggregateLoadMetrics(", ")"));
+    }
+
+    public static class LoadStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder fromSnapshot = new LongAdder();
+        private final LongAdder totalReplayedEvents = new LongAdder();
+        private final LongAccumulator maxReplayedEvents = new LongAccumulator(Long::max, 0);
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        void record(final long replayedEvents, final boolean restoredFromSnapshot, final long elapsedNanos) {
+            count.increment();
+            if (restoredFromSnapshot) {
+                fromSnapshot.increment();
+            }
+            totalReplayedEvents.add(replayedEvents);
+            maxReplayedEvents.accumulate(replayedEvents);
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFromSnapshot() {
+            return fromSnapshot.sum();
+        }
+
+        public double getAverageReplayedEvents() {
+            final long loadCount = count.sum();
+            return loadCount == 0 ? 0 : (double) totalReplayedEvents.sum() / loadCount;
+        }
+
+        public long getMaxReplayedEvents() {
+            return maxReplayedEvents.get();
+        }
+
+        public double getAverageMillis() {
+            final long loadCount = count.sum();
+            return loadCount == 0 ? 0 : totalNanos.sum() / NANOS_PER_MILLI / loadCount;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "(count=%d, fromSnapshot=%d, averageReplayedEvents=%.1f, maxReplayedEvents=%d, averageMillis=%.1f, maxMillis=%.1f)",
+                    getCount(), getFromSnapshot(), getAverageReplayedEvents(), getMaxReplayedEvents(), getAverageMillis(), getMaxMillis());
+        }
+    }
+}
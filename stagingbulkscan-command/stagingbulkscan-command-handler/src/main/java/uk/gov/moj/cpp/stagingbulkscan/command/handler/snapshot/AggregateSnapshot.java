@@ -0,0 +1,46 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import java.util.UUID;
+
+/**
+ * A serialised aggregate and the position of the last event of its stream it had applied. The
+ * serialVersionUID of the aggregate class is kept so a snapshot taken by an earlier version of the
+ * aggregate is never restored.
+ */
+public class AggregateSnapshot {
+
+    private final UUID streamId;
+    private final String aggregateClassName;
+    private final long aggregateVersion;
+    private final long position;
+    private final byte[] aggregate;
+
+    public AggregateSnapshot(final UUID streamId, final String aggregateClassName, final long aggregateVersion,
+                             final long position, final byte[] aggregate) {
+        this.streamId = streamId;
+        this.aggregateClassName = aggregateClassName;
+        this.aggregateVersion = aggregateVersion;
+        this.position = position;
+        this.aggregate = aggregate;
+    }
+
+    public UUID getStreamId() {
+        return streamId;
+    }
+
+    public String getAggregateClassName() {
+        return aggregateClassName;
+    }
+
+    public long getAggregateVersion() {
+        return aggregateVersion;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public byte[] getAggregate() {
+        return aggregate;
+    }
+}
@@ -0,0 +1,193 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import uk.gov.justice.domain.aggregate.Aggregate;
+import uk.gov.justice.domain.annotation.Event;
+import uk.gov.justice.services.common.configuration.Value;
+import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
+import uk.gov.justice.services.core.aggregate.AggregateService;
+import uk.gov.justice.services.eventsourcing.source.core.EventStream;
+import uk.gov.justice.services.messaging.JsonEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.StagingBulkScanAggregate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads aggregates from their latest snapshot and the events appended after it, instead of
+ * replaying the whole stream for every command. Once a load has replayed at least
+ * aggregateSnapshotThreshold events, the aggregate is serialised and kept as the new snapshot of
+ * the stream, before the command changes it.
+ *
+ * A snapshot taken by an aggregate class with another serialVersionUID, or that can no longer be
+ * read, is dropped and the stream replayed from the start. Aggregates that have not registered
+ * the events they apply are always replayed by the {@link AggregateService}.
+ */
+@ApplicationScoped
+public class AggregateSnapshotService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregateSnapshotService.class);
+
+    private static final long STATISTICS_LOG_INTERVAL = 500;
+
+    @Inject
+    private AggregateService aggregateService;
+
+    @Inject
+    private JsonObjectToObjectConverter jsonObjectToObjectConverter;
+
+    @Inject
+    private AggregateSnapshotStore aggregateSnapshotStore;
+
+    @Inject
+    @Value(key = "aggregateSnapshotThreshold", defaultValue = "25")
+    private String aggregateSnapshotThreshold;
+
+    private final Map<Class<?>, Map<String, Class<?>>> appliedEvents = new ConcurrentHashMap<>();
+    private final AggregateLoadMetrics metrics = new AggregateLoadMetrics();
+    private final AtomicLong loads = new AtomicLong();
+
+    public AggregateSnapshotService() {
+        register(StagingBulkScanAggregate.class, StagingBulkScanAggregate.APPLIED_EVENTS);
+    }
+
+    private void register(final Class<? extends Aggregate> aggregateClass, final Collection<Class<?>> eventClasses) {
+        final Map<String, Class<?>> eventNames = new HashMap<>();
+        eventClasses.forEach(eventClass -> eventNames.put(eventClass.getAnnotation(Event.class).value(), eventClass));
+        appliedEvents.put(aggregateClass, eventNames);
+    }
+
+    public <A extends Aggregate> A load(final String command, final UUID streamId, final EventStream eventStream, final Class<A> clazz) {
+        final long startTime = System.nanoTime();
+        final Map<String, Class<?>> eventClasses = appliedEvents.get(clazz);
+        final Optional<AggregateSnapshot> snapshot = eventClasses == null ? Optional.empty() : aggregateSnapshotStore.findLatest(streamId);
+        final Optional<A> restored = snapshot.flatMap(latest -> restore(latest, clazz));
+
+        final A aggregate;
+        final long replayedEvents;
+        if (restored.isPresent()) {
+            aggregate = restored.get();
+            replayedEvents = replay(eventStream.readFrom(snapshot.get().getPosition() + 1), aggregate, eventClasses);
+            if (replayedEvents >= snapshotThreshold()) {
+                save(streamId, snapshot.get().getPosition() + replayedEvents, aggregate, clazz);
+            }
+        } else {
+            final long streamSize = eventStream.size();
+            aggregate = aggregateService.get(eventStream, clazz);
+            replayedEvents = streamSize;
+            // the stream is only snapshotted when no event was appended while it was replayed
+            if (eventClasses != null && streamSize >= snapshotThreshold() && eventStream.size() == streamSize) {
+                save(streamId, streamSize, aggregate, clazz);
+            }
+        }
+
+        record(command, replayedEvents, restored.isPresent(), System.nanoTime() - startTime);
+        return aggregate;
+    }
+
+    public AggregateLoadMetrics getMetrics() {
+        return metrics;
+    }
+
+    private long replay(final Stream<JsonEnvelope> events, final Aggregate aggregate, final Map<String, Class<?>> eventClasses) {
+        long replayedEvents = 0;
+        try (Stream<JsonEnvelope> tail = events) {
+            final Iterator<JsonEnvelope> iterator = tail.iterator();
+            while (iterator.hasNext()) {
+                final JsonEnvelope event = iterator.next();
+                final Class<?> eventClass = eventClasses.get(event.metadata().name());
+                if (eventClass != null) {
+                    aggregate.apply(jsonObjectToObjectConverter.convert(event.payloadAsJsonObject(), eventClass));
+                }
+                replayedEvents++;
+            }
+        }
+        return replayedEvents;
+    }
+
+    private <A extends Aggregate> Optional<A> restore(final AggregateSnapshot snapshot, final Class<A> clazz) {
+        if (!clazz.getName().equals(snapshot.getAggregateClassName()) || snapshot.getAggregateVersion() != versionOf(clazz)) {
+            LOGGER.info("Dropping snapshot of stream {} taken by another version of {}", snapshot.getStreamId(), clazz.getSimpleName());
+            aggregateSnapshotStore.remove(snapshot.getStreamId());
+            return Optional.empty();
+        }
+        try (ObjectInputStream input = new AggregateInputStream(new ByteArrayInputStream(snapshot.getAggregate()), clazz.getClassLoader())) {
+            return Optional.of(clazz.cast(input.readObject()));
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Dropping snapshot of stream {} that could not be read", snapshot.getStreamId(), e);
+            aggregateSnapshotStore.remove(snapshot.getStreamId());
+            return Optional.empty();
+        }
+    }
+
+    private void save(final UUID streamId, final long position, final Aggregate aggregate, final Class<?> clazz) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(aggregate);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to snapshot stream {}", streamId, e);
+            return;
+        }
+        aggregateSnapshotStore.save(new AggregateSnapshot(streamId, clazz.getName(), versionOf(clazz), position, bytes.toByteArray()));
+    }
+
+    private void record(final String command, final long replayedEvents, final boolean fromSnapshot, final long elapsedNanos) {
+        metrics.record(command, replayedEvents, fromSnapshot, elapsedNanos);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} replayed {} events{} in {} ms", command, replayedEvents, fromSnapshot ? " after the snapshot" : "", elapsedNanos / 1_000_000);
+        }
+        if (loads.incrementAndGet() % STATISTICS_LOG_INTERVAL == 0) {
+            LOGGER.info("{}", metrics.getStatistics());
+        }
+    }
+
+    private long snapshotThreshold() {
+        return Long.parseLong(aggregateSnapshotThreshold);
+    }
+
+    private static long versionOf(final Class<?> clazz) {
+        return ObjectStreamClass.lookup(clazz).getSerialVersionUID();
+    }
+
+    /**
+     * Resolves the classes of the snapshot with the class loader of the aggregate, which is not
+     * always the one of the caller in the application server.
+     */
+    private static class AggregateInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        AggregateInputStream(final InputStream input, final ClassLoader classLoader) throws IOException {
+            super(input);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(description.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(description);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AggregateSnapshotStore {
+
+    Optional<AggregateSnapshot> findLatest(UUID streamId);
+
+    /**
+     * Keeps the snapshot unless the store already holds a later one of the stream.
+     */
+    void save(AggregateSnapshot snapshot);
+
+    void remove(UUID streamId);
+}
@@ -0,0 +1,70 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import uk.gov.justice.services.common.configuration.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Keeps the latest snapshot of the most recently used streams in the heap of the command handler.
+ * A snapshot only ever saves the replay of events before its position, which never change, so
+ * each node can keep its own and a node without one replays the whole stream as before.
+ */
+@ApplicationScoped
+public class InMemoryAggregateSnapshotStore implements AggregateSnapshotStore {
+
+    @Inject
+    @Value(key = "aggregateSnapshotCacheSize", defaultValue = "5000")
+    private String aggregateSnapshotCacheSize;
+
+    private Map<UUID, AggregateSnapshot> snapshots;
+
+    public InMemoryAggregateSnapshotStore() {
+    }
+
+    public InMemoryAggregateSnapshotStore(final int capacity) {
+        snapshots = leastRecentlyUsed(capacity);
+    }
+
+    @PostConstruct
+    public void init() {
+        snapshots = leastRecentlyUsed(Integer.parseInt(aggregateSnapshotCacheSize));
+    }
+
+    @Override
+    public synchronized Optional<AggregateSnapshot> findLatest(final UUID streamId) {
+        return Optional.ofNullable(snapshots.get(streamId));
+    }
+
+    @Override
+    public synchronized void save(final AggregateSnapshot snapshot) {
+        final AggregateSnapshot latest = snapshots.get(snapshot.getStreamId());
+        if (latest == null || latest.getPosition() < snapshot.getPosition()) {
+            snapshots.put(snapshot.getStreamId(), snapshot);
+        }
+    }
+
+    @Override
+    public synchronized void remove(final UUID streamId) {
+        snapshots.remove(streamId);
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    private static Map<UUID, AggregateSnapshot> leastRecentlyUsed(final int capacity) {
+        return new LinkedHashMap<UUID, AggregateSnapshot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<UUID, AggregateSnapshot> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
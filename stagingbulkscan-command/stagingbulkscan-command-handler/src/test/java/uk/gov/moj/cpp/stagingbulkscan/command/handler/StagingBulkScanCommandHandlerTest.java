@@ -4,12 +4,16 @@ import static com.jayway.jsonpath.matchers.JsonPathMatchers.isJson;
 import static com.jayway.jsonpath.matchers.JsonPathMatchers.withJsonPath;
 import static java.util.Arrays.asList;
 import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.justice.services.messaging.Envelope.envelopeFrom;
 import static uk.gov.justice.services.messaging.Envelope.metadataFrom;
@@ -46,11 +50,18 @@ import uk.gov.justice.stagingbulkscan.command.RejectDocument;
 import uk.gov.justice.stagingbulkscan.domain.AllFinancialMeans;
 import uk.gov.justice.stagingbulkscan.domain.AutoActionDocument;
 import uk.gov.justice.stagingbulkscan.domain.Defendant;
+import uk.gov.justice.stagingbulkscan.domain.DocumentFinancialMeans;
 import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
 import uk.gov.justice.stagingbulkscan.domain.event.ScanDocumentExpired;
 import uk.gov.justice.stagingbulkscan.domain.event.ScanDocumentRejected;
+import uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot.AggregateSnapshotService;
+import uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot.InMemoryAggregateSnapshotStore;
+import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.ScanDocumentAggregate;
 import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.StagingBulkScanAggregate;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ActionedDocumentDeleted;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantFinancialMeansUpdated;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepDecided;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepPaused;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAttachedAndFollowedUp;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentFollowedUp;
@@ -85,10 +96,12 @@ public class StagingBulkScanCommandHandlerTest {
     private static final String USER_ID = "726b6391-7bc2-445a-8a0c-9bcfd963703e";
     private static final UUID DOCUMENT_ID_1 = UUID.fromString("ec998ef3-4775-4166-9ad8-f5eeba78ded1");
     private static final String PDF_FILE_1 = "PDF_FILE_1.pdf";
+    private static final String PDF_FILE_2 = "PDF_FILE_2.pdf";
     private static final String ZIP_FILE_1 = "ZIP_FILE_1.zip";
     private static final String MARK_AS_ACTIONED_EVENT = "stagingbulkscan.events.mark-as-actioned";
     private static final String MARK_AS_ACTIONED_COMMAND = "stagingbulkscan.command.mark-as-action";
     private static final String DELETE_ACTIONED_DOCUMENTS_AFTER_LIMIT_COMMAND = "stagingbulkscan.command.delete-actioned-document";
+    private static final String DELETE_ACTIONED_DOCUMENTS_OF_ENVELOPE_COMMAND = "stagingbulkscan.command.delete-actioned-documents";
     private static final String DELETE_ACTIONED_DOCUMENTS_AFTER_LIMIT_EVENT = "stagingbulkscan.events.actioned-document-deleted";
     private static final String DOCUMENT_AUTO_ACTIONED_EVENT = "stagingbulkscan.events.document-auto-actioned";
     private static final String AUTO_ACTION_DOCUMENT_COMMAND = "stagingbulkscan.command.auto-action-scan-document";
@@ -96,6 +109,10 @@ public class StagingBulkScanCommandHandlerTest {
     private static final String DOCUMENT_EXPIRED = "stagingbulkscan.events.scan-document-expired";
     private static final String COMMAND_REGISTER_SCAN_ENVELOPE = "stagingbulkscan.command.register-scan-envelope";
     private static final String SCAN_ENVELOPE_REGISTERED_EVENT = "stagingbulkscan.events.scan-envelope-registered";
+    private static final String DOCUMENT_NEXT_STEP_DECIDED = "stagingbulkscan.events.document-next-step-decided";
+    private static final String DOCUMENT_NEXT_STEP_PAUSED = "stagingbulkscan.events.document-next-step-paused";
+    private static final String CASE_URN = "TFL75947ZQ8UE";
+    private static final String DEFENDANT_FINANCIAL_MEANS_UPDATED = "stagingbulkscan.events.defendant-financial-means-updated";
 
     @Spy
     private final Enveloper enveloper = createEnveloperWithEvents(
@@ -106,11 +123,20 @@ public class StagingBulkScanCommandHandlerTest {
             ScanDocumentRejected.class,
             ScanDocumentExpired.class,
             ScanDocumentFollowedUp.class,
-            ScanDocumentAttachedAndFollowedUp.class);
+            DefendantFinancialMeansUpdated.class,
+            ScanDocumentAttachedAndFollowedUp.class,
+            DocumentNextStepDecided.class,
+            DocumentNextStepPaused.class);
 
     @Mock
     private EventStream eventStream;
 
+    @Mock
+    private EventStream documentEventStream;
+
+    @Mock
+    private EventStream otherDocumentEventStream;
+
     @Mock
     private EventSource eventSource;
 
@@ -123,6 +149,9 @@ public class StagingBulkScanCommandHandlerTest {
     @Spy
     private JsonObjectToObjectConverter jsonObjectToObjectConverter;
 
+    @Spy
+    private AggregateSnapshotService aggregateSnapshotService;
+
     @InjectMocks
     private StagingBulkScanCommandHandler stagingBulkScanCommandHandler;
 
@@ -130,6 +159,10 @@ public class StagingBulkScanCommandHandlerTest {
     public void setup() {
         setField(this.objectToJsonObjectConverter, "mapper", new ObjectMapperProducer().objectMapper());
         setField(this.jsonObjectToObjectConverter, "objectMapper", new ObjectMapperProducer().objectMapper());
+        setField(this.aggregateSnapshotService, "aggregateService", aggregateService);
+        setField(this.aggregateSnapshotService, "jsonObjectToObjectConverter", jsonObjectToObjectConverter);
+        setField(this.aggregateSnapshotService, "aggregateSnapshotStore", new InMemoryAggregateSnapshotStore(10));
+        setField(this.aggregateSnapshotService, "aggregateSnapshotThreshold", "25");
     }
 
     @Test
@@ -180,10 +213,11 @@ public class StagingBulkScanCommandHandlerTest {
         stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope));
 
         setupMockedEventStream(scanEnvelopeId, this.eventStream, stagingBulkScanAggregate);
+        setupMockedEventStream(scanDocumentId, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.markAsAction(envelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName(MARK_AS_ACTIONED_EVENT).withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(jsonObject.getString("scanDocumentId"))),
@@ -209,10 +243,11 @@ public class StagingBulkScanCommandHandlerTest {
         stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope));
 
         setupMockedEventStream(scanEnvelopeId, this.eventStream, stagingBulkScanAggregate);
+        setupMockedEventStream(scanDocumentId, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.deleteActionedDocuments(envelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream),
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream),
                 streamContaining(jsonEnvelope(
                         withMetadataEnvelopedFrom(envelope)
                                 .withName(DELETE_ACTIONED_DOCUMENTS_AFTER_LIMIT_EVENT).withUserId(USER_ID),
@@ -222,6 +257,52 @@ public class StagingBulkScanCommandHandlerTest {
                         )))));
     }
 
+    @Test
+    public void deleteActionedDocumentsOfEnvelopeAfterLimit() throws EventStreamException, IOException {
+        final JsonObject jsonObject = getJsonObject("stagingbulkscan.command.delete-actioned-documents.json");
+
+        final UUID scanEnvelopeId = UUID.fromString(jsonObject.getString("scanEnvelopeId"));
+        final UUID firstScanDocumentId = UUID.fromString(jsonObject.getJsonArray("scanDocumentIds").getString(0));
+        final UUID secondScanDocumentId = UUID.fromString(jsonObject.getJsonArray("scanDocumentIds").getString(1));
+
+        final JsonEnvelope envelope = envelopeFrom(
+                metadataWithRandomUUID(DELETE_ACTIONED_DOCUMENTS_OF_ENVELOPE_COMMAND)
+                        .withUserId(USER_ID), objectToJsonObjectConverter.convert(jsonObject));
+
+        final StagingBulkScanAggregate stagingBulkScanAggregate = new StagingBulkScanAggregate();
+        stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withZipFileName(ZIP_FILE_1)
+                .withAssociatedScanDocuments(asList(
+                        scanDocument().withScanDocumentId(firstScanDocumentId).withFileName(PDF_FILE_1).build(),
+                        scanDocument().withScanDocumentId(secondScanDocumentId).withFileName(PDF_FILE_2).build()))
+                .build()));
+
+        setupMockedEventStream(scanEnvelopeId, this.eventStream, stagingBulkScanAggregate);
+        setupMockedEventStream(firstScanDocumentId, this.documentEventStream, new ScanDocumentAggregate());
+        setupMockedEventStream(secondScanDocumentId, this.otherDocumentEventStream, new ScanDocumentAggregate());
+
+        stagingBulkScanCommandHandler.deleteActionedDocumentsOfEnvelope(envelope);
+
+        verify(eventSource).getStreamById(scanEnvelopeId);
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream),
+                streamContaining(jsonEnvelope(
+                        withMetadataEnvelopedFrom(envelope)
+                                .withName(DELETE_ACTIONED_DOCUMENTS_AFTER_LIMIT_EVENT).withUserId(USER_ID),
+                        payloadIsJson(allOf(
+                                withJsonPath("$.scanDocumentId", equalTo(firstScanDocumentId.toString())),
+                                withJsonPath("$.documentFileName", equalTo(PDF_FILE_1))
+                        )))));
+        assertThat(verifyAppendAndGetArgumentFrom(otherDocumentEventStream),
+                streamContaining(jsonEnvelope(
+                        withMetadataEnvelopedFrom(envelope)
+                                .withName(DELETE_ACTIONED_DOCUMENTS_AFTER_LIMIT_EVENT).withUserId(USER_ID),
+                        payloadIsJson(allOf(
+                                withJsonPath("$.scanDocumentId", equalTo(secondScanDocumentId.toString())),
+                                withJsonPath("$.documentFileName", equalTo(PDF_FILE_2))
+                        )))));
+    }
+
     @Test
     public void updateDocumentAsAutoActioned() throws EventStreamException, IOException {
 
@@ -233,10 +314,11 @@ public class StagingBulkScanCommandHandlerTest {
         stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope));
 
         setupMockedEventStream(scanEnvelope.getScanEnvelopeId(), this.eventStream, stagingBulkScanAggregate);
+        setupMockedEventStream(autoActionDocument.getScanDocumentId(), this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.autoActionDocument(scanEnvelopeEnvelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(scanEnvelopeEnvelope).withName(DOCUMENT_AUTO_ACTIONED_EVENT).withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(autoActionDocument.getScanDocumentId().toString())),
@@ -260,10 +342,11 @@ public class StagingBulkScanCommandHandlerTest {
         final Envelope<RejectDocument> rejectDocumentEnvelope = envelope("stagingbulkscan.command.reject-document", rejectDocument);
 
         setupMockedEventStream(scanEnvelopeId, this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.rejectDocument(rejectDocumentEnvelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(rejectDocumentEnvelope).withName(DOCUMENT_REJECTED).withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString())),
@@ -297,10 +380,11 @@ public class StagingBulkScanCommandHandlerTest {
         final Envelope<ExpireDocument> expireDocumentEnvelope = envelopeFrom(metadataBuilder, expireDocument);
 
         setupMockedEventStream(scanEnvelopeId, this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.expireDocument(expireDocumentEnvelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(expireDocumentEnvelope).withName(DOCUMENT_EXPIRED).withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString())),
@@ -320,17 +404,64 @@ public class StagingBulkScanCommandHandlerTest {
         final JsonEnvelope envelope = envelopeFrom(metadataBuilder, objectToJsonObjectConverter.convert(payload));
 
         setupMockedEventStream(scanEnvelopeId, this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
         stagingBulkScanCommandHandler.raiseDocumentFollowUpEvent(envelope);
 
-        Stream<JsonEnvelope> jsonEnvelopeStream = verifyAppendAndGetArgumentFrom(eventStream);
+        Stream<JsonEnvelope> jsonEnvelopeStream = verifyAppendAndGetArgumentFrom(documentEventStream);
 
         JsonEnvelopeMatcher jsonEnvelopeMatcher = jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName("stagingbulkscan.events.document-attached-with-follow-up").withUserId(USER_ID),
                 payloadIsJson(allOf(
                         withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString())),
                         withJsonPath("$.scanEnvelopeId", is(scanEnvelopeId.toString()))
                 )));
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(jsonEnvelopeMatcher));
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(jsonEnvelopeMatcher));
+
+    }
 
+    @Test
+    public void shouldDecideNextStepOnStreamOfDocument() throws EventStreamException {
+        final UUID scanEnvelopeId = randomUUID();
+        final JsonEnvelope envelope = decideDocumentNextStep(scanEnvelopeId);
+
+        final StagingBulkScanAggregate stagingBulkScanAggregate = new StagingBulkScanAggregate();
+        stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withZipFileName(ZIP_FILE_1)
+                .withAssociatedScanDocuments(asList(scanDocument()
+                        .withScanDocumentId(DOCUMENT_ID_1)
+                        .withFileName(PDF_FILE_1)
+                        .withCaseUrn(CASE_URN)
+                        .build()))
+                .build()));
+
+        setupMockedEventStream(scanEnvelopeId, this.eventStream, stagingBulkScanAggregate);
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
+
+        stagingBulkScanCommandHandler.raiseNextStepDecidedUpEvent(envelope);
+
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
+                jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName(DOCUMENT_NEXT_STEP_DECIDED).withUserId(USER_ID),
+                        payloadIsJson(allOf(
+                                withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString())),
+                                withJsonPath("$.caseUrn", is(CASE_URN))
+                        )))));
+    }
+
+    @Test
+    public void shouldPauseNextStepOnStreamOfEnvelopeNotRegistered() throws EventStreamException {
+        final UUID scanEnvelopeId = randomUUID();
+        final JsonEnvelope envelope = decideDocumentNextStep(scanEnvelopeId);
+
+        setupMockedEventStream(scanEnvelopeId, this.eventStream, new StagingBulkScanAggregate());
+
+        stagingBulkScanCommandHandler.raiseNextStepDecidedUpEvent(envelope);
+
+        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+                jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName(DOCUMENT_NEXT_STEP_PAUSED).withUserId(USER_ID),
+                        payloadIsJson(allOf(
+                                withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString())),
+                                withJsonPath("$.scanEnvelopeId", is(scanEnvelopeId.toString()))
+                        )))));
     }
 
     public void updateDefendantFinancialMeans() throws EventStreamException {
@@ -343,10 +474,11 @@ public class StagingBulkScanCommandHandlerTest {
         final Envelope<AllFinancialMeans> envelope = envelope("stagingbulkscan.command.update-defendant-financial-means", allFinancialMeans);
 
         setupMockedEventStream(allFinancialMeans.getScanEnvelopeId(), this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.updateDefendantFinancialMeans(envelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName("stagingbulkscan.events.defendant-financial-means-updated").withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString()))
@@ -360,16 +492,100 @@ public class StagingBulkScanCommandHandlerTest {
         final Envelope<Defendant> expireDocumentEnvelope = envelope("stagingbulkscan.command.update-defendant-additional-details", defendantDetails);
 
         setupMockedEventStream(defendantDetails.getScanEnvelopeId(), this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
 
         stagingBulkScanCommandHandler.updateDefendantDetails(expireDocumentEnvelope);
 
-        assertThat(verifyAppendAndGetArgumentFrom(eventStream), streamContaining(
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream), streamContaining(
                 jsonEnvelope(withMetadataEnvelopedFrom(expireDocumentEnvelope).withName(DOCUMENT_EXPIRED).withUserId(USER_ID),
                         payloadIsJson(allOf(
                                 withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString()))
                         )))));
     }
 
+    @Test
+    public void shouldUpdateDefendantFinancialMeansOnlyOnceFromTheMc100OfADocument() throws EventStreamException {
+        final UUID scanEnvelopeId = randomUUID();
+        final AllFinancialMeans allFinancialMeans = AllFinancialMeans.allFinancialMeans()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withScanDocumentId(DOCUMENT_ID_1)
+                .build();
+        final Envelope<AllFinancialMeans> envelope = envelope("stagingbulkscan.command.update-defendant-financial-means", allFinancialMeans);
+
+        // the envelope stream never sees the update, which is appended to the stream of the document
+        when(this.eventSource.getStreamById(scanEnvelopeId)).thenReturn(this.eventStream);
+        when(this.aggregateService.get(this.eventStream, StagingBulkScanAggregate.class))
+                .thenReturn(envelopeWithMc100(scanEnvelopeId), envelopeWithMc100(scanEnvelopeId));
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, new ScanDocumentAggregate());
+        final List<List<JsonEnvelope>> appended = new ArrayList<>();
+        when(this.documentEventStream.append(any())).thenAnswer(invocation -> {
+            appended.add(((Stream<JsonEnvelope>) invocation.getArgument(0)).collect(toList()));
+            return 0L;
+        });
+
+        stagingBulkScanCommandHandler.updateDefendantFinancialMeans(envelope);
+        stagingBulkScanCommandHandler.updateDefendantFinancialMeans(envelope);
+
+        assertThat(appended.size(), is(2));
+        assertThat(appended.get(0).stream(), streamContaining(
+                jsonEnvelope(withMetadataEnvelopedFrom(envelope).withName(DEFENDANT_FINANCIAL_MEANS_UPDATED).withUserId(USER_ID),
+                        payloadIsJson(withJsonPath("$.scanDocumentId", is(DOCUMENT_ID_1.toString()))))));
+        assertThat(appended.get(1), is(empty()));
+    }
+
+    @Test
+    public void shouldNotUpdateDefendantDetailsFromAPleaAlreadyFollowedUp() throws EventStreamException {
+        final UUID scanEnvelopeId = randomUUID();
+        final Defendant defendantDetails = Defendant.defendant().withScanEnvelopeId(scanEnvelopeId).withScanDocumentId(DOCUMENT_ID_1).build();
+        final Envelope<Defendant> envelope = envelope("stagingbulkscan.command.update-defendant-additional-details", defendantDetails);
+
+        final ScanDocumentAggregate scanDocumentAggregate = new ScanDocumentAggregate();
+        scanDocumentAggregate.apply(new ScanDocumentFollowedUp(scanEnvelopeId, DOCUMENT_ID_1, randomUUID(), ZonedDateTime.now()));
+        setupMockedEventStream(scanEnvelopeId, this.eventStream, new StagingBulkScanAggregate());
+        setupMockedEventStream(DOCUMENT_ID_1, this.documentEventStream, scanDocumentAggregate);
+
+        stagingBulkScanCommandHandler.updateDefendantDetails(envelope);
+
+        assertThat(verifyAppendAndGetArgumentFrom(documentEventStream).collect(toList()), is(empty()));
+    }
+
+    private StagingBulkScanAggregate envelopeWithMc100(final UUID scanEnvelopeId) {
+        final StagingBulkScanAggregate stagingBulkScanAggregate = new StagingBulkScanAggregate();
+        stagingBulkScanAggregate.apply(new ScanEnvelopeRegistered(scanEnvelope()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withZipFileName(ZIP_FILE_1)
+                .withAssociatedScanDocuments(asList(
+                        scanDocument()
+                                .withScanDocumentId(DOCUMENT_ID_1)
+                                .withFileName(PDF_FILE_1)
+                                .withMc100s(DocumentFinancialMeans.documentFinancialMeans()
+                                        .withNiNumber("AB123456C")
+                                        .withEmployed(false)
+                                        .withSelfEmployed(false)
+                                        .withUnemployed(false)
+                                        .withOtherEmploymentStatus(false)
+                                        .withAverageIncome("")
+                                        .withFrequencyFortnightly(false)
+                                        .withFrequencyMonthly(false)
+                                        .withFrequencyWeekly(false)
+                                        .withFrequencyYearly(false)
+                                        .withNameOfOrganization("")
+                                        .withNoIncome(false)
+                                        .build())
+                                .build()))
+                .build()));
+        return stagingBulkScanAggregate;
+    }
+
+    private JsonEnvelope decideDocumentNextStep(final UUID scanEnvelopeId) {
+        final JsonObject payload = createObjectBuilder()
+                .add("scanEnvelopeId", scanEnvelopeId.toString())
+                .add("scanDocumentId", DOCUMENT_ID_1.toString())
+                .add("isSjp", true)
+                .build();
+        return envelopeFrom(metadataWithRandomUUID("stagingbulkscan.command.decide-document-next-step").withUserId(USER_ID), payload);
+    }
+
     private List<Problem> buildProblems() {
         List<Problem> problems = new ArrayList<>();
         List<ProblemValue> problemValues = new ArrayList<>();
@@ -0,0 +1,164 @@
+package uk.gov.moj.cpp.stagingbulkscan.command.handler.snapshot;
+
+import static java.util.Collections.singletonList;
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.services.messaging.JsonEnvelope.envelopeFrom;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+import static uk.gov.justice.services.test.utils.core.messaging.MetadataBuilderFactory.metadataWithRandomUUID;
+import static uk.gov.justice.services.test.utils.core.reflection.ReflectionUtil.setField;
+
+import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
+import uk.gov.justice.services.common.converter.jackson.ObjectMapperProducer;
+import uk.gov.justice.services.core.aggregate.AggregateService;
+import uk.gov.justice.services.eventsourcing.source.core.EventStream;
+import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
+import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.StagingBulkScanAggregate;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanEnvelopeRegistered;
+
+import java.io.ObjectStreamClass;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class AggregateSnapshotServiceTest {
+
+    private static final String COMMAND = "stagingbulkscan.command.auto-action-scan-document";
+    private static final UUID STREAM_ID = randomUUID();
+    private static final UUID DOCUMENT_ID = randomUUID();
+    private static final UUID ACTIONED_BY = randomUUID();
+
+    @Mock
+    private AggregateService aggregateService;
+
+    @Mock
+    private EventStream eventStream;
+
+    private final InMemoryAggregateSnapshotStore aggregateSnapshotStore = new InMemoryAggregateSnapshotStore(10);
+
+    private final AggregateSnapshotService aggregateSnapshotService = new AggregateSnapshotService();
+
+    @BeforeEach
+    public void setup() {
+        final JsonObjectToObjectConverter jsonObjectToObjectConverter = new JsonObjectToObjectConverter();
+        setField(jsonObjectToObjectConverter, "objectMapper", new ObjectMapperProducer().objectMapper());
+        setField(aggregateSnapshotService, "aggregateService", aggregateService);
+        setField(aggregateSnapshotService, "jsonObjectToObjectConverter", jsonObjectToObjectConverter);
+        setField(aggregateSnapshotService, "aggregateSnapshotStore", aggregateSnapshotStore);
+        setField(aggregateSnapshotService, "aggregateSnapshotThreshold", "25");
+    }
+
+    @Test
+    public void shouldSnapshotStreamOnceThresholdIsReplayed() {
+        when(eventStream.size()).thenReturn(30L);
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(registeredAggregate());
+
+        aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID).get().getPosition(), is(30L));
+        assertThat(aggregateSnapshotService.getMetrics().getCommand(COMMAND).get().getMaxReplayedEvents(), is(30L));
+        assertThat(aggregateSnapshotService.getMetrics().getCommand(COMMAND).get().getFromSnapshot(), is(0L));
+    }
+
+    @Test
+    public void shouldNotSnapshotShortStream() {
+        when(eventStream.size()).thenReturn(3L);
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(registeredAggregate());
+
+        aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldNotSnapshotStreamThatGrewWhileItWasReplayed() {
+        when(eventStream.size()).thenReturn(30L, 31L);
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(registeredAggregate());
+
+        aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldReplayOnlyEventsAfterSnapshot() {
+        when(eventStream.size()).thenReturn(30L);
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(registeredAggregate());
+        aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+        when(eventStream.readFrom(31L)).thenReturn(Stream.of(
+                envelopeFrom(metadataWithRandomUUID("stagingbulkscan.events.scan-document-rejected"), createObjectBuilder().build()),
+                envelopeFrom(metadataWithRandomUUID("stagingbulkscan.events.document-auto-actioned"), createObjectBuilder()
+                        .add("scanEnvelopeId", STREAM_ID.toString())
+                        .add("scanDocumentId", DOCUMENT_ID.toString())
+                        .add("actionedBy", ACTIONED_BY.toString())
+                        .add("statusUpdatedDate", "2024-03-01T10:15:30.000Z")
+                        .build())));
+
+        final StagingBulkScanAggregate aggregate = aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        verify(aggregateService, times(1)).get(eventStream, StagingBulkScanAggregate.class);
+        assertThat(aggregate.getScanEnvelope().getAssociatedScanDocuments().get(0).getActionedBy(), is(ACTIONED_BY));
+        assertThat(aggregateSnapshotService.getMetrics().getCommand(COMMAND).get().getCount(), is(2L));
+        assertThat(aggregateSnapshotService.getMetrics().getCommand(COMMAND).get().getFromSnapshot(), is(1L));
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID).get().getPosition(), is(30L));
+    }
+
+    @Test
+    public void shouldDropSnapshotOfAnotherAggregateVersion() {
+        aggregateSnapshotStore.save(new AggregateSnapshot(STREAM_ID, StagingBulkScanAggregate.class.getName(), 1L, 30L, new byte[0]));
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(registeredAggregate());
+
+        final StagingBulkScanAggregate aggregate = aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        assertThat(aggregate.getScanEnvelope().getScanEnvelopeId(), is(STREAM_ID));
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID), is(Optional.empty()));
+        verify(eventStream, never()).readFrom(31L);
+    }
+
+    @Test
+    public void shouldDropSnapshotThatCannotBeRead() {
+        final long aggregateVersion = ObjectStreamClass.lookup(StagingBulkScanAggregate.class).getSerialVersionUID();
+        aggregateSnapshotStore.save(new AggregateSnapshot(STREAM_ID, StagingBulkScanAggregate.class.getName(), aggregateVersion, 30L, new byte[]{1, 2, 3}));
+        when(aggregateService.get(eventStream, StagingBulkScanAggregate.class)).thenReturn(new StagingBulkScanAggregate());
+
+        final StagingBulkScanAggregate aggregate = aggregateSnapshotService.load(COMMAND, STREAM_ID, eventStream, StagingBulkScanAggregate.class);
+
+        assertThat(aggregate.getScanEnvelope(), is(nullValue()));
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldKeepOnlyLatestSnapshotOfStream() {
+        aggregateSnapshotStore.save(new AggregateSnapshot(STREAM_ID, StagingBulkScanAggregate.class.getName(), 2L, 50L, new byte[0]));
+        aggregateSnapshotStore.save(new AggregateSnapshot(STREAM_ID, StagingBulkScanAggregate.class.getName(), 2L, 30L, new byte[0]));
+
+        assertThat(aggregateSnapshotStore.findLatest(STREAM_ID).get().getPosition(), is(50L));
+    }
+
+    private static StagingBulkScanAggregate registeredAggregate() {
+        final StagingBulkScanAggregate aggregate = new StagingBulkScanAggregate();
+        aggregate.apply(new ScanEnvelopeRegistered(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(STREAM_ID)
+                .withZipFileName("envelope.zip")
+                .withAssociatedScanDocuments(singletonList(ScanDocument.scanDocument()
+                        .withScanDocumentId(DOCUMENT_ID)
+                        .withFileName("document.pdf")
+                        .build()))
+                .build()));
+        return aggregate;
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate;
+
+import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.match;
+import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.otherwiseDoNothing;
+import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.when;
+import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.AUTO_ACTIONED;
+import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.MANUALLY_ACTIONED;
+
+import uk.gov.justice.domain.aggregate.Aggregate;
+import uk.gov.justice.stagingbulkscan.domain.DocumentStatus;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ActionedDocumentDeleted;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantDetailsUpdated;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantFinancialMeansUpdated;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentFollowedUp;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentManuallyActioned;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The life of one scanned document, on a stream of its own keyed by the scan document id, so
+ * commands for different documents of an envelope never append to the same stream.
+ *
+ * What a command raises is decided by the {@link StagingBulkScanAggregate} of the envelope, which
+ * holds the registered documents, and recorded here.
+ *
+ * The plea and MC100 of the document are only used for one update of the defendant. The events
+ * of that update are appended to this stream, so whether they have been used is kept here rather
+ * than with the envelope.
+ */
+public class ScanDocumentAggregate implements Aggregate {
+
+    private static final long serialVersionUID = 1L;
+
+    private DocumentStatus status;
+
+    private boolean deleted;
+
+    private boolean pleaUsed;
+
+    private boolean financialMeansUsed;
+
+    @Override
+    public Object apply(final Object event) {
+        return match(event).with(
+                when(ScanDocumentManuallyActioned.class).apply(scanDocumentManuallyActioned -> status = MANUALLY_ACTIONED),
+                when(ScanDocumentAutoActioned.class).apply(scanDocumentAutoActioned -> status = AUTO_ACTIONED),
+                when(ActionedDocumentDeleted.class).apply(actionedDocumentDeleted -> deleted = true),
+                when(DefendantDetailsUpdated.class).apply(defendantDetailsUpdated -> pleaUsed = true),
+                when(DefendantFinancialMeansUpdated.class).apply(defendantFinancialMeansUpdated -> financialMeansUsed = true),
+                when(ScanDocumentFollowedUp.class).apply(scanDocumentFollowedUp -> {
+                    pleaUsed = true;
+                    financialMeansUsed = true;
+                }),
+                otherwiseDoNothing()
+        );
+    }
+
+    /**
+     * Records the events decided for the document. The files of a document are only deleted once,
+     * so a deletion of a document already deleted is dropped.
+     */
+    public Stream<Object> record(final Stream<Object> events) {
+        return apply(events.filter(event -> !(deleted && event instanceof ActionedDocumentDeleted)));
+    }
+
+    /**
+     * Records the update of the defendant decided from the plea of the document, unless the plea
+     * has already been used, when nothing is decided.
+     */
+    public Stream<Object> recordDefendantDetailsUpdate(final Supplier<Stream<Object>> decision) {
+        return pleaUsed ? Stream.empty() : record(decision.get());
+    }
+
+    /**
+     * Records the update of the defendant decided from the MC100 of the document, unless the
+     * MC100 has already been used, when nothing is decided.
+     */
+    public Stream<Object> recordDefendantFinancialMeansUpdate(final Supplier<Stream<Object>> decision) {
+        return financialMeansUsed ? Stream.empty() : record(decision.get());
+    }
+
+    public DocumentStatus getStatus() {
+        return status;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public boolean isPleaUsed() {
+        return pleaUsed;
+    }
+
+    public boolean isFinancialMeansUsed() {
+        return financialMeansUsed;
+    }
+}
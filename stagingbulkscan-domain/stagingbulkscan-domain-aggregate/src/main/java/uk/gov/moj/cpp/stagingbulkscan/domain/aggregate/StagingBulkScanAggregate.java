@@ -1,5 +1,7 @@
 package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
 import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.match;
 import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.otherwiseDoNothing;
 import static uk.gov.justice.domain.aggregate.matcher.EventSwitcher.when;
@@ -13,8 +15,11 @@ import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.delegate.DefendantPleaDel
 import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.delegate.StagingBulkScanAggregateMemento;
 import uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.delegate.StagingBulkScanDelegate;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ActionedDocumentDeleted;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantDetailsUpdated;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantFinancialMeansUpdated;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepPaused;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentFollowedUp;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentManuallyActioned;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanEnvelopeRegistered;
 import uk.gov.moj.cpp.stagingbulkscan.json.schemas.Problem;
@@ -26,7 +31,24 @@ import java.util.stream.Stream;
 
 public class StagingBulkScanAggregate implements Aggregate {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 3L;
+
+    /**
+     * The events {@link #apply(Object)} changes the state with. Every other event of the stream
+     * is ignored, so a replay that starts from a snapshot only needs to read these. The defendant
+     * updates are applied to let go of the plea and MC100 of the document they were made from;
+     * only older updates are found here, newer ones are appended to the stream of the document and
+     * checked by its {@link ScanDocumentAggregate}.
+     */
+    public static final List<Class<?>> APPLIED_EVENTS = unmodifiableList(asList(
+            ScanEnvelopeRegistered.class,
+            ScanDocumentManuallyActioned.class,
+            ScanDocumentAutoActioned.class,
+            ActionedDocumentDeleted.class,
+            DocumentNextStepPaused.class,
+            DefendantDetailsUpdated.class,
+            DefendantFinancialMeansUpdated.class,
+            ScanDocumentFollowedUp.class));
 
     private final StagingBulkScanAggregateMemento stagingBulkScanAggregateMemento;
 
@@ -51,6 +73,9 @@ public class StagingBulkScanAggregate implements Aggregate {
                 when(ScanDocumentAutoActioned.class).apply(stagingBulkScanDelegate::handleScanDocumentAutoActioned),
                 when(ActionedDocumentDeleted.class).apply(stagingBulkScanDelegate::handleActionedDocumentDelete),
                 when(DocumentNextStepPaused.class).apply(stagingBulkScanDelegate::handleDocumentPaused),
+                when(DefendantDetailsUpdated.class).apply(defendantPleaDelegate::handleDefendantDetailsUpdated),
+                when(DefendantFinancialMeansUpdated.class).apply(defendantFinancialMeansDelegate::handleDefendantFinancialMeansUpdated),
+                when(ScanDocumentFollowedUp.class).apply(stagingBulkScanDelegate::handleScanDocumentFollowedUp),
                 otherwiseDoNothing()
         );
     }
@@ -91,6 +116,10 @@ public class StagingBulkScanAggregate implements Aggregate {
         return stagingBulkScanAggregateMemento.getScanEnvelope();
     }
 
+    public boolean isScanEnvelopeRegistered() {
+        return stagingBulkScanAggregateMemento.isScanEnvelopeRegistered();
+    }
+
     public Stream<Object> raiseDocumentFollowUp(UUID scanEnvelopeId, UUID scanDocumentId) {
         return apply(stagingBulkScanDelegate.raiseDocumentFollowUp(scanEnvelopeId, scanDocumentId));
     }
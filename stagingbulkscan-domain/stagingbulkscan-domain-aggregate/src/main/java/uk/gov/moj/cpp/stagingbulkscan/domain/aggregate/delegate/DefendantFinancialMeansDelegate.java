@@ -19,7 +19,6 @@ import uk.gov.justice.stagingbulkscan.domain.Employment;
 import uk.gov.justice.stagingbulkscan.domain.EmploymentStatus;
 import uk.gov.justice.stagingbulkscan.domain.Frequency;
 import uk.gov.justice.stagingbulkscan.domain.Income;
-import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
 import uk.gov.moj.cpp.stagingbulkscan.domain.common.validators.NiNumberValidator;
 import uk.gov.moj.cpp.stagingbulkscan.domain.common.validators.PostcodeValidator;
 import uk.gov.moj.cpp.stagingbulkscan.domain.common.validators.Validator;
@@ -42,16 +41,18 @@ public class DefendantFinancialMeansDelegate implements Serializable {
     }
 
     public Stream<Object> updateDefendantFinancialMeans(final AllFinancialMeans allFinancialMeans, final UUID actionedBy) {
-        final ScanDocument scanDocument = this.stagingBulkScanAggregateMemento.getScanEnvelope().getAssociatedScanDocuments().stream()
-                .filter(d -> d.getScanDocumentId().equals(allFinancialMeans.getScanDocumentId()))
-                .findFirst()
-                .orElse(ScanDocument.scanDocument().build());
+        final UUID scanDocumentId = allFinancialMeans.getScanDocumentId();
+        final DocumentFinancialMeans documentFinancialMeans = this.stagingBulkScanAggregateMemento.findFinancialMeans(scanDocumentId).orElse(null);
 
-        if (isNull(scanDocument.getMc100s())) {
+        if (isNull(documentFinancialMeans)) {
             return Stream.empty();
         }
 
-        return updateDefendantFinancialMeans(allFinancialMeans, scanDocument.getMc100s(), scanDocument.getScanDocumentId(), actionedBy);
+        return updateDefendantFinancialMeans(allFinancialMeans, documentFinancialMeans, scanDocumentId, actionedBy);
+    }
+
+    public void handleDefendantFinancialMeansUpdated(final DefendantFinancialMeansUpdated defendantFinancialMeansUpdated) {
+        this.stagingBulkScanAggregateMemento.financialMeansUsed(defendantFinancialMeansUpdated.getScanDocumentId());
     }
 
     private Stream<Object> updateDefendantFinancialMeans(final AllFinancialMeans allFinancialMeans, final DocumentFinancialMeans documentFinancialMeans, final UUID scanDocumentId, final UUID actionedBy) {
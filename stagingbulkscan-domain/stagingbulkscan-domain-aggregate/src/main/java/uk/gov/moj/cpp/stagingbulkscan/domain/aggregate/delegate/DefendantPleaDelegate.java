@@ -49,9 +49,7 @@ public class DefendantPleaDelegate implements Serializable {
 
     public Stream<Object> updateDefendantDetails(final Defendant defendantDetails, final UUID actionedBy) {
         final UUID scanDocumentId = defendantDetails.getScanDocumentId();
-        final Optional<ScanDocument> scanDocument = this.stagingBulkScanAggregateMemento.getScanEnvelope().getAssociatedScanDocuments().stream()
-                .filter(document -> document.getScanDocumentId().equals(scanDocumentId))
-                .findFirst();
+        final Optional<ScanDocument> scanDocument = this.stagingBulkScanAggregateMemento.findScanDocument(scanDocumentId);
 
         final Stream.Builder<Object> streamBuilder = Stream.builder();
 
@@ -60,14 +58,14 @@ public class DefendantPleaDelegate implements Serializable {
             return empty();
         }
 
-        final Plea pleaInfo = scanDocument.get().getPlea();
+        final Plea pleaInfo = this.stagingBulkScanAggregateMemento.findPlea(scanDocumentId).orElse(null);
 
         if (pleaInfo == null) {
             LOGGER.error("Plea information not available while trying to update defendant details");
             return empty();
         }
 
-        final UUID scanEnvelopeId = this.stagingBulkScanAggregateMemento.getScanEnvelope().getScanEnvelopeId();
+        final UUID scanEnvelopeId = this.stagingBulkScanAggregateMemento.getScanEnvelopeId();
 
         if (!pleaInfo.getDetailsCorrect()) {
             final ScanDocumentFollowedUp scanDocumentFollowedUp = new ScanDocumentFollowedUp(scanEnvelopeId, scanDocumentId, actionedBy, now(UTC));
@@ -101,6 +99,10 @@ public class DefendantPleaDelegate implements Serializable {
         return streamBuilder.build();
     }
 
+    public void handleDefendantDetailsUpdated(final DefendantDetailsUpdated defendantDetailsUpdated) {
+        this.stagingBulkScanAggregateMemento.pleaUsed(defendantDetailsUpdated.getScanDocumentId());
+    }
+
     private PleaDetailsUpdated updatePleaDetails(final Defendant defendantDetails, final Plea pl) {
         final List<DefendantPlea> defendantPleas = new ArrayList<>();
         final List<Offence> offences = pl.getOffences();
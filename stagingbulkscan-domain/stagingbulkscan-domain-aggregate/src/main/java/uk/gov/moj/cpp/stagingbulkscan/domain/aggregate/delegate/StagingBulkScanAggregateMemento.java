@@ -1,66 +1,161 @@
 package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.delegate;
 
 import static java.time.ZoneOffset.UTC;
+import static java.util.Collections.emptyList;
 import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.MANUALLY_ACTIONED;
 
+import uk.gov.justice.stagingbulkscan.domain.DocumentFinancialMeans;
 import uk.gov.justice.stagingbulkscan.domain.DocumentStatus;
+import uk.gov.justice.stagingbulkscan.domain.Plea;
 import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
 import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepPaused;
 
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
-
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * The state of an envelope. The documents are indexed by their id, in the order they were
+ * registered, and each event only rebuilds the document it is about, so replaying the events of
+ * an envelope grows with the number of events rather than with events times documents.
+ *
+ * The plea and MC100 read from a document are kept apart from the document, and only until the
+ * defendant has been updated with them, so they are neither copied by the status changes nor
+ * kept in the snapshots of the envelope once used.
+ *
+ * The {@link ScanEnvelope} view is only built when it is asked for, and kept until the next
+ * change.
+ */
 public class StagingBulkScanAggregateMemento implements Serializable {
 
-    private ScanEnvelope scanEnvelope;
+    private static final long serialVersionUID = 2L;
+
+    private ScanEnvelope envelopeAttributes;
+
+    private final Map<UUID, ScanDocument> scanDocuments = new LinkedHashMap<>();
+
+    private final Map<UUID, Plea> pleas = new HashMap<>();
+
+    private final Map<UUID, DocumentFinancialMeans> financialMeans = new HashMap<>();
+
+    private transient ScanEnvelope scanEnvelope;
 
     private DocumentNextStepPaused documentNextStepPaused;
 
     public ScanEnvelope getScanEnvelope() {
+        if (scanEnvelope == null && envelopeAttributes != null) {
+            final List<ScanDocument> associatedScanDocuments = new ArrayList<>(scanDocuments.size());
+            scanDocuments.values().forEach(scanDocument -> associatedScanDocuments.add(withDocumentData(scanDocument)));
+            scanEnvelope = buildScanEnvelope(envelopeAttributes, associatedScanDocuments);
+        }
         return scanEnvelope;
     }
 
+    public boolean isScanEnvelopeRegistered() {
+        return envelopeAttributes != null;
+    }
+
+    public UUID getScanEnvelopeId() {
+        return envelopeAttributes.getScanEnvelopeId();
+    }
+
+    public String getZipFileName() {
+        return envelopeAttributes.getZipFileName();
+    }
+
+    public Optional<ScanDocument> findScanDocument(final UUID scanDocumentId) {
+        return Optional.ofNullable(scanDocuments.get(scanDocumentId));
+    }
+
+    public Optional<Plea> findPlea(final UUID scanDocumentId) {
+        return Optional.ofNullable(pleas.get(scanDocumentId));
+    }
+
+    public Optional<DocumentFinancialMeans> findFinancialMeans(final UUID scanDocumentId) {
+        return Optional.ofNullable(financialMeans.get(scanDocumentId));
+    }
+
     public DocumentNextStepPaused getDocumentNextStepPaused() {
         return documentNextStepPaused;
     }
 
     public void registerScanEnvelope(final ScanEnvelope scanEnvelope) {
-        this.scanEnvelope = buildScanEnvelope(scanEnvelope, scanEnvelope.getAssociatedScanDocuments());
+        final ZonedDateTime registeredDate = ZonedDateTime.now(UTC);
+        index(scanEnvelope, scanDocument -> registeredDate);
     }
 
     public void markDocumentAsManuallyActioned(final UUID scanDocumentId, final UUID actionedBy, final ZonedDateTime actionedDate) {
-        final List<ScanDocument> associatedScanDocuments = buildDocumentsWithActionedItem(scanDocumentId, actionedBy, actionedDate);
-        this.scanEnvelope = buildScanEnvelope(getScanEnvelope(), associatedScanDocuments);
+        updateScanDocument(scanDocumentId, scanDocument -> setActionedDocument(scanDocument, actionedBy, actionedDate));
     }
 
     public void markDocumentAsAutoActioned(final UUID scanDocumentId, final UUID actionedBy, final ZonedDateTime statusUpdatedDate) {
-        final List<ScanDocument> scanDocuments = buildDocumentsWithActionedItem(scanDocumentId, actionedBy, statusUpdatedDate);
-        this.scanEnvelope = buildScanEnvelope(getScanEnvelope(), scanDocuments);
+        updateScanDocument(scanDocumentId, scanDocument -> setActionedDocument(scanDocument, actionedBy, statusUpdatedDate));
     }
 
     public void markDocumentAsAutoDelete(final UUID scanDocumentId, final ZonedDateTime deletedDate) {
-        final List<ScanDocument> scanDocumentsWithActionedDocument = buildDocumentsWithDeleted(scanDocumentId, deletedDate);
-        this.scanEnvelope = buildScanEnvelope(getScanEnvelope(), scanDocumentsWithActionedDocument);
+        updateScanDocument(scanDocumentId, scanDocument -> buildDeletedDocument(scanDocument, deletedDate));
     }
 
-    private List<ScanDocument> buildDocumentsWithActionedItem(final UUID scanDocumentId, final UUID actionedBy, final ZonedDateTime actionedDate) {
-        return this.scanEnvelope.getAssociatedScanDocuments().stream()
-                .map(scanDocument -> scanDocument.getScanDocumentId().equals(scanDocumentId) ? setActionedDocument(scanDocument, actionedBy, actionedDate) : scanDocument)
-                .collect(Collectors.toList());
+    public void pleaUsed(final UUID scanDocumentId) {
+        if (pleas.remove(scanDocumentId) != null) {
+            scanEnvelope = null;
+        }
     }
 
-    private ScanDocument setActionedDocument(final ScanDocument scanDocument, final UUID actionedBy, final ZonedDateTime actionedDate) {
-        return buildScanDocument(scanDocument, actionedBy, MANUALLY_ACTIONED, actionedDate, scanDocument.getDeleted(), scanDocument.getDeletedDate());
+    public void financialMeansUsed(final UUID scanDocumentId) {
+        if (financialMeans.remove(scanDocumentId) != null) {
+            scanEnvelope = null;
+        }
+    }
+
+    private void updateScanDocument(final UUID scanDocumentId, final UnaryOperator<ScanDocument> update) {
+        if (scanDocuments.computeIfPresent(scanDocumentId, (id, scanDocument) -> update.apply(scanDocument)) != null) {
+            scanEnvelope = null;
+        }
     }
 
-    private List<ScanDocument> buildDocumentsWithDeleted(final UUID scanDocumentId, final ZonedDateTime deletedDate) {
-        return this.scanEnvelope.getAssociatedScanDocuments().stream()
-                .map(scanDocument -> scanDocument.getScanDocumentId().equals(scanDocumentId) ? buildDeletedDocument(scanDocument, deletedDate) : scanDocument)
-                .collect(Collectors.toList());
+    private void index(final ScanEnvelope scanEnvelope, final Function<ScanDocument, ZonedDateTime> statusUpdatedDate) {
+        this.envelopeAttributes = buildScanEnvelope(scanEnvelope, emptyList());
+        this.scanDocuments.clear();
+        this.pleas.clear();
+        this.financialMeans.clear();
+        scanEnvelope.getAssociatedScanDocuments().forEach(scanDocument -> {
+            final UUID scanDocumentId = scanDocument.getScanDocumentId();
+            this.scanDocuments.put(scanDocumentId, buildScanDocument(scanDocument, statusUpdatedDate.apply(scanDocument)));
+            if (scanDocument.getPlea() != null) {
+                this.pleas.put(scanDocumentId, scanDocument.getPlea());
+            }
+            if (scanDocument.getMc100s() != null) {
+                this.financialMeans.put(scanDocumentId, scanDocument.getMc100s());
+            }
+        });
+        this.scanEnvelope = null;
+    }
+
+    private ScanDocument withDocumentData(final ScanDocument scanDocument) {
+        final Plea plea = pleas.get(scanDocument.getScanDocumentId());
+        final DocumentFinancialMeans mc100s = financialMeans.get(scanDocument.getScanDocumentId());
+        if (plea == null && mc100s == null) {
+            return scanDocument;
+        }
+        return ScanDocument.scanDocument()
+                .withValuesFrom(scanDocument)
+                .withPlea(plea)
+                .withMc100s(mc100s)
+                .build();
+    }
+
+    private ScanDocument setActionedDocument(final ScanDocument scanDocument, final UUID actionedBy, final ZonedDateTime actionedDate) {
+        return buildScanDocument(scanDocument, actionedBy, MANUALLY_ACTIONED, actionedDate, scanDocument.getDeleted(), scanDocument.getDeletedDate());
     }
 
     private ScanDocument buildDeletedDocument(final ScanDocument scanDocument, final ZonedDateTime deletedDate) {
@@ -78,9 +173,7 @@ public class StagingBulkScanAggregateMemento implements Serializable {
                 .withZipFileName(scanEnvelope.getZipFileName())
                 .withNotes(scanEnvelope.getNotes())
                 .withZipFileCreatedDate(scanEnvelope.getZipFileCreatedDate())
-                .withAssociatedScanDocuments(scanDocuments.stream()
-                        .map(document -> buildScanDocument(document, ZonedDateTime.now(UTC)))
-                        .collect(Collectors.toList()))
+                .withAssociatedScanDocuments(scanDocuments)
                 .build();
     }
 
@@ -117,14 +210,12 @@ public class StagingBulkScanAggregateMemento implements Serializable {
                 .withStatusUpdatedDate(statusUpdatedDate)
                 .withDeleted(deleted)
                 .withDeletedDate(deletedDate)
-                .withPlea(scanDocument.getPlea())
-                .withMc100s(scanDocument.getMc100s())
                 .build();
     }
 
     //only for unit tests
     public void setScanEnvelope(ScanEnvelope scanEnvelope) {
-        this.scanEnvelope = scanEnvelope;
+        index(scanEnvelope, ScanDocument::getStatusUpdatedDate);
     }
 
     public void documentPaused(final DocumentNextStepPaused documentNextStepPaused) {
@@ -18,6 +18,7 @@ import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepDecided;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.DocumentNextStepPaused;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAttachedAndFollowedUp;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentFollowedUp;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentManuallyActioned;
 import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanEnvelopeRegistered;
 import uk.gov.moj.cpp.stagingbulkscan.json.schemas.Problem;
@@ -44,7 +45,10 @@ public class StagingBulkScanDelegate implements Serializable {
         streams.add(new ScanEnvelopeRegistered(scanEnvelope));
         if(nonNull(this.stagingBulkScanAggregateMemento.getDocumentNextStepPaused())){
             final DocumentNextStepPaused documentNextStepPaused = this.stagingBulkScanAggregateMemento.getDocumentNextStepPaused();
-            raiseDocumentEvent(scanEnvelope,documentNextStepPaused.getScanEnvelopeId(), documentNextStepPaused.getScanDocumentId(), documentNextStepPaused.getIsSjp(), streams);
+            final Optional<ScanDocument> scanDocument = scanEnvelope.getAssociatedScanDocuments().stream()
+                    .filter(doc -> doc.getScanDocumentId().equals(documentNextStepPaused.getScanDocumentId()))
+                    .findFirst();
+            raiseDocumentEvent(scanDocument, documentNextStepPaused.getScanEnvelopeId(), documentNextStepPaused.getScanDocumentId(), documentNextStepPaused.getIsSjp(), streams);
         }
         return streams.build();
     }
@@ -68,7 +72,7 @@ public class StagingBulkScanDelegate implements Serializable {
     public Stream<Object> markAsAutoActioned(final UUID scanEnvelopeId, final UUID scanDocumentId, final UUID actionedBy) {
         final Stream.Builder streams = Stream.builder();
         streams.add(new ScanDocumentAutoActioned(scanEnvelopeId, scanDocumentId, actionedBy, now(UTC)));
-        final Optional<ScanDocument> scanDocument = stagingBulkScanAggregateMemento.getScanEnvelope().getAssociatedScanDocuments().stream().filter(document -> document.getScanDocumentId().equals(scanDocumentId)).findFirst();
+        final Optional<ScanDocument> scanDocument = stagingBulkScanAggregateMemento.findScanDocument(scanDocumentId);
         if (scanDocument.isPresent() && isValidPleaDocument(scanDocument.get())) {
             if (isNotBlank(scanDocument.get().getCaseUrn())) {
                 streams.add(new DefendantDetailsUpdateRequested(scanEnvelopeId, scanDocumentId, scanDocument.get().getCaseUrn()));
@@ -86,11 +90,11 @@ public class StagingBulkScanDelegate implements Serializable {
     }
 
     private boolean isValidFinancialMeansDocument(ScanDocument scanDocument) {
-        return scanDocument.getMc100s() != null && MC100.equalsIgnoreCase(scanDocument.getDocumentName());
+        return stagingBulkScanAggregateMemento.findFinancialMeans(scanDocument.getScanDocumentId()).isPresent() && MC100.equalsIgnoreCase(scanDocument.getDocumentName());
     }
 
     private boolean isValidPleaDocument(ScanDocument scanDocument) {
-        return scanDocument.getPlea() != null && !scanDocument.getPlea().getOffences().isEmpty();
+        return stagingBulkScanAggregateMemento.findPlea(scanDocument.getScanDocumentId()).filter(plea -> !plea.getOffences().isEmpty()).isPresent();
     }
 
     public void handleScanDocumentAutoActioned(final ScanDocumentAutoActioned scanDocumentAutoActioned) {
@@ -98,11 +102,9 @@ public class StagingBulkScanDelegate implements Serializable {
     }
 
     public Stream<Object> deleteActionedDocument(final UUID scanEnvelopeId, final UUID scanDocumentId) {
-        final String zipFileName = this.stagingBulkScanAggregateMemento.getScanEnvelope().getZipFileName();
-        final String documentFileName = this.stagingBulkScanAggregateMemento.getScanEnvelope().getAssociatedScanDocuments().stream()
-                .filter(document -> document.getScanDocumentId().equals(scanDocumentId))
+        final String zipFileName = this.stagingBulkScanAggregateMemento.getZipFileName();
+        final String documentFileName = this.stagingBulkScanAggregateMemento.findScanDocument(scanDocumentId)
                 .map(ScanDocument::getFileName)
-                .findFirst()
                 .orElse(null);
 
         if (isNull(documentFileName)) {
@@ -116,6 +118,11 @@ public class StagingBulkScanDelegate implements Serializable {
         this.stagingBulkScanAggregateMemento.markDocumentAsAutoDelete(actionedDocumentDeleted.getScanDocumentId(), actionedDocumentDeleted.getDeletedDate());
     }
 
+    public void handleScanDocumentFollowedUp(final ScanDocumentFollowedUp scanDocumentFollowedUp) {
+        this.stagingBulkScanAggregateMemento.pleaUsed(scanDocumentFollowedUp.getScanDocumentId());
+        this.stagingBulkScanAggregateMemento.financialMeansUsed(scanDocumentFollowedUp.getScanDocumentId());
+    }
+
     public Stream<Object> rejectDocument(final UUID scanEnvelopeId, final UUID scanDocumentId, final List<Problem> errors) {
         return Stream.of(new ScanDocumentRejected(errors, now(UTC), scanDocumentId, scanEnvelopeId));
     }
@@ -129,19 +136,17 @@ public class StagingBulkScanDelegate implements Serializable {
     }
 
     public Stream<Object> raiseDocumentNextstepDecided(final UUID scanEnvelopeId, final UUID scanDocumentId, final Boolean isSjp) {
-        if(isNull( this.stagingBulkScanAggregateMemento.getScanEnvelope())){
+        if (!this.stagingBulkScanAggregateMemento.isScanEnvelopeRegistered()) {
             return Stream.of(new DocumentNextStepPaused(scanEnvelopeId, scanDocumentId, isSjp));
         }
         final Stream.Builder<Object> streams = Stream.builder();
-        raiseDocumentEvent(this.stagingBulkScanAggregateMemento.getScanEnvelope(),scanEnvelopeId,scanDocumentId,isSjp,streams );
+        raiseDocumentEvent(this.stagingBulkScanAggregateMemento.findScanDocument(scanDocumentId), scanEnvelopeId, scanDocumentId, isSjp, streams);
         return streams.build();
     }
 
-    private void raiseDocumentEvent(final ScanEnvelope scanEnvelope,final UUID scanEnvelopeId, final UUID scanDocumentId, final Boolean isSjp, final Stream.Builder<Object> streams) {
-        final Optional<String>  caseUrn = scanEnvelope.getAssociatedScanDocuments().stream()
-                .filter(doc -> doc.getScanDocumentId().equals(scanDocumentId))
-                .map(doc -> isBlank(doc.getCaseUrn()) ? doc.getCasePTIUrn() : doc.getCaseUrn())
-                .findFirst();
+    private void raiseDocumentEvent(final Optional<ScanDocument> scanDocument, final UUID scanEnvelopeId, final UUID scanDocumentId, final Boolean isSjp, final Stream.Builder<Object> streams) {
+        final Optional<String> caseUrn = scanDocument
+                .map(doc -> isBlank(doc.getCaseUrn()) ? doc.getCasePTIUrn() : doc.getCaseUrn());
         caseUrn.ifPresent(urn -> streams.add(new DocumentNextStepDecided(scanEnvelopeId, scanDocumentId, urn,isSjp)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.AUTO_ACTIONED;
+import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.MANUALLY_ACTIONED;
+
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ActionedDocumentDeleted;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.DefendantFinancialMeansUpdated;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentFollowedUp;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentManuallyActioned;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class ScanDocumentAggregateTest {
+
+    private static final UUID ENVELOPE_ID = randomUUID();
+    private static final UUID DOCUMENT_ID = randomUUID();
+    private static final UUID ACTIONED_BY = randomUUID();
+    private static final ZonedDateTime EVENT_DATE = ZonedDateTime.now(UTC);
+
+    private final ScanDocumentAggregate scanDocumentAggregate = new ScanDocumentAggregate();
+
+    @Test
+    public void shouldRecordStatusOfDocument() {
+        scanDocumentAggregate.record(Stream.of(new ScanDocumentAutoActioned(ENVELOPE_ID, DOCUMENT_ID, ACTIONED_BY, EVENT_DATE))).collect(toList());
+        assertThat(scanDocumentAggregate.getStatus(), is(AUTO_ACTIONED));
+
+        scanDocumentAggregate.record(Stream.of(new ScanDocumentManuallyActioned(ENVELOPE_ID, DOCUMENT_ID, ACTIONED_BY, EVENT_DATE))).collect(toList());
+        assertThat(scanDocumentAggregate.getStatus(), is(MANUALLY_ACTIONED));
+    }
+
+    @Test
+    public void shouldDeleteDocumentOnlyOnce() {
+        final List<Object> firstDeletion = scanDocumentAggregate.record(Stream.of(actionedDocumentDeleted())).collect(toList());
+        final List<Object> secondDeletion = scanDocumentAggregate.record(Stream.of(actionedDocumentDeleted())).collect(toList());
+
+        assertThat(firstDeletion, contains(instanceOf(ActionedDocumentDeleted.class)));
+        assertThat(secondDeletion, is(empty()));
+        assertThat(scanDocumentAggregate.isDeleted(), is(true));
+    }
+
+    @Test
+    public void shouldDecideDefendantUpdatesOnlyUntilThePleaAndMc100AreUsed() {
+        final Object defendantFinancialMeansUpdated = new DefendantFinancialMeansUpdated(DOCUMENT_ID, null, null, null, null, "AB123456C", null);
+
+        assertThat(scanDocumentAggregate.recordDefendantFinancialMeansUpdate(() -> Stream.of(defendantFinancialMeansUpdated)).collect(toList()),
+                contains(defendantFinancialMeansUpdated));
+        assertThat(scanDocumentAggregate.isFinancialMeansUsed(), is(true));
+        assertThat(scanDocumentAggregate.isPleaUsed(), is(false));
+        assertThat(scanDocumentAggregate.recordDefendantFinancialMeansUpdate(() -> Stream.of(defendantFinancialMeansUpdated)).collect(toList()),
+                is(empty()));
+
+        scanDocumentAggregate.record(Stream.of(new ScanDocumentFollowedUp(ENVELOPE_ID, DOCUMENT_ID, ACTIONED_BY, EVENT_DATE))).collect(toList());
+        assertThat(scanDocumentAggregate.isPleaUsed(), is(true));
+        assertThat(scanDocumentAggregate.recordDefendantDetailsUpdate(() -> {
+            throw new AssertionError("the plea is already used");
+        }).collect(toList()), is(empty()));
+    }
+
+    private static ActionedDocumentDeleted actionedDocumentDeleted() {
+        return new ActionedDocumentDeleted(ENVELOPE_ID, DOCUMENT_ID, "envelope.zip", "document.pdf", EVENT_DATE);
+    }
+}
@@ -0,0 +1,144 @@
+package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate;
+
+import static java.util.UUID.randomUUID;
+
+import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
+import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanEnvelopeRegistered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Auto actions the documents of one envelope from several threads, the way the event processor
+ * does once an envelope is uploaded. Each stream is modelled by its version, and an append made
+ * with a version that is no longer the latest is retried from the load, like an optimistic lock
+ * failure of the event store.
+ *
+ * envelopeStream appends every document event to the stream of the envelope, documentStreams
+ * decides with the envelope aggregate and appends to the stream of the document. The retries
+ * counter shows the appends that lost the race.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ScanDocumentStreamContentionBenchmark {
+
+    @Param({"40"})
+    private int documentCount;
+
+    private UUID scanEnvelopeId;
+    private ScanEnvelopeRegistered scanEnvelopeRegistered;
+    private List<UUID> scanDocumentIds;
+    private AtomicLong envelopeStreamVersion;
+    private Map<UUID, AtomicLong> documentStreamVersions;
+
+    @Setup(Level.Iteration)
+    public void createStreams() {
+        scanEnvelopeId = randomUUID();
+        scanDocumentIds = new ArrayList<>(documentCount);
+        final List<ScanDocument> scanDocuments = new ArrayList<>(documentCount);
+        for (int document = 0; document < documentCount; document++) {
+            final UUID scanDocumentId = randomUUID();
+            scanDocumentIds.add(scanDocumentId);
+            scanDocuments.add(ScanDocument.scanDocument()
+                    .withScanDocumentId(scanDocumentId)
+                    .withFileName("document" + document + ".pdf")
+                    .withCaseUrn("TFL" + document)
+                    .build());
+        }
+        scanEnvelopeRegistered = new ScanEnvelopeRegistered(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withZipFileName("envelope.zip")
+                .withAssociatedScanDocuments(scanDocuments)
+                .build());
+        envelopeStreamVersion = new AtomicLong(1);
+        documentStreamVersions = new ConcurrentHashMap<>();
+        scanDocumentIds.forEach(scanDocumentId -> documentStreamVersions.put(scanDocumentId, new AtomicLong()));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retries {
+
+        public long retries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retries = 0;
+        }
+    }
+
+    @Benchmark
+    public long envelopeStream(final Retries retries) {
+        final UUID scanDocumentId = nextScanDocumentId();
+        return append(envelopeStreamVersion, retries,
+                () -> loadEnvelope().markAsAutoActioned(scanEnvelopeId, scanDocumentId, scanDocumentId));
+    }
+
+    @Benchmark
+    public long documentStreams(final Retries retries) {
+        final UUID scanDocumentId = nextScanDocumentId();
+        return append(documentStreamVersions.get(scanDocumentId), retries,
+                () -> new ScanDocumentAggregate().record(loadEnvelope().markAsAutoActioned(scanEnvelopeId, scanDocumentId, scanDocumentId)));
+    }
+
+    private long append(final AtomicLong streamVersion, final Retries retries, final Supplier<Stream<Object>> command) {
+        while (true) {
+            final long version = streamVersion.get();
+            final long events = command.get().count();
+            if (streamVersion.compareAndSet(version, version + events)) {
+                return events;
+            }
+            retries.retries++;
+        }
+    }
+
+    private StagingBulkScanAggregate loadEnvelope() {
+        final StagingBulkScanAggregate aggregate = new StagingBulkScanAggregate();
+        aggregate.apply(scanEnvelopeRegistered);
+        return aggregate;
+    }
+
+    private UUID nextScanDocumentId() {
+        return scanDocumentIds.get(ThreadLocalRandom.current().nextInt(documentCount));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScanDocumentStreamContentionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
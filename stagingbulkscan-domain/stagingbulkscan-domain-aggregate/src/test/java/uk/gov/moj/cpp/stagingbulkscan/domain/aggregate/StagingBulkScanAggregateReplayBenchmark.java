@@ -0,0 +1,106 @@
+package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.UUID.randomUUID;
+
+import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
+import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ActionedDocumentDeleted;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanDocumentAutoActioned;
+import uk.gov.moj.cpp.stagingbulkscan.domain.event.ScanEnvelopeRegistered;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Replays the stream of an envelope the way the event source does before each command: the
+ * registration, then an auto actioned and an actioned document deleted event for every document.
+ * The replay is followed by the command raised for the last document, which looks the document up
+ * and reads the envelope.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StagingBulkScanAggregateReplayBenchmark {
+
+    private static final String ZIP_FILE_NAME = "envelope.zip";
+
+    @Param({"1", "50", "500"})
+    private int documentCount;
+
+    private List<Object> events;
+    private UUID scanEnvelopeId;
+    private UUID lastScanDocumentId;
+
+    @Setup(Level.Trial)
+    public void createEvents() {
+        scanEnvelopeId = randomUUID();
+        final UUID actionedBy = randomUUID();
+        final ZonedDateTime eventDate = ZonedDateTime.now(UTC);
+        final List<ScanDocument> scanDocuments = new ArrayList<>(documentCount);
+        for (int document = 0; document < documentCount; document++) {
+            scanDocuments.add(ScanDocument.scanDocument()
+                    .withScanDocumentId(randomUUID())
+                    .withFileName("document" + document + ".pdf")
+                    .withCaseUrn("TFL" + document)
+                    .withDocumentName("SJPMC100")
+                    .build());
+        }
+
+        events = new ArrayList<>(1 + 2 * documentCount);
+        events.add(new ScanEnvelopeRegistered(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(scanEnvelopeId)
+                .withZipFileName(ZIP_FILE_NAME)
+                .withAssociatedScanDocuments(scanDocuments)
+                .build()));
+        for (final ScanDocument scanDocument : scanDocuments) {
+            events.add(new ScanDocumentAutoActioned(scanEnvelopeId, scanDocument.getScanDocumentId(), actionedBy, eventDate));
+            events.add(new ActionedDocumentDeleted(scanEnvelopeId, scanDocument.getScanDocumentId(), ZIP_FILE_NAME, scanDocument.getFileName(), eventDate));
+        }
+        lastScanDocumentId = scanDocuments.get(documentCount - 1).getScanDocumentId();
+    }
+
+    @Benchmark
+    public StagingBulkScanAggregate replay() {
+        final StagingBulkScanAggregate aggregate = new StagingBulkScanAggregate();
+        events.forEach(aggregate::apply);
+        return aggregate;
+    }
+
+    @Benchmark
+    public long replayAndHandleCommand() {
+        final StagingBulkScanAggregate aggregate = replay();
+        return aggregate.deleteActionedDocument(scanEnvelopeId, lastScanDocumentId).count()
+                + aggregate.getScanEnvelope().getAssociatedScanDocuments().size();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StagingBulkScanAggregateReplayBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -1,15 +1,28 @@
 package uk.gov.moj.cpp.stagingbulkscan.domain.aggregate.delegate;
 
 import static java.time.ZoneOffset.UTC;
+import static java.util.Collections.singletonList;
 import static java.util.UUID.randomUUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import uk.gov.justice.stagingbulkscan.domain.DocumentFinancialMeans;
+import uk.gov.justice.stagingbulkscan.domain.Offence;
+import uk.gov.justice.stagingbulkscan.domain.Plea;
 import uk.gov.justice.stagingbulkscan.domain.ScanDocument;
 import uk.gov.justice.stagingbulkscan.domain.ScanEnvelope;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.Test;
@@ -64,6 +77,125 @@ public class StagingBulkScanAggregateMementoTest {
         assertNotNull(memento.getScanEnvelope().getAssociatedScanDocuments().get(0).getDeletedDate());
     }
 
+    @Test
+    public void shouldNotHaveScanEnvelopeBeforeItIsRegistered() {
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+
+        assertFalse(newMemento.isScanEnvelopeRegistered());
+        assertNull(newMemento.getScanEnvelope());
+        assertEquals(Optional.empty(), newMemento.findScanDocument(DOCUMENT_ID));
+    }
+
+    @Test
+    public void shouldFindScanDocumentById() {
+        final UUID otherDocumentId = randomUUID();
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+        newMemento.registerScanEnvelope(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(ENVELOPE_ID)
+                .withZipFileName("envelope.zip")
+                .withAssociatedScanDocuments(Arrays.asList(
+                        ScanDocument.scanDocument().withScanDocumentId(DOCUMENT_ID).withFileName("first.pdf").build(),
+                        ScanDocument.scanDocument().withScanDocumentId(otherDocumentId).withFileName("second.pdf").build()))
+                .build());
+
+        newMemento.markDocumentAsAutoActioned(otherDocumentId, ACTIONED_BY, ACTIONED_DATE);
+
+        assertTrue(newMemento.isScanEnvelopeRegistered());
+        assertEquals(ENVELOPE_ID, newMemento.getScanEnvelopeId());
+        assertEquals("envelope.zip", newMemento.getZipFileName());
+        assertEquals("second.pdf", newMemento.findScanDocument(otherDocumentId).get().getFileName());
+        assertEquals(ACTIONED_BY, newMemento.findScanDocument(otherDocumentId).get().getActionedBy());
+        assertNull(newMemento.findScanDocument(DOCUMENT_ID).get().getActionedBy());
+        assertEquals(Optional.empty(), newMemento.findScanDocument(randomUUID()));
+    }
+
+    @Test
+    public void shouldKeepDocumentOrderAfterDocumentIsUpdated() {
+        final UUID otherDocumentId = randomUUID();
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+        newMemento.registerScanEnvelope(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(ENVELOPE_ID)
+                .withAssociatedScanDocuments(Arrays.asList(
+                        ScanDocument.scanDocument().withScanDocumentId(DOCUMENT_ID).build(),
+                        ScanDocument.scanDocument().withScanDocumentId(otherDocumentId).build()))
+                .build());
+
+        newMemento.markDocumentAsAutoDelete(DOCUMENT_ID, DELETED_DATE);
+
+        assertEquals(DOCUMENT_ID, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getScanDocumentId());
+        assertEquals(DELETED_DATE, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getDeletedDate());
+        assertEquals(otherDocumentId, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(1).getScanDocumentId());
+    }
+
+    @Test
+    public void shouldBuildScanEnvelopeOnlyAfterChange() {
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+        newMemento.registerScanEnvelope(buildScanEnvelope());
+
+        final ScanEnvelope registered = newMemento.getScanEnvelope();
+        assertSame(registered, newMemento.getScanEnvelope());
+
+        newMemento.markDocumentAsAutoActioned(randomUUID(), ACTIONED_BY, ACTIONED_DATE);
+        assertSame(registered, newMemento.getScanEnvelope());
+
+        newMemento.markDocumentAsManuallyActioned(DOCUMENT_ID, ACTIONED_BY, ACTIONED_DATE);
+        assertNotSame(registered, newMemento.getScanEnvelope());
+        assertEquals(ACTIONED_BY, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getActionedBy());
+    }
+
+    @Test
+    public void shouldKeepDocumentDataUntilItIsUsed() {
+        final UUID otherDocumentId = randomUUID();
+        final Plea plea = Plea.plea().withOffences(singletonList(Offence.offence().withTitle("Speeding").build())).build();
+        final DocumentFinancialMeans mc100s = DocumentFinancialMeans.documentFinancialMeans().withAverageIncome("100").build();
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+        newMemento.registerScanEnvelope(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(ENVELOPE_ID)
+                .withAssociatedScanDocuments(Arrays.asList(
+                        ScanDocument.scanDocument().withScanDocumentId(DOCUMENT_ID).withPlea(plea).build(),
+                        ScanDocument.scanDocument().withScanDocumentId(otherDocumentId).withMc100s(mc100s).build()))
+                .build());
+
+        newMemento.markDocumentAsAutoActioned(DOCUMENT_ID, ACTIONED_BY, ACTIONED_DATE);
+
+        assertNull(newMemento.findScanDocument(DOCUMENT_ID).get().getPlea());
+        assertEquals(Optional.of(plea), newMemento.findPlea(DOCUMENT_ID));
+        assertEquals(Optional.of(mc100s), newMemento.findFinancialMeans(otherDocumentId));
+        assertEquals(plea, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getPlea());
+        assertEquals(ACTIONED_BY, newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getActionedBy());
+
+        newMemento.pleaUsed(DOCUMENT_ID);
+        newMemento.financialMeansUsed(otherDocumentId);
+
+        assertEquals(Optional.empty(), newMemento.findPlea(DOCUMENT_ID));
+        assertEquals(Optional.empty(), newMemento.findFinancialMeans(otherDocumentId));
+        assertNull(newMemento.getScanEnvelope().getAssociatedScanDocuments().get(0).getPlea());
+        assertNull(newMemento.getScanEnvelope().getAssociatedScanDocuments().get(1).getMc100s());
+    }
+
+    @Test
+    public void shouldSerialiseSmallerOnceDocumentDataIsUsed() throws IOException {
+        final Plea plea = Plea.plea().withOffences(singletonList(Offence.offence().withTitle("Speeding").build())).build();
+        final StagingBulkScanAggregateMemento newMemento = new StagingBulkScanAggregateMemento();
+        newMemento.registerScanEnvelope(ScanEnvelope.scanEnvelope()
+                .withScanEnvelopeId(ENVELOPE_ID)
+                .withAssociatedScanDocuments(singletonList(ScanDocument.scanDocument().withScanDocumentId(DOCUMENT_ID).withPlea(plea).build()))
+                .build());
+
+        final int registeredSize = serialisedSize(newMemento);
+        newMemento.pleaUsed(DOCUMENT_ID);
+
+        assertTrue(serialisedSize(newMemento) < registeredSize);
+    }
+
+    private static int serialisedSize(final StagingBulkScanAggregateMemento memento) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(memento);
+        }
+        return bytes.size();
+    }
+
     private ScanEnvelope buildScanEnvelope() {
         return ScanEnvelope.scanEnvelope()
                 .withScanEnvelopeId(ENVELOPE_ID)
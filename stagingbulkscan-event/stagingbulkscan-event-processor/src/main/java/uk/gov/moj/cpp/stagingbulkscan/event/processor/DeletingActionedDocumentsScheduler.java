@@ -2,9 +2,12 @@ package uk.gov.moj.cpp.stagingbulkscan.event.processor;
 
 import static java.time.temporal.ChronoUnit.DAYS;
 import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static uk.gov.justice.services.core.annotation.Component.EVENT_PROCESSOR;
 import static uk.gov.justice.services.messaging.Envelope.envelopeFrom;
 import static uk.gov.justice.services.messaging.Envelope.metadataBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
 import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 
 import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
@@ -19,8 +22,10 @@ import uk.gov.moj.cpp.stagingbulkscan.query.view.response.ScanDocument;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.UUID;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -33,6 +38,7 @@ import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
 import javax.inject.Inject;
 import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
 
@@ -48,7 +54,7 @@ public class DeletingActionedDocumentsScheduler {
 
     private static final String TIMER_TIMEOUT_INFO = "StagingBulkScanEventProcessorScheduler timer triggered.";
     private static final String STAGING_BULK_SCAN_QUERY_GET_DOCUMENTS_BY_STATUSES = "stagingbulkscan.get-all-documents-by-status";
-    private static final String DELETE_ACTIONED_DOCUMENTS = "stagingbulkscan.command.delete-actioned-document";
+    private static final String DELETE_ACTIONED_DOCUMENTS = "stagingbulkscan.command.delete-actioned-documents";
 
     @Inject
     private ApplicationParameters applicationParameters;
@@ -91,12 +97,16 @@ public class DeletingActionedDocumentsScheduler {
 
         final List<ScanDocument> documentsTobeDeleted = actionedDocuments.stream()
                 .filter(document -> DAYS.between(document.getStatusUpdatedDate(), ZonedDateTime.now()) > Integer.parseInt(applicationParameters.getDeleteAfterActionedDays()))
-                .collect(Collectors.toList());
+                .collect(toList());
 
-        LOGGER.info("number of documents to be deleted are {}", documentsTobeDeleted.size());
+        // one command per envelope, so that the envelope is loaded once for all its documents
+        final Map<UUID, List<ScanDocument>> documentsTobeDeletedByEnvelope = documentsTobeDeleted.stream()
+                .collect(groupingBy(ScanDocument::getScanEnvelopeId, LinkedHashMap::new, toList()));
 
-        documentsTobeDeleted.forEach(document ->
-                sender.send(envelopeFrom(metadataBuilder().withId(randomUUID()).withName(DELETE_ACTIONED_DOCUMENTS).build(), buildPayload(document))));
+        LOGGER.info("number of documents to be deleted are {} in {} envelopes", documentsTobeDeleted.size(), documentsTobeDeletedByEnvelope.size());
+
+        documentsTobeDeletedByEnvelope.forEach((scanEnvelopeId, documents) ->
+                sender.send(envelopeFrom(metadataBuilder().withId(randomUUID()).withName(DELETE_ACTIONED_DOCUMENTS).build(), buildPayload(scanEnvelopeId, documents))));
     }
 
     @PreDestroy
@@ -114,10 +124,12 @@ public class DeletingActionedDocumentsScheduler {
         return convertToList(actionedDocuments.payload().getJsonArray("scanDocuments"), ScanDocument.class);
     }
 
-    private JsonObject buildPayload(final ScanDocument document) {
+    private JsonObject buildPayload(final UUID scanEnvelopeId, final List<ScanDocument> documents) {
+        final JsonArrayBuilder scanDocumentIds = createArrayBuilder();
+        documents.forEach(document -> scanDocumentIds.add(document.getId().toString()));
         return createObjectBuilder()
-                .add("scanEnvelopeId", document.getScanEnvelopeId().toString())
-                .add("scanDocumentId", document.getId().toString())
+                .add("scanEnvelopeId", scanEnvelopeId.toString())
+                .add("scanDocumentIds", scanDocumentIds)
                 .build();
     }
 
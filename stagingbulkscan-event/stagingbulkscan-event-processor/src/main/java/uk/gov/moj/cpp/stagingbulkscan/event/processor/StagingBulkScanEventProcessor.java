@@ -1,5 +1,6 @@
 package uk.gov.moj.cpp.stagingbulkscan.event.processor;
 
+import static java.util.Arrays.asList;
 import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 import static uk.gov.justice.services.core.annotation.Component.EVENT_PROCESSOR;
 import static uk.gov.justice.services.messaging.Envelope.envelopeFrom;
@@ -102,18 +103,13 @@ public class StagingBulkScanEventProcessor {
                 + File.separator
                 + deleteEvent.getDocumentFileName();
 
-        LOGGER.debug("Deleting PDF {} from azure blob store.", pdfFileName);
-        //delete pdf file
-        blobClientProvider.deleteIfExists(pdfFileName);
-
         final String pngFileName = zipFileNameWithoutExtension(deleteEvent.getZipFileName())
                 + File.separator
                 + documentFilenameWithoutExtension(deleteEvent.getDocumentFileName())
                 + ".png";
 
-        LOGGER.debug("Deleting IMAGE {} from azure blob store.", pngFileName);
-        //delete png file
-        blobClientProvider.deleteIfExists(pngFileName);
+        LOGGER.debug("Deleting PDF {} and IMAGE {} from azure blob store.", pdfFileName, pngFileName);
+        blobClientProvider.deleteAllIfExist(asList(pdfFileName, pngFileName));
     }
 
     @Handles("stagingbulkscan.events.scan-document-rejected")
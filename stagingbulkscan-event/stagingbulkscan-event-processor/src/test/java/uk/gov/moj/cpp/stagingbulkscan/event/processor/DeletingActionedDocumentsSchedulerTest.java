@@ -1,30 +1,54 @@
 package uk.gov.moj.cpp.stagingbulkscan.event.processor;
 
 import static java.util.Collections.singleton;
+import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.services.messaging.Envelope.envelopeFrom;
+import static uk.gov.justice.services.messaging.JsonObjects.createArrayBuilder;
+import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
+import static uk.gov.justice.services.test.utils.core.messaging.MetadataBuilderFactory.metadataWithRandomUUID;
+import static uk.gov.justice.services.test.utils.core.reflection.ReflectionUtil.setField;
+
+import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
+import uk.gov.justice.services.common.converter.ZonedDateTimes;
+import uk.gov.justice.services.common.converter.jackson.ObjectMapperProducer;
+import uk.gov.justice.services.core.requester.Requester;
+import uk.gov.justice.services.core.sender.Sender;
+import uk.gov.justice.services.messaging.Envelope;
 
 import uk.gov.moj.cpp.stagingbulkscan.azure.core.service.ApplicationParameters;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
+import javax.json.JsonObject;
+import javax.json.JsonString;
 
 import org.apache.openejb.core.timer.TimerImpl;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,6 +69,23 @@ public class DeletingActionedDocumentsSchedulerTest {
     @Mock
     private ApplicationParameters applicationParameters;
 
+    @Mock
+    private Sender sender;
+
+    @Mock
+    private Requester requester;
+
+    @Spy
+    private JsonObjectToObjectConverter jsonObjectToObjectConverter;
+
+    @Captor
+    private ArgumentCaptor<Envelope<JsonObject>> envelopeArgumentCaptor;
+
+    @BeforeEach
+    public void setup() {
+        setField(this.jsonObjectToObjectConverter, "objectMapper", new ObjectMapperProducer().objectMapper());
+    }
+
     @Test
     public void shouldCreateTimerOnInit() throws Exception {
         final long delay = 30000L;
@@ -70,6 +111,47 @@ public class DeletingActionedDocumentsSchedulerTest {
         assertMethodIsAnnotatedWith(DeletingActionedDocumentsScheduler.class.getMethod("cleanup"), PreDestroy.class);
     }
 
+    @Test
+    public void shouldSendOneDeleteCommandPerEnvelope() {
+        final UUID scanEnvelopeId = randomUUID();
+        final UUID otherScanEnvelopeId = randomUUID();
+        final UUID firstScanDocumentId = randomUUID();
+        final UUID secondScanDocumentId = randomUUID();
+        final UUID otherScanDocumentId = randomUUID();
+        final ZonedDateTime actionedDate = ZonedDateTime.now().minusDays(40);
+
+        when(applicationParameters.getDeleteAfterActionedDays()).thenReturn("30");
+        when(requester.requestAsAdmin(any(), eq(JsonObject.class))).thenReturn(envelopeFrom(
+                metadataWithRandomUUID("stagingbulkscan.get-all-documents-by-status"),
+                createObjectBuilder().add("scanDocuments", createArrayBuilder()
+                        .add(actionedDocument(firstScanDocumentId, scanEnvelopeId, actionedDate))
+                        .add(actionedDocument(otherScanDocumentId, otherScanEnvelopeId, actionedDate))
+                        .add(actionedDocument(secondScanDocumentId, scanEnvelopeId, actionedDate))
+                        .add(actionedDocument(randomUUID(), otherScanEnvelopeId, ZonedDateTime.now())))
+                        .build()));
+
+        underTest.startTimer();
+
+        verify(sender, times(2)).send(envelopeArgumentCaptor.capture());
+        final List<Envelope<JsonObject>> commands = envelopeArgumentCaptor.getAllValues();
+        assertThat(commands.get(0).metadata().name(), is("stagingbulkscan.command.delete-actioned-documents"));
+        assertThat(commands.get(0).payload().getString("scanEnvelopeId"), is(scanEnvelopeId.toString()));
+        assertThat(commands.get(0).payload().getJsonArray("scanDocumentIds").getValuesAs(JsonString.class).stream().map(JsonString::getString).collect(toList()),
+                contains(firstScanDocumentId.toString(), secondScanDocumentId.toString()));
+        assertThat(commands.get(1).payload().getString("scanEnvelopeId"), is(otherScanEnvelopeId.toString()));
+        assertThat(commands.get(1).payload().getJsonArray("scanDocumentIds").getValuesAs(JsonString.class).stream().map(JsonString::getString).collect(toList()),
+                contains(otherScanDocumentId.toString()));
+    }
+
+    private JsonObject actionedDocument(final UUID id, final UUID scanEnvelopeId, final ZonedDateTime statusUpdatedDate) {
+        return createObjectBuilder()
+                .add("id", id.toString())
+                .add("scanEnvelopeId", scanEnvelopeId.toString())
+                .add("status", "AUTO_ACTIONED")
+                .add("statusUpdatedDate", ZonedDateTimes.toString(statusUpdatedDate))
+                .build();
+    }
+
     private void assertMethodIsAnnotatedWith(final Method method, final Class<? extends Annotation> annotationClass) {
         assertThat(method.isAnnotationPresent(annotationClass), is(true));
     }
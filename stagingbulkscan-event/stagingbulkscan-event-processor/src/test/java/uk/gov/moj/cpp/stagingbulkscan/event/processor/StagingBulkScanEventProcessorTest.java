@@ -2,6 +2,7 @@ package uk.gov.moj.cpp.stagingbulkscan.event.processor;
 
 import static java.time.ZoneOffset.UTC;
 import static java.time.ZonedDateTime.now;
+import static java.util.Arrays.asList;
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -14,7 +15,6 @@ import static org.mockito.Mockito.when;
 import static uk.gov.justice.services.messaging.JsonEnvelope.envelopeFrom;
 import static uk.gov.justice.services.messaging.JsonObjects.createObjectBuilder;
 import static uk.gov.justice.services.test.utils.core.messaging.MetadataBuilderFactory.metadataWithRandomUUID;
-import static uk.gov.justice.services.test.utils.core.random.RandomGenerator.STRING;
 import static uk.gov.justice.services.test.utils.core.reflection.ReflectionUtil.setField;
 
 import uk.gov.justice.services.common.converter.JsonObjectToObjectConverter;
@@ -108,7 +108,7 @@ public class StagingBulkScanEventProcessorTest {
     @Test
     public void shouldDeletePhysicalDocumentsFromAzure() {
         final String zipFileName = "valid_scan_documents";
-        final String documentFileName = STRING.next();
+        final String documentFileName = "scan_document.pdf";
 
         final ActionedDocumentDeleted actionedDocumentDeleted =
                 new ActionedDocumentDeleted(SCAN_ENVELOPE_ID, DOCUMENT_ID, zipFileName, documentFileName, DELETED_DATE);
@@ -118,7 +118,8 @@ public class StagingBulkScanEventProcessorTest {
 
         stagingBulkScanEventProcessor.deletePhysicalDocumentsFromAzure(event);
 
-        verify(blobClientProvider).deleteIfExists(zipFileName + File.separator + documentFileName);
+        verify(blobClientProvider).deleteAllIfExist(asList(zipFileName + File.separator + documentFileName,
+                zipFileName + File.separator + "scan_document.png"));
     }
 
     @Test
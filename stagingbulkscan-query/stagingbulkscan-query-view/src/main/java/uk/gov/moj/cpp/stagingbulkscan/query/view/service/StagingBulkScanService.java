@@ -37,6 +37,9 @@ public class StagingBulkScanService {
     @Inject
     private BlobClientProvider blobClientProvider;
 
+    @Inject
+    private ThumbnailRenderingService thumbnailRenderingService;
+
     public ScanDocumentsResponse getScanDocumentsResponseByStatus(final List<DocumentStatus> statuses) {
         List<ScanDocument> documentsByStatus;
 
@@ -127,7 +130,9 @@ public class StagingBulkScanService {
 
         final String pdfFileName = pdfDocumentFileName.substring(0, pdfIndex);
 
-        final byte[] content = blobClientProvider.getBlobContent(fileName, pdfFileName + ".png");
+        final byte[] thumbnail = blobClientProvider.getBlobContent(fileName, pdfFileName + ".png");
+
+        final byte[] content = thumbnail.length > 0 ? thumbnail : thumbnailRenderingService.renderThumbnail(fileName, pdfDocumentFileName, pdfFileName + ".png");
 
         return new String(Base64.getEncoder().encode(content));
 
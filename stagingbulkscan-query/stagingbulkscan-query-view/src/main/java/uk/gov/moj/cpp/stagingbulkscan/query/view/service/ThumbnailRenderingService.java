@@ -0,0 +1,131 @@
+package uk.gov.moj.cpp.stagingbulkscan.query.view.service;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.service.ApplicationParameters;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.service.BlobClientProvider;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.thumbnail.PdfThumbnailRenderer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders the thumbnail of a stored pdf when it was not rendered at ingest, and writes it back
+ * to the blob storage so that it is only rendered once. Concurrent requests for the same
+ * thumbnail wait for the render already in progress instead of starting their own, and renders
+ * run on the bounded workers of a {@link PdfThumbnailRenderer} so the number of pdfs open at
+ * once does not grow with the number of requests.
+ *
+ * A pdf that cannot be found or cannot be rendered is remembered for
+ * {@link #FAILED_RENDER_RETRY_NANOS}, during which its thumbnail is answered empty without
+ * downloading the pdf again.
+ */
+@ApplicationScoped
+public class ThumbnailRenderingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailRenderingService.class);
+
+    private static final byte[] DEFAULT = new byte[0];
+    private static final long FAILED_RENDER_RETRY_NANOS = MINUTES.toNanos(15);
+    private static final int MAX_FAILED_RENDERS = 10_000;
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> rendersInProgress = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> failedRenders = new ConcurrentHashMap<>();
+
+    @Inject
+    private BlobClientProvider blobClientProvider;
+
+    @Inject
+    private ApplicationParameters applicationParameters;
+
+    private PdfThumbnailRenderer pdfThumbnailRenderer;
+
+    @PostConstruct
+    public void createRenderer() {
+        pdfThumbnailRenderer = new PdfThumbnailRenderer(
+                Integer.parseInt(applicationParameters.getThumbnailRenderWorkers()),
+                Long.parseLong(applicationParameters.getThumbnailRenderMemoryBytesPerWorker()),
+                null);
+    }
+
+    @PreDestroy
+    public void closeRenderer() {
+        pdfThumbnailRenderer.close();
+    }
+
+    public byte[] renderThumbnail(final String zipFileName, final String pdfDocumentFileName, final String thumbnailFileName) {
+        final String thumbnailKey = zipFileName + "/" + thumbnailFileName;
+        if (hasRecentlyFailed(thumbnailKey)) {
+            return DEFAULT;
+        }
+
+        final CompletableFuture<byte[]> render = new CompletableFuture<>();
+        final CompletableFuture<byte[]> renderInProgress = rendersInProgress.putIfAbsent(thumbnailKey, render);
+        if (renderInProgress != null) {
+            return renderInProgress.join();
+        }
+
+        try {
+            final byte[] thumbnail = renderAndStore(zipFileName, pdfDocumentFileName, thumbnailFileName);
+            render.complete(thumbnail);
+            return thumbnail;
+        } catch (RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendersInProgress.remove(thumbnailKey, render);
+        }
+    }
+
+    private byte[] renderAndStore(final String zipFileName, final String pdfDocumentFileName, final String thumbnailFileName) {
+        final byte[] pdfContent = blobClientProvider.getBlobContent(zipFileName, pdfDocumentFileName);
+        if (pdfContent.length == 0) {
+            recordFailure(zipFileName + "/" + thumbnailFileName);
+            return DEFAULT;
+        }
+
+        final byte[] thumbnail;
+        try {
+            thumbnail = pdfThumbnailRenderer.render(new ByteArrayInputStream(pdfContent));
+        } catch (IOException e) {
+            LOGGER.warn("Image generation failed, possibly corrupted pdf {}/{}", zipFileName, pdfDocumentFileName, e);
+            recordFailure(zipFileName + "/" + thumbnailFileName);
+            return DEFAULT;
+        }
+        blobClientProvider.uploadBlobContent(zipFileName, thumbnailFileName, thumbnail);
+        return thumbnail;
+    }
+
+    private boolean hasRecentlyFailed(final String thumbnailKey) {
+        final Long retryAfter = failedRenders.get(thumbnailKey);
+        if (retryAfter == null) {
+            return false;
+        }
+        if (System.nanoTime() - retryAfter < 0) {
+            return true;
+        }
+        failedRenders.remove(thumbnailKey, retryAfter);
+        return false;
+    }
+
+    private void recordFailure(final String thumbnailKey) {
+        if (failedRenders.size() >= MAX_FAILED_RENDERS) {
+            final long now = System.nanoTime();
+            failedRenders.values().removeIf(retryAfter -> now - retryAfter >= 0);
+        }
+        if (failedRenders.size() < MAX_FAILED_RENDERS) {
+            failedRenders.put(thumbnailKey, System.nanoTime() + FAILED_RENDER_RETRY_NANOS);
+        }
+    }
+}
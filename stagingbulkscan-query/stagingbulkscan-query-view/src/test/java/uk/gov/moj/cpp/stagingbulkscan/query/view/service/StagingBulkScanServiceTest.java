@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.AUTO_ACTIONED;
 import static uk.gov.justice.stagingbulkscan.domain.DocumentStatus.FOLLOW_UP;
@@ -24,6 +26,7 @@ import uk.gov.moj.cpp.stagingbulkscan.repository.ScanDocumentRepository;
 import uk.gov.moj.cpp.stagingbulkscan.repository.ScanEnvelopeRepository;
 
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -48,6 +51,9 @@ public class StagingBulkScanServiceTest {
     @Mock
     private BlobClientProvider blobClientProvider;
 
+    @Mock
+    private ThumbnailRenderingService thumbnailRenderingService;
+
     @InjectMocks
     private StagingBulkScanService stagingBulkScanService;
 
@@ -150,6 +156,24 @@ public class StagingBulkScanServiceTest {
                 stagingBulkScanService.getThumbnailResponse(scanEnvelopeId, scanDocumentId);
         assertNotNull(getThumbnailResponse.getContent());
         assertEquals(scanDocumentId, getThumbnailResponse.getId());
+        verify(thumbnailRenderingService, never()).renderThumbnail(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void getThumbnailResponseRendersMissingThumbnail() {
+        final UUID scanEnvelopeId = UUID.randomUUID();
+        final UUID scanDocumentId = UUID.randomUUID();
+
+        final ScanEnvelope scanEnvelope = getScanEnvelopeWithOneDocument(scanEnvelopeId, scanDocumentId);
+
+        when(scanEnvelopeRepository.findBy(scanEnvelopeId)).thenReturn(scanEnvelope);
+        when(blobClientProvider.getBlobContent("test", "test.png")).thenReturn(new byte[0]);
+        when(thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png")).thenReturn(new byte[]{10, 20});
+
+        final GetThumbnailResponse getThumbnailResponse =
+                stagingBulkScanService.getThumbnailResponse(scanEnvelopeId, scanDocumentId);
+        assertEquals(Base64.getEncoder().encodeToString(new byte[]{10, 20}), getThumbnailResponse.getContent());
+        assertEquals(scanDocumentId, getThumbnailResponse.getId());
     }
 
     @Test
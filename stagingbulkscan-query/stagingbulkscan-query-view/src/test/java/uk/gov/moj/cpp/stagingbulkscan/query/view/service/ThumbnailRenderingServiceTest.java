@@ -0,0 +1,166 @@
+package uk.gov.moj.cpp.stagingbulkscan.query.view.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.service.ApplicationParameters;
+import uk.gov.moj.cpp.stagingbulkscan.azure.core.service.BlobClientProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ThumbnailRenderingServiceTest {
+
+    @Mock
+    private BlobClientProvider blobClientProvider;
+
+    @Mock
+    private ApplicationParameters applicationParameters;
+
+    @InjectMocks
+    private ThumbnailRenderingService thumbnailRenderingService;
+
+    @BeforeEach
+    public void createRenderer() {
+        when(applicationParameters.getThumbnailRenderWorkers()).thenReturn("2");
+        when(applicationParameters.getThumbnailRenderMemoryBytesPerWorker()).thenReturn("16777216");
+        thumbnailRenderingService.createRenderer();
+    }
+
+    @AfterEach
+    public void closeRenderer() {
+        thumbnailRenderingService.closeRenderer();
+    }
+
+    @Test
+    public void shouldRenderThumbnailAndWriteItBack() throws IOException {
+        when(blobClientProvider.getBlobContent("test", "test.pdf")).thenReturn(onePagePdf());
+
+        final byte[] thumbnail = thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail)), is(notNullValue()));
+        verify(blobClientProvider).uploadBlobContent("test", "test.png", thumbnail);
+    }
+
+    @Test
+    public void shouldNotWriteBackWhenPdfIsCorrupted() {
+        when(blobClientProvider.getBlobContent("test", "test.pdf")).thenReturn("not a pdf".getBytes());
+
+        final byte[] thumbnail = thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+
+        assertThat(thumbnail.length, is(0));
+        verify(blobClientProvider, never()).uploadBlobContent(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void shouldNotDownloadAgainAPdfThatFailedToRender() {
+        when(blobClientProvider.getBlobContent("test", "test.pdf")).thenReturn("not a pdf".getBytes());
+
+        thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+        final byte[] thumbnail = thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+
+        assertThat(thumbnail.length, is(0));
+        verify(blobClientProvider, times(1)).getBlobContent("test", "test.pdf");
+    }
+
+    @Test
+    public void shouldNotDownloadAgainAPdfThatIsMissing() {
+        when(blobClientProvider.getBlobContent("test", "test.pdf")).thenReturn(new byte[0]);
+
+        thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+        final byte[] thumbnail = thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png");
+
+        assertThat(thumbnail.length, is(0));
+        verify(blobClientProvider, times(1)).getBlobContent("test", "test.pdf");
+        verify(blobClientProvider, never()).uploadBlobContent(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void shouldRenderOnceForConcurrentRequests() throws Exception {
+        final byte[] pdf = onePagePdf();
+        final CountDownLatch renderStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRender = new CountDownLatch(1);
+        when(blobClientProvider.getBlobContent("test", "test.pdf")).thenAnswer(invocation -> {
+            renderStarted.countDown();
+            releaseRender.await(10, TimeUnit.SECONDS);
+            return pdf;
+        });
+
+        final List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(4, runnable -> {
+            final Thread thread = new Thread(runnable);
+            requestThreads.add(thread);
+            return thread;
+        });
+        try {
+            final List<CompletableFuture<byte[]>> thumbnails = new ArrayList<>();
+            thumbnails.add(CompletableFuture.supplyAsync(() -> thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png"), executorService));
+            renderStarted.await(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 3; i++) {
+                thumbnails.add(CompletableFuture.supplyAsync(() -> thumbnailRenderingService.renderThumbnail("test", "test.pdf", "test.png"), executorService));
+            }
+            waitUntilAllRequestsAreBlocked(requestThreads, 4);
+            releaseRender.countDown();
+
+            final byte[] expected = thumbnails.get(0).get(10, TimeUnit.SECONDS);
+            for (final CompletableFuture<byte[]> thumbnail : thumbnails) {
+                assertThat(thumbnail.get(10, TimeUnit.SECONDS), is(expected));
+            }
+            verify(blobClientProvider, times(1)).getBlobContent("test", "test.pdf");
+            verify(blobClientProvider, times(1)).uploadBlobContent("test", "test.png", expected);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void waitUntilAllRequestsAreBlocked(final List<Thread> requestThreads, final int requestCount) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            final long blocked = requestThreads.stream()
+                    .filter(thread -> thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING)
+                    .count();
+            if (blocked == requestCount) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private byte[] onePagePdf() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            document.save(outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+}